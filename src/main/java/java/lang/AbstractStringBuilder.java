@@ -675,7 +675,12 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * @return  a reference to this object.
      */
     public AbstractStringBuilder append(double d) {
-	new FloatingDecimal(d).appendTo(this);
+        int n = DoubleToDecimal.toChars(d, value, count);
+        if (n < 0) {
+            expandCapacity(count + ~n);
+            n = DoubleToDecimal.toChars(d, value, count);
+        }
+        count += n;
  	return this;
     }
 
@@ -18,7 +18,6 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.ref.SoftReference;
 import java.io.InputStream;
 import java.io.ObjectStreamField;
 import java.security.AccessController;
@@ -1877,7 +1876,7 @@ public final
 	// checkMemberAccess call for security reasons 
 	// see java.lang.SecurityManager.checkMemberAccess
         checkMemberAccess(Member.DECLARED, ClassLoader.getCallerClassLoader());
-        Field field = searchFields(privateGetDeclaredFields(false), name);
+        Field field = searchDeclaredFields(name, false);
         if (field == null) {
             throw new NoSuchFieldException(name);
         }
@@ -1932,7 +1931,7 @@ public final
 	// checkMemberAccess call for security reasons 
 	// see java.lang.SecurityManager.checkMemberAccess
         checkMemberAccess(Member.DECLARED, ClassLoader.getCallerClassLoader());
-        Method method = searchMethods(privateGetDeclaredMethods(false), name, parameterTypes);
+        Method method = searchDeclaredMethods(name, parameterTypes, false);
         if (method == null) {
             throw new NoSuchMethodException(getName() + "." + name + argumentTypesToString(parameterTypes));
         }
@@ -2198,31 +2197,72 @@ public final
 
     // Caches for certain reflective results
     private static boolean useCaches = true;
-    private volatile transient SoftReference declaredFields;
-    private volatile transient SoftReference publicFields;
-    private volatile transient SoftReference declaredMethods;
-    private volatile transient SoftReference publicMethods;
-    private volatile transient SoftReference declaredConstructors;
-    private volatile transient SoftReference publicConstructors;
-    // Intermediate results for getFields and getMethods
-    private volatile transient SoftReference declaredPublicFields;
-    private volatile transient SoftReference declaredPublicMethods;
+
+    // Reflective results for one version of this class, gathered in one
+    // object so that a class redefinition can obsolete them all at once.
+    // The arrays are the "root" objects, which must be copied before
+    // they are handed out; the maps index them by name for the fetchers
+    // of one field or method.  Each is computed when first needed and
+    // never changes afterwards.  The data is held strongly, so that
+    // lookups do not have to go to the VM again after a garbage
+    // collection; the objects refer only to classes that the class
+    // itself refers to, so they keep no class loader alive.
+    private static class ReflectionData {
+	volatile Field[] declaredFields;
+	volatile Field[] publicFields;
+	volatile Method[] declaredMethods;
+	volatile Method[] publicMethods;
+	volatile Constructor<?>[] declaredConstructors;
+	volatile Constructor<?>[] publicConstructors;
+	// Intermediate results for getFields and getMethods
+	volatile Field[] declaredPublicFields;
+	volatile Method[] declaredPublicMethods;
+	// Indexes of declaredFields, declaredPublicFields, declaredMethods
+	// and declaredPublicMethods by name
+	volatile Map<String,Field> declaredFieldsByName;
+	volatile Map<String,Field> declaredPublicFieldsByName;
+	volatile Map<String,Method[]> declaredMethodsByName;
+	volatile Map<String,Method[]> declaredPublicMethodsByName;
+
+	// Value of classRedefinedCount when this data was created
+	final int redefinedCount;
+
+	ReflectionData(int redefinedCount) {
+	    this.redefinedCount = redefinedCount;
+	}
+    }
+
+    private volatile transient ReflectionData reflectionData;
 
     // Incremented by the VM on each call to JVM TI RedefineClasses()
     // that redefines this class or a superclass.
     private volatile transient int classRedefinedCount = 0;
 
-    // Value of classRedefinedCount when we last cleared the cached values
-    // that are sensitive to class redefinition.
+    // Returns the reflection data for the current version of this
+    // class, or null if caching is disabled.  Data created for an
+    // earlier version is replaced.  We do not guard against brief
+    // windows during which multiple threads might redundantly create
+    // the data or fill parts of it; the last one written wins.
+    private ReflectionData reflectionData() {
+	if (!useCaches)
+	    return null;
+	int redefinedCount = classRedefinedCount;
+	ReflectionData rd = reflectionData;
+	if (rd == null || rd.redefinedCount != redefinedCount) {
+	    rd = new ReflectionData(redefinedCount);
+	    reflectionData = rd;
+	}
+	return rd;
+    }
+
+    // Value of classRedefinedCount when we last cleared the cached
+    // annotations.
     private volatile transient int lastRedefinedCount = 0;
 
-    // Clears cached values that might possibly have been obsoleted by
-    // a class redefinition.
+    // Clears cached annotations that might possibly have been obsoleted
+    // by a class redefinition.
     private void clearCachesOnClassRedefinition() {
 	if (lastRedefinedCount != classRedefinedCount) {
-	    declaredFields = publicFields = declaredPublicFields = null;
-	    declaredMethods = publicMethods = declaredPublicMethods = null;
-	    declaredConstructors = publicConstructors = null;
 	    annotations = declaredAnnotations = null;
 
 	    // Use of "volatile" (and synchronization by caller in the case
@@ -2273,27 +2313,19 @@ public final
     // via ReflectionFactory.copyField.
     private Field[] privateGetDeclaredFields(boolean publicOnly) {
         checkInitted();
-        Field[] res = null;
-        if (useCaches) {
-            clearCachesOnClassRedefinition();
-            if (publicOnly) {
-                if (declaredPublicFields != null) {
-                    res = (Field[]) declaredPublicFields.get();
-                }
-            } else {
-                if (declaredFields != null) {
-                    res = (Field[]) declaredFields.get();
-                }
-            }
+        Field[] res;
+        ReflectionData rd = reflectionData();
+        if (rd != null) {
+            res = publicOnly ? rd.declaredPublicFields : rd.declaredFields;
             if (res != null) return res;
         }
         // No cached value available; request value from VM
         res = Reflection.filterFields(this, getDeclaredFields0(publicOnly));
-        if (useCaches) {
+        if (rd != null) {
             if (publicOnly) {
-                declaredPublicFields = new SoftReference(res);
+                rd.declaredPublicFields = res;
             } else {
-                declaredFields = new SoftReference(res);
+                rd.declaredFields = res;
             }
         }
         return res;
@@ -2304,12 +2336,10 @@ public final
     // via ReflectionFactory.copyField.
     private Field[] privateGetPublicFields(Set traversedInterfaces) {
         checkInitted();
-        Field[] res = null;
-        if (useCaches) {
-            clearCachesOnClassRedefinition();
-            if (publicFields != null) {
-                res = (Field[]) publicFields.get();
-            }
+        Field[] res;
+        ReflectionData rd = reflectionData();
+        if (rd != null) {
+            res = rd.publicFields;
             if (res != null) return res;
         }
 
@@ -2344,8 +2374,8 @@ public final
 
         res = new Field[fields.size()];
         fields.toArray(res);
-        if (useCaches) {
-            publicFields = new SoftReference(res);
+        if (rd != null) {
+            rd.publicFields = res;
         }
         return res;
     }
@@ -2368,18 +2398,10 @@ public final
     // instead be copied via ReflectionFactory.copyConstructor.
     private Constructor[] privateGetDeclaredConstructors(boolean publicOnly) {
         checkInitted();
-        Constructor[] res = null;
-        if (useCaches) {
-            clearCachesOnClassRedefinition();
-            if (publicOnly) {
-                if (publicConstructors != null) {
-                    res = (Constructor[]) publicConstructors.get();
-                }
-            } else {
-                if (declaredConstructors != null) {
-                    res = (Constructor[]) declaredConstructors.get();
-                }
-            }
+        Constructor[] res;
+        ReflectionData rd = reflectionData();
+        if (rd != null) {
+            res = publicOnly ? rd.publicConstructors : rd.declaredConstructors;
             if (res != null) return res;
         }
         // No cached value available; request value from VM
@@ -2388,11 +2410,11 @@ public final
         } else {
             res = getDeclaredConstructors0(publicOnly);
         }
-        if (useCaches) {
+        if (rd != null) {
             if (publicOnly) {
-                publicConstructors = new SoftReference(res);
+                rd.publicConstructors = res;
             } else {
-                declaredConstructors = new SoftReference(res);
+                rd.declaredConstructors = res;
             }
         }
         return res;
@@ -2409,27 +2431,19 @@ public final
     // via ReflectionFactory.copyMethod.
     private Method[] privateGetDeclaredMethods(boolean publicOnly) {
         checkInitted();
-        Method[] res = null;
-        if (useCaches) {
-            clearCachesOnClassRedefinition();
-            if (publicOnly) {
-                if (declaredPublicMethods != null) {
-                    res = (Method[]) declaredPublicMethods.get();
-                }
-            } else {
-                if (declaredMethods != null) {
-                    res = (Method[]) declaredMethods.get();
-                }
-            }
+        Method[] res;
+        ReflectionData rd = reflectionData();
+        if (rd != null) {
+            res = publicOnly ? rd.declaredPublicMethods : rd.declaredMethods;
             if (res != null) return res;
         }
         // No cached value available; request value from VM
         res = getDeclaredMethods0(publicOnly);
-        if (useCaches) {
+        if (rd != null) {
             if (publicOnly) {
-                declaredPublicMethods = new SoftReference(res);
+                rd.declaredPublicMethods = res;
             } else {
-                declaredMethods = new SoftReference(res);
+                rd.declaredMethods = res;
             }
         }
         return res;
@@ -2531,12 +2545,10 @@ public final
     // via ReflectionFactory.copyMethod.
     private Method[] privateGetPublicMethods() {
         checkInitted();
-        Method[] res = null;
-        if (useCaches) {
-            clearCachesOnClassRedefinition();
-            if (publicMethods != null) {
-                res = (Method[]) publicMethods.get();
-            }
+        Method[] res;
+        ReflectionData rd = reflectionData();
+        if (rd != null) {
+            res = rd.publicMethods;
             if (res != null) return res;
         }
 
@@ -2584,8 +2596,8 @@ public final
         methods.addAllIfNotPresent(inheritedMethods);
         methods.compactAndTrim();
         res = methods.getArray();
-        if (useCaches) {
-            publicMethods = new SoftReference(res);
+        if (rd != null) {
+            rd.publicMethods = res;
         }
         return res;
     }
@@ -2605,6 +2617,35 @@ public final
         return null;
     }
 
+    // Returns a copy of the first of the declared (public) fields with
+    // the given name, or null if there is none.
+    private Field searchDeclaredFields(String name, boolean publicOnly) {
+        if (name == null) {
+            throw new NullPointerException();
+        }
+        Field[] fields = privateGetDeclaredFields(publicOnly);
+        ReflectionData rd = reflectionData();
+        if (rd == null) {
+            return searchFields(fields, name);
+        }
+        Map<String,Field> byName = publicOnly
+            ? rd.declaredPublicFieldsByName : rd.declaredFieldsByName;
+        if (byName == null) {
+            byName = new HashMap<String,Field>(fields.length * 2);
+            // Backwards, so that the first field of a name wins
+            for (int i = fields.length - 1; i >= 0; i--) {
+                byName.put(fields[i].getName(), fields[i]);
+            }
+            if (publicOnly) {
+                rd.declaredPublicFieldsByName = byName;
+            } else {
+                rd.declaredFieldsByName = byName;
+            }
+        }
+        Field res = byName.get(name);
+        return (res == null ? null : getReflectionFactory().copyField(res));
+    }
+
     private Field getField0(String name) throws NoSuchFieldException {
         // Note: the intent is that the search algorithm this routine
         // uses be equivalent to the ordering imposed by
@@ -2615,7 +2656,7 @@ public final
         // class which is being queried.
         Field res = null;
         // Search declared public fields
-        if ((res = searchFields(privateGetDeclaredFields(true), name)) != null) {
+        if ((res = searchDeclaredFields(name, true)) != null) {
             return res;
         }
         // Direct superinterfaces, recursively
@@ -2655,6 +2696,65 @@ public final
 
 	return (res == null ? res : getReflectionFactory().copyMethod(res));
     }
+
+    // Returns a copy of the declared (public) method with the given name
+    // and parameter types that searchMethods would return, or null if
+    // there is none.
+    private Method searchDeclaredMethods(String name,
+                                         Class<?>[] parameterTypes,
+                                         boolean publicOnly)
+    {
+        if (name == null) {
+            throw new NullPointerException();
+        }
+        Method[] methods = privateGetDeclaredMethods(publicOnly);
+        ReflectionData rd = reflectionData();
+        if (rd == null) {
+            return searchMethods(methods, name, parameterTypes);
+        }
+        Map<String,Method[]> byName = publicOnly
+            ? rd.declaredPublicMethodsByName : rd.declaredMethodsByName;
+        if (byName == null) {
+            byName = methodsByName(methods);
+            if (publicOnly) {
+                rd.declaredPublicMethodsByName = byName;
+            } else {
+                rd.declaredMethodsByName = byName;
+            }
+        }
+        Method[] named = byName.get(name);
+        if (named == null) {
+            return null;
+        }
+        // The methods all have the name; choose as searchMethods does
+        Method res = null;
+        for (int i = 0; i < named.length; i++) {
+            Method m = named[i];
+            if (arrayContentsEq(parameterTypes, m.getParameterTypes())
+                && (res == null
+                    || res.getReturnType().isAssignableFrom(m.getReturnType())))
+                res = m;
+        }
+        return (res == null ? res : getReflectionFactory().copyMethod(res));
+    }
+
+    // Groups the given methods by name, keeping their order
+    private static Map<String,Method[]> methodsByName(Method[] methods) {
+        Map<String,Method[]> byName =
+            new HashMap<String,Method[]>(methods.length * 2);
+        for (int i = 0; i < methods.length; i++) {
+            Method m = methods[i];
+            Method[] named = byName.get(m.getName());
+            if (named == null) {
+                named = new Method[] { m };
+            } else {
+                named = Arrays.copyOf(named, named.length + 1);
+                named[named.length - 1] = m;
+            }
+            byName.put(m.getName(), named);
+        }
+        return byName;
+    }
   
 
     private Method getMethod0(String name, Class[] parameterTypes) {
@@ -2667,9 +2767,7 @@ public final
         // the class which is being queried.
         Method res = null;
         // Search declared public methods
-        if ((res = searchMethods(privateGetDeclaredMethods(true),
-                                 name,
-                                 parameterTypes)) != null) {
+        if ((res = searchDeclaredMethods(name, parameterTypes, true)) != null) {
             return res;
         }
         // Search superclass's methods
@@ -176,7 +176,55 @@ public final class Double extends Number implements Comparable<Double> {
      * @return a string representation of the argument.
      */
     public static String toString(double d) {
-	return new FloatingDecimal(d).toJavaFormatString();
+	return DoubleToDecimal.toString(d);
+    }
+
+    /**
+     * Writes the string representation of the <code>double</code>
+     * argument, as produced by {@link #toString(double)}, into a
+     * character array.  No objects are created.
+     *
+     * @param   d        the <code>double</code> to be converted.
+     * @param   dst      the destination array.
+     * @param   offset   the index in <code>dst</code> of the first
+     *                   character written.
+     * @return  the number of characters written.
+     * @exception IndexOutOfBoundsException if <code>offset</code> is
+     *            negative, or the representation does not fit in
+     *            <code>dst</code> from <code>offset</code>; nothing is
+     *            written in that case.
+     * @since 1.7
+     */
+    public static int toChars(double d, char[] dst, int offset) {
+        int n;
+        if (offset < 0 || (n = DoubleToDecimal.toChars(d, dst, offset)) < 0)
+            throw new IndexOutOfBoundsException("offset " + offset +
+                                                ", length " + dst.length);
+        return n;
+    }
+
+    /**
+     * Writes the string representation of the <code>double</code>
+     * argument, as produced by {@link #toString(double)}, into a byte
+     * array as ASCII characters.  No objects are created.
+     *
+     * @param   d        the <code>double</code> to be converted.
+     * @param   dst      the destination array.
+     * @param   offset   the index in <code>dst</code> of the first byte
+     *                   written.
+     * @return  the number of bytes written.
+     * @exception IndexOutOfBoundsException if <code>offset</code> is
+     *            negative, or the representation does not fit in
+     *            <code>dst</code> from <code>offset</code>; nothing is
+     *            written in that case.
+     * @since 1.7
+     */
+    public static int toChars(double d, byte[] dst, int offset) {
+        int n;
+        if (offset < 0 || (n = DoubleToDecimal.toChars(d, dst, offset)) < 0)
+            throw new IndexOutOfBoundsException("offset " + offset +
+                                                ", length " + dst.length);
+        return n;
     }
 
     /**
@@ -472,7 +520,7 @@ public final class Double extends Number implements Comparable<Double> {
      *               parsable number.
      */
     public static Double valueOf(String s) throws NumberFormatException {
-	return new Double(FloatingDecimal.readJavaFormatString(s).doubleValue());
+	return new Double(parseDouble(s));
     }
 
     /**
@@ -507,7 +555,42 @@ public final class Double extends Number implements Comparable<Double> {
      * @since 1.2
      */
     public static double parseDouble(String s) throws NumberFormatException {
-	return FloatingDecimal.readJavaFormatString(s).doubleValue();
+	return DecimalToDouble.parse(s, 0, s.length());
+    }
+
+    /**
+     * Returns a new <code>double</code> initialized to the value
+     * represented by the characters of the specified
+     * <code>CharSequence</code> from <code>beginIndex</code> to
+     * <code>endIndex - 1</code>, which are parsed as by {@link
+     * #parseDouble(String)}.  No objects are created unless the
+     * characters have more than nineteen significant digits, or are not
+     * a decimal number.
+     *
+     * @param      s            the <code>CharSequence</code> containing
+     *                          the characters to be parsed.
+     * @param      beginIndex   the beginning index, inclusive.
+     * @param      endIndex     the ending index, exclusive.
+     * @return the <code>double</code> value represented by the
+     *         characters.
+     * @exception NullPointerException if <code>s</code> is null.
+     * @exception IndexOutOfBoundsException if <code>beginIndex</code> is
+     *            negative, or if <code>beginIndex</code> is greater than
+     *            <code>endIndex</code> or if <code>endIndex</code> is
+     *            greater than <code>s.length()</code>.
+     * @exception NumberFormatException if the characters do not form a
+     *            parsable <code>double</code>.
+     * @since 1.7
+     */
+    public static double parseDouble(CharSequence s, int beginIndex,
+                                     int endIndex)
+        throws NumberFormatException
+    {
+        if (beginIndex < 0 || beginIndex > endIndex || endIndex > s.length())
+            throw new IndexOutOfBoundsException("begin " + beginIndex +
+                                                ", end " + endIndex +
+                                                ", length " + s.length());
+        return DecimalToDouble.parse(s, beginIndex, endIndex);
     }
 
     /**
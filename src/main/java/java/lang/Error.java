@@ -83,4 +83,25 @@ public class Error extends Throwable {
     public Error(Throwable cause) {
         super(cause);
     }
+
+    /**
+     * Constructs a new error with the specified detail message,
+     * cause, suppression enabled or disabled, and writable stack
+     * trace enabled or disabled.  See {@link
+     * Throwable#Throwable(String, Throwable, boolean, boolean)}.
+     *
+     * @param  message the detail message.
+     * @param cause the cause.  (A <tt>null</tt> value is permitted,
+     * and indicates that the cause is nonexistent or unknown.)
+     * @param enableSuppression whether or not suppression is enabled
+     *                          or disabled
+     * @param writableStackTrace whether or not the stack trace should
+     *                           be writable
+     * @since 1.7
+     */
+    protected Error(String message, Throwable cause,
+                    boolean enableSuppression,
+                    boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
 }
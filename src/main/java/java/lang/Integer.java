@@ -362,6 +362,101 @@ public final class Integer extends Number implements Comparable<Integer> {
             if (x <= sizeTable[i])
                 return i+1;
     }
+
+    /**
+     * Writes the string representation of the <code>int</code>
+     * argument, as produced by {@link #toString(int)}, into
+     * a character array.  No objects are created.
+     *
+     * @param   i        the <code>int</code> to be converted.
+     * @param   dst      the destination array.
+     * @param   offset   the index in <code>dst</code> of the first character
+     *                   written.
+     * @return  the number of characters written.
+     * @exception IndexOutOfBoundsException if <code>offset</code> is
+     *            negative, or the representation does not fit in
+     *            <code>dst</code> from <code>offset</code>; nothing is
+     *            written in that case.
+     * @since 1.7
+     */
+    public static int toChars(int i, char[] dst, int offset) {
+        if (i == Integer.MIN_VALUE)
+            return Long.toChars(i, dst, offset);
+        int size = (i < 0) ? stringSize(-i) + 1 : stringSize(i);
+        if (offset < 0 || offset > dst.length - size)
+            throw new IndexOutOfBoundsException("offset " + offset +
+                                                ", length " + dst.length);
+        getChars(i, offset + size, dst);
+        return size;
+    }
+
+    /**
+     * Writes the string representation of the <code>int</code>
+     * argument, as produced by {@link #toString(int)}, into
+     * a byte array as ASCII characters.  No objects are created.
+     *
+     * @param   i        the <code>int</code> to be converted.
+     * @param   dst      the destination array.
+     * @param   offset   the index in <code>dst</code> of the first byte
+     *                   written.
+     * @return  the number of bytes written.
+     * @exception IndexOutOfBoundsException if <code>offset</code> is
+     *            negative, or the representation does not fit in
+     *            <code>dst</code> from <code>offset</code>; nothing is
+     *            written in that case.
+     * @since 1.7
+     */
+    public static int toChars(int i, byte[] dst, int offset) {
+        if (i == Integer.MIN_VALUE)
+            return Long.toChars(i, dst, offset);
+        int size = (i < 0) ? stringSize(-i) + 1 : stringSize(i);
+        if (offset < 0 || offset > dst.length - size)
+            throw new IndexOutOfBoundsException("offset " + offset +
+                                                ", length " + dst.length);
+        getChars(i, offset + size, dst);
+        return size;
+    }
+
+    /**
+     * Places ASCII characters representing the integer i into the
+     * byte array buf, as {@link #getChars(int, int, char[])} does
+     * into a character array.
+     *
+     * Will fail if i == Integer.MIN_VALUE
+     */
+    static void getChars(int i, int index, byte[] buf) {
+        int q, r;
+        int charPos = index;
+        byte sign = 0;
+
+        if (i < 0) { 
+            sign = '-';
+            i = -i;
+        }
+
+        // Generate two digits per iteration
+        while (i >= 65536) {
+            q = i / 100;
+        // really: r = i - (q * 100);
+            r = i - ((q << 6) + (q << 5) + (q << 2));
+            i = q;
+            buf [--charPos] = (byte) DigitOnes[r];
+            buf [--charPos] = (byte) DigitTens[r];
+        }
+
+        // Fall thru to fast mode for smaller numbers
+        // assert(i <= 65536, i);
+        for (;;) { 
+            q = (i * 52429) >>> (16+3);
+            r = i - ((q << 3) + (q << 1));  // r = i-(q*10) ...
+            buf [--charPos] = (byte) digits [r];
+            i = q;
+            if (i == 0) break;
+        }
+        if (sign != 0) {
+            buf [--charPos] = sign;
+        }
+    }
     
     /**
      * Parses the string argument as a signed integer in the radix 
@@ -499,6 +594,103 @@ public final class Integer extends Number implements Comparable<Integer> {
 	return parseInt(s,10);
     }
 
+    /**
+     * Parses the characters of the <code>CharSequence</code> argument
+     * from <code>beginIndex</code> to <code>endIndex - 1</code> as a
+     * signed <code>int</code> in the radix specified by the last
+     * argument, as {@link #parseInt(String, int)} parses a string.  No objects
+     * are created unless the characters are not parsable.
+     *
+     * @param      s            the <code>CharSequence</code> containing
+     *                          the <code>int</code> representation to be
+     *                          parsed.
+     * @param      beginIndex   the beginning index, inclusive.
+     * @param      endIndex     the ending index, exclusive.
+     * @param      radix        the radix to be used while parsing.
+     * @return     the <code>int</code> represented by the characters in
+     *             the specified radix.
+     * @exception  NullPointerException if <code>s</code> is null.
+     * @exception  IndexOutOfBoundsException if <code>beginIndex</code>
+     *             is negative, or if <code>beginIndex</code> is greater
+     *             than <code>endIndex</code> or if <code>endIndex</code>
+     *             is greater than <code>s.length()</code>.
+     * @exception  NumberFormatException  if the characters do not form a
+     *             parsable <code>int</code>.
+     * @since 1.7
+     */
+    public static int parseInt(CharSequence s, int beginIndex, int endIndex,
+                               int radix)
+		throws NumberFormatException
+    {
+	if (beginIndex < 0 || beginIndex > endIndex || endIndex > s.length()) {
+	    throw new IndexOutOfBoundsException("begin " + beginIndex +
+						", end " + endIndex +
+						", length " + s.length());
+	}
+
+	if (radix < Character.MIN_RADIX) {
+	    throw new NumberFormatException("radix " + radix +
+					    " less than Character.MIN_RADIX");
+	}
+
+	if (radix > Character.MAX_RADIX) {
+	    throw new NumberFormatException("radix " + radix +
+					    " greater than Character.MAX_RADIX");
+	}
+
+	int result = 0;
+	boolean negative = false;
+	int i = beginIndex, max = endIndex;
+	int limit;
+	int multmin;
+	int digit;
+
+	if (max > i) {
+	    if (s.charAt(i) == '-') {
+		negative = true;
+		limit = Integer.MIN_VALUE;
+		i++;
+	    } else {
+		limit = -Integer.MAX_VALUE;
+	    }
+	    multmin = limit / radix;
+	    if (i < max) {
+		digit = Character.digit(s.charAt(i++),radix);
+		if (digit < 0) {
+		    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+		} else {
+		    result = -digit;
+		}
+	    }
+	    while (i < max) {
+		// Accumulating negatively avoids surprises near MAX_VALUE
+		digit = Character.digit(s.charAt(i++),radix);
+		if (digit < 0) {
+		    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+		}
+		if (result < multmin) {
+		    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+		}
+		result *= radix;
+		if (result < limit + digit) {
+		    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+		}
+		result -= digit;
+	    }
+	} else {
+	    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+	}
+	if (negative) {
+	    if (i > beginIndex + 1) {
+		return result;
+	    } else {	/* Only got "-" */
+		throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+	    }
+	} else {
+	    return -result;
+	}
+    }
+
     /**
      * Returns an <code>Integer</code> object holding the value
      * extracted from the specified <code>String</code> when parsed
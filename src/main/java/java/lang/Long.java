@@ -312,6 +312,128 @@ public final class Long extends Number implements Comparable<Long> {
         return 19;
     }
 
+    /**
+     * Writes the string representation of the <code>long</code>
+     * argument, as produced by {@link #toString(long)}, into
+     * a character array.  No objects are created.
+     *
+     * @param   i        the <code>long</code> to be converted.
+     * @param   dst      the destination array.
+     * @param   offset   the index in <code>dst</code> of the first character
+     *                   written.
+     * @return  the number of characters written.
+     * @exception IndexOutOfBoundsException if <code>offset</code> is
+     *            negative, or the representation does not fit in
+     *            <code>dst</code> from <code>offset</code>; nothing is
+     *            written in that case.
+     * @since 1.7
+     */
+    public static int toChars(long i, char[] dst, int offset) {
+        if (i == Long.MIN_VALUE) {
+            if (offset < 0 || offset > dst.length - 20)
+                throw new IndexOutOfBoundsException("offset " + offset +
+                                                    ", length " + dst.length);
+            // The sign and all but the last digit, then the last digit
+            getChars(Long.MIN_VALUE / 10, offset + 19, dst);
+            dst[offset + 19] = '8';
+            return 20;
+        }
+        int size = (i < 0) ? stringSize(-i) + 1 : stringSize(i);
+        if (offset < 0 || offset > dst.length - size)
+            throw new IndexOutOfBoundsException("offset " + offset +
+                                                ", length " + dst.length);
+        getChars(i, offset + size, dst);
+        return size;
+    }
+
+    /**
+     * Writes the string representation of the <code>long</code>
+     * argument, as produced by {@link #toString(long)}, into
+     * a byte array as ASCII characters.  No objects are created.
+     *
+     * @param   i        the <code>long</code> to be converted.
+     * @param   dst      the destination array.
+     * @param   offset   the index in <code>dst</code> of the first byte
+     *                   written.
+     * @return  the number of bytes written.
+     * @exception IndexOutOfBoundsException if <code>offset</code> is
+     *            negative, or the representation does not fit in
+     *            <code>dst</code> from <code>offset</code>; nothing is
+     *            written in that case.
+     * @since 1.7
+     */
+    public static int toChars(long i, byte[] dst, int offset) {
+        if (i == Long.MIN_VALUE) {
+            if (offset < 0 || offset > dst.length - 20)
+                throw new IndexOutOfBoundsException("offset " + offset +
+                                                    ", length " + dst.length);
+            // The sign and all but the last digit, then the last digit
+            getChars(Long.MIN_VALUE / 10, offset + 19, dst);
+            dst[offset + 19] = '8';
+            return 20;
+        }
+        int size = (i < 0) ? stringSize(-i) + 1 : stringSize(i);
+        if (offset < 0 || offset > dst.length - size)
+            throw new IndexOutOfBoundsException("offset " + offset +
+                                                ", length " + dst.length);
+        getChars(i, offset + size, dst);
+        return size;
+    }
+
+    /**
+     * Places ASCII characters representing the integer i into the
+     * byte array buf, as {@link #getChars(long, int, char[])} does
+     * into a character array.
+     *
+     * Will fail if i == Long.MIN_VALUE
+     */
+    static void getChars(long i, int index, byte[] buf) {
+        long q;
+        int r;
+        int charPos = index;
+        byte sign = 0;
+
+        if (i < 0) {
+            sign = '-';
+            i = -i;
+        }
+
+        // Get 2 digits/iteration using longs until quotient fits into an int
+        while (i > Integer.MAX_VALUE) { 
+            q = i / 100;
+            // really: r = i - (q * 100);
+            r = (int)(i - ((q << 6) + (q << 5) + (q << 2)));
+            i = q;
+            buf[--charPos] = (byte) Integer.DigitOnes[r];
+            buf[--charPos] = (byte) Integer.DigitTens[r];
+        }
+
+        // Get 2 digits/iteration using ints
+        int q2;
+        int i2 = (int)i;
+        while (i2 >= 65536) {
+            q2 = i2 / 100;
+            // really: r = i2 - (q * 100);
+            r = i2 - ((q2 << 6) + (q2 << 5) + (q2 << 2));
+            i2 = q2;
+            buf[--charPos] = (byte) Integer.DigitOnes[r];
+            buf[--charPos] = (byte) Integer.DigitTens[r];
+        }
+
+        // Fall thru to fast mode for smaller numbers
+        // assert(i2 <= 65536, i2);
+        for (;;) {
+            q2 = (i2 * 52429) >>> (16+3);
+            r = i2 - ((q2 << 3) + (q2 << 1));  // r = i2-(q2*10) ...
+            buf[--charPos] = (byte) Integer.digits[r];
+            i2 = q2;
+            if (i2 == 0) break;
+        }
+        if (sign != 0) {
+            buf[--charPos] = sign;
+        }
+    }
+
     private static final long   MULTMIN_RADIX_TEN =  Long.MIN_VALUE / 10;
     private static final long N_MULTMAX_RADIX_TEN = -Long.MAX_VALUE / 10;
 
@@ -468,6 +590,103 @@ public final class Long extends Number implements Comparable<Long> {
 	return parseLong(s, 10);
     }
 
+    /**
+     * Parses the characters of the <code>CharSequence</code> argument
+     * from <code>beginIndex</code> to <code>endIndex - 1</code> as a
+     * signed <code>long</code> in the radix specified by the last
+     * argument, as {@link #parseLong(String, int)} parses a string.  No objects
+     * are created unless the characters are not parsable.
+     *
+     * @param      s            the <code>CharSequence</code> containing
+     *                          the <code>long</code> representation to be
+     *                          parsed.
+     * @param      beginIndex   the beginning index, inclusive.
+     * @param      endIndex     the ending index, exclusive.
+     * @param      radix        the radix to be used while parsing.
+     * @return     the <code>long</code> represented by the characters in
+     *             the specified radix.
+     * @exception  NullPointerException if <code>s</code> is null.
+     * @exception  IndexOutOfBoundsException if <code>beginIndex</code>
+     *             is negative, or if <code>beginIndex</code> is greater
+     *             than <code>endIndex</code> or if <code>endIndex</code>
+     *             is greater than <code>s.length()</code>.
+     * @exception  NumberFormatException  if the characters do not form a
+     *             parsable <code>long</code>.
+     * @since 1.7
+     */
+    public static long parseLong(CharSequence s, int beginIndex, int endIndex,
+                                 int radix)
+		throws NumberFormatException
+    {
+	if (beginIndex < 0 || beginIndex > endIndex || endIndex > s.length()) {
+	    throw new IndexOutOfBoundsException("begin " + beginIndex +
+						", end " + endIndex +
+						", length " + s.length());
+	}
+
+	if (radix < Character.MIN_RADIX) {
+	    throw new NumberFormatException("radix " + radix +
+					    " less than Character.MIN_RADIX");
+	}
+
+	if (radix > Character.MAX_RADIX) {
+	    throw new NumberFormatException("radix " + radix +
+					    " greater than Character.MAX_RADIX");
+	}
+
+	long result = 0;
+	boolean negative = false;
+	int i = beginIndex, max = endIndex;
+	long limit;
+	long multmin;
+	int digit;
+
+	if (max > i) {
+	    if (s.charAt(i) == '-') {
+		negative = true;
+		limit = Long.MIN_VALUE;
+		i++;
+	    } else {
+		limit = -Long.MAX_VALUE;
+	    }
+	    multmin = limit / radix;
+	    if (i < max) {
+		digit = Character.digit(s.charAt(i++),radix);
+		if (digit < 0) {
+		    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+		} else {
+		    result = -digit;
+		}
+	    }
+	    while (i < max) {
+		// Accumulating negatively avoids surprises near MAX_VALUE
+		digit = Character.digit(s.charAt(i++),radix);
+		if (digit < 0) {
+		    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+		}
+		if (result < multmin) {
+		    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+		}
+		result *= radix;
+		if (result < limit + digit) {
+		    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+		}
+		result -= digit;
+	    }
+	} else {
+	    throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+	}
+	if (negative) {
+	    if (i > beginIndex + 1) {
+		return result;
+	    } else {	/* Only got "-" */
+		throw NumberFormatException.forInputString(s, beginIndex, endIndex);
+	    }
+	} else {
+	    return -result;
+	}
+    }
+
     /**
      * Returns a <code>Long</code> object holding the value
      * extracted from the specified <code>String</code> when parsed
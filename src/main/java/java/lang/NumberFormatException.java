@@ -47,4 +47,18 @@ class NumberFormatException extends IllegalArgumentException {
     static NumberFormatException forInputString(String s) {
         return new NumberFormatException("For input string: \"" + s + "\"");
     }
+
+    /**
+     * Factory method for making a <code>NumberFormatException</code>
+     * given the specified range of a character sequence as input.
+     *
+     * @param   s            the input causing the error
+     * @param   beginIndex   the beginning index of the range, inclusive
+     * @param   endIndex     the ending index of the range, exclusive
+     */
+    static NumberFormatException forInputString(CharSequence s,
+                                                int beginIndex,
+                                                int endIndex) {
+        return forInputString(s.subSequence(beginIndex, endIndex).toString());
+    }
 }
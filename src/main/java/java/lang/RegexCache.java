@@ -0,0 +1,103 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.lang;
+
+import java.util.regex.Pattern;
+import sun.misc.ConcurrentLRUCache;
+
+/**
+ * Cache of compiled patterns for the regular expression methods of
+ * String, and recognition of the expressions that those methods can
+ * handle without a pattern at all.
+ */
+
+final class RegexCache {
+
+    private RegexCache() { }
+
+    /*
+     * Patterns are immutable and safe for use by concurrent threads,
+     * so a cached pattern can be handed to any caller.  Expressions
+     * that do not compile are not cached; the exception is rethrown
+     * to every caller as before.
+     */
+
+    /**
+     * The maximum number of patterns kept.
+     */
+    private static final int MAX_SIZE = 128;
+
+    /**
+     * Regular expressions longer than this are not cached, so that
+     * the cache cannot retain a lot of memory for expressions that
+     * are unlikely to be reused.
+     */
+    private static final int MAX_REGEX_LENGTH = 1024;
+
+    private static final ConcurrentLRUCache<String,Pattern> cache =
+        new ConcurrentLRUCache<String,Pattern>(MAX_SIZE);
+
+    /**
+     * Returns the pattern compiled from the given regular expression
+     * with no flags, from the cache if possible.
+     *
+     * @throws PatternSyntaxException if the expression's syntax is invalid
+     */
+    static Pattern pattern(String regex) {
+        Pattern p = cache.get(regex);
+        if (p == null) {
+            p = Pattern.compile(regex);
+            if (regex.length() <= MAX_REGEX_LENGTH)
+                cache.put(regex, p);
+        }
+        return p;
+    }
+
+    /**
+     * Returns the literal string matched by the given regular
+     * expression if it matches exactly one fixed string, judged
+     * conservatively, or null otherwise.  This is the case when it
+     * is not empty and contains no metacharacters and no surrogates,
+     * or when it is a backslash followed by a single character that
+     * is not an ASCII letter or digit (an escaped metacharacter such
+     * as <tt>"\\."</tt> or <tt>"\\|"</tt>).
+     */
+    static String literal(String regex) {
+        int n = regex.length();
+        if (n == 0)
+            return null;
+        char c = regex.charAt(0);
+        if (n == 2 && c == '\\') {
+            c = regex.charAt(1);
+            if (((c - '0') | ('9' - c)) < 0 &&
+                ((c - 'a') | ('z' - c)) < 0 &&
+                ((c - 'A') | ('Z' - c)) < 0 &&
+                (c < Character.MIN_HIGH_SURROGATE ||
+                 c > Character.MAX_LOW_SURROGATE))
+                return String.valueOf(c);
+            return null;
+        }
+        for (int i = 0; i < n; i++) {
+            c = regex.charAt(i);
+            if (".$|()[]{}^?*+\\".indexOf(c) >= 0 ||
+                (c >= Character.MIN_HIGH_SURROGATE &&
+                 c <= Character.MAX_LOW_SURROGATE))
+                return null;
+        }
+        return regex;
+    }
+
+    /**
+     * Returns true if the given replacement string of replaceAll or
+     * replaceFirst stands for itself, that is, it contains no
+     * backslashes or dollar signs.
+     */
+    static boolean isLiteralReplacement(String replacement) {
+        return replacement.indexOf('\\') < 0 && replacement.indexOf('$') < 0;
+    }
+}
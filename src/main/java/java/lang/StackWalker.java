@@ -0,0 +1,119 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.lang;
+
+/**
+ * A snapshot of the stack of the current thread whose frames are examined
+ * one at a time, on demand.
+ *
+ * <p>{@link Thread#getStackTrace()} and {@link Throwable#getStackTrace()}
+ * create a {@link StackTraceElement} for every frame of the stack, which
+ * is wasted work for code that needs only a few frames near the top, such
+ * as a logging framework looking for the caller of its logging method.  A
+ * <code>StackWalker</code> creates the element for a frame only when that
+ * frame is asked for, and can be limited to a number of frames:
+ *
+ * <blockquote><pre>
+ *     StackWalker stack = StackWalker.capture(20);
+ *     for (int i = 0; i &lt; stack.depth(); i++) {
+ *         StackTraceElement frame = stack.frame(i);
+ *         if (!frame.getClassName().startsWith("com.example.log."))
+ *             return frame;
+ *     }
+ * </pre></blockquote>
+ *
+ * <p>The frames are those of the stack when the snapshot was captured,
+ * top first: frame 0 is that of the method that called
+ * <code>capture</code>.  As with {@link Throwable#getStackTrace()}, some
+ * virtual machines may omit frames.
+ *
+ * <p>Instances of this class are safe for use by multiple concurrent
+ * threads.
+ *
+ * @since 1.7
+ */
+public final class StackWalker {
+
+    /** The throwable whose backtrace is the snapshot. */
+    private final Throwable snapshot;
+
+    /** The number of frames of this class at the top of the snapshot. */
+    private final int skip;
+
+    /** The maximum number of frames to present. */
+    private final int maxDepth;
+
+    /** The number of frames presented, or -1 until it is first needed. */
+    private volatile int depth = -1;
+
+    private StackWalker(int maxDepth) {
+        this.maxDepth = maxDepth;
+        // The virtual machine leaves out the frames of the constructors
+        // of the throwable, but not those of this class
+        snapshot = new Throwable();
+        int n = 0;
+        while (n < snapshot.getStackTraceDepth() &&
+               snapshot.getStackTraceElement(n).getClassName()
+                   .equals("java.lang.StackWalker"))
+            n++;
+        skip = n;
+    }
+
+    /**
+     * Captures the stack of the current thread.
+     *
+     * @return a snapshot of the stack of the current thread
+     */
+    public static StackWalker capture() {
+        return new StackWalker(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Captures the stack of the current thread, presenting no more than
+     * the given number of frames from its top.
+     *
+     * @param  maxDepth the maximum number of frames
+     * @return a snapshot of the top of the stack of the current thread
+     * @throws IllegalArgumentException if <tt>maxDepth</tt> is negative
+     */
+    public static StackWalker capture(int maxDepth) {
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth < 0: " + maxDepth);
+        return new StackWalker(maxDepth);
+    }
+
+    /**
+     * Returns the number of frames in this snapshot.
+     *
+     * @return the number of frames, which is no more than the maximum given
+     *         when the snapshot was captured
+     */
+    public int depth() {
+        int d = depth;
+        if (d < 0) {
+            d = Math.min(snapshot.getStackTraceDepth() - skip, maxDepth);
+            depth = d;
+        }
+        return d;
+    }
+
+    /**
+     * Returns the frame at the given index of this snapshot, counting
+     * from the top of the stack.  A new element is created by each call.
+     *
+     * @param  index the index of the frame
+     * @return the frame
+     * @throws IndexOutOfBoundsException if <tt>index &lt; 0 ||
+     *         index &gt;= depth()</tt>
+     */
+    public StackTraceElement frame(int index) {
+        if (index < 0 || index >= depth())
+            throw new IndexOutOfBoundsException("Index: " + index);
+        return snapshot.getStackTraceElement(skip + index);
+    }
+}
@@ -969,6 +969,88 @@ public final class String
 	return StringCoding.encode(charset, value, offset, count);
     }
 
+    /**
+     * Encodes this {@code String} into a sequence of bytes using the named
+     * charset, storing the result into the given byte array starting at
+     * index {@code dstBegin}.  The bytes are the same as those returned by
+     * {@link #getBytes(String)}, but no array is allocated for them.
+     *
+     * <p> The behavior of this method when this string cannot be encoded in
+     * the given charset is unspecified.  The {@link
+     * java.nio.charset.CharsetEncoder} class should be used when more control
+     * over the encoding process is required.
+     *
+     * @param  charsetName
+     *         The name of a supported {@linkplain java.nio.charset.Charset
+     *         charset}
+     *
+     * @param  dst
+     *         The destination array
+     *
+     * @param  dstBegin
+     *         The start offset in the destination array
+     *
+     * @return  The number of bytes stored
+     *
+     * @throws  UnsupportedEncodingException
+     *          If the named charset is not supported
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If {@code dstBegin} is negative or greater than {@code
+     *          dst.length}, or if the encoded bytes do not fit in {@code
+     *          dst} from {@code dstBegin}.  In the latter case the contents
+     *          of {@code dst} from {@code dstBegin} on are unspecified.
+     *
+     * @since  1.7
+     */
+    public int getBytes(String charsetName, byte[] dst, int dstBegin)
+	throws UnsupportedEncodingException
+    {
+	if (charsetName == null || dst == null)
+	    throw new NullPointerException();
+	return StringCoding.encode(charsetName, value, offset, count,
+				   dst, dstBegin);
+    }
+
+    /**
+     * Encodes this {@code String} into a sequence of bytes using the given
+     * {@linkplain java.nio.charset.Charset charset}, storing the result into
+     * the given byte array starting at index {@code dstBegin}.  The bytes are
+     * the same as those returned by {@link #getBytes(Charset)}, but no array
+     * is allocated for them.
+     *
+     * <p> This method always replaces malformed-input and unmappable-character
+     * sequences with this charset's default replacement byte array.  The
+     * {@link java.nio.charset.CharsetEncoder} class should be used when more
+     * control over the encoding process is required.
+     *
+     * @param  charset
+     *         The {@linkplain java.nio.charset.Charset} to be used to encode
+     *         the {@code String}
+     *
+     * @param  dst
+     *         The destination array
+     *
+     * @param  dstBegin
+     *         The start offset in the destination array
+     *
+     * @return  The number of bytes stored
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If {@code dstBegin} is negative or greater than {@code
+     *          dst.length}, or if the encoded bytes do not fit in {@code
+     *          dst} from {@code dstBegin}.  In the latter case the contents
+     *          of {@code dst} from {@code dstBegin} on are unspecified.
+     *
+     * @since  1.7
+     */
+    public int getBytes(Charset charset, byte[] dst, int dstBegin) {
+	if (charset == null || dst == null)
+	    throw new NullPointerException();
+	return StringCoding.encode(charset, value, offset, count,
+				   dst, dstBegin);
+    }
+
     /**
      * Encodes this {@code String} into a sequence of bytes using the
      * platform's default charset, storing the result into a new byte array.
@@ -2087,7 +2169,10 @@ public final class String
      * @spec JSR-51
      */
     public boolean matches(String regex) {
-        return Pattern.matches(regex, this);
+        String literal = RegexCache.literal(regex);
+        if (literal != null)
+            return equals(literal);
+        return RegexCache.pattern(regex).matcher(this).matches();
     }
 
     /**
@@ -2143,7 +2228,18 @@ public final class String
      * @spec JSR-51
      */
     public String replaceFirst(String regex, String replacement) {
-	return Pattern.compile(regex).matcher(this).replaceFirst(replacement);
+        String literal = RegexCache.literal(regex);
+        if (literal != null && RegexCache.isLiteralReplacement(replacement)) {
+            int i = indexOf(literal);
+            if (i < 0)
+                return this;
+            return new StringBuilder(count - literal.count + replacement.count)
+                .append(this, 0, i)
+                .append(replacement)
+                .append(this, i + literal.count, count)
+                .toString();
+        }
+	return RegexCache.pattern(regex).matcher(this).replaceFirst(replacement);
     }
 
     /**
@@ -2186,7 +2282,10 @@ public final class String
      * @spec JSR-51
      */
     public String replaceAll(String regex, String replacement) {
-	return Pattern.compile(regex).matcher(this).replaceAll(replacement);
+        String literal = RegexCache.literal(regex);
+        if (literal != null && RegexCache.isLiteralReplacement(replacement))
+            return replaceLiteral(literal, replacement);
+	return RegexCache.pattern(regex).matcher(this).replaceAll(replacement);
     }
 
     /**
@@ -2204,8 +2303,31 @@ public final class String
      * @since 1.5
      */
     public String replace(CharSequence target, CharSequence replacement) {
-        return Pattern.compile(target.toString(), Pattern.LITERAL).matcher(
-            this).replaceAll(Matcher.quoteReplacement(replacement.toString()));
+        String tgt = target.toString();
+        String repl = replacement.toString();
+        if (tgt.count == 0)
+            return Pattern.compile(tgt, Pattern.LITERAL).matcher(
+                this).replaceAll(Matcher.quoteReplacement(repl));
+        return replaceLiteral(tgt, repl);
+    }
+
+    /**
+     * Replaces each occurrence of the given non-empty target string,
+     * from left to right, with the given replacement string.  Returns
+     * this string if there are none.
+     */
+    private String replaceLiteral(String target, String replacement) {
+        int i = indexOf(target);
+        if (i < 0)
+            return this;
+        int tlen = target.count;
+        StringBuilder sb = new StringBuilder(count + 16);
+        int off = 0;
+        do {
+            sb.append(this, off, i).append(replacement);
+            off = i + tlen;
+        } while ((i = indexOf(target, off)) >= 0);
+        return sb.append(this, off, count).toString();
     }
 
     /**
@@ -2289,7 +2411,48 @@ public final class String
      * @spec JSR-51
      */
     public String[] split(String regex, int limit) {
-	return Pattern.compile(regex).split(this, limit);
+        /* Split around a fixed string without the regex engine when
+         * the expression can only match that string: a single
+         * character that is not a metacharacter, an escaped
+         * metacharacter such as "\\|", or a string of ordinary
+         * characters.  Otherwise use the cached compiled pattern.
+         */
+        String literal = RegexCache.literal(regex);
+        if (literal == null)
+            return RegexCache.pattern(regex).split(this, limit);
+
+        int dlen = literal.count;
+        char ch = literal.charAt(0);
+        boolean limited = limit > 0;
+        ArrayList<String> list = new ArrayList<String>();
+        int off = 0;
+        int next;
+        while ((next = (dlen == 1) ? indexOf(ch, off) : indexOf(literal, off))
+               != -1) {
+            if (!limited || list.size() < limit - 1) {
+                list.add(substring(off, next));
+                off = next + dlen;
+            } else {    // last one
+                list.add(substring(off, count));
+                off = count;
+                break;
+            }
+        }
+        // If no match was found, return this
+        if (off == 0)
+            return new String[] { this };
+
+        // Add remaining segment
+        if (!limited || list.size() < limit)
+            list.add(substring(off, count));
+
+        // Construct result
+        int resultSize = list.size();
+        if (limit == 0)
+            while (resultSize > 0 && list.get(resultSize - 1).count == 0)
+                resultSize--;
+        String[] result = new String[resultSize];
+        return list.subList(0, resultSize).toArray(result);
     }
 
     /**
@@ -53,12 +53,19 @@ class StringCoding {
 	tl.set(new SoftReference(ob));
     }
 
+    // Tells whether the given charset may be handed arrays that are
+    // shared with a String or with the caller, that is, whether it is a
+    // charset of the platform or there is no security manager
+    //
+    private static boolean isTrusted(Charset cs) {
+	return System.getSecurityManager() == null
+	    || cs.getClass().getClassLoader0() == null;
+    }
+
     // Trim the given byte array to the given length
     //
     private static byte[] safeTrim(byte[] ba, int len, Charset cs) {
- 	if (len == ba.length 
-	    && (System.getSecurityManager() == null
-		|| cs.getClass().getClassLoader0() == null))
+ 	if (len == ba.length && isTrusted(cs))
 	    return ba;
         else
             return Arrays.copyOf(ba, len);
@@ -67,9 +74,7 @@ class StringCoding {
     // Trim the given char array to the given length
     //
     private static char[] safeTrim(char[] ca, int len, Charset cs) {
- 	if (len == ca.length 
-	    && (System.getSecurityManager() == null
-		|| cs.getClass().getClassLoader0() == null))
+ 	if (len == ca.length && isTrusted(cs))
 	    return ca;
         else
             return Arrays.copyOf(ca, len);
@@ -104,18 +109,58 @@ class StringCoding {
     }
 
 
+    // -- Fast paths --
+    //
+    // UTF-8, US-ASCII and ISO-8859-1 are decoded and encoded by the loops
+    // in StringDecoder and StringEncoder, array to array, rather than by
+    // the charset's coder through buffers.  Where the coder would do
+    // anything but map a well-formed character, such as substituting a
+    // replacement, a loop stops and leaves the rest of the input to the
+    // coder.  The coders of these charsets keep no state from one
+    // complete character to the next, so the result is the same as if
+    // the coder had done all of the work.
+
+    private static final int OTHER = 0;
+    private static final int ISO_8859_1 = 1;
+    private static final int US_ASCII = 2;
+    private static final int UTF_8 = 3;
+
+    // Returns the fast path for the given charset: one of the above if it
+    // is the platform's implementation of that charset, or OTHER
+    //
+    private static int fastPath(Charset cs) {
+	if (cs.getClass().getClassLoader0() != null)
+	    return OTHER;
+	String csn = cs.name();
+	if (csn.equals("UTF-8"))
+	    return UTF_8;
+	if (csn.equals("ISO-8859-1"))
+	    return ISO_8859_1;
+	if (csn.equals("US-ASCII"))
+	    return US_ASCII;
+	return OTHER;
+    }
+
+
     // -- Decoding --
     private static class StringDecoder {
 	private final String requestedCharsetName;
 	private final Charset cs;
-	private final CharsetDecoder cd;
+	private final int fastPath;
+	private CharsetDecoder cd;	// created when first needed
 
 	private StringDecoder(Charset cs, String rcn) {
             this.requestedCharsetName = rcn;
 	    this.cs = cs;
-	    this.cd = cs.newDecoder()
-		.onMalformedInput(CodingErrorAction.REPLACE)
-		.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	    this.fastPath = fastPath(cs);
+	}
+
+	private CharsetDecoder decoder() {
+	    if (cd == null)
+		cd = cs.newDecoder()
+		    .onMalformedInput(CodingErrorAction.REPLACE)
+		    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+	    return cd;
 	}
 
 	String charsetName() {
@@ -129,13 +174,92 @@ class StringCoding {
 	}
 
 	char[] decode(byte[] ba, int off, int len) {
-	    int en = scale(len, cd.maxCharsPerByte());
+	    // The fast paths never yield more than one char per byte
+	    int en = (fastPath != OTHER)
+		? len : scale(len, decoder().maxCharsPerByte());
 	    char[] ca = new char[en];
 	    if (len == 0)
 		return ca;
+	    int sp = off;
+	    int sl = off + len;
+	    int dp = 0;
+	    switch (fastPath) {
+	    case ISO_8859_1:
+		while (sp < sl)
+		    ca[dp++] = (char)(ba[sp++] & 0xff);
+		break;
+	    case US_ASCII:
+		while (sp < sl && ba[sp] >= 0)
+		    ca[dp++] = (char)ba[sp++];
+		break;
+	    case UTF_8:
+		while (sp < sl) {
+		    int b1 = ba[sp];
+		    if (b1 >= 0) {
+			// 0xxxxxxx
+			ca[dp++] = (char)b1;
+			sp++;
+		    } else if ((b1 >> 5) == -2) {
+			// 110xxxxx 10xxxxxx
+			if (sl - sp < 2)
+			    break;
+			int b2 = ba[sp + 1];
+			int c = ((b1 & 0x1f) << 6) | (b2 & 0x3f);
+			if ((b2 & 0xc0) != 0x80 || c < 0x80)
+			    break;
+			ca[dp++] = (char)c;
+			sp += 2;
+		    } else if ((b1 >> 4) == -2) {
+			// 1110xxxx 10xxxxxx 10xxxxxx
+			if (sl - sp < 3)
+			    break;
+			int b2 = ba[sp + 1];
+			int b3 = ba[sp + 2];
+			int c = ((b1 & 0x0f) << 12) | ((b2 & 0x3f) << 6)
+			    | (b3 & 0x3f);
+			if ((b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80
+			    || c < 0x800
+			    || (c >= Character.MIN_SURROGATE
+				&& c <= Character.MAX_SURROGATE))
+			    break;
+			ca[dp++] = (char)c;
+			sp += 3;
+		    } else if ((b1 >> 3) == -2) {
+			// 11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+			if (sl - sp < 4)
+			    break;
+			int b2 = ba[sp + 1];
+			int b3 = ba[sp + 2];
+			int b4 = ba[sp + 3];
+			int uc = ((b1 & 0x07) << 18) | ((b2 & 0x3f) << 12)
+			    | ((b3 & 0x3f) << 6) | (b4 & 0x3f);
+			if ((b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80
+			    || (b4 & 0xc0) != 0x80
+			    || uc < Character.MIN_SUPPLEMENTARY_CODE_POINT
+			    || uc > Character.MAX_CODE_POINT)
+			    break;
+			uc -= Character.MIN_SUPPLEMENTARY_CODE_POINT;
+			ca[dp++] = (char)((uc >> 10) + Character.MIN_HIGH_SURROGATE);
+			ca[dp++] = (char)((uc & 0x3ff) + Character.MIN_LOW_SURROGATE);
+			sp += 4;
+		    } else {
+			break;
+		    }
+		}
+		break;
+	    }
+	    if (sp < sl)
+		dp = decode(ba, sp, sl - sp, ca, dp);
+	    return safeTrim(ca, dp, cs);
+	}
+
+	// Decodes the given bytes with the charset's decoder into ca from
+	// index dp, and returns the index after the last char stored
+	private int decode(byte[] ba, int off, int len, char[] ca, int dp) {
+	    CharsetDecoder cd = decoder();
 	    cd.reset();
 	    ByteBuffer bb = ByteBuffer.wrap(ba, off, len);
-	    CharBuffer cb = CharBuffer.wrap(ca);
+	    CharBuffer cb = CharBuffer.wrap(ca, dp, ca.length - dp);
 	    try {
 		CoderResult cr = cd.decode(bb, cb, true);
 		if (!cr.isUnderflow())
@@ -148,7 +272,7 @@ class StringCoding {
 		// so this shouldn't happen
 		throw new Error(x);
 	    }
-	    return safeTrim(ca, cb.position(), cs);
+	    return cb.position();
 	}
 
     }
@@ -175,8 +299,9 @@ class StringCoding {
 
     static char[] decode(Charset cs, byte[] ba, int off, int len) {
  	StringDecoder sd = new StringDecoder(cs, cs.name());
-	byte[] b = Arrays.copyOf(ba, ba.length);
-	return sd.decode(b, off, len);
+	if (!isTrusted(cs))
+	    ba = Arrays.copyOf(ba, ba.length);
+	return sd.decode(ba, off, len);
     }
 
     static char[] decode(byte[] ba, int off, int len) {
@@ -205,16 +330,23 @@ class StringCoding {
 
     // -- Encoding --
     private static class StringEncoder {
-	private Charset cs;
-	private CharsetEncoder ce;
+	private final Charset cs;
+	private final int fastPath;
+	private CharsetEncoder ce;	// created when first needed
 	private final String requestedCharsetName;
 
 	private StringEncoder(Charset cs, String rcn) {
 	    this.requestedCharsetName = rcn;
 	    this.cs = cs;
-	    this.ce = cs.newEncoder()
-		.onMalformedInput(CodingErrorAction.REPLACE)
-		.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	    this.fastPath = fastPath(cs);
+	}
+
+	private CharsetEncoder encoder() {
+	    if (ce == null)
+		ce = cs.newEncoder()
+		    .onMalformedInput(CodingErrorAction.REPLACE)
+		    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+	    return ce;
 	}
 
 	String charsetName() {
@@ -228,19 +360,99 @@ class StringCoding {
 	}
 
 	byte[] encode(char[] ca, int off, int len) {
-	    int en = scale(len, ce.maxBytesPerChar());
-	    byte[] ba = new byte[en];
+	    float bpc;
+	    switch (fastPath) {
+	    case ISO_8859_1:
+	    case US_ASCII:
+		bpc = 1.0f;
+		break;
+	    case UTF_8:
+		bpc = 3.0f;
+		break;
+	    default:
+		bpc = encoder().maxBytesPerChar();
+		break;
+	    }
+	    byte[] ba = new byte[scale(len, bpc)];
 	    if (len == 0)
 		return ba;
+	    int n = encode(ca, off, len, ba, 0);
+	    return safeTrim(ba, n, cs);
+	}
+
+	// Encodes the given chars into ba from index dp, and returns the
+	// index after the last byte stored, or -1 if they do not fit
+	int encode(char[] ca, int off, int len, byte[] ba, int dp) {
+	    int sp = off;
+	    int sl = off + len;
+	    int dl = ba.length;
+	    switch (fastPath) {
+	    case ISO_8859_1:
+		while (sp < sl && dp < dl && ca[sp] <= '\u00ff')
+		    ba[dp++] = (byte)ca[sp++];
+		break;
+	    case US_ASCII:
+		while (sp < sl && dp < dl && ca[sp] < '\u0080')
+		    ba[dp++] = (byte)ca[sp++];
+		break;
+	    case UTF_8:
+		while (sp < sl) {
+		    char c = ca[sp];
+		    if (c < 0x80) {
+			// 0xxxxxxx
+			if (dp >= dl)
+			    break;
+			ba[dp++] = (byte)c;
+			sp++;
+		    } else if (c < 0x800) {
+			// 110xxxxx 10xxxxxx
+			if (dl - dp < 2)
+			    break;
+			ba[dp++] = (byte)(0xc0 | (c >> 6));
+			ba[dp++] = (byte)(0x80 | (c & 0x3f));
+			sp++;
+		    } else if (c < Character.MIN_SURROGATE
+			       || c > Character.MAX_SURROGATE) {
+			// 1110xxxx 10xxxxxx 10xxxxxx
+			if (dl - dp < 3)
+			    break;
+			ba[dp++] = (byte)(0xe0 | (c >> 12));
+			ba[dp++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+			ba[dp++] = (byte)(0x80 | (c & 0x3f));
+			sp++;
+		    } else {
+			// 11110xxx 10xxxxxx 10xxxxxx 10xxxxxx, from a
+			// surrogate pair
+			if (sl - sp < 2 || dl - dp < 4
+			    || !Character.isHighSurrogate(c)
+			    || !Character.isLowSurrogate(ca[sp + 1]))
+			    break;
+			int uc = Character.toCodePoint(c, ca[sp + 1]);
+			ba[dp++] = (byte)(0xf0 | (uc >> 18));
+			ba[dp++] = (byte)(0x80 | ((uc >> 12) & 0x3f));
+			ba[dp++] = (byte)(0x80 | ((uc >> 6) & 0x3f));
+			ba[dp++] = (byte)(0x80 | (uc & 0x3f));
+			sp += 2;
+		    }
+		}
+		break;
+	    }
+	    if (sp == sl)
+		return dp;
 
+	    CharsetEncoder ce = encoder();
 	    ce.reset();
-	    ByteBuffer bb = ByteBuffer.wrap(ba);
-	    CharBuffer cb = CharBuffer.wrap(ca, off, len);
+	    ByteBuffer bb = ByteBuffer.wrap(ba, dp, dl - dp);
+	    CharBuffer cb = CharBuffer.wrap(ca, sp, sl - sp);
 	    try {
 		CoderResult cr = ce.encode(cb, bb, true);
+		if (cr.isOverflow())
+		    return -1;
 		if (!cr.isUnderflow())
 		    cr.throwException();
 		cr = ce.flush(bb);
+		if (cr.isOverflow())
+		    return -1;
 		if (!cr.isUnderflow())
 		    cr.throwException();
 	    } catch (CharacterCodingException x) {
@@ -248,11 +460,11 @@ class StringCoding {
 		// so this shouldn't happen
 		throw new Error(x);
 	    }
-	    return safeTrim(ba, bb.position(), cs);
+	    return bb.position();
 	}
     }
 
-    static byte[] encode(String charsetName, char[] ca, int off, int len)
+    private static StringEncoder encoder(String charsetName)
 	throws UnsupportedEncodingException
     {
 	StringEncoder se = (StringEncoder)deref(encoder);
@@ -269,13 +481,52 @@ class StringCoding {
                 throw new UnsupportedEncodingException (csn);
 	    set(encoder, se);
 	}
-	return se.encode(ca, off, len);
+	return se;
+    }
+
+    static byte[] encode(String charsetName, char[] ca, int off, int len)
+	throws UnsupportedEncodingException
+    {
+	return encoder(charsetName).encode(ca, off, len);
     }
 
     static byte[] encode(Charset cs, char[] ca, int off, int len) {
 	StringEncoder se = new StringEncoder(cs, cs.name());
-	char[] c = Arrays.copyOf(ca, ca.length);
-	return se.encode(c, off, len);
+	if (!isTrusted(cs))
+	    ca = Arrays.copyOf(ca, ca.length);
+	return se.encode(ca, off, len);
+    }
+
+    // Encodes the given chars into ba from index dp, and returns the
+    // number of bytes stored
+    //
+    static int encode(String charsetName, char[] ca, int off, int len,
+		      byte[] ba, int dp)
+	throws UnsupportedEncodingException
+    {
+	return encode(encoder(charsetName), ca, off, len, ba, dp);
+    }
+
+    static int encode(Charset cs, char[] ca, int off, int len,
+		      byte[] ba, int dp)
+    {
+	if (!isTrusted(cs)) {
+	    ca = Arrays.copyOfRange(ca, off, off + len);
+	    off = 0;
+	}
+	return encode(new StringEncoder(cs, cs.name()), ca, off, len, ba, dp);
+    }
+
+    private static int encode(StringEncoder se, char[] ca, int off, int len,
+			      byte[] ba, int dp)
+    {
+	if (dp < 0 || dp > ba.length)
+	    throw new ArrayIndexOutOfBoundsException(dp);
+	int n = se.encode(ca, off, len, ba, dp);
+	if (n < 0)
+	    throw new ArrayIndexOutOfBoundsException(
+		"Encoded bytes do not fit in destination array");
+	return n - dp;
     }
 
     static byte[] encode(char[] ca, int off, int len) {
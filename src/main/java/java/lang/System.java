@@ -1145,6 +1145,9 @@ public final class System {
             public void registerShutdownHook(int slot, Runnable r) {
                 Shutdown.add(slot, r);
             }
+            public int threadLocalCount(Thread t) {
+                return ThreadLocal.threadLocalCount(t);
+            }
         });
     }
 
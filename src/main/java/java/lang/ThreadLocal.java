@@ -183,6 +183,100 @@ public class ThreadLocal<T> {
              m.remove(this);
      }
 
+    /**
+     * Captures the current thread's values for all thread-local
+     * variables, inheritable or not, so that they can later be
+     * {@linkplain Snapshot#restore restored}.
+     *
+     * <p>Threads that run unrelated tasks one after another, such as the
+     * workers of a thread pool, may take a snapshot before running a
+     * task and restore it afterwards, so that values set by the task
+     * neither leak into the next task nor are retained after the task's
+     * thread-local variables are gone.  The values the thread had before
+     * the task, including those of the thread-local variables that the
+     * platform itself uses, are kept.
+     *
+     * <p>The snapshot holds the values strongly and the variables
+     * weakly, as the thread does.
+     *
+     * @return the current thread's thread-local values
+     * @since 1.7
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot(Thread.currentThread());
+    }
+
+    /**
+     * The values of the thread-local variables of a thread, as captured
+     * by {@link ThreadLocal#snapshot}.
+     *
+     * @since 1.7
+     */
+    public static final class Snapshot {
+        private final Thread thread;
+        private final ThreadLocalMap map;
+        private final ThreadLocalMap inheritableMap;
+
+        private Snapshot(Thread t) {
+            thread = t;
+            map = copyMap(t.threadLocals);
+            inheritableMap = copyMap(t.inheritableThreadLocals);
+        }
+
+        /**
+         * Restores the current thread's thread-local values to those
+         * captured by this snapshot.  The values of variables that the
+         * thread had when the snapshot was taken are set back to the
+         * values they had then, and the values of all other variables
+         * are removed.  Each such variable subsequently {@linkplain
+         * ThreadLocal#get read} by the current thread is reinitialized
+         * by invoking its {@link ThreadLocal#initialValue} method,
+         * unless its value is {@linkplain ThreadLocal#set set} by the
+         * current thread in the interim.
+         *
+         * <p>The values themselves are not copied, so changes to the
+         * state of a value object are kept.  A snapshot may be restored
+         * any number of times.
+         *
+         * @throws IllegalStateException if the current thread is not
+         *         the thread whose values this snapshot captured
+         */
+        public void restore() {
+            Thread t = Thread.currentThread();
+            if (t != thread)
+                throw new IllegalStateException(
+                    "Snapshot taken by another thread");
+            t.threadLocals = copyMap(map);
+            t.inheritableThreadLocals = copyMap(inheritableMap);
+        }
+    }
+
+    /**
+     * Returns a copy of the given map that holds the same values, or
+     * null if the map is null.
+     */
+    private static ThreadLocalMap copyMap(ThreadLocalMap map) {
+        return (map != null) ? new ThreadLocalMap(map, false) : null;
+    }
+
+    /**
+     * Returns the number of entries in the maps of the given thread,
+     * including those whose thread-local variables have been reclaimed
+     * but which have not yet been expunged.  The maps are read without
+     * synchronization, so the count is approximate for a thread other
+     * than the current thread.  Called by java.lang.management through
+     * sun.misc.JavaLangAccess.
+     *
+     * @param  t the thread
+     * @return the number of entries in the maps of the thread
+     */
+    static int threadLocalCount(Thread t) {
+        ThreadLocalMap map = t.threadLocals;
+        ThreadLocalMap inheritableMap = t.inheritableThreadLocals;
+        return ((map != null) ? map.size : 0) +
+            ((inheritableMap != null) ? inheritableMap.size : 0);
+    }
+
     /**
      * Get the map associated with a ThreadLocal. Overridden in
      * InheritableThreadLocal.
@@ -214,7 +308,7 @@ public class ThreadLocal<T> {
      * @return a map containing the parent's inheritable bindings
      */
     static ThreadLocalMap createInheritedMap(ThreadLocalMap parentMap) {
-        return new ThreadLocalMap(parentMap);
+        return new ThreadLocalMap(parentMap, true);
     }
 
     /**
@@ -235,9 +329,10 @@ public class ThreadLocal<T> {
      * outside of the ThreadLocal class. The class is package private to
      * allow declaration of fields in class Thread.  To help deal with
      * very large and long-lived usages, the hash table entries use
-     * WeakReferences for keys. However, since reference queues are not
-     * used, stale entries are guaranteed to be removed only when
-     * the table starts running out of space.
+     * WeakReferences for keys.  The entries are registered with a
+     * reference queue of the map, so that the entries of collected
+     * keys are found without scanning the table: a bounded number of
+     * them is expunged by each insertion, removal and lookup miss.
      */
     static class ThreadLocalMap {
 
@@ -253,12 +348,32 @@ public class ThreadLocal<T> {
             /** The value associated with this ThreadLocal. */
             Object value;
 
-            Entry(ThreadLocal k, Object v) {
-                super(k);
+            /**
+             * The threadLocalHashCode of the key, kept so that the
+             * entry can be found once the key has been cleared.
+             */
+            final int hash;
+
+            Entry(ThreadLocal k, Object v, ReferenceQueue<ThreadLocal> q) {
+                super(k, q);
                 value = v;
+                hash = k.threadLocalHashCode;
             }
         }
 
+        /**
+         * The maximum number of entries taken from the reference queue
+         * by a single operation, which bounds the cost of cleaning up
+         * after the collector reclaims many thread locals at once.
+         */
+        private static final int MAX_EXPUNGE_COLLECTED = 16;
+
+        /**
+         * The queue to which the entries of collected keys are enqueued.
+         */
+        private final ReferenceQueue<ThreadLocal> queue =
+            new ReferenceQueue<ThreadLocal>();
+
         /**
          * The initial capacity -- MUST be a power of two.
          */
@@ -309,18 +424,21 @@ public class ThreadLocal<T> {
         ThreadLocalMap(ThreadLocal firstKey, Object firstValue) {
             table = new Entry[INITIAL_CAPACITY];
             int i = firstKey.threadLocalHashCode & (INITIAL_CAPACITY - 1);
-            table[i] = new Entry(firstKey, firstValue);
+            table[i] = new Entry(firstKey, firstValue, queue);
             size = 1;
             setThreshold(INITIAL_CAPACITY);
         }
 
         /**
-         * Construct a new map including all Inheritable ThreadLocals
-         * from given parent map. Called only by createInheritedMap.
+         * Construct a new map including all ThreadLocals from given
+         * parent map. Called only by createInheritedMap, with inherit
+         * true, and by copyMap.
          *
          * @param parentMap the map associated with parent thread.
+         * @param inherit whether the values are to be replaced by the
+         *        children's values of Inheritable ThreadLocals.
          */
-        private ThreadLocalMap(ThreadLocalMap parentMap) {
+        private ThreadLocalMap(ThreadLocalMap parentMap, boolean inherit) {
             Entry[] parentTable = parentMap.table;
             int len = parentTable.length;
             setThreshold(len);
@@ -331,9 +449,10 @@ public class ThreadLocal<T> {
                 if (e != null) {
                     ThreadLocal key = e.get();
                     if (key != null) {
-                        Object value = key.childValue(e.value);
-                        Entry c = new Entry(key, value);
-                        int h = key.threadLocalHashCode & (len - 1);
+                        Object value = inherit ? key.childValue(e.value)
+                                               : e.value;
+                        Entry c = new Entry(key, value, queue);
+                        int h = e.hash & (len - 1);
                         while (table[h] != null)
                             h = nextIndex(h, len);
                         table[h] = c;
@@ -372,6 +491,10 @@ public class ThreadLocal<T> {
          * @return the entry associated with key, or null if no such
          */
         private Entry getEntryAfterMiss(ThreadLocal key, int i, Entry e) {
+            if (expungeCollectedEntries()) {
+                i = key.threadLocalHashCode & (table.length - 1);
+                e = table[i];
+            }
             Entry[] tab = table;
             int len = tab.length;
 
@@ -401,6 +524,7 @@ public class ThreadLocal<T> {
             // it is to replace existing ones, in which case, a fast
             // path would fail more often than not.
 
+            expungeCollectedEntries();
             Entry[] tab = table;
             int len = tab.length;
             int i = key.threadLocalHashCode & (len-1);
@@ -421,7 +545,7 @@ public class ThreadLocal<T> {
                 }
             }
 
-            tab[i] = new Entry(key, value);
+            tab[i] = new Entry(key, value, queue);
             int sz = ++size;
             if (!cleanSomeSlots(i, sz) && sz >= threshold)
                 rehash();
@@ -431,6 +555,7 @@ public class ThreadLocal<T> {
          * Remove the entry for key.
          */
         private void remove(ThreadLocal key) {
+            expungeCollectedEntries();
             Entry[] tab = table;
             int len = tab.length;
             int i = key.threadLocalHashCode & (len-1);
@@ -511,7 +636,7 @@ public class ThreadLocal<T> {
 
             // If key not found, put new entry in stale slot
             tab[staleSlot].value = null;   
-            tab[staleSlot] = new Entry(key, value);
+            tab[staleSlot] = new Entry(key, value, queue);
 
             // If there are any other stale entries in run, expunge them
             if (slotToExpunge != staleSlot)
@@ -550,7 +675,7 @@ public class ThreadLocal<T> {
                     tab[i] = null;
                     size--;
                 } else {
-                    int h = k.threadLocalHashCode & (len - 1);
+                    int h = e.hash & (len - 1);
                     if (h != i) {
                         tab[i] = null;
 
@@ -635,7 +760,7 @@ public class ThreadLocal<T> {
                     if (k == null) {
                         e.value = null; // Help the GC
                     } else {
-                        int h = k.threadLocalHashCode & (newLen - 1);
+                        int h = e.hash & (newLen - 1);
                         while (newTab[h] != null)
                             h = nextIndex(h, newLen);
                         newTab[h] = e;
@@ -649,6 +774,35 @@ public class ThreadLocal<T> {
             table = newTab;
         }
 
+        /**
+         * Expunge the entries whose keys the collector has cleared and
+         * enqueued since the last call, up to MAX_EXPUNGE_COLLECTED of
+         * them.  Entries already expunged by a scan of the table are
+         * no longer found in it, and are ignored.
+         *
+         * @return true if any entries have been removed.
+         */
+        private boolean expungeCollectedEntries() {
+            boolean removed = false;
+            for (int n = 0; n < MAX_EXPUNGE_COLLECTED; n++) {
+                Entry e = (Entry) queue.poll();
+                if (e == null)
+                    break;
+                Entry[] tab = table;
+                int len = tab.length;
+                for (int i = e.hash & (len - 1);
+                     tab[i] != null;
+                     i = nextIndex(i, len)) {
+                    if (tab[i] == e) {
+                        expungeStaleEntry(i);
+                        removed = true;
+                        break;
+                    }
+                }
+            }
+            return removed;
+        }
+
         /**
          * Expunge all stale entries in the table.
          */
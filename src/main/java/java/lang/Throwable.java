@@ -7,6 +7,7 @@
 
 package java.lang;
 import  java.io.*;
+import  java.util.*;
 
 /**
  * The <code>Throwable</code> class is the superclass of all errors and
@@ -113,6 +114,11 @@ import  java.io.*;
  * <code>String</code> (the detail message) and a <code>Throwable</code> (the
  * cause).
  *
+ * <p>Throwables used for control flow, or reused, need no stack trace.  The
+ * {@link #Throwable(String, Throwable, boolean, boolean)} constructor
+ * creates a throwable whose stack trace is not captured, which makes
+ * creating it much cheaper.
+ *
  * <p>Also introduced in release 1.4 is the {@link #getStackTrace()} method,
  * which allows programmatic access to the stack trace information that was
  * previously available only in text form, via the various forms of the
@@ -157,6 +163,12 @@ public class Throwable implements Serializable {
      */
     private Throwable cause = this;
 
+    /**
+     * A shared value for an empty stack.
+     */
+    private static final StackTraceElement[] UNASSIGNED_STACK =
+        new StackTraceElement[0];
+
     /**
      * The stack trace, as returned by {@link #getStackTrace()}.
      *
@@ -169,6 +181,55 @@ public class Throwable implements Serializable {
      * nulled out when fillInStackTrace is called.
      */
 
+    /*
+     * Whether the stack trace is not writable.  The flag is kept apart
+     * from stackTrace and backtrace, which the native fillInStackTrace
+     * resets, so that calling fillInStackTrace on such a throwable does
+     * not make its stack trace writable.
+     */
+    private transient boolean unwritableStackTrace;
+
+    /*
+     * Stack trace written in place of the stackTrace field, so that an
+     * unwritable stack trace stays unwritable after deserialization.
+     */
+    private static final StackTraceElement[] STACK_TRACE_SENTINEL =
+        new StackTraceElement[] {
+            new StackTraceElement("", "", null, Integer.MIN_VALUE)
+        };
+
+    /*
+     * A shared empty list of suppressed exceptions, for throwables to
+     * which none have been added.
+     */
+    private static final List<Throwable> SUPPRESSED_SENTINEL =
+        Collections.unmodifiableList(new ArrayList<Throwable>(0));
+
+    /**
+     * The list of suppressed exceptions, as returned by {@link
+     * #getSuppressed()}.  The list is initialized to a zero-element
+     * unmodifiable sentinel list.  When a serialized Throwable is
+     * read in, if the <tt>suppressedExceptions</tt> field points to a
+     * zero-element list, the field is reset to the sentinel value.
+     * The field is null if suppression is disabled.
+     *
+     * @serial
+     * @since 1.7
+     */
+    private List<Throwable> suppressedExceptions = SUPPRESSED_SENTINEL;
+
+    /** Message for trying to suppress a null exception. */
+    private static final String NULL_CAUSE_MESSAGE = "Cannot suppress a null exception.";
+
+    /** Message for trying to suppress oneself. */
+    private static final String SELF_SUPPRESSION_MESSAGE = "Self-suppression not permitted";
+
+    /** Caption for labeling causative exception stack traces */
+    private static final String CAUSE_CAPTION = "Caused by: ";
+
+    /** Caption for labeling suppressed exception stack traces */
+    private static final String SUPPRESSED_CAPTION = "Suppressed: ";
+
     /**
      * Constructs a new throwable with <code>null</code> as its detail message.
      * The cause is not initialized, and may subsequently be initialized by a
@@ -243,6 +304,46 @@ public class Throwable implements Serializable {
         this.cause = cause;
     }
 
+    /**
+     * Constructs a new throwable with the specified detail message and
+     * cause, with {@linkplain #addSuppressed suppression} enabled or
+     * disabled, and with a writable stack trace or not.
+     *
+     * <p>If suppression is disabled, {@link #getSuppressed} returns a
+     * zero-length array for this throwable and {@link #addSuppressed}
+     * has no effect on it.  If the stack trace is not writable, this
+     * constructor does not call {@link #fillInStackTrace()}, so that no
+     * snapshot of the stack is taken, {@link #getStackTrace()} returns a
+     * zero-length array and {@link #setStackTrace setStackTrace} has no
+     * effect.  A throwable that is thrown often to transfer control, or
+     * that is created once and thrown many times, is usually better
+     * created this way.
+     *
+     * <p>The other constructors of <tt>Throwable</tt> enable suppression
+     * and make the stack trace writable.
+     *
+     * @param  message the detail message.
+     * @param  cause the cause.  (A <tt>null</tt> value is permitted,
+     *         and indicates that the cause is nonexistent or unknown.)
+     * @param  enableSuppression whether or not suppression is enabled
+     * @param  writableStackTrace whether or not the stack trace should be
+     *         writable
+     * @since  1.7
+     */
+    protected Throwable(String message, Throwable cause,
+                        boolean enableSuppression,
+                        boolean writableStackTrace) {
+        if (writableStackTrace) {
+            fillInStackTrace();
+        } else {
+            unwritableStackTrace = true;
+        }
+        detailMessage = message;
+        this.cause = cause;
+        if (!enableSuppression)
+            suppressedExceptions = null;
+    }
+
     /**
      * Returns the detail message string of this throwable.
      *
@@ -457,44 +558,78 @@ public class Throwable implements Serializable {
      * @param s <code>PrintStream</code> to use for output
      */
     public void printStackTrace(PrintStream s) {
-        synchronized (s) {
+        printStackTrace(new WrappedPrintStream(s));
+    }
+
+    private void printStackTrace(PrintStreamOrWriter s) {
+        // Guard against cycles, and against malicious overrides of
+        // Throwable.equals, by using a Set with identity equality
+        // semantics.
+        Set<Throwable> dejaVu =
+            Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+        dejaVu.add(this);
+
+        synchronized (s.lock()) {
             s.println(this);
             StackTraceElement[] trace = getOurStackTrace();
             for (int i=0; i < trace.length; i++)
                 s.println("\tat " + trace[i]);
 
+            // Print suppressed exceptions, if any
+            Throwable[] suppressed = getSuppressed();
+            for (int i=0; i < suppressed.length; i++)
+                suppressed[i].printEnclosedStackTrace(s, trace,
+                    SUPPRESSED_CAPTION, "\t", dejaVu);
+
+            // Print cause, if any
             Throwable ourCause = getCause();
             if (ourCause != null)
-                ourCause.printStackTraceAsCause(s, trace);
+                ourCause.printEnclosedStackTrace(s, trace, CAUSE_CAPTION,
+                                                 "", dejaVu);
         }
     }
 
     /**
-     * Print our stack trace as a cause for the specified stack trace.
+     * Print our stack trace as an enclosed exception for the specified
+     * stack trace.
      */
-    private void printStackTraceAsCause(PrintStream s,
-                                        StackTraceElement[] causedTrace)
-    {
-        // assert Thread.holdsLock(s);
+    private void printEnclosedStackTrace(PrintStreamOrWriter s,
+                                         StackTraceElement[] enclosingTrace,
+                                         String caption,
+                                         String prefix,
+                                         Set<Throwable> dejaVu) {
+        // assert Thread.holdsLock(s.lock());
+        if (dejaVu.contains(this)) {
+            s.println("\t[CIRCULAR REFERENCE:" + this + "]");
+            return;
+        }
+        dejaVu.add(this);
 
-        // Compute number of frames in common between this and caused
+        // Compute number of frames in common between this and enclosing trace
         StackTraceElement[] trace = getOurStackTrace();
-        int m = trace.length-1, n = causedTrace.length-1;
-        while (m >= 0 && n >=0 && trace[m].equals(causedTrace[n])) {
+        int m = trace.length-1, n = enclosingTrace.length-1;
+        while (m >= 0 && n >=0 && trace[m].equals(enclosingTrace[n])) {
             m--; n--;
         }
         int framesInCommon = trace.length - 1 - m;
 
-        s.println("Caused by: " + this);
+        s.println(prefix + caption + this);
         for (int i=0; i <= m; i++)
-            s.println("\tat " + trace[i]);
+            s.println(prefix + "\tat " + trace[i]);
         if (framesInCommon != 0)
-            s.println("\t... " + framesInCommon + " more");
+            s.println(prefix + "\t... " + framesInCommon + " more");
+
+        // Print suppressed exceptions, if any
+        Throwable[] suppressed = getSuppressed();
+        for (int i=0; i < suppressed.length; i++)
+            suppressed[i].printEnclosedStackTrace(s, trace,
+                SUPPRESSED_CAPTION, prefix + "\t", dejaVu);
 
         // Recurse if we have a cause
         Throwable ourCause = getCause();
         if (ourCause != null)
-            ourCause.printStackTraceAsCause(s, trace);
+            ourCause.printEnclosedStackTrace(s, trace, CAUSE_CAPTION,
+                                             prefix, dejaVu);
     }
 
     /**
@@ -505,44 +640,51 @@ public class Throwable implements Serializable {
      * @since   JDK1.1
      */
     public void printStackTrace(PrintWriter s) {
-        synchronized (s) {
-            s.println(this);
-            StackTraceElement[] trace = getOurStackTrace();
-            for (int i=0; i < trace.length; i++)
-                s.println("\tat " + trace[i]);
-
-            Throwable ourCause = getCause();
-            if (ourCause != null)
-                ourCause.printStackTraceAsCause(s, trace);
-        }
+        printStackTrace(new WrappedPrintWriter(s));
     }
 
     /**
-     * Print our stack trace as a cause for the specified stack trace.
+     * Wrapper class for PrintStream and PrintWriter to enable a single
+     * implementation of printStackTrace.
      */
-    private void printStackTraceAsCause(PrintWriter s,
-                                        StackTraceElement[] causedTrace)
-    {
-        // assert Thread.holdsLock(s);
+    private abstract static class PrintStreamOrWriter {
+        /** Returns the object to be locked when using this StreamOrWriter */
+        abstract Object lock();
 
-        // Compute number of frames in common between this and caused
-        StackTraceElement[] trace = getOurStackTrace();
-        int m = trace.length-1, n = causedTrace.length-1;
-        while (m >= 0 && n >=0 && trace[m].equals(causedTrace[n])) {
-            m--; n--;
+        /** Prints the specified string as a line on this StreamOrWriter */
+        abstract void println(Object o);
+    }
+
+    private static class WrappedPrintStream extends PrintStreamOrWriter {
+        private final PrintStream printStream;
+
+        WrappedPrintStream(PrintStream printStream) {
+            this.printStream = printStream;
         }
-        int framesInCommon = trace.length - 1 - m;
 
-        s.println("Caused by: " + this);
-        for (int i=0; i <= m; i++)
-            s.println("\tat " + trace[i]);
-        if (framesInCommon != 0)
-            s.println("\t... " + framesInCommon + " more");
+        Object lock() {
+            return printStream;
+        }
 
-        // Recurse if we have a cause
-        Throwable ourCause = getCause();
-        if (ourCause != null)
-            ourCause.printStackTraceAsCause(s, trace);
+        void println(Object o) {
+            printStream.println(o);
+        }
+    }
+
+    private static class WrappedPrintWriter extends PrintStreamOrWriter {
+        private final PrintWriter printWriter;
+
+        WrappedPrintWriter(PrintWriter printWriter) {
+            this.printWriter = printWriter;
+        }
+
+        Object lock() {
+            return printWriter;
+        }
+
+        void println(Object o) {
+            printWriter.println(o);
+        }
     }
 
     /**
@@ -550,6 +692,10 @@ public class Throwable implements Serializable {
      * <code>Throwable</code> object information about the current state of
      * the stack frames for the current thread.
      *
+     * <p>If the stack trace of this <code>Throwable</code> {@linkplain
+     * #Throwable(String, Throwable, boolean, boolean) is not writable},
+     * the information recorded by this method is never reported.
+     *
      * @return  a reference to this <code>Throwable</code> instance.
      * @see     java.lang.Throwable#printStackTrace()
      */
@@ -583,6 +729,8 @@ public class Throwable implements Serializable {
     }
 
     private synchronized StackTraceElement[] getOurStackTrace() {
+        if (unwritableStackTrace)
+            return UNASSIGNED_STACK;
         // Initialize stack trace if this is the first call to this method
         if (stackTrace == null) {
             int depth = getStackTraceDepth();
@@ -608,7 +756,9 @@ public class Throwable implements Serializable {
      * this <code>Throwable</code>.  The specified array is copied by this
      * call; changes in the specified array after the method invocation
      * returns will have no affect on this <code>Throwable</code>'s stack
-     * trace.
+     * trace.  If the stack trace of this <code>Throwable</code> {@linkplain
+     * #Throwable(String, Throwable, boolean, boolean) is not writable},
+     * this method has no effect other than validating its argument.
      *
      * @throws NullPointerException if <code>stackTrace</code> is
      *         <code>null</code>, or if any of the elements of
@@ -623,28 +773,139 @@ public class Throwable implements Serializable {
             if (defensiveCopy[i] == null)
                 throw new NullPointerException("stackTrace[" + i + "]");
 
-        this.stackTrace = defensiveCopy;
+        synchronized (this) {
+            if (unwritableStackTrace)
+                return;
+            this.stackTrace = defensiveCopy;
+        }
     }
 
     /**
      * Returns the number of elements in the stack trace (or 0 if the stack
-     * trace is unavailable).
+     * trace is unavailable).  Also used by {@link StackWalker}.
      */
-    private native int getStackTraceDepth();
+    native int getStackTraceDepth();
 
     /**
-     * Returns the specified element of the stack trace.
+     * Returns the specified element of the stack trace.  Also used by
+     * {@link StackWalker}.
      *
      * @param index index of the element to return.
      * @throws IndexOutOfBoundsException if <tt>index &lt; 0 ||
      *         index &gt;= getStackTraceDepth() </tt>
      */
-    private native StackTraceElement getStackTraceElement(int index);
+    native StackTraceElement getStackTraceElement(int index);
+
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();     // read in all fields
+        if (suppressedExceptions != null) {
+            List<Throwable> suppressed = null;
+            if (suppressedExceptions.isEmpty()) {
+                // Use the sentinel for a zero-length list
+                suppressed = SUPPRESSED_SENTINEL;
+            } else { // Copy Throwables to new list
+                suppressed = new ArrayList<Throwable>(1);
+                for (Throwable t : suppressedExceptions) {
+                    // Enforce constraints on suppressed exceptions in
+                    // case of corrupt or malicious stream.
+                    if (t == null)
+                        throw new NullPointerException(NULL_CAUSE_MESSAGE);
+                    if (t == this)
+                        throw new IllegalArgumentException(SELF_SUPPRESSION_MESSAGE);
+                    suppressed.add(t);
+                }
+            }
+            suppressedExceptions = suppressed;
+        } // else a null suppressedExceptions field remains null
+
+        if (stackTrace != null) {
+            if (stackTrace.length == 1 &&
+                STACK_TRACE_SENTINEL[0].equals(stackTrace[0])) {
+                unwritableStackTrace = true;
+                stackTrace = null;
+            } else {
+                for (int i = 0; i < stackTrace.length; i++) {
+                    if (stackTrace[i] == null)
+                        throw new NullPointerException("stackTrace[" + i + "]");
+                }
+            }
+        } else {
+            // Serialized without a stack trace; treat it as empty
+            stackTrace = new StackTraceElement[0];
+        }
+    }
 
-    private synchronized void writeObject(java.io.ObjectOutputStream s)
+    private synchronized void writeObject(ObjectOutputStream s)
         throws IOException
     {
         getOurStackTrace();  // Ensure that stackTrace field is initialized.
-        s.defaultWriteObject();
+        StackTraceElement[] oldStackTrace = stackTrace;
+        try {
+            if (unwritableStackTrace)
+                stackTrace = STACK_TRACE_SENTINEL;
+            s.defaultWriteObject();
+        } finally {
+            stackTrace = oldStackTrace;
+        }
+    }
+
+    /**
+     * Appends the specified exception to the exceptions that were
+     * suppressed in order to deliver this exception.  This method is
+     * typically called by code that catches an exception while cleaning
+     * up after another one, such as one thrown by <tt>close</tt> in a
+     * <tt>finally</tt> block, and then rethrows the original exception.
+     *
+     * <p>If suppression is {@linkplain #Throwable(String, Throwable,
+     * boolean, boolean) disabled} for this throwable, this method does
+     * nothing other than validate its argument.
+     *
+     * <p>Suppressed exceptions are printed by {@link #printStackTrace()},
+     * indented, after the stack trace of this throwable and before its
+     * cause.
+     *
+     * @param exception the exception to be added to the list of
+     *        suppressed exceptions
+     * @throws IllegalArgumentException if <tt>exception</tt> is this
+     *         throwable; a throwable cannot suppress itself.
+     * @throws NullPointerException if <tt>exception</tt> is <tt>null</tt>
+     * @since 1.7
+     */
+    public final synchronized void addSuppressed(Throwable exception) {
+        if (exception == this)
+            throw new IllegalArgumentException(SELF_SUPPRESSION_MESSAGE, exception);
+
+        if (exception == null)
+            throw new NullPointerException(NULL_CAUSE_MESSAGE);
+
+        if (suppressedExceptions == null) // Suppressed exceptions not recorded
+            return;
+
+        if (suppressedExceptions == SUPPRESSED_SENTINEL)
+            suppressedExceptions = new ArrayList<Throwable>(1);
+
+        suppressedExceptions.add(exception);
+    }
+
+    private static final Throwable[] EMPTY_THROWABLE_ARRAY = new Throwable[0];
+
+    /**
+     * Returns an array containing all of the exceptions that were
+     * suppressed in order to deliver this exception, in the order they
+     * were added by {@link #addSuppressed}.  If none were, or suppression
+     * is disabled, an empty array is returned.
+     *
+     * @return an array containing all of the exceptions that were
+     *         suppressed to deliver this exception.
+     * @since 1.7
+     */
+    public final synchronized Throwable[] getSuppressed() {
+        if (suppressedExceptions == SUPPRESSED_SENTINEL ||
+            suppressedExceptions == null)
+            return EMPTY_THROWABLE_ARRAY;
+        else
+            return suppressedExceptions.toArray(EMPTY_THROWABLE_ARRAY);
     }
 }
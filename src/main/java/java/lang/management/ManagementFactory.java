@@ -11,6 +11,7 @@ import javax.management.MBeanServerConnection;
 import javax.management.MBeanServerPermission;
 import javax.management.ObjectName;
 import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
 import javax.management.MalformedObjectNameException;
 import java.util.List;
 import java.security.AccessController;
@@ -208,6 +209,11 @@ import javax.management.JMX;
  * <td> {@link #OPERATING_SYSTEM_MXBEAN_NAME
  *             <tt>java.lang:type=OperatingSystem</tt>}</td>
  * </tr>
+ * <tr>
+ * <td> {@link ThreadLocalMXBean} </td>
+ * <td> {@link #THREAD_LOCAL_MXBEAN_NAME
+ *             <tt>java.lang:type=ThreadLocal</tt>}</td>
+ * </tr>
  * </table>
  * </blockquote>
  *
@@ -313,6 +319,15 @@ public class ManagementFactory {
     public final static String THREAD_MXBEAN_NAME = 
         "java.lang:type=Threading";
 
+    /**
+     * String representation of the
+     * <tt>ObjectName</tt> for the {@link ThreadLocalMXBean}.
+     *
+     * @since 1.7
+     */
+    public final static String THREAD_LOCAL_MXBEAN_NAME =
+        "java.lang:type=ThreadLocal";
+
     /**
      * The domain name and the type key property in 
      * the <tt>ObjectName</tt> for a {@link GarbageCollectorMXBean}.
@@ -374,6 +389,22 @@ public class ManagementFactory {
         return sun.management.ManagementFactory.getThreadMXBean();
     }
 
+    private static final ThreadLocalMXBean threadLocalMXBean =
+        new ThreadLocalImpl();
+
+    /**
+     * Returns the managed bean for the thread-local variables of the
+     * threads of the Java virtual machine.
+     *
+     * @return a {@link ThreadLocalMXBean} object for the Java virtual
+     * machine.
+     *
+     * @since 1.7
+     */
+    public static ThreadLocalMXBean getThreadLocalMXBean() {
+        return threadLocalMXBean;
+    }
+
     /**
      * Returns the managed bean for the runtime system of 
      * the Java virtual machine.
@@ -503,10 +534,27 @@ public class ManagementFactory {
         if (platformMBeanServer == null) {
             platformMBeanServer = 
                 sun.management.ManagementFactory.createPlatformMBeanServer();
+            registerThreadLocalMXBean(platformMBeanServer);
         }
         return platformMBeanServer;
     }
 
+    // The MXBean for thread locals is implemented in this package rather
+    // than by the platform, so it is registered here
+    private static void registerThreadLocalMXBean(final MBeanServer mbs) {
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            public Void run() {
+                try {
+                    mbs.registerMBean(threadLocalMXBean,
+                        new ObjectName(THREAD_LOCAL_MXBEAN_NAME));
+                } catch (JMException e) {
+                    throw new InternalError(e.toString());
+                }
+                return null;
+            }
+        });
+    }
+
     /**
      * Returns a proxy for a platform MXBean interface of a 
      * given <a href="#MXBeanNames">MXBean name</a>
@@ -0,0 +1,75 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.lang.management;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import sun.misc.SharedSecrets;
+
+/**
+ * Implementation class for the thread-local variables.
+ *
+ * ManagementFactory.getThreadLocalMXBean() returns an instance
+ * of this class.
+ */
+class ThreadLocalImpl implements ThreadLocalMXBean {
+
+    ThreadLocalImpl() {
+    }
+
+    public int getThreadLocalCount(long id) {
+        return getThreadLocalCount(new long[] { id })[0];
+    }
+
+    public int[] getThreadLocalCount(long[] ids) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] <= 0) {
+                throw new IllegalArgumentException(
+                    "Invalid thread ID parameter: " + ids[i]);
+            }
+        }
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(new ManagementPermission("monitor"));
+        }
+
+        Thread[] threads = getLiveThreads();
+        int[] counts = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            counts[i] = -1;
+            for (Thread t : threads) {
+                if (t.getId() == ids[i]) {
+                    counts[i] = SharedSecrets.getJavaLangAccess()
+                        .threadLocalCount(t);
+                    break;
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static Thread[] getLiveThreads() {
+        return AccessController.doPrivileged(new PrivilegedAction<Thread[]>() {
+            public Thread[] run() {
+                ThreadGroup root = Thread.currentThread().getThreadGroup();
+                while (root.getParent() != null)
+                    root = root.getParent();
+                // Leave room for threads started while enumerating
+                Thread[] threads;
+                int n;
+                do {
+                    threads = new Thread[root.activeCount() * 2 + 8];
+                    n = root.enumerate(threads, true);
+                } while (n == threads.length);
+                Thread[] live = new Thread[n];
+                System.arraycopy(threads, 0, live, 0, n);
+                return live;
+            }
+        });
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.lang.management;
+
+/**
+ * The management interface for the thread-local variables of the
+ * threads of the Java virtual machine.
+ *
+ * <p> A Java virtual machine has a single instance of the implementation
+ * class of this interface.  This instance implementing this interface is
+ * an <a href="ManagementFactory.html#MXBean">MXBean</a>
+ * that can be obtained by calling
+ * the {@link ManagementFactory#getThreadLocalMXBean} method or
+ * from the {@link ManagementFactory#getPlatformMBeanServer
+ * platform <tt>MBeanServer</tt>} method.
+ *
+ * <p>The <tt>ObjectName</tt> for uniquely identifying the MXBean for
+ * the thread-local variables within an MBeanServer is:
+ * <blockquote>
+ *    {@link ManagementFactory#THREAD_LOCAL_MXBEAN_NAME
+ *           <tt>java.lang:type=ThreadLocal</tt>}
+ * </blockquote>
+ *
+ * <p>Each thread keeps the values of its {@link ThreadLocal} variables
+ * in tables of its own.  The entry for a variable that is no longer
+ * referenced stays in the table of a thread until the thread notices
+ * that the variable has been reclaimed, so a thread that lives long,
+ * such as the worker of a thread pool, may hold many more entries than
+ * it has live variables.  The counts reported by this interface include
+ * such entries.  The counts of threads other than the current thread
+ * are read without synchronizing with those threads, and so are
+ * approximate.
+ *
+ * <p>Threads are identified by their IDs, as for {@link ThreadMXBean}.
+ *
+ * @see ManagementFactory#getThreadLocalMXBean
+ * @see ThreadLocal#snapshot
+ * @since 1.7
+ */
+public interface ThreadLocalMXBean {
+    /**
+     * Returns the number of thread-local entries held by the thread of
+     * the specified ID.
+     *
+     * @param id the thread ID of a thread
+     * @return the number of thread-local entries of the thread if the
+     * thread of the specified ID exists and is alive; <tt>-1</tt>
+     * otherwise.
+     *
+     * @throws IllegalArgumentException if <tt>id &lt;= 0</tt>.
+     * @throws java.lang.SecurityException if a security manager
+     *         exists and the caller does not have
+     *         ManagementPermission("monitor").
+     */
+    public int getThreadLocalCount(long id);
+
+    /**
+     * Returns the numbers of thread-local entries held by each of the
+     * threads whose IDs are in the input array <tt>ids</tt>.
+     * This method is equivalent to calling
+     * {@link #getThreadLocalCount(long)} for each ID in turn, but
+     * looks the threads up only once.
+     *
+     * @param ids an array of thread IDs
+     * @return an array of the same length as <tt>ids</tt>, whose
+     * <tt>i</tt>-th element is the number of thread-local entries of
+     * the thread whose ID is <tt>ids[i]</tt>, or <tt>-1</tt> if that
+     * thread does not exist or is not alive.
+     *
+     * @throws IllegalArgumentException if any element in the input array
+     *         <tt>ids</tt> is <tt>&lt;= 0</tt>.
+     * @throws java.lang.SecurityException if a security manager
+     *         exists and the caller does not have
+     *         ManagementPermission("monitor").
+     */
+    public int[] getThreadLocalCount(long[] ids);
+}
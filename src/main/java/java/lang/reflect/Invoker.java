@@ -0,0 +1,217 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.lang.reflect;
+
+import sun.reflect.MethodAccessor;
+import sun.reflect.Reflection;
+
+/**
+ * An <code>Invoker</code> invokes one method, like the {@link Method#invoke
+ * invoke} method of the <code>Method</code> object it was obtained from by
+ * {@link Method#invoker()}, with less work for each call.
+ *
+ * <p>Java language access control is checked once, for the class that
+ * obtains the invoker, when the invoker is created, instead of for the
+ * caller of each invocation.  The only exception is a protected instance
+ * method that the creating class may access only through objects of
+ * certain classes; for such a method the class of each target object is
+ * checked, as by <code>Method.invoke</code>.  An invoker should therefore
+ * be handed only to code that may use it with the access rights of the
+ * class that created it.
+ *
+ * <p>Methods with up to three parameters can be invoked with the
+ * <code>invoke</code> methods of the matching arity, so that callers need
+ * not create an array for the arguments.  Arguments and results are
+ * converted as by <code>Method.invoke</code>.
+ *
+ * <p>Invokers are immutable and are safe for use by multiple concurrent
+ * threads.
+ *
+ * @see Method#invoker()
+ * @since 1.7
+ */
+public final class Invoker {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final Method method;
+    private final MethodAccessor accessor;
+
+    // The class that created this invoker, if the access of that class
+    // depends on the target object and so must be checked for each
+    // call; null otherwise
+    private final Class<?> caller;
+
+    // The last target class for which the access check succeeded
+    private volatile Class<?> checkedTargetClass;
+
+    Invoker(Method method, MethodAccessor accessor, Class<?> caller) {
+        this.method = method;
+        this.accessor = accessor;
+        this.caller = caller;
+    }
+
+    /**
+     * Returns the <code>Method</code> object this invoker was obtained from.
+     *
+     * @return the method invoked by this invoker
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Invokes the underlying method, which has no parameters, on the
+     * specified object.
+     *
+     * @param obj the object the underlying method is invoked from
+     * @return the result of dispatching the method on <code>obj</code>
+     * @exception IllegalAccessException if the underlying method is a
+     *              protected instance method that the class that created
+     *              this invoker may not access through <code>obj</code>
+     * @exception IllegalArgumentException as for {@link Method#invoke}
+     * @exception InvocationTargetException if the underlying method
+     *              throws an exception.
+     * @exception NullPointerException if the specified object is null
+     *              and the method is an instance method.
+     * @exception ExceptionInInitializerError if the initialization
+     * provoked by this method fails.
+     */
+    public Object invoke(Object obj)
+        throws IllegalAccessException, InvocationTargetException
+    {
+        if (caller != null) checkAccess(obj);
+        return accessor.invoke(obj, NO_ARGS);
+    }
+
+    /**
+     * Invokes the underlying method, which has one parameter, on the
+     * specified object with the specified argument.
+     *
+     * @param obj the object the underlying method is invoked from
+     * @param arg the argument used for the method call
+     * @return the result of dispatching the method on <code>obj</code>
+     * @exception IllegalAccessException if the underlying method is a
+     *              protected instance method that the class that created
+     *              this invoker may not access through <code>obj</code>
+     * @exception IllegalArgumentException as for {@link Method#invoke}
+     * @exception InvocationTargetException if the underlying method
+     *              throws an exception.
+     * @exception NullPointerException if the specified object is null
+     *              and the method is an instance method.
+     * @exception ExceptionInInitializerError if the initialization
+     * provoked by this method fails.
+     */
+    public Object invoke(Object obj, Object arg)
+        throws IllegalAccessException, InvocationTargetException
+    {
+        if (caller != null) checkAccess(obj);
+        return accessor.invoke(obj, new Object[] { arg });
+    }
+
+    /**
+     * Invokes the underlying method, which has two parameters, on the
+     * specified object with the specified arguments.
+     *
+     * @param obj the object the underlying method is invoked from
+     * @param arg1 the first argument used for the method call
+     * @param arg2 the second argument used for the method call
+     * @return the result of dispatching the method on <code>obj</code>
+     * @exception IllegalAccessException if the underlying method is a
+     *              protected instance method that the class that created
+     *              this invoker may not access through <code>obj</code>
+     * @exception IllegalArgumentException as for {@link Method#invoke}
+     * @exception InvocationTargetException if the underlying method
+     *              throws an exception.
+     * @exception NullPointerException if the specified object is null
+     *              and the method is an instance method.
+     * @exception ExceptionInInitializerError if the initialization
+     * provoked by this method fails.
+     */
+    public Object invoke(Object obj, Object arg1, Object arg2)
+        throws IllegalAccessException, InvocationTargetException
+    {
+        if (caller != null) checkAccess(obj);
+        return accessor.invoke(obj, new Object[] { arg1, arg2 });
+    }
+
+    /**
+     * Invokes the underlying method, which has three parameters, on the
+     * specified object with the specified arguments.
+     *
+     * @param obj the object the underlying method is invoked from
+     * @param arg1 the first argument used for the method call
+     * @param arg2 the second argument used for the method call
+     * @param arg3 the third argument used for the method call
+     * @return the result of dispatching the method on <code>obj</code>
+     * @exception IllegalAccessException if the underlying method is a
+     *              protected instance method that the class that created
+     *              this invoker may not access through <code>obj</code>
+     * @exception IllegalArgumentException as for {@link Method#invoke}
+     * @exception InvocationTargetException if the underlying method
+     *              throws an exception.
+     * @exception NullPointerException if the specified object is null
+     *              and the method is an instance method.
+     * @exception ExceptionInInitializerError if the initialization
+     * provoked by this method fails.
+     */
+    public Object invoke(Object obj, Object arg1, Object arg2, Object arg3)
+        throws IllegalAccessException, InvocationTargetException
+    {
+        if (caller != null) checkAccess(obj);
+        return accessor.invoke(obj, new Object[] { arg1, arg2, arg3 });
+    }
+
+    /**
+     * Invokes the underlying method on the specified object with the
+     * specified arguments, which may be any in number.  The arguments are
+     * passed to the method without being copied.
+     *
+     * @param obj the object the underlying method is invoked from
+     * @param args the arguments used for the method call
+     * @return the result of dispatching the method on <code>obj</code>
+     * @exception IllegalAccessException if the underlying method is a
+     *              protected instance method that the class that created
+     *              this invoker may not access through <code>obj</code>
+     * @exception IllegalArgumentException as for {@link Method#invoke}
+     * @exception InvocationTargetException if the underlying method
+     *              throws an exception.
+     * @exception NullPointerException if the specified object is null
+     *              and the method is an instance method.
+     * @exception ExceptionInInitializerError if the initialization
+     * provoked by this method fails.
+     */
+    public Object invokeWithArguments(Object obj, Object... args)
+        throws IllegalAccessException, InvocationTargetException
+    {
+        if (caller != null) checkAccess(obj);
+        return accessor.invoke(obj, args);
+    }
+
+    // Checks that the creating class may access the protected method
+    // through the given object, remembering the last class that passed
+    private void checkAccess(Object obj) throws IllegalAccessException {
+        Class<?> declaringClass = method.getDeclaringClass();
+        Class<?> targetClass = (obj == null) ? declaringClass : obj.getClass();
+        if (targetClass != checkedTargetClass) {
+            Reflection.ensureMemberAccess(caller, declaringClass, obj,
+                                          method.getModifiers());
+            checkedTargetClass = targetClass;
+        }
+    }
+
+    /**
+     * Returns a string describing this invoker, which is the string
+     * describing its method preceded by "invoker ".
+     *
+     * @return a string describing this invoker
+     */
+    public String toString() {
+        return "invoker " + method;
+    }
+}
@@ -597,6 +597,40 @@ public final
         return methodAccessor.invoke(obj, args);
     }
 
+    /**
+     * Returns an {@link Invoker} for the underlying method represented by
+     * this <code>Method</code> object.  Invoking the method through the
+     * invoker has the same effect as invoking it through this object, but
+     * Java language access control is checked for the caller of this
+     * method, once, instead of for the caller of each invocation; see
+     * {@link Invoker}.
+     *
+     * @return an invoker for the method represented by this object
+     *
+     * @exception IllegalAccessException    if this <code>Method</code> object
+     *              enforces Java language access control and the underlying
+     *              method is inaccessible to the caller of this method.
+     * @since 1.7
+     */
+    public Invoker invoker() throws IllegalAccessException {
+        Class<?> caller = null;
+        if (!override) {
+            if (!Reflection.quickCheckMemberAccess(clazz, modifiers)) {
+                caller = Reflection.getCallerClass(2);
+                if (!Modifier.isProtected(modifiers)
+                    || Modifier.isStatic(modifiers)) {
+                    Reflection.ensureMemberAccess(caller, clazz, null,
+                                                  modifiers);
+                    caller = null;
+                }
+                // Otherwise access may depend on the target object;
+                // the invoker checks it for each target class
+            }
+        }
+        if (methodAccessor == null) acquireMethodAccessor();
+        return new Invoker(this, methodAccessor, caller);
+    }
+
     /**
      * Returns <tt>true</tt> if this method is a bridge
      * method; returns <tt>false</tt> otherwise.
@@ -1121,10 +1121,6 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
             return add(augend);
         BigDecimal lhs = this;
 
-	// Could optimize if values are compact
-	this.inflate();
-	augend.inflate();
-	
         // If either number is zero then the other number, rounded and
         // scaled if necessary, is used as the result.
 	{
@@ -1169,11 +1165,47 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
             augend = arg[1];
         }
 	
+        // Stay in the compact representation when the sum fits in a long
+        if (lhs.intCompact != INFLATED && augend.intCompact != INFLATED) {
+            BigDecimal sum = compactAdd(lhs.intCompact, lhs.scale,
+                                        augend.intCompact, augend.scale);
+            if (sum != null)
+                return doRound(sum, mc);
+        }
+
 	BigDecimal d = new BigDecimal(lhs.inflate().add(augend.inflate()),
                                       lhs.scale);
         return doRound(d, mc);
     }
 
+    /**
+     * Returns the sum of two values in the compact representation, with
+     * scale {@code max(xscale, yscale)}.  Returns {@code null} if either
+     * rescaled operand or the sum does not fit in a {@code long}, in which
+     * case the caller has to take the inflated path.
+     */
+    private static BigDecimal compactAdd(long xs, int xscale,
+                                         long ys, int yscale) {
+        int rscale = xscale;
+        long sdiff = (long)xscale - yscale;
+        if (sdiff < 0) {
+            rscale = yscale;
+            if (sdiff < -Integer.MAX_VALUE ||
+                (xs = longMultiplyPowerTen(xs, (int)-sdiff)) == INFLATED)
+                return null;
+        } else if (sdiff > 0) {
+            if (sdiff > Integer.MAX_VALUE ||
+                (ys = longMultiplyPowerTen(ys, (int)sdiff)) == INFLATED)
+                return null;
+        }
+        long sum = xs + ys;
+        // See "Hacker's Delight" section 2-12 for explanation of
+        // the overflow test.
+        if ( (((sum ^ xs) & (sum ^ ys))) >= 0L) // not overflowed
+            return BigDecimal.valueOf(sum, rscale);
+        return null;
+    }
+
     /**
      * Returns an array of length two, the sum of whose entries is
      * equal to the rounded sum of the {@code BigDecimal} arguments.
@@ -1249,6 +1281,15 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
      * @return {@code this - subtrahend}
      */
     public BigDecimal subtract(BigDecimal subtrahend) {
+        long xs = this.intCompact;
+        long ys = subtrahend.intCompact;
+        // Negating a compact value can't overflow since INFLATED is
+        // Long.MIN_VALUE, so the common case needs no negated copy.
+        if (xs != INFLATED && ys != INFLATED) {
+            BigDecimal diff = compactAdd(xs, this.scale, -ys, subtrahend.scale);
+            if (diff != null)
+                return diff;
+        }
         return add(subtrahend.negate());
     }
 
@@ -1331,10 +1372,167 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
     public BigDecimal multiply(BigDecimal multiplicand, MathContext mc) {
         if (mc.precision == 0)
             return multiply(multiplicand);
-        
+
+        long x = this.intCompact;
+        long y = multiplicand.intCompact;
+        if (x != INFLATED && y != INFLATED) {
+            int productScale = checkScale((long)scale + multiplicand.scale);
+            BigDecimal result = multiplyAndRound(x, y, productScale, mc);
+            if (result != null)
+                return result;
+        }
         return doRound(this.multiply(multiplicand), mc);
     }
 
+    /**
+     * Multiplies two values in the compact representation and rounds the
+     * product according to {@code mc} without inflating either operand.
+     * If the product overflows a {@code long}, the full 128-bit product is
+     * formed and divided by the appropriate power of ten directly, which
+     * is possible when the precision is at most {@code MAX_COMPACT_DIGITS}
+     * and no more than 18 digits have to be dropped.  Returns {@code null}
+     * when that is not the case.
+     */
+    private static BigDecimal multiplyAndRound(long x, long y, int scale,
+                                               MathContext mc) {
+        long product = x * y;
+        if ((Math.abs(x) >>> 31 == 0 && Math.abs(y) >>> 31 == 0) ||
+            y == 0 || product / y == x)
+            return doRound(BigDecimal.valueOf(product, scale), mc);
+
+        int mcp = mc.precision;
+        if (mcp > MAX_COMPACT_DIGITS)
+            return null;
+
+        // Form the unsigned 128-bit product hi:lo of the magnitudes
+        int qsign = ((x < 0) == (y < 0)) ? 1 : -1;
+        x = Math.abs(x);
+        y = Math.abs(y);
+        long x0 = x & LONG_MASK, x1 = x >>> 32;
+        long y0 = y & LONG_MASK, y1 = y >>> 32;
+        long w0 = x0 * y0;
+        long t = x1 * y0 + (w0 >>> 32);
+        long w1 = (t & LONG_MASK) + x0 * y1;
+        long hi = x1 * y1 + (t >>> 32) + (w1 >>> 32);
+        long lo = x * y;
+
+        // Number of decimal digits, estimated from the bit length as in
+        // longDigitLength; the product is at least 2^63, so at least 19
+        int bitLength = (hi != 0) ? 128 - Long.numberOfLeadingZeros(hi)
+                                  : 64 - Long.numberOfLeadingZeros(lo);
+        int r = ((bitLength + 1) * 1233) >>> 12;
+        if (r > 2 * MAX_COMPACT_DIGITS)
+            return null;
+        int digits = compareTenPower128(hi, lo, r) < 0 ? r : r + 1;
+        int drop = digits - mcp;
+        long newScale = (long)scale - drop;
+        if (drop >= LONG_TEN_POWERS_TABLE.length ||
+            newScale != (int)newScale)
+            return null;
+
+        long divisor = LONG_TEN_POWERS_TABLE[drop];
+        long q = divideUnsigned128(hi, lo, divisor);
+        long rem = lo - q * divisor;
+        if (rem != 0) {
+            int cmpFracHalf = longCompareMagnitude(2 * rem, divisor);
+            if (needIncrement(mc.roundingMode.oldMode, qsign, cmpFracHalf,
+                              (q & 1L) != 0L))
+                q++;
+        }
+        // Round again in case of a carry out, e.g. 999 => 1000
+        return doRound(new BigDecimal(null, qsign * q, (int)newScale, 0), mc);
+    }
+
+    /**
+     * Compares the unsigned 128-bit value hi:lo with 10<sup>n</sup>, for
+     * {@code n <= 2*MAX_COMPACT_DIGITS}.
+     */
+    private static int compareTenPower128(long hi, long lo, int n) {
+        long phi, plo;
+        if (n < LONG_TEN_POWERS_TABLE.length) {
+            phi = 0;
+            plo = LONG_TEN_POWERS_TABLE[n];
+        } else {
+            // 10^n = 10^18 * 10^(n-18); both factors are below 2^63
+            long a = LONG_TEN_POWERS_TABLE[MAX_COMPACT_DIGITS];
+            long b = LONG_TEN_POWERS_TABLE[n - MAX_COMPACT_DIGITS];
+            long a0 = a & LONG_MASK, a1 = a >>> 32;
+            long b0 = b & LONG_MASK, b1 = b >>> 32;
+            long w0 = a0 * b0;
+            long t = a1 * b0 + (w0 >>> 32);
+            long w1 = (t & LONG_MASK) + a0 * b1;
+            phi = a1 * b1 + (t >>> 32) + (w1 >>> 32);
+            plo = a * b;
+        }
+        if (hi != phi)
+            return (hi + Long.MIN_VALUE) < (phi + Long.MIN_VALUE) ? -1 : 1;
+        if (lo != plo)
+            return (lo + Long.MIN_VALUE) < (plo + Long.MIN_VALUE) ? -1 : 1;
+        return 0;
+    }
+
+    /**
+     * Divides the unsigned 128-bit value u1:u0 by the positive long
+     * {@code v}, where {@code u1 < v} so that the quotient fits in 64
+     * bits, and returns the (unsigned) quotient.  This is Knuth's
+     * Algorithm D specialized to a two-digit divisor of 32-bit digits, as
+     * given in "Hacker's Delight" section 9-4 (divlu).
+     */
+    private static long divideUnsigned128(long u1, long u0, long v) {
+        final long b = 1L << 32;
+        int shift = Long.numberOfLeadingZeros(v);
+        v <<= shift;
+        long vn1 = v >>> 32;
+        long vn0 = v & LONG_MASK;
+
+        long un32 = (shift == 0) ? u1 : (u1 << shift) | (u0 >>> (64 - shift));
+        long un10 = u0 << shift;
+        long un1 = un10 >>> 32;
+        long un0 = un10 & LONG_MASK;
+
+        long q1 = divideUnsignedByWord(un32, vn1);
+        long rhat = un32 - q1 * vn1;
+        while (q1 >= b || unsignedLongGreater(q1 * vn0, (rhat << 32) | un1)) {
+            q1--;
+            rhat += vn1;
+            if (rhat >= b)
+                break;
+        }
+
+        long un21 = (un32 << 32) + un1 - q1 * v;
+        long q0 = divideUnsignedByWord(un21, vn1);
+        rhat = un21 - q0 * vn1;
+        while (q0 >= b || unsignedLongGreater(q0 * vn0, (rhat << 32) | un0)) {
+            q0--;
+            rhat += vn1;
+            if (rhat >= b)
+                break;
+        }
+        return (q1 << 32) | q0;
+    }
+
+    /**
+     * Returns the unsigned quotient of {@code n} divided by the positive
+     * divisor {@code d}, which is less than 2<sup>32</sup>.
+     */
+    private static long divideUnsignedByWord(long n, long d) {
+        if (n >= 0)
+            return n / d;
+        long q = ((n >>> 1) / d) << 1;
+        long r = n - q * d;
+        if (!unsignedLongGreater(d, r))
+            q++;
+        return q;
+    }
+
+    /**
+     * Compare two longs as if they were unsigned.
+     * Returns true iff one is bigger than two.
+     */
+    private static boolean unsignedLongGreater(long one, long two) {
+        return (one + Long.MIN_VALUE) > (two + Long.MIN_VALUE);
+    }
+
     /**
      * Returns a {@code BigDecimal} whose value is {@code (this /
      * divisor)}, and whose scale is as specified.  If rounding must
@@ -1433,19 +1631,10 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
         }
         boolean increment = false;
         if (!isRemainderZero) {
-            int cmpFracHalf;
+            int cmpFracHalf = 0;
             /* Round as appropriate */
-            if (roundingMode == ROUND_UNNECESSARY) {  // Rounding prohibited
-                throw new ArithmeticException("Rounding necessary");
-            } else if (roundingMode == ROUND_UP) {      // Away from zero
-                increment = true;
-            } else if (roundingMode == ROUND_DOWN) {    // Towards zero
-                increment = false;
-            } else if (roundingMode == ROUND_CEILING) { // Towards +infinity
-                increment = (qsign > 0);
-            } else if (roundingMode == ROUND_FLOOR) {   // Towards -infinity
-                increment = (qsign < 0);
-            } else {
+            if (roundingMode >= ROUND_HALF_UP &&
+                roundingMode <= ROUND_HALF_EVEN) {
                 if (isLongDivision || ldivisor != INFLATED) {
                   if (r <= HALF_LONG_MIN_VALUE || r > HALF_LONG_MAX_VALUE) {
                     cmpFracHalf = 1; // 2 * r can't fit into long
@@ -1455,17 +1644,10 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
                 } else {
                     cmpFracHalf = mr.compareHalf(mdivisor);
                 }
-                if (cmpFracHalf < 0)
-                    increment = false;     // We're closer to higher digit
-                else if (cmpFracHalf > 0)  // We're closer to lower digit
-                    increment = true;
-                else if (roundingMode == ROUND_HALF_UP)
-                    increment = true;
-                else if (roundingMode == ROUND_HALF_DOWN)
-                    increment = false;
-                else  // roundingMode == ROUND_HALF_EVEN, true iff quotient is odd
-                    increment = isLongDivision ? (q & 1L) != 0L : mq.isOdd();
             }
+            increment = needIncrement(roundingMode, qsign, cmpFracHalf,
+                                      isLongDivision ? (q & 1L) != 0L
+                                                     : mq.isOdd());
         }
         BigDecimal res;
         if (isLongDivision)
@@ -1480,6 +1662,40 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
         return res;
     }
     
+    /**
+     * Decides whether a quotient with a nonzero remainder has to be
+     * incremented (away from zero) under the given rounding mode.
+     * {@code cmpFracHalf} is the comparison of twice the remainder with
+     * the divisor and is only consulted for the {@code ROUND_HALF_*}
+     * modes; {@code oddQuot} tells whether the quotient is odd.
+     *
+     * @throws ArithmeticException if {@code roundingMode} is
+     *         {@code ROUND_UNNECESSARY}.
+     */
+    private static boolean needIncrement(int roundingMode, int qsign,
+                                         int cmpFracHalf, boolean oddQuot) {
+        if (roundingMode == ROUND_UNNECESSARY)      // Rounding prohibited
+            throw new ArithmeticException("Rounding necessary");
+        else if (roundingMode == ROUND_UP)          // Away from zero
+            return true;
+        else if (roundingMode == ROUND_DOWN)        // Towards zero
+            return false;
+        else if (roundingMode == ROUND_CEILING)     // Towards +infinity
+            return (qsign > 0);
+        else if (roundingMode == ROUND_FLOOR)       // Towards -infinity
+            return (qsign < 0);
+        else if (cmpFracHalf < 0)    // We're closer to higher digit
+            return false;
+        else if (cmpFracHalf > 0)    // We're closer to lower digit
+            return true;
+        else if (roundingMode == ROUND_HALF_UP)
+            return true;
+        else if (roundingMode == ROUND_HALF_DOWN)
+            return false;
+        else  // roundingMode == ROUND_HALF_EVEN, true iff quotient is odd
+            return oddQuot;
+    }
+
     /**
      * Returns a {@code BigDecimal} whose value is {@code (this /
      * divisor)}, and whose scale is as specified.  If rounding must
@@ -3642,7 +3858,26 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
      * to be closed to the preferred scale.
      */
     private BigDecimal stripZerosToMatchScale(long preferredScale) {
-        boolean compact = (intCompact != INFLATED);
+        if (intCompact != INFLATED) {
+            // Strip the zeros from the long value without inflating
+            long v = intCompact;
+            while ((v >= 10L || v <= -10L) && scale > preferredScale) {
+                if ((v & 1L) != 0L)
+                    break;              // odd number cannot end in 0
+                long q = v / 10L;
+                if (q * 10L != v)
+                    break;              // non-0 remainder
+                v = q;
+                scale = checkScale((long)scale-1);  // could Overflow
+                if (precision > 0)      // adjust precision if known
+                    precision--;
+            }
+            if (v != intCompact) {
+                intCompact = v;
+                intVal = null;
+            }
+            return this;
+        }
 	this.inflate();
         BigInteger qr[];                // quotient-remainder pair
         while ( intVal.compareMagnitude(BigInteger.TEN) >= 0 && 
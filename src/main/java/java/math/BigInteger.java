@@ -153,6 +153,72 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * This mask is used to obtain the value of an int as if it were unsigned.
      */
     final static long LONG_MASK = 0xffffffffL;
+
+    /**
+     * The threshold value for using Karatsuba multiplication.  If the number
+     * of ints in both mag arrays are greater than this number, then
+     * Karatsuba multiplication will be used.   This value is found
+     * experimentally to work well.
+     */
+    private static final int KARATSUBA_THRESHOLD = 80;
+
+    /**
+     * The threshold value for using 3-way Toom-Cook multiplication.
+     * If the number of ints in each mag array is greater than the
+     * Karatsuba threshold, and the number of ints in at least one of
+     * the mag arrays is greater than this threshold, then Toom-Cook
+     * multiplication will be used.
+     */
+    private static final int TOOM_COOK_THRESHOLD = 240;
+
+    /**
+     * The threshold value for using Karatsuba squaring.  If the number
+     * of ints in the number are larger than this value,
+     * Karatsuba squaring will be used.   This value is found
+     * experimentally to work well.
+     */
+    private static final int KARATSUBA_SQUARE_THRESHOLD = 128;
+
+    /**
+     * The threshold value for using Toom-Cook squaring.  If the number
+     * of ints in the number are larger than this value,
+     * Toom-Cook squaring will be used.   This value is found
+     * experimentally to work well.
+     */
+    private static final int TOOM_COOK_SQUARE_THRESHOLD = 216;
+
+    /**
+     * The threshold value above which {@code x.multiply(x)} is computed
+     * with the squaring algorithms instead of a general multiply.
+     */
+    private static final int MULTIPLY_SQUARE_THRESHOLD = 20;
+
+    /**
+     * The threshold value for using Schoenhage recursive base conversion.
+     * If the number of ints in the number are larger than this value, the
+     * Schoenhage algorithm will be used for {@code toString} and for
+     * parsing in the String constructors.  In practice, it appears that
+     * the Schoenhage routine is faster for any threshold down to 2, and is
+     * relatively flat for thresholds between 2-25, so this choice may be
+     * varied within this range for very small effect.
+     */
+    private static final int SCHOENHAGE_BASE_CONVERSION_THRESHOLD = 20;
+
+    /**
+     * The threshold value for using Burnikel-Ziegler division.  If the number
+     * of ints in the divisor are larger than this value, Burnikel-Ziegler
+     * division may be used.  This value is found experimentally to work well.
+     */
+    static final int BURNIKEL_ZIEGLER_THRESHOLD = 80;
+
+    /**
+     * The offset value for using Burnikel-Ziegler division.  If the number
+     * of ints in the divisor exceeds the Burnikel-Ziegler threshold, and the
+     * number of ints in the dividend is greater than the number of ints in the
+     * divisor plus this value, Burnikel-Ziegler division will be used.  This
+     * value is found experimentally to work well.
+     */
+    static final int BURNIKEL_ZIEGLER_OFFSET = 40;
     
     //Constructors
 
@@ -302,11 +368,36 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         numDigits = len - cursor;
 	signum = sign;
 
-        // Pre-allocate array of expected size. May be too large but can
-        // never be too small. Typically exact.
+        // Parse large numbers recursively so that the work is done by
+        // subquadratic multiplications rather than a quadratic loop.
+        if (numWordsFor(numDigits, radix) > SCHOENHAGE_BASE_CONVERSION_THRESHOLD)
+            mag = parseRecursive(val, cursor, len, radix).mag;
+        else
+            mag = parseMagnitude(val, cursor, len, radix);
+    }
+
+    /**
+     * Returns an upper bound on the number of ints needed to hold a
+     * magnitude of {@code numDigits} digits in the given radix.  May be too
+     * large but can never be too small.  Typically exact.
+     */
+    private static int numWordsFor(int numDigits, int radix) {
         int numBits = (int)(((numDigits * bitsPerDigit[radix]) >>> 10) + 1);
-        int numWords = (numBits + 31) >>> 5;
-        int[] magnitude = new int[numWords];
+        return (numBits + 31) >>> 5;
+    }
+
+    /**
+     * Parses the digits {@code val[start, end)} in the given radix into a
+     * magnitude array, one int's worth of digits at a time.  The range
+     * must be non-empty and contain only digits.
+     */
+    private static int[] parseMagnitude(String val, int start, int end,
+                                        int radix) {
+	int cursor = start;
+        int numDigits = end - start;
+
+        // Pre-allocate array of expected size.
+        int[] magnitude = new int[numWordsFor(numDigits, radix)];
 
 	// Process first (potentially short) digit group
 	int firstGroupLen = numDigits % digitsPerInt[radix];
@@ -320,7 +411,7 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
 	// Process remaining digit groups
         int superRadix = intRadix[radix];
         int groupVal = 0;
-	while (cursor < val.length()) {
+	while (cursor < end) {
 	    group = val.substring(cursor, cursor += digitsPerInt[radix]);
 	    groupVal = Integer.parseInt(group, radix);
 	    if (groupVal < 0)
@@ -328,7 +419,29 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
             destructiveMulAdd(magnitude, superRadix, groupVal);
 	}
         // Required for cases where the array was overallocated.
-        mag = trustedStripLeadingZeroInts(magnitude);
+        return trustedStripLeadingZeroInts(magnitude);
+    }
+
+    /**
+     * Parses the digits {@code val[start, end)} in the given radix using
+     * the recursive counterpart of the Schoenhage conversion in
+     * {@link #toString(BigInteger, StringBuilder, int, int)}: the low
+     * 2<sup>n</sup> digits and the remaining high digits are parsed
+     * separately and recombined as {@code high * radix^(2^n) + low}, with
+     * the power of the radix taken from the shared conversion cache.
+     */
+    private static BigInteger parseRecursive(String val, int start, int end,
+                                             int radix) {
+        int numDigits = end - start;
+        if (numWordsFor(numDigits, radix) <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD)
+            return new BigInteger(parseMagnitude(val, start, end, radix), 1);
+
+        // Largest n such that 2^n < numDigits; the low part is 2^n digits.
+        int n = 31 - Integer.numberOfLeadingZeros(numDigits - 1);
+        int split = end - (1 << n);
+        BigInteger high = parseRecursive(val, start, split, radix);
+        BigInteger low = parseRecursive(val, split, end, radix);
+        return high.multiply(getRadixConversionCache(radix, n)).add(low);
     }
 
     // Constructs a new BigInteger using a char array with radix=10
@@ -356,6 +469,18 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         
         numDigits = len - cursor;
         signum = sign;
+
+        // Large values (such as those parsed by BigDecimal) go through the
+        // recursive parser shared with the String constructor.
+        if (numWordsFor(numDigits, 10) > SCHOENHAGE_BASE_CONVERSION_THRESHOLD) {
+            for (int i = cursor; i < len; i++) {
+                if (Character.digit(val[i], 10) == -1)
+                    throw new NumberFormatException(new String(val));
+            }
+            mag = parseRecursive(new String(val, cursor, numDigits), 0,
+                                 numDigits, 10).mag;
+            return;
+        }
         
         // Pre-allocate array of expected size
         int numWords;
@@ -1140,9 +1265,21 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         if (val.signum == 0 || signum == 0)
 	    return ZERO;
 
-        int[] res = multiplyToLen(mag, mag.length, val.mag, val.mag.length, null);
-        res = trustedStripLeadingZeroInts(res);
-        return new BigInteger(res, signum == val.signum ? 1 : -1);
+        int xlen = mag.length;
+        int ylen = val.mag.length;
+
+        if (val == this && xlen > MULTIPLY_SQUARE_THRESHOLD)
+            return square();
+
+        if (xlen < KARATSUBA_THRESHOLD || ylen < KARATSUBA_THRESHOLD) {
+            int[] res = multiplyToLen(mag, xlen, val.mag, ylen, null);
+            res = trustedStripLeadingZeroInts(res);
+            return new BigInteger(res, signum == val.signum ? 1 : -1);
+        } else if (xlen < TOOM_COOK_THRESHOLD && ylen < TOOM_COOK_THRESHOLD) {
+            return multiplyKaratsuba(this, val);
+        } else {
+            return multiplyToomCook3(this, val);
+        }
     }
     
     /**
@@ -1220,16 +1357,356 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         return z;
     }
 
+    /**
+     * Multiplies two BigIntegers using the Karatsuba multiplication
+     * algorithm.  This is a recursive divide-and-conquer algorithm which is
+     * more efficient for large numbers than what is commonly called the
+     * "grade-school" algorithm used in multiplyToLen.  If the numbers to be
+     * multiplied have length n, the "grade-school" algorithm has an
+     * asymptotic complexity of O(n^2).  In contrast, the Karatsuba algorithm
+     * has complexity of O(n^(log2(3))), or O(n^1.585).  It achieves this
+     * increased performance by doing 3 multiplies instead of 4 when
+     * evaluating the product.  As it has some overhead, should be used when
+     * both numbers are larger than a certain threshold (found
+     * experimentally).
+     *
+     * See:  http://en.wikipedia.org/wiki/Karatsuba_algorithm
+     */
+    private static BigInteger multiplyKaratsuba(BigInteger x, BigInteger y) {
+        int xlen = x.mag.length;
+        int ylen = y.mag.length;
+
+        // The number of ints in each half of the number.
+        int half = (Math.max(xlen, ylen) + 1) / 2;
+
+        // xl and yl are the lower halves of x and y respectively,
+        // xh and yh are the upper halves.
+        BigInteger xl = x.getLower(half);
+        BigInteger xh = x.getUpper(half);
+        BigInteger yl = y.getLower(half);
+        BigInteger yh = y.getUpper(half);
+
+        BigInteger p1 = xh.multiply(yh);  // p1 = xh*yh
+        BigInteger p2 = xl.multiply(yl);  // p2 = xl*yl
+
+        // p3=(xh+xl)*(yh+yl)
+        BigInteger p3 = xh.add(xl).multiply(yh.add(yl));
+
+        // result = p1 * 2^(32*2*half) + (p3 - p1 - p2) * 2^(32*half) + p2
+        BigInteger result = p1.shiftLeft(32*half).add(p3.subtract(p1).subtract(p2))
+                              .shiftLeft(32*half).add(p2);
+
+        if (x.signum != y.signum)
+            return result.negate();
+        else
+            return result;
+    }
+
+    /**
+     * Multiplies two BigIntegers using a 3-way Toom-Cook multiplication
+     * algorithm.  This is a recursive divide-and-conquer algorithm which is
+     * more efficient for large numbers than what is commonly called the
+     * "grade-school" algorithm used in multiplyToLen.  If the numbers to be
+     * multiplied have length n, the "grade-school" algorithm has an
+     * asymptotic complexity of O(n^2).  In contrast, 3-way Toom-Cook has a
+     * complexity of about O(n^1.465).  It achieves this increased asymptotic
+     * performance by breaking each number into three parts and by doing 5
+     * multiplies instead of 9 when evaluating the product.  Due to overhead
+     * (additions, shifts, and one division) in the Toom-Cook algorithm, it
+     * should only be used when both numbers are larger than a certain
+     * threshold (found experimentally).  This threshold is generally larger
+     * than that for Karatsuba multiplication, so this algorithm is generally
+     * only used when numbers become significantly larger.
+     *
+     * The algorithm used is the "optimal" 3-way Toom-Cook algorithm outlined
+     * by Marco Bodrato.
+     *
+     *  See: http://bodrato.it/toom-cook/
+     *       http://bodrato.it/papers/#WAIFI2007
+     *
+     * "Towards Optimal Toom-Cook Multiplication for Univariate and
+     * Multivariate Polynomials in Characteristic 2 and 0." by Marco BODRATO;
+     * In C.Carlet and B.Sunar, Eds., "WAIFI'07 proceedings", p. 116-133,
+     * LNCS #4547. Springer, Madrid, Spain, June 21-22, 2007.
+     */
+    private static BigInteger multiplyToomCook3(BigInteger a, BigInteger b) {
+        int alen = a.mag.length;
+        int blen = b.mag.length;
+
+        int largest = Math.max(alen, blen);
+
+        // k is the size (in ints) of the lower-order slices.
+        int k = (largest + 2) / 3;   // Equal to ceil(largest/3)
+
+        // r is the size (in ints) of the highest-order slice.
+        int r = largest - 2*k;
+
+        // Obtain slices of the numbers. a2 and b2 are the most significant
+        // bits of the numbers a and b, and a0 and b0 the least significant.
+        BigInteger a0, a1, a2, b0, b1, b2;
+        a2 = a.getToomSlice(k, r, 0, largest);
+        a1 = a.getToomSlice(k, r, 1, largest);
+        a0 = a.getToomSlice(k, r, 2, largest);
+        b2 = b.getToomSlice(k, r, 0, largest);
+        b1 = b.getToomSlice(k, r, 1, largest);
+        b0 = b.getToomSlice(k, r, 2, largest);
+
+        BigInteger v0, v1, v2, vm1, vinf, t1, t2, tm1, da1, db1;
+
+        v0 = a0.multiply(b0);
+        da1 = a2.add(a0);
+        db1 = b2.add(b0);
+        vm1 = da1.subtract(a1).multiply(db1.subtract(b1));
+        da1 = da1.add(a1);
+        db1 = db1.add(b1);
+        v1 = da1.multiply(db1);
+        v2 = da1.add(a2).shiftLeft(1).subtract(a0).multiply(
+             db1.add(b2).shiftLeft(1).subtract(b0));
+        vinf = a2.multiply(b2);
+
+        // The algorithm requires two divisions by 2 and one by 3.
+        // All divisions are known to be exact, that is, they do not produce
+        // remainders, and all results are positive.  The divisions by 2 are
+        // implemented as right shifts which are relatively efficient, leaving
+        // only an exact division by 3, which is done by a specialized
+        // linear-time algorithm.
+        t2 = v2.subtract(vm1).exactDivideBy3();
+        tm1 = v1.subtract(vm1).shiftRight(1);
+        t1 = v1.subtract(v0);
+        t2 = t2.subtract(t1).shiftRight(1);
+        t1 = t1.subtract(tm1).subtract(vinf);
+        t2 = t2.subtract(vinf.shiftLeft(1));
+        tm1 = tm1.subtract(t2);
+
+        // Number of bits to shift left.
+        int ss = k*32;
+
+        BigInteger result = vinf.shiftLeft(ss).add(t2).shiftLeft(ss).add(t1)
+                                .shiftLeft(ss).add(tm1).shiftLeft(ss).add(v0);
+
+        if (a.signum != b.signum)
+            return result.negate();
+        else
+            return result;
+    }
+
+    /**
+     * Returns a slice of a BigInteger for use in Toom-Cook multiplication.
+     *
+     * @param lowerSize The size of the lower-order bit slices.
+     * @param upperSize The size of the higher-order bit slices.
+     * @param slice The index of which slice is requested, which must be a
+     * number from 0 to size-1.  Slice 0 is the highest-order bits, and slice
+     * size-1 are the lowest-order bits.  Slice 0 may be of different size
+     * than the other slices.
+     * @param fullsize The size of the larger integer array, used to align
+     * slices to the appropriate position when multiplying different-sized
+     * numbers.
+     */
+    private BigInteger getToomSlice(int lowerSize, int upperSize, int slice,
+                                    int fullsize) {
+        int start, end, sliceSize, len, offset;
+
+        len = mag.length;
+        offset = fullsize - len;
+
+        if (slice == 0) {
+            start = 0 - offset;
+            end = upperSize - 1 - offset;
+        } else {
+            start = upperSize + (slice-1)*lowerSize - offset;
+            end = start + lowerSize - 1;
+        }
+
+        if (start < 0)
+            start = 0;
+        if (end < 0)
+            return ZERO;
+
+        sliceSize = (end-start) + 1;
+
+        if (sliceSize <= 0)
+            return ZERO;
+
+        // While performing Toom-Cook, all slices are positive and
+        // the sign is adjusted when the final number is composed.
+        if (start == 0 && sliceSize >= len)
+            return this.abs();
+
+        int intSlice[] = new int[sliceSize];
+        System.arraycopy(mag, start, intSlice, 0, sliceSize);
+
+        return new BigInteger(trustedStripLeadingZeroInts(intSlice), 1);
+    }
+
+    /**
+     * Does an exact division (that is, the remainder is known to be zero)
+     * of the specified number by 3.  This is used in Toom-Cook
+     * multiplication.  This is an efficient algorithm that runs in linear
+     * time.  If the argument is not exactly divisible by 3, results are
+     * undefined.  Note that this is expected to be called with positive
+     * arguments only.
+     */
+    private BigInteger exactDivideBy3() {
+        int len = mag.length;
+        int[] result = new int[len];
+        long x, w, q, borrow;
+        borrow = 0L;
+        for (int i=len-1; i >= 0; i--) {
+            x = (mag[i] & LONG_MASK);
+            w = x - borrow;
+            if (borrow > x)       // Did we make the number go negative?
+                borrow = 1L;
+            else
+                borrow = 0L;
+
+            // 0xAAAAAAAB is the modular inverse of 3 (mod 2^32).  Thus,
+            // the effect of this is to divide by 3 (mod 2^32).
+            // This is much faster than division on most architectures.
+            q = (w * 0xAAAAAAABL) & LONG_MASK;
+            result[i] = (int) q;
+
+            // Now check the borrow. The second check can of course be
+            // eliminated if the first fails.
+            if (q >= 0x55555556L) {
+                borrow++;
+                if (q >= 0xAAAAAAABL)
+                    borrow++;
+            }
+        }
+        result = trustedStripLeadingZeroInts(result);
+        return new BigInteger(result, signum);
+    }
+
+    /**
+     * Returns a new BigInteger representing n lower ints of the number.
+     * This is used by Karatsuba multiplication and Karatsuba squaring.
+     */
+    private BigInteger getLower(int n) {
+        int len = mag.length;
+
+        if (len <= n)
+            return this.abs();
+
+        int lowerInts[] = new int[n];
+        System.arraycopy(mag, len-n, lowerInts, 0, n);
+
+        return new BigInteger(trustedStripLeadingZeroInts(lowerInts), 1);
+    }
+
+    /**
+     * Returns a new BigInteger representing mag.length-n upper
+     * ints of the number.  This is used by Karatsuba multiplication and
+     * Karatsuba squaring.
+     */
+    private BigInteger getUpper(int n) {
+        int len = mag.length;
+
+        if (len <= n)
+            return ZERO;
+
+        int upperLen = len - n;
+        int upperInts[] = new int[upperLen];
+        System.arraycopy(mag, 0, upperInts, 0, upperLen);
+
+        return new BigInteger(trustedStripLeadingZeroInts(upperInts), 1);
+    }
+
     /**
      * Returns a BigInteger whose value is {@code (this<sup>2</sup>)}.
+     * Small numbers are squared with the specialized quadratic algorithm
+     * in squareToLen, which does about half the work of a general multiply;
+     * larger numbers switch to Karatsuba or 3-way Toom-Cook squaring.
      *
      * @return {@code this<sup>2</sup>}
      */
     private BigInteger square() {
         if (signum == 0)
 	    return ZERO;
-        int[] z = squareToLen(mag, mag.length, null);
-        return new BigInteger(trustedStripLeadingZeroInts(z), 1);
+        int len = mag.length;
+
+        if (len < KARATSUBA_SQUARE_THRESHOLD) {
+            int[] z = squareToLen(mag, len, null);
+            return new BigInteger(trustedStripLeadingZeroInts(z), 1);
+        } else if (len < TOOM_COOK_SQUARE_THRESHOLD) {
+            return squareKaratsuba();
+        } else {
+            return squareToomCook3();
+        }
+    }
+
+    /**
+     * Squares a BigInteger using the Karatsuba squaring algorithm.  It should
+     * be used when both numbers are larger than a certain threshold (found
+     * experimentally).  It is a recursive divide-and-conquer algorithm that
+     * has better asymptotic performance than the algorithm used in
+     * squareToLen.
+     */
+    private BigInteger squareKaratsuba() {
+        int half = (mag.length + 1) / 2;
+
+        BigInteger xl = getLower(half);
+        BigInteger xh = getUpper(half);
+
+        BigInteger xhs = xh.square();  // xhs = xh^2
+        BigInteger xls = xl.square();  // xls = xl^2
+
+        // xh^2 << 64  +  (((xl+xh)^2 - (xh^2 + xl^2)) << 32) + xl^2
+        return xhs.shiftLeft(half*32).add(xl.add(xh).square().subtract(xhs.add(xls)))
+                  .shiftLeft(half*32).add(xls);
+    }
+
+    /**
+     * Squares a BigInteger using the 3-way Toom-Cook squaring algorithm.  It
+     * should be used when both numbers are larger than a certain threshold
+     * (found experimentally).  It is a recursive divide-and-conquer algorithm
+     * that has better asymptotic performance than the algorithm used in
+     * squareToLen or squareKaratsuba.
+     */
+    private BigInteger squareToomCook3() {
+        int len = mag.length;
+
+        // k is the size (in ints) of the lower-order slices.
+        int k = (len + 2) / 3;   // Equal to ceil(largest/3)
+
+        // r is the size (in ints) of the highest-order slice.
+        int r = len - 2*k;
+
+        // Obtain slices of the numbers. a2 is the most significant
+        // bits of the number, and a0 the least significant.
+        BigInteger a0, a1, a2;
+        a2 = getToomSlice(k, r, 0, len);
+        a1 = getToomSlice(k, r, 1, len);
+        a0 = getToomSlice(k, r, 2, len);
+        BigInteger v0, v1, v2, vm1, vinf, t1, t2, tm1, da1;
+
+        v0 = a0.square();
+        da1 = a2.add(a0);
+        vm1 = da1.subtract(a1).square();
+        da1 = da1.add(a1);
+        v1 = da1.square();
+        vinf = a2.square();
+        v2 = da1.add(a2).shiftLeft(1).subtract(a0).square();
+
+        // The algorithm requires two divisions by 2 and one by 3.
+        // All divisions are known to be exact, that is, they do not produce
+        // remainders, and all results are positive.  The divisions by 2 are
+        // implemented as right shifts which are relatively efficient, leaving
+        // only a division by 3.
+        // The division by 3 is done by an optimized algorithm for this case.
+        t2 = v2.subtract(vm1).exactDivideBy3();
+        tm1 = v1.subtract(vm1).shiftRight(1);
+        t1 = v1.subtract(v0);
+        t2 = t2.subtract(t1).shiftRight(1);
+        t1 = t1.subtract(tm1).subtract(vinf);
+        t2 = t2.subtract(vinf.shiftLeft(1));
+        tm1 = tm1.subtract(t2);
+
+        // Number of bits to shift left.
+        int ss = k*32;
+
+        return vinf.shiftLeft(ss).add(t2).shiftLeft(ss).add(t1).shiftLeft(ss)
+                   .add(tm1).shiftLeft(ss).add(v0);
     }
 
     /**
@@ -1369,23 +1846,20 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
 	if (signum==0)
 	    return (exponent==0 ? ONE : this);
 
-	// Perform exponentiation using repeated squaring trick
+	// Perform exponentiation using repeated squaring trick.  Going
+	// through multiply and square lets large intermediate values use
+	// the Karatsuba and Toom-Cook algorithms.
         int newSign = (signum<0 && (exponent&1)==1 ? -1 : 1);
-	int[] baseToPow2 = this.mag;
-        int[] result = {1};
+	BigInteger baseToPow2 = this.abs();
+        BigInteger result = ONE;
 
 	while (exponent != 0) {
-	    if ((exponent & 1)==1) {
-		result = multiplyToLen(result, result.length, 
-                                       baseToPow2, baseToPow2.length, null);
-		result = trustedStripLeadingZeroInts(result);
-	    }
-	    if ((exponent >>>= 1) != 0) {
-                baseToPow2 = squareToLen(baseToPow2, baseToPow2.length, null);
-		baseToPow2 = trustedStripLeadingZeroInts(baseToPow2);
-	    }
+	    if ((exponent & 1)==1)
+		result = result.multiply(baseToPow2);
+	    if ((exponent >>>= 1) != 0)
+                baseToPow2 = baseToPow2.square();
 	}
-	return new BigInteger(result, newSign);
+	return (newSign < 0 ? result.negate() : result);
     }
 
     /**
@@ -2585,12 +3059,40 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
 	if (radix < Character.MIN_RADIX || radix > Character.MAX_RADIX)
 	    radix = 10;
 
+        // Compute upper bound on number of digits and allocate space
+        StringBuilder buf = new StringBuilder(
+            (int)((mag.length * 32L * 1024L) / bitsPerDigit[radix]) + 2);
+	if (signum < 0)
+	    buf.append('-');
+
+        // Use the quadratic digit-group algorithm for small numbers and
+        // the recursive Schoenhage algorithm for large ones.
+        if (mag.length <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD)
+            abs().smallToString(radix, buf, 0);
+        else
+            toString(abs(), buf, radix, 0);
+	return buf.toString();
+    }
+
+    /**
+     * Appends the String representation of this non-negative BigInteger in
+     * the given radix to {@code buf}, using the digit-group algorithm that
+     * peels off one long's worth of digits per division.  If
+     * {@code digits} is positive the result is padded with leading zeros
+     * to at least that many digits.
+     */
+    private void smallToString(int radix, StringBuilder buf, int digits) {
+        if (signum == 0) {
+            padWithZeros(buf, digits);
+            return;
+        }
+
 	// Compute upper bound on number of digit groups and allocate space
 	int maxNumDigitGroups = (4*mag.length + 6)/7;
 	String digitGroup[] = new String[maxNumDigitGroups];
-        
+
 	// Translate number to string, a digit group at a time
-	BigInteger tmp = this.abs();
+	BigInteger tmp = this;
 	int numGroups = 0;
 	while (tmp.signum != 0) {
             BigInteger d = longRadix[radix];
@@ -2606,10 +3108,12 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
             tmp = q2;
 	}
 
-	// Put sign (if any) and first digit group into result buffer
-	StringBuilder buf = new StringBuilder(numGroups*digitsPerLong[radix]+1);
-	if (signum<0)
-	    buf.append('-');
+        // Pad with leading zeros up to the requested number of digits
+        int numDigits = digitGroup[numGroups-1].length() +
+                        (numGroups-1) * digitsPerLong[radix];
+        padWithZeros(buf, digits - numDigits);
+
+	// Put first digit group into result buffer
 	buf.append(digitGroup[numGroups-1]);
 
 	// Append remaining digit groups padded with leading zeros
@@ -2620,16 +3124,125 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
 		buf.append(zeros[numLeadingZeros]);
 	    buf.append(digitGroup[i]);
 	}
-	return buf.toString();
+    }
+
+    /**
+     * Converts the specified non-negative BigInteger to a string and
+     * appends to {@code sb}.  This implements the recursive Schoenhage
+     * algorithm for base conversions: the number is split around a power
+     * of the radix of about half its size, and both halves are converted
+     * recursively.  Together with subquadratic multiplication and division
+     * this makes conversion of large numbers much faster than repeatedly
+     * dividing out one digit group.
+     *
+     * See Knuth, Donald,  _The Art of Computer Programming_, Vol. 2,
+     * Answers to Exercises (4.4) Question 14.
+     *
+     * @param u      The number to convert to a string.
+     * @param sb     The StringBuilder that will be appended to in place.
+     * @param radix  The base to convert to.
+     * @param digits The minimum number of digits to pad to, or zero or
+     *               less for no padding.
+     */
+    private static void toString(BigInteger u, StringBuilder sb, int radix,
+                                 int digits) {
+        // If we're smaller than a certain threshold, use the smallToString
+        // method, padding with leading zeroes when necessary.
+        if (u.mag.length <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD) {
+            u.smallToString(radix, sb, digits);
+            return;
+        }
+
+        // Calculate a value for n in the equation radix^(2^n) = u
+        // and subtract 1 from that value.  This is used to find the
+        // cache index that contains the best value to divide u.
+        int b = u.bitLength();
+        int n = (int) Math.round(Math.log(b * LOG_TWO / logCache[radix]) /
+                                 LOG_TWO - 1.0);
+        BigInteger v = getRadixConversionCache(radix, n);
+        BigInteger[] results = u.divideAndRemainder(v);
+
+        int expectedDigits = 1 << n;
+
+        // Now recursively build the two halves of each number.
+        toString(results[0], sb, radix, digits - expectedDigits);
+        toString(results[1], sb, radix, expectedDigits);
+    }
+
+    /**
+     * Returns the value radix^(2^exponent) from the cache.
+     * If this value doesn't already exist in the cache, it is added.
+     * <p>
+     * This could be changed to a more complicated caching method using
+     * {@code Future}.
+     */
+    private static BigInteger getRadixConversionCache(int radix, int exponent) {
+        BigInteger[] cacheLine = powerCache[radix]; // volatile read
+        if (exponent < cacheLine.length)
+            return cacheLine[exponent];
+
+        int oldLength = cacheLine.length;
+        cacheLine = java.util.Arrays.copyOf(cacheLine, exponent + 1);
+        for (int i = oldLength; i <= exponent; i++)
+            cacheLine[i] = cacheLine[i - 1].pow(2);
+
+        BigInteger[][] pc = powerCache; // volatile read again
+        if (exponent >= pc[radix].length) {
+            pc = pc.clone();
+            pc[radix] = cacheLine;
+            powerCache = pc; // volatile write, publish
+        }
+        return cacheLine[exponent];
+    }
+
+    /* Appends numZeros zeros to buf; does nothing if numZeros <= 0. */
+    private static void padWithZeros(StringBuilder buf, int numZeros) {
+        while (numZeros >= NUM_ZEROS) {
+            buf.append(zeros[NUM_ZEROS]);
+            numZeros -= NUM_ZEROS;
+        }
+        if (numZeros > 0)
+            buf.append(zeros[numZeros]);
     }
 
     /* zero[i] is a string of i consecutive zeros. */
-    private static String zeros[] = new String[64];
+    private static final int NUM_ZEROS = 63;
+    private static String zeros[] = new String[NUM_ZEROS+1];
     static {
-	zeros[63] =
+	zeros[NUM_ZEROS] =
 	    "000000000000000000000000000000000000000000000000000000000000000";
-	for (int i=0; i<63; i++)
-	    zeros[i] = zeros[63].substring(0, i);
+	for (int i=0; i<NUM_ZEROS; i++)
+	    zeros[i] = zeros[NUM_ZEROS].substring(0, i);
+    }
+
+    /**
+     * The cache of powers of each radix.  This allows us to not have to
+     * recalculate powers of radix^(2^n) more than once.  This speeds
+     * Schoenhage recursive base conversion significantly.  Each line is
+     * only ever extended by replacing the whole array of lines, so readers
+     * never observe a partially built line.
+     */
+    private static volatile BigInteger[][] powerCache;
+
+    /** The cache of logarithms of radices for base conversion. */
+    private static final double[] logCache;
+
+    /** The natural log of 2.  This is used in computing cache indices. */
+    private static final double LOG_TWO = Math.log(2.0);
+
+    static {
+        /*
+         * Initialize the cache of radix^(2^x) values used for base
+         * conversion with just the very first value.  Additional values
+         * will be created on demand.
+         */
+        powerCache = new BigInteger[Character.MAX_RADIX+1][];
+        logCache = new double[Character.MAX_RADIX+1];
+
+        for (int i=Character.MIN_RADIX; i <= Character.MAX_RADIX; i++) {
+            powerCache[i] = new BigInteger[] { BigInteger.valueOf(i) };
+            logCache[i] = Math.log(i);
+        }
     }
 
     /**
@@ -141,6 +141,14 @@ class MutableBigInteger {
         return new BigInteger(getMagnitudeArray(), sign);
     }
 
+    /**
+     * Converts this number to a nonnegative {@code BigInteger}.
+     */
+    BigInteger toBigInteger() {
+        normalize();
+        return toBigInteger(isZero() ? 0 : 1);
+    }
+
     /**
      * This is for internal use in converting from a MutableBigInteger 
      * object into a BigDecimal object given a specified sign & scale.
@@ -161,6 +169,59 @@ class MutableBigInteger {
         return new BigDecimal(null, sign == -1 ? -v : v, scale, 0);
     }
 
+    /**
+     * Returns the number of bits in the magnitude of this number, not
+     * counting leading zero bits.
+     */
+    long bitLength() {
+        if (intLen == 0)
+            return 0;
+        return intLen*32L - Integer.numberOfLeadingZeros(value[offset]);
+    }
+
+    /**
+     * Returns a {@code BigInteger} equal to the {@code n}
+     * low ints of this number.
+     */
+    private BigInteger getLower(int n) {
+        if (isZero())
+            return BigInteger.ZERO;
+        else if (intLen < n)
+            return toBigInteger(1);
+        else {
+            // strip zeros
+            int len = n;
+            while (len > 0 && value[offset+intLen-len] == 0)
+                len--;
+            int sign = len > 0 ? 1 : 0;
+            return new BigInteger(Arrays.copyOfRange(value, offset+intLen-len,
+                                                     offset+intLen), sign);
+        }
+    }
+
+    /**
+     * Discards all ints whose index is greater than {@code n}.
+     */
+    private void keepLower(int n) {
+        if (intLen >= n) {
+            offset += intLen - n;
+            intLen = n;
+            normalize();
+        }
+    }
+
+    /**
+     * Sets this number to an {@code n}-int number all of whose bits are ones.
+     * Used by Burnikel-Ziegler division.
+     */
+    private void ones(int n) {
+        if (n > value.length)
+            value = new int[n];
+        Arrays.fill(value, -1);
+        offset = 0;
+        intLen = n;
+    }
+
     /**
      * Clear out a MutableBigInteger for reuse.
      */
@@ -203,6 +264,35 @@ class MutableBigInteger {
         return 0;
     }
 
+    /**
+     * Compare the magnitude of this MutableBigInteger with the magnitude of
+     * <tt>b</tt> shifted left by <tt>ints</tt> ints, considering only the
+     * ints of this above the lowest <tt>ints</tt>.  Returns -1, 0 or 1 as
+     * <tt>this / 2<sup>32*ints</sup></tt> is numerically less than, equal
+     * to, or greater than <tt>b</tt>.  Both numbers must be normalized.
+     */
+    final int compareShifted(MutableBigInteger b, int ints) {
+        int blen = b.intLen;
+        int alen = intLen - ints;
+        if (alen < blen)
+            return -1;
+        if (alen > blen)
+           return 1;
+
+        // Add Integer.MIN_VALUE to make the comparison act as unsigned integer
+        // comparison.
+        int[] bval = b.value;
+        for (int i = offset, j = b.offset; i < alen + offset; i++, j++) {
+            int b1 = value[i] + 0x80000000;
+            int b2 = bval[j]  + 0x80000000;
+            if (b1 < b2)
+                return -1;
+            if (b1 > b2)
+                return 1;
+        }
+        return 0;
+    }
+
     /**
      * Compare this against half of a MutableBigInteger object (Needed for 
      * remainder tests).
@@ -492,6 +582,25 @@ class MutableBigInteger {
             primitiveRightShift(32 -nBits);
     }
 
+    /**
+     * Like {@link #rightShift(int)} but {@code n} can be greater than the
+     * length of the number.
+     */
+    void safeRightShift(int n) {
+        if (n/32 >= intLen)
+            reset();
+        else
+            rightShift(n);
+    }
+
+    /**
+     * Like {@link #leftShift(int)} but {@code n} can be zero.
+     */
+    void safeLeftShift(int n) {
+        if (n > 0)
+            leftShift(n);
+    }
+
     /**
      * A primitive used for division. This method adds in one multiple of the
      * divisor a back to the dividend result at a specified offset. It is used
@@ -621,6 +730,105 @@ class MutableBigInteger {
         offset = result.length - resultLen;
     }
 
+    /**
+     * Adds the value of {@code addend} shifted {@code n} ints to the left.
+     * Has the same effect as {@code addend.leftShift(32*ints); add(addend);}
+     * but doesn't change the value of {@code addend}.
+     */
+    void addShifted(MutableBigInteger addend, int n) {
+        if (addend.isZero())
+            return;
+
+        int x = intLen;
+        int y = addend.intLen + n;
+        int resultLen = (intLen > y ? intLen : y);
+        int[] result = (value.length < resultLen ? new int[resultLen] : value);
+
+        int rstart = result.length-1;
+        long sum;
+        long carry = 0;
+
+        // Add common parts of both numbers; the low n ints of the shifted
+        // addend are zero
+        while (x > 0 && y > 0) {
+            x--; y--;
+            int bval = (y < addend.intLen) ? addend.value[y+addend.offset] : 0;
+            sum = (value[x+offset] & LONG_MASK) + (bval & LONG_MASK) + carry;
+            result[rstart--] = (int)sum;
+            carry = sum >>> 32;
+        }
+
+        // Add remainder of the longer number
+        while (x > 0) {
+            x--;
+            if (carry == 0 && result == value && rstart == (x + offset))
+                return;
+            sum = (value[x+offset] & LONG_MASK) + carry;
+            result[rstart--] = (int)sum;
+            carry = sum >>> 32;
+        }
+        while (y > 0) {
+            y--;
+            int bval = (y < addend.intLen) ? addend.value[y+addend.offset] : 0;
+            sum = (bval & LONG_MASK) + carry;
+            result[rstart--] = (int)sum;
+            carry = sum >>> 32;
+        }
+
+        if (carry > 0) { // Result must grow in length
+            resultLen++;
+            if (result.length < resultLen) {
+                int temp[] = new int[resultLen];
+                // Result one word longer from carry-out; copy low-order
+                // bits into new result.
+                System.arraycopy(result, 0, temp, 1, result.length);
+                temp[0] = 1;
+                result = temp;
+            } else {
+                result[rstart--] = 1;
+            }
+        }
+
+        value = result;
+        intLen = resultLen;
+        offset = result.length - resultLen;
+    }
+
+    /**
+     * Like {@link #addShifted(MutableBigInteger, int)} but {@code this.intLen}
+     * must not be greater than {@code n}. In other words, concatenates
+     * {@code this} and {@code addend}.
+     */
+    void addDisjoint(MutableBigInteger addend, int n) {
+        if (addend.isZero())
+            return;
+
+        int x = intLen;
+        int resultLen = addend.intLen + n;
+        int[] result = new int[resultLen];
+
+        System.arraycopy(addend.value, addend.offset, result, 0, addend.intLen);
+        System.arraycopy(value, offset, result, resultLen - x, x);
+
+        value = result;
+        intLen = resultLen;
+        offset = 0;
+        normalize();
+    }
+
+    /**
+     * Adds the low {@code n} ints of {@code addend}.
+     */
+    void addLower(MutableBigInteger addend, int n) {
+        MutableBigInteger a = new MutableBigInteger(addend);
+        if (a.intLen > n) {
+            a.offset = a.intLen - n;
+            a.intLen = n;
+        }
+        a.normalize();
+        add(a);
+    }
+
     /**
      * Subtracts the smaller of this and b from the larger and places the
      * result into this MutableBigInteger.
@@ -853,6 +1061,25 @@ class MutableBigInteger {
             return rem;
     }
 
+    /**
+     * Calculates the quotient of this div b and places the quotient in the 
+     * provided MutableBigInteger objects and the remainder object is returned.
+     *
+     * Uses Algorithm D in Knuth section 4.3.1 for small divisors and the
+     * recursive Burnikel-Ziegler algorithm when the divisor has at least
+     * {@code BigInteger.BURNIKEL_ZIEGLER_THRESHOLD} ints and the dividend
+     * is at least {@code BigInteger.BURNIKEL_ZIEGLER_OFFSET} ints longer.
+     * The content of b is not changed.
+     *
+     */
+    MutableBigInteger divide(MutableBigInteger b, MutableBigInteger quotient) {
+        if (b.intLen < BigInteger.BURNIKEL_ZIEGLER_THRESHOLD ||
+            intLen - b.intLen < BigInteger.BURNIKEL_ZIEGLER_OFFSET)
+            return divideKnuth(b, quotient);
+        else
+            return divideAndRemainderBurnikelZiegler(b, quotient);
+    }
+
     /**
      * Calculates the quotient of this div b and places the quotient in the 
      * provided MutableBigInteger objects and the remainder object is returned.
@@ -864,13 +1091,14 @@ class MutableBigInteger {
      * changed.
      *
      */
-    MutableBigInteger divide(MutableBigInteger b, MutableBigInteger quotient) {
+    MutableBigInteger divideKnuth(MutableBigInteger b,
+                                  MutableBigInteger quotient) {
         if (b.intLen == 0)
             throw new ArithmeticException("BigInteger divide by zero");
         
         // Dividend is zero
         if (intLen == 0) {
-            quotient.intLen = quotient.offset;
+            quotient.intLen = quotient.offset = 0;
             return new MutableBigInteger();
         }        
 
@@ -901,6 +1129,216 @@ class MutableBigInteger {
         return divideMagnitude(div, quotient);
     }
 
+    /**
+     * Computes {@code this/b} and {@code this%b} using the
+     * <a href="http://cr.yp.to/bib/1998/burnikel.ps"> Burnikel-Ziegler algorithm</a>.
+     * This method implements algorithm 3 from pg. 9 of the Burnikel-Ziegler paper.
+     * The parameter beta was chosen to b 2<sup>32</sup> so almost all shifts are
+     * multiples of 32 bits.<br/>
+     * {@code this} and {@code b} must be nonnegative.
+     * @param b the divisor
+     * @param quotient output parameter for {@code this/b}
+     * @return the remainder
+     */
+    MutableBigInteger divideAndRemainderBurnikelZiegler(MutableBigInteger b,
+                                                        MutableBigInteger quotient) {
+        if (b.intLen == 0)
+            throw new ArithmeticException("BigInteger divide by zero");
+
+        int r = intLen;
+        int s = b.intLen;
+
+        // Clear the quotient
+        quotient.offset = quotient.intLen = 0;
+
+        if (r < s)
+            return new MutableBigInteger(this);
+
+        // Unlike Knuth division, we don't check for common powers of two
+        // here because BZ already runs faster if both numbers contain powers
+        // of two and cancelling them has no additional benefit.
+
+        // step 1: let m = min{2^k | (2^k)*BURNIKEL_ZIEGLER_THRESHOLD > s}
+        int m = 1 << (32 - Integer.numberOfLeadingZeros(
+                           s / BigInteger.BURNIKEL_ZIEGLER_THRESHOLD));
+
+        int j = (s+m-1) / m;      // step 2a: j = ceil(s/m)
+        int n = j * m;            // step 2b: block length in 32-bit units
+        long n32 = 32L * n;       // block length in bits
+        // step 3: sigma = max{T | (2^T)*B < beta^n}
+        int sigma = (int) Math.max(0, n32 - b.bitLength());
+        MutableBigInteger bShifted = new MutableBigInteger(b);
+        bShifted.safeLeftShift(sigma);   // step 4a: shift b so its length is a multiple of n
+        MutableBigInteger aShifted = new MutableBigInteger(this);
+        aShifted.safeLeftShift(sigma);   // step 4b: shift a by the same amount
+
+        // step 5: t is the number of blocks needed to accommodate a plus one
+        // additional bit
+        int t = (int) ((aShifted.bitLength()+n32) / n32);
+        if (t < 2)
+            t = 2;
+
+        // step 6: conceptually split a into blocks a[t-1], ..., a[0]
+        MutableBigInteger a1 = aShifted.getBlock(t-1, t, n);   // the most significant block of a
+
+        // step 7: z[t-2] = [a[t-1], a[t-2]]
+        MutableBigInteger z = aShifted.getBlock(t-2, t, n);    // the second to most significant block
+        z.addDisjoint(a1, n);   // z[t-2]
+
+        // do schoolbook division on blocks, dividing 2-block numbers by
+        // 1-block numbers
+        MutableBigInteger qi = new MutableBigInteger();
+        MutableBigInteger ri;
+        for (int i=t-2; i > 0; i--) {
+            // step 8a: compute (qi,ri) such that z=b*qi+ri
+            ri = z.divide2n1n(bShifted, qi);
+
+            // step 8b: z = [ri, a[i-1]]
+            z = aShifted.getBlock(i-1, t, n);   // a[i-1]
+            z.addDisjoint(ri, n);
+            quotient.addShifted(qi, i*n);   // update q (part of step 9)
+        }
+        // final iteration of step 8: do the loop one more time for i=0 but
+        // leave z unchanged
+        ri = z.divide2n1n(bShifted, qi);
+        quotient.add(qi);
+        quotient.normalize();
+
+        ri.safeRightShift(sigma);   // step 9: a and b were shifted, so shift back
+        return ri;
+    }
+
+    /**
+     * This method implements algorithm 1 from pg. 4 of the Burnikel-Ziegler
+     * paper.  It divides a 2n-digit number by a n-digit number.<br/>
+     * The parameter beta is 2<sup>32</sup> so all shifts are multiples of
+     * 32 bits.
+     * <br/>
+     * {@code this} must be a nonnegative number such that
+     * {@code this.bitLength() <= 2*b.bitLength()}
+     * @param b a positive number such that {@code b.bitLength()} is even
+     * @param quotient output parameter for {@code this/b}
+     * @return {@code this%b}
+     */
+    private MutableBigInteger divide2n1n(MutableBigInteger b,
+                                         MutableBigInteger quotient) {
+        int n = b.intLen;
+
+        // step 1: base case
+        if (n%2 != 0 || n < BigInteger.BURNIKEL_ZIEGLER_THRESHOLD)
+            return divideKnuth(b, quotient);
+
+        // step 2: view this as [a1,a2,a3,a4] where each ai is n/2 ints or less
+        MutableBigInteger aUpper = new MutableBigInteger(this);
+        aUpper.safeRightShift(32*(n/2));   // aUpper = [a1,a2,a3]
+        keepLower(n/2);   // this = a4
+
+        // step 3: q1=aUpper/b, r1=aUpper%b
+        MutableBigInteger q1 = new MutableBigInteger();
+        MutableBigInteger r1 = aUpper.divide3n2n(b, q1);
+
+        // step 4: quotient=[r1,this]/b, r2=[r1,this]%b
+        addDisjoint(r1, n/2);   // this = [r1,this]
+        MutableBigInteger r2 = divide3n2n(b, quotient);
+
+        // step 5: let quotient=[q1,quotient] and return r2
+        quotient.addDisjoint(q1, n/2);
+        return r2;
+    }
+
+    /**
+     * This method implements algorithm 2 from pg. 5 of the Burnikel-Ziegler
+     * paper.  It divides a 3n-digit number by a 2n-digit number.<br/>
+     * The parameter beta is 2<sup>32</sup> so all shifts are multiples of
+     * 32 bits.<br/>
+     * <br/>
+     * {@code this} must be a nonnegative number such that
+     * {@code 2*this.bitLength() <= 3*b.bitLength()}
+     * @param quotient output parameter for {@code this/b}
+     * @return {@code this%b}
+     */
+    private MutableBigInteger divide3n2n(MutableBigInteger b,
+                                         MutableBigInteger quotient) {
+        int n = b.intLen / 2;   // half the length of b in ints
+
+        // step 1: view this as [a1,a2,a3] where each ai is n ints or less;
+        // let a12=[a1,a2]
+        MutableBigInteger a12 = new MutableBigInteger(this);
+        a12.safeRightShift(32*n);
+
+        // step 2: view b as [b1,b2] where each bi is n ints or less
+        MutableBigInteger b1 = new MutableBigInteger(b);
+        b1.safeRightShift(n * 32);
+        BigInteger b2 = b.getLower(n);
+
+        MutableBigInteger r;
+        MutableBigInteger d;
+        if (a12.compareShifted(b1, n) < 0) {
+            // step 3a: if a1<b1, let quotient=a12/b1 and r=a12%b1
+            r = a12.divide2n1n(b1, quotient);
+
+            // step 4: d=quotient*b2
+            d = new MutableBigInteger(quotient.toBigInteger().multiply(b2));
+        } else {
+            // step 3b: if a1>=b1, let quotient=beta^n-1 and r=a12-b1*2^n+b1
+            quotient.ones(n);
+            a12.add(b1);
+            b1.leftShift(32*n);
+            a12.subtract(b1);
+            r = a12;
+
+            // step 4: d=quotient*b2=(b2 << 32*n) - b2
+            d = new MutableBigInteger(b2);
+            d.leftShift(32 * n);
+            d.subtract(new MutableBigInteger(b2));
+        }
+
+        // step 5: r = r*beta^n + a3 - d (paper says a4)
+        // However, don't subtract d until after the while loop so r doesn't
+        // become negative
+        r.leftShift(32 * n);
+        r.addLower(this, n);
+
+        // step 6: add b until r>=d
+        while (r.compare(d) < 0) {
+            r.add(b);
+            quotient.subtract(MutableBigInteger.ONE);
+        }
+        r.subtract(d);
+
+        return r;
+    }
+
+    /**
+     * Returns a {@code MutableBigInteger} containing {@code blockLength} ints
+     * from {@code this} number, starting at {@code index*blockLength}.<br/>
+     * Used by Burnikel-Ziegler division.
+     * @param index the block index
+     * @param numBlocks the total number of blocks in {@code this} number
+     * @param blockLength length of one block in units of 32 bits
+     * @return the block, in normal form
+     */
+    private MutableBigInteger getBlock(int index, int numBlocks,
+                                       int blockLength) {
+        int blockStart = index * blockLength;
+        if (blockStart >= intLen)
+            return new MutableBigInteger();
+
+        int blockEnd;
+        if (index == numBlocks-1)
+            blockEnd = intLen;
+        else
+            blockEnd = (index+1) * blockLength;
+        if (blockEnd > intLen)
+            blockEnd = intLen;
+
+        int[] newVal = Arrays.copyOfRange(value, offset+intLen-blockEnd,
+                                          offset+intLen-blockStart);
+        MutableBigInteger block = new MutableBigInteger(newVal);
+        block.normalize();
+        return block;
+    }
+
     /**
      * Internally used  to calculate the quotient of this div v and places the 
      * quotient in the provided MutableBigInteger object and the remainder is 
@@ -0,0 +1,216 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.nio.channels;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * An asynchronous file channel that performs each operation with the
+ * positional methods of a {@link FileChannel}, in a task submitted to its
+ * executor.
+ */
+
+class SimpleAsynchronousFileChannel
+    extends AsynchronousFileChannel
+{
+    // Pool shared by channels opened without an executor; created lazily
+    private static ExecutorService defaultExecutor;
+
+    // A RandomAccessFile is always open for reading
+    private final RandomAccessFile file;
+    private final FileChannel fc;
+    private final boolean writing;
+    private final ExecutorService executor;
+
+    private SimpleAsynchronousFileChannel(RandomAccessFile file,
+                                          boolean writing,
+                                          ExecutorService executor)
+    {
+        this.file = file;
+        this.fc = file.getChannel();
+        this.writing = writing;
+        this.executor = executor;
+    }
+
+    static AsynchronousFileChannel create(File file,
+                                          String mode,
+                                          ExecutorService executor)
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, mode);
+        if (executor == null)
+            executor = defaultExecutor();
+        return new SimpleAsynchronousFileChannel(raf, !mode.equals("r"),
+                                                 executor);
+    }
+
+    private static synchronized ExecutorService defaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "AsynchronousFileChannel");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        return defaultExecutor;
+    }
+
+    public boolean isOpen() {
+        return fc.isOpen();
+    }
+
+    public void close() throws IOException {
+        // Closing the file channel makes operations that have started fail
+        // with AsynchronousCloseException, and those that have not yet
+        // started fail with ClosedChannelException
+        file.close();
+    }
+
+    public long size() throws IOException {
+        return fc.size();
+    }
+
+    public AsynchronousFileChannel truncate(long size) throws IOException {
+        if (!writing)
+            throw new NonWritableChannelException();
+        fc.truncate(size);
+        return this;
+    }
+
+    public void force(boolean metaData) throws IOException {
+        fc.force(metaData);
+    }
+
+    // -- Operations --
+
+    private void checkLock(long position, long size, boolean shared) {
+        if (position < 0 || size < 0 || position + size < 0)
+            throw new IllegalArgumentException("Negative position or size");
+        if (!shared && !writing)
+            throw new NonWritableChannelException();
+    }
+
+    private Callable<FileLock> lockTask(final long position,
+                                        final long size,
+                                        final boolean shared)
+    {
+        checkLock(position, size, shared);
+        return new Callable<FileLock>() {
+            public FileLock call() throws IOException {
+                return fc.lock(position, size, shared);
+            }
+        };
+    }
+
+    public <A> void lock(long position,
+                         long size,
+                         boolean shared,
+                         A attachment,
+                         CompletionHandler<FileLock,? super A> handler)
+    {
+        execute(lockTask(position, size, shared), attachment, handler);
+    }
+
+    public Future<FileLock> lock(long position, long size, boolean shared) {
+        return executor.submit(lockTask(position, size, shared));
+    }
+
+    public FileLock tryLock(long position, long size, boolean shared)
+        throws IOException
+    {
+        checkLock(position, size, shared);
+        return fc.tryLock(position, size, shared);
+    }
+
+    private Callable<Integer> readTask(final ByteBuffer dst,
+                                       final long position)
+    {
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("Read-only buffer");
+        return new Callable<Integer>() {
+            public Integer call() throws IOException {
+                return Integer.valueOf(fc.read(dst, position));
+            }
+        };
+    }
+
+    public <A> void read(ByteBuffer dst,
+                         long position,
+                         A attachment,
+                         CompletionHandler<Integer,? super A> handler)
+    {
+        execute(readTask(dst, position), attachment, handler);
+    }
+
+    public Future<Integer> read(ByteBuffer dst, long position) {
+        return executor.submit(readTask(dst, position));
+    }
+
+    private Callable<Integer> writeTask(final ByteBuffer src,
+                                        final long position)
+    {
+        if (!writing)
+            throw new NonWritableChannelException();
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        if (src == null)
+            throw new NullPointerException();
+        return new Callable<Integer>() {
+            public Integer call() throws IOException {
+                return Integer.valueOf(fc.write(src, position));
+            }
+        };
+    }
+
+    public <A> void write(ByteBuffer src,
+                          long position,
+                          A attachment,
+                          CompletionHandler<Integer,? super A> handler)
+    {
+        execute(writeTask(src, position), attachment, handler);
+    }
+
+    public Future<Integer> write(ByteBuffer src, long position) {
+        return executor.submit(writeTask(src, position));
+    }
+
+    // Runs the given task in the executor and passes its outcome to the
+    // completion handler, in the same pooled thread
+    private <V,A> void execute(final Callable<V> task,
+                               final A attachment,
+                               final CompletionHandler<V,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        executor.execute(new Runnable() {
+                public void run() {
+                    V result;
+                    try {
+                        result = task.call();
+                    } catch (Throwable x) {
+                        handler.failed(x, attachment);
+                        return;
+                    }
+                    handler.completed(result, attachment);
+                }
+            });
+    }
+}
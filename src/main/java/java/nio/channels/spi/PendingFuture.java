@@ -0,0 +1,117 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.nio.channels.spi;
+
+import java.io.IOException;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * The result of an operation on an asynchronous channel that was initiated
+ * without a completion handler.  The future is itself passed to the channel
+ * as the completion handler of the operation, and is completed by the thread
+ * that completes the operation.
+ */
+
+final class PendingFuture<V>
+    implements Future<V>, CompletionHandler<V,Object>
+{
+    private final SelectorAsynchronousChannelGroup.Port port;
+
+    // Guarded by this
+    private boolean done;
+    private boolean cancelled;
+    private V result;
+    private Throwable exc;
+
+    PendingFuture(SelectorAsynchronousChannelGroup.Port port) {
+        this.port = port;
+    }
+
+    public synchronized void completed(V result, Object attachment) {
+        if (done)
+            return;
+        this.result = result;
+        done = true;
+        notifyAll();
+    }
+
+    public synchronized void failed(Throwable exc, Object attachment) {
+        if (done)
+            return;
+        this.exc = exc;
+        done = true;
+        notifyAll();
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (done)
+                return false;
+        }
+        // Once the channel has given up the operation nothing else
+        // completes this future
+        if (!port.cancel(this))
+            return false;
+        synchronized (this) {
+            cancelled = true;
+            done = true;
+            notifyAll();
+        }
+        if (mayInterruptIfRunning) {
+            try {
+                port.close();
+            } catch (IOException x) { }
+        }
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public synchronized V get()
+        throws InterruptedException, ExecutionException
+    {
+        while (!done)
+            wait();
+        return outcome();
+    }
+
+    public synchronized V get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        long nanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + nanos;
+        while (!done) {
+            if (nanos <= 0)
+                throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+            nanos = deadline - System.nanoTime();
+        }
+        return outcome();
+    }
+
+    // Returns or throws the outcome of the completed operation
+    private V outcome() throws ExecutionException {
+        if (cancelled)
+            throw new CancellationException();
+        if (exc != null)
+            throw new ExecutionException(exc);
+        return result;
+    }
+}
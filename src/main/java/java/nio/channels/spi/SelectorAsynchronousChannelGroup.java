@@ -0,0 +1,389 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.nio.channels.spi;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannel;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * An asynchronous channel group whose channels are non-blocking selectable
+ * channels, polled for readiness by a single thread with a selector of the
+ * group's provider.  The operations of a channel are performed by the
+ * initiating thread when the channel is ready at once, and otherwise by the
+ * poller; completion handlers are invoked by the group's executor.
+ */
+
+class SelectorAsynchronousChannelGroup
+    extends AsynchronousChannelGroup
+    implements Runnable
+{
+
+    /**
+     * An asynchronous channel of this group, seen from the poller.  The
+     * methods other than <tt>close</tt> are invoked only by the poller.
+     */
+    interface Port extends AsynchronousChannel {
+
+        /** Returns the selectable channel that the port performs I/O upon. */
+        SelectableChannel channel();
+
+        /** Returns the interest set implied by the pending operations. */
+        int interestOps();
+
+        /** Completes the pending operations for which the channel is ready. */
+        void onReady(int readyOps);
+
+        /** Fails the pending operation with the given timeout, if any. */
+        void onTimeout(Timeout timeout);
+
+        /**
+         * Removes the pending operation that completes the given future,
+         * returning <tt>false</tt> if there is no such operation.
+         */
+        boolean cancel(PendingFuture<?> future);
+    }
+
+    /**
+     * The deadline of a pending operation.  A port recognizes the timeouts of
+     * its pending operations by identity, and cancels the timeout of an
+     * operation that ends before its deadline so that the poller drops it.
+     */
+    static final class Timeout implements Comparable<Timeout> {
+        final Port port;
+        final long deadline;            // System.nanoTime() base
+        volatile boolean cancelled;
+
+        Timeout(Port port, long timeout, TimeUnit unit) {
+            this.port = port;
+            this.deadline = System.nanoTime() + unit.toNanos(timeout);
+        }
+
+        public int compareTo(Timeout other) {
+            long d = deadline - other.deadline;
+            return (d < 0) ? -1 : ((d == 0) ? 0 : 1);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Selector selector;
+
+    // Ports whose interest may have changed, and timeouts of newly initiated
+    // operations, for the poller to pick up when it is next woken
+    private final ConcurrentLinkedQueue<Port> updates
+        = new ConcurrentLinkedQueue<Port>();
+    private final ConcurrentLinkedQueue<Timeout> newTimeouts
+        = new ConcurrentLinkedQueue<Timeout>();
+
+    // Timeouts of operations that have ended before their deadlines, for
+    // the poller to remove
+    private final ConcurrentLinkedQueue<Timeout> cancelledTimeouts
+        = new ConcurrentLinkedQueue<Timeout>();
+
+    // Timeouts, earliest first; accessed only by the poller
+    private final PriorityQueue<Timeout> timeouts = new PriorityQueue<Timeout>();
+
+    // Lock for the set of open channels and the shutdown flag
+    private final Object stateLock = new Object();
+    private final Set<Port> ports = new HashSet<Port>();
+    private boolean shutdown;
+
+    private final Object shutdownNowLock = new Object();
+
+    // Counted down by the poller when it has shut down the executor
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    SelectorAsynchronousChannelGroup(SelectorProvider provider,
+                                     ExecutorService executor)
+        throws IOException
+    {
+        super(provider);
+        if (executor == null)
+            throw new NullPointerException("'executor' is null");
+        this.executor = executor;
+        this.selector = provider.openSelector();
+        Thread poller = new Thread(this, "AsynchronousChannelGroup poller");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    /**
+     * Creates the default group of the given provider, whose executor
+     * creates daemon threads as needed.
+     */
+    static SelectorAsynchronousChannelGroup createDefault(SelectorProvider provider)
+        throws IOException
+    {
+        ThreadFactory factory = new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "AsynchronousChannelGroup");
+                    t.setDaemon(true);
+                    return t;
+                }
+            };
+        return new SelectorAsynchronousChannelGroup(provider,
+            Executors.newCachedThreadPool(factory));
+    }
+
+    // -- Channels --
+
+    /**
+     * Adds an open channel to this group.
+     *
+     * @throws  ShutdownChannelGroupException
+     *          If the group is shutdown
+     */
+    void register(Port port) {
+        synchronized (stateLock) {
+            if (shutdown)
+                throw new ShutdownChannelGroupException();
+            ports.add(port);
+        }
+    }
+
+    /**
+     * Removes a closed channel from this group.  The poller is woken so that
+     * the selector drops the channel's key, and so that it terminates the
+     * group if this was the last channel of a group that is shutdown.
+     */
+    void unregister(Port port) {
+        synchronized (stateLock) {
+            ports.remove(port);
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Asks the poller to bring the interest set of the given channel up to
+     * date with its pending operations.
+     */
+    void update(Port port) {
+        updates.add(port);
+        selector.wakeup();
+    }
+
+    /**
+     * Arms a timeout for a pending operation of the given channel.
+     */
+    void schedule(Timeout timeout) {
+        newTimeouts.add(timeout);
+        selector.wakeup();
+    }
+
+    /**
+     * Disarms the timeout of an operation that has completed, failed or been
+     * cancelled.  The poller drops the timeout when it is next woken, so
+     * that neither the timeout nor its channel is retained until the
+     * deadline.  This method does not block, and may be invoked while
+     * holding a lock of the channel.
+     */
+    void cancel(Timeout timeout) {
+        timeout.cancelled = true;
+        cancelledTimeouts.add(timeout);
+    }
+
+    /**
+     * Passes the outcome of an operation to its completion handler.  Unless
+     * the handler is a {@link PendingFuture}, it is invoked by a thread of the
+     * executor, or by the current thread if the executor rejects the task.
+     * This method must not be invoked while holding a lock of the channel.
+     */
+    <V,A> void invoke(final CompletionHandler<V,? super A> handler,
+                      final A attachment,
+                      final V result,
+                      final Throwable exc)
+    {
+        if (handler instanceof PendingFuture) {
+            complete(handler, attachment, result, exc);
+            return;
+        }
+        Runnable task = new Runnable() {
+                public void run() {
+                    complete(handler, attachment, result, exc);
+                }
+            };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException x) {
+            // The group is terminating
+            try {
+                task.run();
+            } catch (Throwable t) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+        }
+    }
+
+    private static <V,A> void complete(CompletionHandler<V,? super A> handler,
+                                       A attachment, V result, Throwable exc)
+    {
+        if (exc == null)
+            handler.completed(result, attachment);
+        else
+            handler.failed(exc, attachment);
+    }
+
+    // -- Poller --
+
+    public void run() {
+        try {
+            for (;;) {
+                processUpdates();
+                long timeout = processTimeouts();
+                synchronized (stateLock) {
+                    if (shutdown && ports.isEmpty())
+                        break;
+                }
+                selector.select(timeout);
+                Iterator<SelectionKey> i = selector.selectedKeys().iterator();
+                while (i.hasNext()) {
+                    SelectionKey key = i.next();
+                    i.remove();
+                    Port port = (Port)key.attachment();
+                    int readyOps;
+                    try {
+                        readyOps = key.readyOps();
+                    } catch (CancelledKeyException x) {
+                        continue;
+                    }
+                    port.onReady(readyOps);
+                    updateKey(port);
+                }
+            }
+        } catch (IOException x) {
+            // The selector has failed; close the channels so that their
+            // pending operations fail
+            try {
+                shutdownNow();
+            } catch (IOException y) { }
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException x) { }
+            executor.shutdown();
+            terminated.countDown();
+        }
+    }
+
+    // Registers, or changes the interest set of, the channels of the ports
+    // that have been queued for update
+    private void processUpdates() {
+        Port port;
+        while ((port = updates.poll()) != null)
+            updateKey(port);
+    }
+
+    private void updateKey(Port port) {
+        SelectableChannel ch = port.channel();
+        SelectionKey key = ch.keyFor(selector);
+        int ops = port.interestOps();
+        try {
+            if (key != null)
+                key.interestOps(ops);
+            else if (ops != 0)
+                ch.register(selector, ops, port);
+        } catch (CancelledKeyException x) {
+            // The channel has been closed
+        } catch (ClosedChannelException x) {
+            // The channel has been closed
+        }
+    }
+
+    // Fails the operations whose timeouts have expired, returning the
+    // number of milliseconds until the next timeout, or zero if none.  A
+    // timeout may be cancelled before the poller has picked it up, in which
+    // case it is never added
+    private long processTimeouts() {
+        Timeout t;
+        while ((t = cancelledTimeouts.poll()) != null)
+            timeouts.remove(t);
+        while ((t = newTimeouts.poll()) != null) {
+            if (!t.cancelled)
+                timeouts.add(t);
+        }
+        long now = System.nanoTime();
+        while ((t = timeouts.peek()) != null) {
+            long remaining = t.deadline - now;
+            if (remaining > 0)
+                return Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remaining));
+            timeouts.poll();
+            if (t.cancelled)
+                continue;
+            t.port.onTimeout(t);
+            updateKey(t.port);
+        }
+        return 0L;
+    }
+
+    // -- Shutdown and termination --
+
+    public boolean isShutdown() {
+        synchronized (stateLock) {
+            return shutdown;
+        }
+    }
+
+    public boolean isTerminated() {
+        return (terminated.getCount() == 0) && executor.isTerminated();
+    }
+
+    public void shutdown() {
+        synchronized (stateLock) {
+            if (shutdown)
+                return;
+            shutdown = true;
+        }
+        selector.wakeup();
+    }
+
+    public void shutdownNow() throws IOException {
+        synchronized (shutdownNowLock) {
+            shutdown();
+            ArrayList<Port> open;
+            synchronized (stateLock) {
+                open = new ArrayList<Port>(ports);
+            }
+            for (Port port : open) {
+                try {
+                    port.close();
+                } catch (IOException x) { }
+            }
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!terminated.await(timeout, unit))
+            return false;
+        return executor.awaitTermination(deadline - System.nanoTime(),
+                                         TimeUnit.NANOSECONDS);
+    }
+}
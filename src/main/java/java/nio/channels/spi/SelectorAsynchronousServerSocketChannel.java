@@ -0,0 +1,225 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.nio.channels.spi;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.nio.channels.AcceptPendingException;
+import java.nio.channels.AlreadyBoundException;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NotYetBoundException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Future;
+
+
+/**
+ * An asynchronous server-socket channel of a {@link
+ * SelectorAsynchronousChannelGroup}, implemented with a non-blocking
+ * server-socket channel.
+ */
+
+class SelectorAsynchronousServerSocketChannel
+    extends AsynchronousServerSocketChannel
+    implements SelectorAsynchronousChannelGroup.Port
+{
+    private final SelectorAsynchronousChannelGroup group;
+    private final ServerSocketChannel ssc;
+
+    // Lock for the state and pending accept of this channel
+    private final Object stateLock = new Object();
+
+    private volatile boolean open = true;
+
+    // Pending accept
+    private CompletionHandler<AsynchronousSocketChannel,Object> acceptHandler;
+    private Object acceptAttachment;
+
+    SelectorAsynchronousServerSocketChannel(SelectorAsynchronousChannelGroup group)
+        throws IOException
+    {
+        super(group.provider());
+        this.group = group;
+        this.ssc = group.provider().openServerSocketChannel();
+        boolean registered = false;
+        try {
+            ssc.configureBlocking(false);
+            group.register(this);
+            registered = true;
+        } finally {
+            if (!registered)
+                ssc.close();
+        }
+    }
+
+    public SelectableChannel channel() {
+        return ssc;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void close() throws IOException {
+        CompletionHandler<AsynchronousSocketChannel,Object> handler;
+        Object attachment;
+        synchronized (stateLock) {
+            if (!open)
+                return;
+            open = false;
+            handler = acceptHandler;
+            attachment = acceptAttachment;
+            acceptHandler = null;
+            acceptAttachment = null;
+        }
+        try {
+            ssc.close();
+        } finally {
+            group.unregister(this);
+            if (handler != null)
+                group.invoke(handler, attachment, null,
+                             new AsynchronousCloseException());
+        }
+    }
+
+    public AsynchronousServerSocketChannel bind(SocketAddress local, int backlog)
+        throws IOException
+    {
+        synchronized (stateLock) {
+            if (!open)
+                throw new ClosedChannelException();
+            if (ssc.socket().isBound())
+                throw new AlreadyBoundException();
+            ssc.socket().bind(local, backlog);
+        }
+        return this;
+    }
+
+    public ServerSocket socket() {
+        return ssc.socket();
+    }
+
+    public SocketAddress getLocalAddress() throws IOException {
+        if (!open)
+            throw new ClosedChannelException();
+        return ssc.socket().getLocalSocketAddress();
+    }
+
+    // Accepts a pending connection, if any, as a channel of this group.
+    // The caller holds stateLock.
+    private AsynchronousSocketChannel acceptNow() throws IOException {
+        SocketChannel sc = ssc.accept();
+        if (sc == null)
+            return null;
+        try {
+            return new SelectorAsynchronousSocketChannel(group, sc);
+        } catch (ShutdownChannelGroupException x) {
+            // The constructor has closed the connection
+            throw (IOException)new IOException("Channel group is shutdown")
+                .initCause(x);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <A> void accept(A attachment,
+                           CompletionHandler<AsynchronousSocketChannel,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        AsynchronousSocketChannel result = null;
+        Throwable exc = null;
+        synchronized (stateLock) {
+            if (!open) {
+                exc = new ClosedChannelException();
+            } else {
+                if (!ssc.socket().isBound())
+                    throw new NotYetBoundException();
+                if (acceptHandler != null)
+                    throw new AcceptPendingException();
+                try {
+                    result = acceptNow();
+                    if (result == null) {
+                        acceptHandler = (CompletionHandler<AsynchronousSocketChannel,Object>)handler;
+                        acceptAttachment = attachment;
+                    }
+                } catch (IOException x) {
+                    exc = x;
+                } catch (SecurityException x) {
+                    exc = x;
+                }
+            }
+        }
+        if (result != null || exc != null)
+            group.invoke(handler, attachment, result, exc);
+        else
+            group.update(this);
+    }
+
+    public Future<AsynchronousSocketChannel> accept() {
+        PendingFuture<AsynchronousSocketChannel> result
+            = new PendingFuture<AsynchronousSocketChannel>(this);
+        accept(null, result);
+        return result;
+    }
+
+    // -- Poller callbacks --
+
+    public int interestOps() {
+        synchronized (stateLock) {
+            return (acceptHandler != null) ? SelectionKey.OP_ACCEPT : 0;
+        }
+    }
+
+    public void onReady(int readyOps) {
+        CompletionHandler<AsynchronousSocketChannel,Object> handler;
+        Object attachment;
+        AsynchronousSocketChannel result = null;
+        Throwable exc = null;
+        synchronized (stateLock) {
+            if (acceptHandler == null)
+                return;
+            try {
+                result = acceptNow();
+                if (result == null)
+                    return;
+            } catch (IOException x) {
+                exc = x;
+            } catch (SecurityException x) {
+                exc = x;
+            }
+            handler = acceptHandler;
+            attachment = acceptAttachment;
+            acceptHandler = null;
+            acceptAttachment = null;
+        }
+        group.invoke(handler, attachment, result, exc);
+    }
+
+    public void onTimeout(SelectorAsynchronousChannelGroup.Timeout timeout) {
+        // Accept operations have no timeout
+    }
+
+    public boolean cancel(PendingFuture<?> future) {
+        synchronized (stateLock) {
+            if (acceptHandler != future)
+                return false;
+            acceptHandler = null;
+            acceptAttachment = null;
+        }
+        group.update(this);
+        return true;
+    }
+}
@@ -0,0 +1,536 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.nio.channels.spi;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyBoundException;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.ReadPendingException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritePendingException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * An asynchronous socket channel of a {@link
+ * SelectorAsynchronousChannelGroup}, implemented with a non-blocking socket
+ * channel.
+ */
+
+class SelectorAsynchronousSocketChannel
+    extends AsynchronousSocketChannel
+    implements SelectorAsynchronousChannelGroup.Port
+{
+    private final SelectorAsynchronousChannelGroup group;
+    private final SocketChannel sc;
+
+    // Lock for the state and pending operations of this channel.  The
+    // operations themselves are performed while holding it, so that they
+    // cannot race with close; handlers are invoked after releasing it.
+    private final Object stateLock = new Object();
+
+    private volatile boolean open = true;
+
+    // Pending connect
+    private CompletionHandler<Void,Object> connectHandler;
+    private Object connectAttachment;
+
+    // Pending read
+    private boolean reading;
+    private boolean readKilled;
+    private ByteBuffer readBuffer;
+    private CompletionHandler<Integer,Object> readHandler;
+    private Object readAttachment;
+    private SelectorAsynchronousChannelGroup.Timeout readTimeout;
+
+    // Pending write
+    private boolean writing;
+    private boolean writeKilled;
+    private ByteBuffer writeBuffer;
+    private CompletionHandler<Integer,Object> writeHandler;
+    private Object writeAttachment;
+    private SelectorAsynchronousChannelGroup.Timeout writeTimeout;
+
+    SelectorAsynchronousSocketChannel(SelectorAsynchronousChannelGroup group)
+        throws IOException
+    {
+        this(group, group.provider().openSocketChannel());
+    }
+
+    /**
+     * Creates a channel for a socket channel, which is closed if the
+     * channel cannot be created.
+     */
+    SelectorAsynchronousSocketChannel(SelectorAsynchronousChannelGroup group,
+                                      SocketChannel sc)
+        throws IOException
+    {
+        super(group.provider());
+        this.group = group;
+        this.sc = sc;
+        boolean registered = false;
+        try {
+            sc.configureBlocking(false);
+            group.register(this);
+            registered = true;
+        } finally {
+            if (!registered)
+                sc.close();
+        }
+    }
+
+    public SelectableChannel channel() {
+        return sc;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void close() throws IOException {
+        CompletionHandler<Void,Object> ch;
+        Object ca;
+        CompletionHandler<Integer,Object> rh, wh;
+        Object ra, wa;
+        synchronized (stateLock) {
+            if (!open)
+                return;
+            open = false;
+            ch = connectHandler;
+            ca = connectAttachment;
+            rh = readHandler;
+            ra = readAttachment;
+            wh = writeHandler;
+            wa = writeAttachment;
+            connectHandler = null;
+            connectAttachment = null;
+            endRead();
+            endWrite();
+        }
+        try {
+            sc.close();
+        } finally {
+            group.unregister(this);
+            if (ch != null)
+                group.invoke(ch, ca, null, new AsynchronousCloseException());
+            if (rh != null)
+                group.invoke(rh, ra, null, new AsynchronousCloseException());
+            if (wh != null)
+                group.invoke(wh, wa, null, new AsynchronousCloseException());
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException x) { }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+
+    // -- Socket --
+
+    public AsynchronousSocketChannel bind(SocketAddress local)
+        throws IOException
+    {
+        synchronized (stateLock) {
+            ensureOpen();
+            if (sc.socket().isBound())
+                throw new AlreadyBoundException();
+            sc.socket().bind(local);
+        }
+        return this;
+    }
+
+    public Socket socket() {
+        return sc.socket();
+    }
+
+    public AsynchronousSocketChannel shutdownInput() throws IOException {
+        synchronized (stateLock) {
+            ensureOpen();
+            if (!sc.isConnected())
+                throw new NotYetConnectedException();
+            if (!sc.socket().isInputShutdown())
+                sc.socket().shutdownInput();
+        }
+        return this;
+    }
+
+    public AsynchronousSocketChannel shutdownOutput() throws IOException {
+        synchronized (stateLock) {
+            ensureOpen();
+            if (!sc.isConnected())
+                throw new NotYetConnectedException();
+            if (!sc.socket().isOutputShutdown())
+                sc.socket().shutdownOutput();
+        }
+        return this;
+    }
+
+    public SocketAddress getLocalAddress() throws IOException {
+        ensureOpen();
+        return sc.socket().getLocalSocketAddress();
+    }
+
+    public SocketAddress getRemoteAddress() throws IOException {
+        ensureOpen();
+        return sc.socket().getRemoteSocketAddress();
+    }
+
+    // -- Connect --
+
+    @SuppressWarnings("unchecked")
+    public <A> void connect(SocketAddress remote,
+                            A attachment,
+                            CompletionHandler<Void,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        boolean connected = false;
+        Throwable exc = null;
+        synchronized (stateLock) {
+            if (!open) {
+                exc = new ClosedChannelException();
+            } else {
+                if (sc.isConnected())
+                    throw new AlreadyConnectedException();
+                if (connectHandler != null)
+                    throw new ConnectionPendingException();
+                try {
+                    connected = sc.connect(remote);
+                    if (!connected) {
+                        connectHandler = (CompletionHandler<Void,Object>)handler;
+                        connectAttachment = attachment;
+                    }
+                } catch (IOException x) {
+                    exc = x;
+                }
+            }
+        }
+        if (exc != null) {
+            if (!(exc instanceof ClosedChannelException))
+                closeQuietly();
+            group.invoke(handler, attachment, null, exc);
+        } else if (connected) {
+            group.invoke(handler, attachment, null, null);
+        } else {
+            group.update(this);
+        }
+    }
+
+    public Future<Void> connect(SocketAddress remote) {
+        PendingFuture<Void> result = new PendingFuture<Void>(this);
+        connect(remote, null, result);
+        return result;
+    }
+
+    private void finishConnect() {
+        CompletionHandler<Void,Object> handler;
+        Object attachment;
+        Throwable exc = null;
+        synchronized (stateLock) {
+            if (connectHandler == null)
+                return;
+            try {
+                if (!sc.finishConnect())
+                    return;
+            } catch (IOException x) {
+                exc = x;
+            }
+            handler = connectHandler;
+            attachment = connectAttachment;
+            connectHandler = null;
+            connectAttachment = null;
+        }
+        if (exc != null)
+            closeQuietly();
+        group.invoke(handler, attachment, null, exc);
+    }
+
+    // -- Read --
+
+    // Clears the pending read, disarming its timeout; the caller holds
+    // stateLock
+    private void endRead() {
+        if (readTimeout != null)
+            group.cancel(readTimeout);
+        reading = false;
+        readBuffer = null;
+        readHandler = null;
+        readAttachment = null;
+        readTimeout = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <A> void read(ByteBuffer dst,
+                         long timeout,
+                         TimeUnit unit,
+                         A attachment,
+                         CompletionHandler<Integer,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("Read-only buffer");
+        Integer result = null;
+        Throwable exc = null;
+        SelectorAsynchronousChannelGroup.Timeout t = null;
+        synchronized (stateLock) {
+            if (!open) {
+                exc = new ClosedChannelException();
+            } else {
+                if (!sc.isConnected())
+                    throw new NotYetConnectedException();
+                if (reading)
+                    throw new ReadPendingException();
+                if (readKilled)
+                    throw new IllegalStateException("Reading not allowed due to timeout or cancellation");
+                try {
+                    int n = dst.hasRemaining() ? sc.read(dst) : 0;
+                    if (n != 0 || !dst.hasRemaining()) {
+                        result = Integer.valueOf(n);
+                    } else {
+                        reading = true;
+                        readBuffer = dst;
+                        readHandler = (CompletionHandler<Integer,Object>)handler;
+                        readAttachment = attachment;
+                        if (timeout > 0L) {
+                            t = new SelectorAsynchronousChannelGroup.Timeout(this, timeout, unit);
+                            readTimeout = t;
+                        }
+                    }
+                } catch (IOException x) {
+                    exc = x;
+                }
+            }
+        }
+        if (result != null || exc != null) {
+            group.invoke(handler, attachment, result, exc);
+        } else {
+            if (t != null)
+                group.schedule(t);
+            group.update(this);
+        }
+    }
+
+    public Future<Integer> read(ByteBuffer dst) {
+        PendingFuture<Integer> result = new PendingFuture<Integer>(this);
+        read(dst, 0L, TimeUnit.MILLISECONDS, null, result);
+        return result;
+    }
+
+    private void finishRead() {
+        CompletionHandler<Integer,Object> handler;
+        Object attachment;
+        Integer result = null;
+        Throwable exc = null;
+        synchronized (stateLock) {
+            if (!reading)
+                return;
+            try {
+                int n = sc.read(readBuffer);
+                if (n == 0)
+                    return;
+                result = Integer.valueOf(n);
+            } catch (IOException x) {
+                exc = x;
+            }
+            handler = readHandler;
+            attachment = readAttachment;
+            endRead();
+        }
+        group.invoke(handler, attachment, result, exc);
+    }
+
+    // -- Write --
+
+    // Clears the pending write, disarming its timeout; the caller holds
+    // stateLock
+    private void endWrite() {
+        if (writeTimeout != null)
+            group.cancel(writeTimeout);
+        writing = false;
+        writeBuffer = null;
+        writeHandler = null;
+        writeAttachment = null;
+        writeTimeout = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <A> void write(ByteBuffer src,
+                          long timeout,
+                          TimeUnit unit,
+                          A attachment,
+                          CompletionHandler<Integer,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        if (src == null)
+            throw new NullPointerException();
+        Integer result = null;
+        Throwable exc = null;
+        SelectorAsynchronousChannelGroup.Timeout t = null;
+        synchronized (stateLock) {
+            if (!open) {
+                exc = new ClosedChannelException();
+            } else {
+                if (!sc.isConnected())
+                    throw new NotYetConnectedException();
+                if (writing)
+                    throw new WritePendingException();
+                if (writeKilled)
+                    throw new IllegalStateException("Writing not allowed due to timeout or cancellation");
+                try {
+                    int n = src.hasRemaining() ? sc.write(src) : 0;
+                    if (n != 0 || !src.hasRemaining()) {
+                        result = Integer.valueOf(n);
+                    } else {
+                        writing = true;
+                        writeBuffer = src;
+                        writeHandler = (CompletionHandler<Integer,Object>)handler;
+                        writeAttachment = attachment;
+                        if (timeout > 0L) {
+                            t = new SelectorAsynchronousChannelGroup.Timeout(this, timeout, unit);
+                            writeTimeout = t;
+                        }
+                    }
+                } catch (IOException x) {
+                    exc = x;
+                }
+            }
+        }
+        if (result != null || exc != null) {
+            group.invoke(handler, attachment, result, exc);
+        } else {
+            if (t != null)
+                group.schedule(t);
+            group.update(this);
+        }
+    }
+
+    public Future<Integer> write(ByteBuffer src) {
+        PendingFuture<Integer> result = new PendingFuture<Integer>(this);
+        write(src, 0L, TimeUnit.MILLISECONDS, null, result);
+        return result;
+    }
+
+    private void finishWrite() {
+        CompletionHandler<Integer,Object> handler;
+        Object attachment;
+        Integer result = null;
+        Throwable exc = null;
+        synchronized (stateLock) {
+            if (!writing)
+                return;
+            try {
+                int n = sc.write(writeBuffer);
+                if (n == 0)
+                    return;
+                result = Integer.valueOf(n);
+            } catch (IOException x) {
+                exc = x;
+            }
+            handler = writeHandler;
+            attachment = writeAttachment;
+            endWrite();
+        }
+        group.invoke(handler, attachment, result, exc);
+    }
+
+    // -- Poller callbacks --
+
+    public int interestOps() {
+        synchronized (stateLock) {
+            int ops = 0;
+            if (connectHandler != null)
+                ops |= SelectionKey.OP_CONNECT;
+            if (reading)
+                ops |= SelectionKey.OP_READ;
+            if (writing)
+                ops |= SelectionKey.OP_WRITE;
+            return ops;
+        }
+    }
+
+    public void onReady(int readyOps) {
+        if ((readyOps & SelectionKey.OP_CONNECT) != 0)
+            finishConnect();
+        if ((readyOps & SelectionKey.OP_READ) != 0)
+            finishRead();
+        if ((readyOps & SelectionKey.OP_WRITE) != 0)
+            finishWrite();
+    }
+
+    public void onTimeout(SelectorAsynchronousChannelGroup.Timeout timeout) {
+        CompletionHandler<Integer,Object> handler;
+        Object attachment;
+        synchronized (stateLock) {
+            if (timeout == readTimeout) {
+                // Bytes may have been read into the buffer already
+                readKilled = true;
+                readTimeout = null;
+                handler = readHandler;
+                attachment = readAttachment;
+                endRead();
+            } else if (timeout == writeTimeout) {
+                writeKilled = true;
+                writeTimeout = null;
+                handler = writeHandler;
+                attachment = writeAttachment;
+                endWrite();
+            } else {
+                return;
+            }
+        }
+        group.invoke(handler, attachment, null,
+                     new InterruptedByTimeoutException());
+    }
+
+    public boolean cancel(PendingFuture<?> future) {
+        boolean connect = false;
+        synchronized (stateLock) {
+            if (connectHandler == future) {
+                connectHandler = null;
+                connectAttachment = null;
+                connect = true;
+            } else if (readHandler == future) {
+                readKilled = true;
+                endRead();
+            } else if (writeHandler == future) {
+                writeKilled = true;
+                endWrite();
+            } else {
+                return false;
+            }
+        }
+        if (connect) {
+            // A connection that is being established cannot be abandoned
+            closeQuietly();
+        } else {
+            group.update(this);
+        }
+        return true;
+    }
+}
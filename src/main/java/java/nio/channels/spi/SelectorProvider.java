@@ -15,6 +15,9 @@ import java.nio.channels.*;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import sun.misc.Service;
 import sun.misc.ServiceConfigurationError;
 import sun.security.action.GetPropertyAction;
@@ -41,6 +44,16 @@ import sun.security.action.GetPropertyAction;
  * by instantiating that provider and then directly invoking the <tt>open</tt>
  * methods defined in this class.
  *
+ * <p> A selector provider also creates the {@link
+ * java.nio.channels.AsynchronousChannelGroup asynchronous channel groups} and
+ * the asynchronous socket channels of the {@link
+ * java.nio.channels.AsynchronousSocketChannel#open AsynchronousSocketChannel}
+ * and {@link java.nio.channels.AsynchronousServerSocketChannel#open
+ * AsynchronousServerSocketChannel} classes.  The implementations of these
+ * methods defined here detect the readiness of channels with the selectors of
+ * this provider; a provider may override them with more direct
+ * implementations.
+ *
  * <p> All of the methods in this class are safe for use by multiple concurrent
  * threads.  </p>
  *
@@ -56,6 +69,11 @@ public abstract class SelectorProvider {
     private static final Object lock = new Object();
     private static SelectorProvider provider = null;
 
+    // The group of the asynchronous channels opened without a group,
+    // created lazily
+    private final Object defaultGroupLock = new Object();
+    private AsynchronousChannelGroup defaultGroup = null;
+
     /**
      * Initializes a new instance of this class.  </p>
      *
@@ -263,4 +281,123 @@ public abstract class SelectorProvider {
 	return null;
    }
 
+    /**
+     * Constructs a new asynchronous channel group with a fixed thread pool.
+     *
+     * @param   nThreads
+     *          The number of threads in the pool
+     * @param   threadFactory
+     *          The factory to use when creating new threads
+     *
+     * @return  A new asynchronous channel group
+     *
+     * @throws  IllegalArgumentException
+     *          If <tt>nThreads &lt;= 0</tt>
+     * @throws  IOException
+     *          If an I/O error occurs
+     *
+     * @see AsynchronousChannelGroup#withFixedThreadPool
+     * @since 1.7
+     */
+    public AsynchronousChannelGroup
+	openAsynchronousChannelGroup(int nThreads, ThreadFactory threadFactory)
+	throws IOException
+    {
+	if (nThreads <= 0)
+	    throw new IllegalArgumentException("'nThreads' must be > 0");
+	return new SelectorAsynchronousChannelGroup(this,
+	    Executors.newFixedThreadPool(nThreads, threadFactory));
+    }
+
+    /**
+     * Constructs a new asynchronous channel group with the given thread pool.
+     *
+     * @param   executor
+     *          The thread pool
+     *
+     * @return  A new asynchronous channel group
+     *
+     * @throws  IOException
+     *          If an I/O error occurs
+     *
+     * @see AsynchronousChannelGroup#withThreadPool
+     * @since 1.7
+     */
+    public AsynchronousChannelGroup
+	openAsynchronousChannelGroup(ExecutorService executor)
+	throws IOException
+    {
+	return new SelectorAsynchronousChannelGroup(this, executor);
+    }
+
+    /**
+     * Opens an asynchronous server-socket channel.
+     *
+     * @param   group
+     *          The group to which the channel is bound, or <tt>null</tt> to
+     *          bind to the default group
+     *
+     * @return  The new channel
+     *
+     * @throws  IllegalChannelGroupException
+     *          If the provider that created the group differs from this provider
+     * @throws  ShutdownChannelGroupException
+     *          The group is shutdown
+     * @throws  IOException
+     *          If an I/O error occurs
+     *
+     * @since 1.7
+     */
+    public AsynchronousServerSocketChannel
+	openAsynchronousServerSocketChannel(AsynchronousChannelGroup group)
+	throws IOException
+    {
+	return new SelectorAsynchronousServerSocketChannel(groupOf(group));
+    }
+
+    /**
+     * Opens an asynchronous socket channel.
+     *
+     * @param   group
+     *          The group to which the channel is bound, or <tt>null</tt> to
+     *          bind to the default group
+     *
+     * @return  The new channel
+     *
+     * @throws  IllegalChannelGroupException
+     *          If the provider that created the group differs from this provider
+     * @throws  ShutdownChannelGroupException
+     *          The group is shutdown
+     * @throws  IOException
+     *          If an I/O error occurs
+     *
+     * @since 1.7
+     */
+    public AsynchronousSocketChannel
+	openAsynchronousSocketChannel(AsynchronousChannelGroup group)
+	throws IOException
+    {
+	return new SelectorAsynchronousSocketChannel(groupOf(group));
+    }
+
+    // Returns the given group, or the default group if null, as a group
+    // whose channels this provider can open
+    private SelectorAsynchronousChannelGroup
+	groupOf(AsynchronousChannelGroup group)
+	throws IOException
+    {
+	if (group == null) {
+	    synchronized (defaultGroupLock) {
+		if (defaultGroup == null)
+		    defaultGroup =
+			SelectorAsynchronousChannelGroup.createDefault(this);
+		group = defaultGroup;
+	    }
+	}
+	if (group.provider() != this
+	    || !(group instanceof SelectorAsynchronousChannelGroup))
+	    throw new IllegalChannelGroupException();
+	return (SelectorAsynchronousChannelGroup)group;
+    }
+
 }
@@ -0,0 +1,696 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util;
+
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Helper utilities for the parallel sort methods in Arrays.parallelSort.
+ *
+ * <p>For each primitive type, plus Object, there is a Sorter subclass
+ * that knows how to sort a sub-range of the array sequentially, and how
+ * to merge two adjacent sorted sub-ranges.  The algorithm shared by all
+ * of them is a parallel merge sort:
+ *
+ * <pre>
+ *  i. Partition the array into a power of two number of chunks, at
+ *     least MIN_ARRAY_SORT_GRAN elements each, and sort the chunks
+ *     concurrently using the sequential algorithm for the type.
+ * ii. Merge adjacent pairs of sorted runs, round by round, until one
+ *     run remains.  Each merge is split into independent pieces by
+ *     binary searching the second run for the elements at evenly
+ *     spaced positions of the first, so that every round (including
+ *     the last one, which merges two halves of the whole array) keeps
+ *     all threads busy.
+ * </pre>
+ *
+ * Merges alternate between the array and a work array of the same
+ * length.  When the number of merge rounds is odd, the sorted chunks
+ * are copied into the work array in phase (i) so that the final round
+ * always writes into the array being sorted.
+ *
+ * <p>Pieces of work are run as fork/join tasks in the {@linkplain
+ * java.util.concurrent.ForkJoinPool#commonPool common pool}, with the
+ * calling thread running the pieces that no pool thread has taken
+ * yet, so a sort still makes progress (sequentially) when all pool
+ * threads are busy, for example when parallel sorts are invoked
+ * concurrently.
+ *
+ * <p>Merges for float and double arrays use the total order of
+ * {@link Float#compare} and {@link Double#compare}, which the chunk
+ * sorts also establish, so that negative zeros and NaNs are placed
+ * exactly as {@link Arrays#sort(double[])} would place them.
+ * Object merges are stable, taking equal elements from the left run
+ * first.
+ */
+final class ArraysParallelSortHelpers {
+
+    private ArraysParallelSortHelpers() {}
+
+    /**
+     * Returns the targeted parallelism level for parallel sorts, which
+     * is the number of available processors.
+     */
+    static int getParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Runs all of the given tasks as fork/join tasks, using the calling
+     * thread together with the threads of the common pool, and returns
+     * when all of them have completed.  If a task throws an exception,
+     * the tasks that have not started yet are cancelled and the
+     * exception is rethrown in the calling thread.
+     */
+    static void invokeAll(Runnable[] tasks) {
+        int n = tasks.length;
+        ForkJoinTask<?>[] fs = new ForkJoinTask<?>[n];
+        for (int i = 0; i < n; ++i)
+            fs[i] = ForkJoinTask.adapt(tasks[i]);
+        ForkJoinTask.invokeAll(fs);
+    }
+
+    /**
+     * The parallel merge sort shared by all element types.  A Sorter
+     * sorts the range [lo, hi) of its array; subclasses supply the
+     * sequential sort of a sub-range, the binary search used to split
+     * merges, and the merge itself.  Indices passed to these methods
+     * are always positions in the array being sorted; element i is kept
+     * at index i - lo of the work array.
+     */
+    abstract static class Sorter {
+        final int lo, hi;
+
+        Sorter(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /**
+         * Sorts the range [l, h) of the array in place.
+         */
+        abstract void sort(int l, int h);
+
+        /**
+         * Copies the range [l, h) of the array into the work array.
+         */
+        abstract void copy(int l, int h);
+
+        /**
+         * Returns the least index in [l, h) of the sorted source range
+         * whose element is not less than the source element at index
+         * {@code key}, or {@code h} if there is none.  The source is the
+         * work array if {@code fromWork}, else the array.
+         */
+        abstract int split(boolean fromWork, int key, int l, int h);
+
+        /**
+         * Merges the sorted source ranges [l1, h1) and [l2, h2) into the
+         * destination starting at index {@code d}, taking elements from
+         * the first range when equal.  The source is the work array if
+         * {@code fromWork}, and the destination is then the array;
+         * otherwise it's the other way around.
+         */
+        abstract void merge(boolean fromWork, int l1, int h1,
+                            int l2, int h2, int d);
+
+        /**
+         * Performs the sort.
+         */
+        final void invoke() {
+            int n = hi - lo;
+            int p = getParallelism();
+            int k = 1;              // number of chunks, a power of two
+            while (k < (p << 2) && n / (k << 1) >= Arrays.MIN_ARRAY_SORT_GRAN)
+                k <<= 1;
+            if (k == 1) {
+                sort(lo, hi);
+                return;
+            }
+
+            final int[] bounds = new int[k + 1];
+            for (int i = 0; i <= k; ++i)
+                bounds[i] = lo + (int)((long)n * i / k);
+
+            // Make the last of the log2(k) merge rounds write to the array
+            final boolean startInWork =
+                (Integer.numberOfTrailingZeros(k) & 1) != 0;
+            Runnable[] tasks = new Runnable[k];
+            for (int i = 0; i < k; ++i) {
+                final int l = bounds[i], h = bounds[i + 1];
+                tasks[i] = new Runnable() {
+                    public void run() {
+                        sort(l, h);
+                        if (startInWork)
+                            copy(l, h);
+                    }
+                };
+            }
+            invokeAll(tasks);
+
+            boolean fromWork = startInWork;
+            for (int width = 1; width < k; width <<= 1) {
+                // Each pair of runs is split into 2 * width pieces, which
+                // gives k pieces of roughly n / k elements in every round
+                int t = 0;
+                for (int i = 0; i < k; i += width << 1) {
+                    int l = bounds[i];
+                    int m = bounds[i + width];
+                    int h = bounds[i + (width << 1)];
+                    int parts = width << 1;
+                    for (int s = 1, x0 = l, y0 = m; s <= parts; ++s) {
+                        int x, y;
+                        if (s == parts) {
+                            x = m;
+                            y = h;
+                        } else {
+                            x = l + (int)((long)(m - l) * s / parts);
+                            y = split(fromWork, x, y0, h);
+                        }
+                        tasks[t++] = new Merge(this, fromWork, x0, x, y0, y,
+                                               l + (x0 - l) + (y0 - m));
+                        x0 = x;
+                        y0 = y;
+                    }
+                }
+                invokeAll(tasks);
+                fromWork = !fromWork;
+            }
+        }
+    }
+
+    /**
+     * One piece of a merge round.
+     */
+    static final class Merge implements Runnable {
+        final Sorter sorter;
+        final boolean fromWork;
+        final int l1, h1, l2, h2, d;
+
+        Merge(Sorter sorter, boolean fromWork,
+              int l1, int h1, int l2, int h2, int d) {
+            this.sorter = sorter;
+            this.fromWork = fromWork;
+            this.l1 = l1;
+            this.h1 = h1;
+            this.l2 = l2;
+            this.h2 = h2;
+            this.d = d;
+        }
+
+        public void run() {
+            sorter.merge(fromWork, l1, h1, l2, h2, d);
+        }
+    }
+
+    /** Parallel sorter for {@code byte} arrays. */
+    static final class ByteSorter extends Sorter {
+        final byte[] a, w;
+
+        ByteSorter(byte[] a, int lo, int hi) {
+            super(lo, hi);
+            this.a = a;
+            this.w = new byte[hi - lo];
+        }
+
+        void sort(int l, int h) {
+            DualPivotQuicksort.sort(a, l, h - 1);
+        }
+
+        void copy(int l, int h) {
+            System.arraycopy(a, l, w, l - lo, h - l);
+        }
+
+        int split(boolean fromWork, int key, int l, int h) {
+            byte[] s = fromWork ? w : a;
+            int sb = fromWork ? lo : 0;
+            byte k = s[key - sb];
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (s[m - sb] < k)
+                    l = m + 1;
+                else
+                    h = m;
+            }
+            return l;
+        }
+
+        void merge(boolean fromWork, int l1, int h1, int l2, int h2, int d) {
+            byte[] s, t;
+            int sb, tb;
+            if (fromWork) {
+                s = w; sb = lo; t = a; tb = 0;
+            } else {
+                s = a; sb = 0; t = w; tb = lo;
+            }
+            int i = d - tb;
+            while (l1 < h1 && l2 < h2) {
+                byte x = s[l1 - sb], y = s[l2 - sb];
+                if (y < x) {
+                    t[i++] = y;
+                    ++l2;
+                } else {
+                    t[i++] = x;
+                    ++l1;
+                }
+            }
+            if (l1 < h1)
+                System.arraycopy(s, l1 - sb, t, i, h1 - l1);
+            else if (l2 < h2)
+                System.arraycopy(s, l2 - sb, t, i, h2 - l2);
+        }
+    }
+
+    /** Parallel sorter for {@code char} arrays. */
+    static final class CharSorter extends Sorter {
+        final char[] a, w;
+
+        CharSorter(char[] a, int lo, int hi) {
+            super(lo, hi);
+            this.a = a;
+            this.w = new char[hi - lo];
+        }
+
+        void sort(int l, int h) {
+            DualPivotQuicksort.sort(a, l, h - 1);
+        }
+
+        void copy(int l, int h) {
+            System.arraycopy(a, l, w, l - lo, h - l);
+        }
+
+        int split(boolean fromWork, int key, int l, int h) {
+            char[] s = fromWork ? w : a;
+            int sb = fromWork ? lo : 0;
+            char k = s[key - sb];
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (s[m - sb] < k)
+                    l = m + 1;
+                else
+                    h = m;
+            }
+            return l;
+        }
+
+        void merge(boolean fromWork, int l1, int h1, int l2, int h2, int d) {
+            char[] s, t;
+            int sb, tb;
+            if (fromWork) {
+                s = w; sb = lo; t = a; tb = 0;
+            } else {
+                s = a; sb = 0; t = w; tb = lo;
+            }
+            int i = d - tb;
+            while (l1 < h1 && l2 < h2) {
+                char x = s[l1 - sb], y = s[l2 - sb];
+                if (y < x) {
+                    t[i++] = y;
+                    ++l2;
+                } else {
+                    t[i++] = x;
+                    ++l1;
+                }
+            }
+            if (l1 < h1)
+                System.arraycopy(s, l1 - sb, t, i, h1 - l1);
+            else if (l2 < h2)
+                System.arraycopy(s, l2 - sb, t, i, h2 - l2);
+        }
+    }
+
+    /** Parallel sorter for {@code short} arrays. */
+    static final class ShortSorter extends Sorter {
+        final short[] a, w;
+
+        ShortSorter(short[] a, int lo, int hi) {
+            super(lo, hi);
+            this.a = a;
+            this.w = new short[hi - lo];
+        }
+
+        void sort(int l, int h) {
+            DualPivotQuicksort.sort(a, l, h - 1);
+        }
+
+        void copy(int l, int h) {
+            System.arraycopy(a, l, w, l - lo, h - l);
+        }
+
+        int split(boolean fromWork, int key, int l, int h) {
+            short[] s = fromWork ? w : a;
+            int sb = fromWork ? lo : 0;
+            short k = s[key - sb];
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (s[m - sb] < k)
+                    l = m + 1;
+                else
+                    h = m;
+            }
+            return l;
+        }
+
+        void merge(boolean fromWork, int l1, int h1, int l2, int h2, int d) {
+            short[] s, t;
+            int sb, tb;
+            if (fromWork) {
+                s = w; sb = lo; t = a; tb = 0;
+            } else {
+                s = a; sb = 0; t = w; tb = lo;
+            }
+            int i = d - tb;
+            while (l1 < h1 && l2 < h2) {
+                short x = s[l1 - sb], y = s[l2 - sb];
+                if (y < x) {
+                    t[i++] = y;
+                    ++l2;
+                } else {
+                    t[i++] = x;
+                    ++l1;
+                }
+            }
+            if (l1 < h1)
+                System.arraycopy(s, l1 - sb, t, i, h1 - l1);
+            else if (l2 < h2)
+                System.arraycopy(s, l2 - sb, t, i, h2 - l2);
+        }
+    }
+
+    /** Parallel sorter for {@code int} arrays. */
+    static final class IntSorter extends Sorter {
+        final int[] a, w;
+
+        IntSorter(int[] a, int lo, int hi) {
+            super(lo, hi);
+            this.a = a;
+            this.w = new int[hi - lo];
+        }
+
+        void sort(int l, int h) {
+            DualPivotQuicksort.sort(a, l, h - 1);
+        }
+
+        void copy(int l, int h) {
+            System.arraycopy(a, l, w, l - lo, h - l);
+        }
+
+        int split(boolean fromWork, int key, int l, int h) {
+            int[] s = fromWork ? w : a;
+            int sb = fromWork ? lo : 0;
+            int k = s[key - sb];
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (s[m - sb] < k)
+                    l = m + 1;
+                else
+                    h = m;
+            }
+            return l;
+        }
+
+        void merge(boolean fromWork, int l1, int h1, int l2, int h2, int d) {
+            int[] s, t;
+            int sb, tb;
+            if (fromWork) {
+                s = w; sb = lo; t = a; tb = 0;
+            } else {
+                s = a; sb = 0; t = w; tb = lo;
+            }
+            int i = d - tb;
+            while (l1 < h1 && l2 < h2) {
+                int x = s[l1 - sb], y = s[l2 - sb];
+                if (y < x) {
+                    t[i++] = y;
+                    ++l2;
+                } else {
+                    t[i++] = x;
+                    ++l1;
+                }
+            }
+            if (l1 < h1)
+                System.arraycopy(s, l1 - sb, t, i, h1 - l1);
+            else if (l2 < h2)
+                System.arraycopy(s, l2 - sb, t, i, h2 - l2);
+        }
+    }
+
+    /** Parallel sorter for {@code long} arrays. */
+    static final class LongSorter extends Sorter {
+        final long[] a, w;
+
+        LongSorter(long[] a, int lo, int hi) {
+            super(lo, hi);
+            this.a = a;
+            this.w = new long[hi - lo];
+        }
+
+        void sort(int l, int h) {
+            DualPivotQuicksort.sort(a, l, h - 1);
+        }
+
+        void copy(int l, int h) {
+            System.arraycopy(a, l, w, l - lo, h - l);
+        }
+
+        int split(boolean fromWork, int key, int l, int h) {
+            long[] s = fromWork ? w : a;
+            int sb = fromWork ? lo : 0;
+            long k = s[key - sb];
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (s[m - sb] < k)
+                    l = m + 1;
+                else
+                    h = m;
+            }
+            return l;
+        }
+
+        void merge(boolean fromWork, int l1, int h1, int l2, int h2, int d) {
+            long[] s, t;
+            int sb, tb;
+            if (fromWork) {
+                s = w; sb = lo; t = a; tb = 0;
+            } else {
+                s = a; sb = 0; t = w; tb = lo;
+            }
+            int i = d - tb;
+            while (l1 < h1 && l2 < h2) {
+                long x = s[l1 - sb], y = s[l2 - sb];
+                if (y < x) {
+                    t[i++] = y;
+                    ++l2;
+                } else {
+                    t[i++] = x;
+                    ++l1;
+                }
+            }
+            if (l1 < h1)
+                System.arraycopy(s, l1 - sb, t, i, h1 - l1);
+            else if (l2 < h2)
+                System.arraycopy(s, l2 - sb, t, i, h2 - l2);
+        }
+    }
+
+    /** Parallel sorter for {@code float} arrays. */
+    static final class FloatSorter extends Sorter {
+        final float[] a, w;
+
+        FloatSorter(float[] a, int lo, int hi) {
+            super(lo, hi);
+            this.a = a;
+            this.w = new float[hi - lo];
+        }
+
+        void sort(int l, int h) {
+            DualPivotQuicksort.sort(a, l, h - 1);
+        }
+
+        void copy(int l, int h) {
+            System.arraycopy(a, l, w, l - lo, h - l);
+        }
+
+        int split(boolean fromWork, int key, int l, int h) {
+            float[] s = fromWork ? w : a;
+            int sb = fromWork ? lo : 0;
+            float k = s[key - sb];
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (Float.compare(s[m - sb], k) < 0)
+                    l = m + 1;
+                else
+                    h = m;
+            }
+            return l;
+        }
+
+        void merge(boolean fromWork, int l1, int h1, int l2, int h2, int d) {
+            float[] s, t;
+            int sb, tb;
+            if (fromWork) {
+                s = w; sb = lo; t = a; tb = 0;
+            } else {
+                s = a; sb = 0; t = w; tb = lo;
+            }
+            int i = d - tb;
+            while (l1 < h1 && l2 < h2) {
+                float x = s[l1 - sb], y = s[l2 - sb];
+                if (Float.compare(y, x) < 0) {
+                    t[i++] = y;
+                    ++l2;
+                } else {
+                    t[i++] = x;
+                    ++l1;
+                }
+            }
+            if (l1 < h1)
+                System.arraycopy(s, l1 - sb, t, i, h1 - l1);
+            else if (l2 < h2)
+                System.arraycopy(s, l2 - sb, t, i, h2 - l2);
+        }
+    }
+
+    /** Parallel sorter for {@code double} arrays. */
+    static final class DoubleSorter extends Sorter {
+        final double[] a, w;
+
+        DoubleSorter(double[] a, int lo, int hi) {
+            super(lo, hi);
+            this.a = a;
+            this.w = new double[hi - lo];
+        }
+
+        void sort(int l, int h) {
+            DualPivotQuicksort.sort(a, l, h - 1);
+        }
+
+        void copy(int l, int h) {
+            System.arraycopy(a, l, w, l - lo, h - l);
+        }
+
+        int split(boolean fromWork, int key, int l, int h) {
+            double[] s = fromWork ? w : a;
+            int sb = fromWork ? lo : 0;
+            double k = s[key - sb];
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (Double.compare(s[m - sb], k) < 0)
+                    l = m + 1;
+                else
+                    h = m;
+            }
+            return l;
+        }
+
+        void merge(boolean fromWork, int l1, int h1, int l2, int h2, int d) {
+            double[] s, t;
+            int sb, tb;
+            if (fromWork) {
+                s = w; sb = lo; t = a; tb = 0;
+            } else {
+                s = a; sb = 0; t = w; tb = lo;
+            }
+            int i = d - tb;
+            while (l1 < h1 && l2 < h2) {
+                double x = s[l1 - sb], y = s[l2 - sb];
+                if (Double.compare(y, x) < 0) {
+                    t[i++] = y;
+                    ++l2;
+                } else {
+                    t[i++] = x;
+                    ++l1;
+                }
+            }
+            if (l1 < h1)
+                System.arraycopy(s, l1 - sb, t, i, h1 - l1);
+            else if (l2 < h2)
+                System.arraycopy(s, l2 - sb, t, i, h2 - l2);
+        }
+    }
+
+    /**
+     * Parallel sorter for Object arrays, using a comparator or else the
+     * natural ordering of the elements.
+     */
+    static final class ObjectSorter<T> extends Sorter {
+        final T[] a, w;
+        final Comparator<? super T> c;
+
+        ObjectSorter(T[] a, int lo, int hi, Comparator<? super T> c) {
+            super(lo, hi);
+            this.a = a;
+            // A copy is a work array of the right type without a cast
+            this.w = Arrays.copyOfRange(a, lo, hi);
+            if (c != null)
+                this.c = c;
+            else
+                this.c = NaturalOrder.INSTANCE;
+        }
+
+        void sort(int l, int h) {
+            TimSort.sort(a, l, h, c);
+        }
+
+        void copy(int l, int h) {
+            System.arraycopy(a, l, w, l - lo, h - l);
+        }
+
+        int split(boolean fromWork, int key, int l, int h) {
+            T[] s = fromWork ? w : a;
+            int sb = fromWork ? lo : 0;
+            T k = s[key - sb];
+            while (l < h) {
+                int m = (l + h) >>> 1;
+                if (c.compare(s[m - sb], k) < 0)
+                    l = m + 1;
+                else
+                    h = m;
+            }
+            return l;
+        }
+
+        void merge(boolean fromWork, int l1, int h1, int l2, int h2, int d) {
+            T[] s, t;
+            int sb, tb;
+            if (fromWork) {
+                s = w; sb = lo; t = a; tb = 0;
+            } else {
+                s = a; sb = 0; t = w; tb = lo;
+            }
+            int i = d - tb;
+            while (l1 < h1 && l2 < h2) {
+                T x = s[l1 - sb], y = s[l2 - sb];
+                if (c.compare(y, x) < 0) {
+                    t[i++] = y;
+                    ++l2;
+                } else {
+                    t[i++] = x;
+                    ++l1;
+                }
+            }
+            if (l1 < h1)
+                System.arraycopy(s, l1 - sb, t, i, h1 - l1);
+            else if (l2 < h2)
+                System.arraycopy(s, l2 - sb, t, i, h2 - l2);
+        }
+    }
+
+    /**
+     * A comparator that implements the natural ordering of a group of
+     * mutually comparable elements.
+     */
+    static final class NaturalOrder implements Comparator<Object> {
+        static final NaturalOrder INSTANCE = new NaturalOrder();
+
+        @SuppressWarnings("unchecked")
+        public int compare(Object first, Object second) {
+            return ((Comparable<Object>)first).compareTo(second);
+        }
+    }
+}
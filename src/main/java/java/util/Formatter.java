@@ -30,9 +30,8 @@ import java.text.NumberFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import sun.misc.ConcurrentLRUCache;
 import sun.misc.FpUtils;
 import sun.misc.DoubleConsts;
 import sun.misc.FormattedFloatingDecimal;
@@ -49,6 +48,10 @@ import sun.misc.FormattedFloatingDecimal;
  * safety is optional and is the responsibility of users of methods in this
  * class.
  *
+ * <p> A format string that is used repeatedly can be parsed once into a
+ * {@link Formatter.Template}, which may be shared by multiple threads and
+ * writes its output directly to a given destination.
+ *
  * <p> Formatted printing for the Java language is heavily inspired by C's
  * <tt>printf</tt>.  Although the format strings are similar to C, some
  * customizations have been made to accommodate the Java language and exploit
@@ -1808,7 +1811,8 @@ public final class Formatter implements Closeable, Flushable {
 
     private IOException lastException;
 
-    private char zero = '0';
+    // The zero digit of the locale, looked up by zero() when first needed
+    private char zero;
     private static double scaleUp;
 
     // 1 (sign) + 19 (max # sig digits) + 1 ('.') + 1 ('e') + 1 (sign)
@@ -1819,7 +1823,6 @@ public final class Formatter implements Closeable, Flushable {
     private void init(Appendable a, Locale l) {
 	this.a = a;
 	this.l = l;
-	setZero();
     }
 
     /**
@@ -2191,11 +2194,17 @@ public final class Formatter implements Closeable, Flushable {
 	init(new BufferedWriter(new OutputStreamWriter(os, csn)), l);
     }
 
-    private void setZero() {
-	if ((l != null) && !l.equals(Locale.US)) {
-	    DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance(l);
-	    zero = dfs.getZeroDigit();
+    private char zero() {
+	char z = zero;
+	if (z == 0) {
+	    z = '0';
+	    if ((l != null) && !l.equals(Locale.US)) {
+		DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance(l);
+		z = dfs.getZeroDigit();
+	    }
+	    zero = z;
 	}
+	return z;
     }
 
     /**
@@ -2405,123 +2414,378 @@ public final class Formatter implements Closeable, Flushable {
      */
     public Formatter format(Locale l, String format, Object ... args) {
 	ensureOpen();
+	print(l, parsed(format), args);
+	return this;
+    }
 
+    // Writes the given parsed format string with the given arguments.
+    private void print(Locale l, FormatString[] fsa, Object[] args) {
 	// index of last argument referenced
 	int last = -1;
 	// last ordinary index
 	int lasto = -1;
 
-	FormatString[] fsa = parse(format);
 	for (int i = 0; i < fsa.length; i++) {
 	    FormatString fs = fsa[i];
 	    int index = fs.index();
 	    try {
 		switch (index) {
 		case -2:  // fixed string, "%n", or "%%"
-		    fs.print(null, l);
+		    fs.print(this, null, l);
 		    break;
 		case -1:  // relative index
 		    if (last < 0 || (args != null && last > args.length - 1))
 			throw new MissingFormatArgumentException(fs.toString());
-		    fs.print((args == null ? null : args[last]), l);
+		    fs.print(this, (args == null ? null : args[last]), l);
 		    break;
 		case 0:  // ordinary index
 		    lasto++;
  		    last = lasto;
 		    if (args != null && lasto > args.length - 1)
 			throw new MissingFormatArgumentException(fs.toString());
- 		    fs.print((args == null ? null : args[lasto]), l);
+ 		    fs.print(this, (args == null ? null : args[lasto]), l);
 		    break;
 		default:  // explicit index
 		    last = index - 1;
 		    if (args != null && last > args.length - 1)
 			throw new MissingFormatArgumentException(fs.toString());
- 		    fs.print((args == null ? null : args[last]), l);
+ 		    fs.print(this, (args == null ? null : args[last]), l);
 		    break;
 		}
 	    } catch (IOException x) {
 		lastException = x;
 	    }
 	}
-	return this;
     }
 
-    // %[argument_index$][flags][width][.precision][t]conversion
-    private static final String formatSpecifier
-	= "%(\\d+\\$)?([-#+ 0,(\\<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])";
+    /**
+     * A format string parsed into a form in which it can be used
+     * repeatedly to write formatted output.  Using a template saves the
+     * work of finding and checking the format specifiers of the format
+     * string each time it is used, and the result of a template is
+     * written directly to its destination.
+     *
+     * <p> The output of a template for given arguments is the same as
+     * that of a new formatter, with the same destination and locale, to
+     * which the format string and arguments are passed.  For example,
+     * the following are equivalent:
+     *
+     * <blockquote><pre>
+     *   String s = String.format("%-10s %6.2f%n", name, value);
+     *
+     *   Formatter.Template t = Formatter.Template.compile("%-10s %6.2f%n");
+     *   String s = t.format(name, value);</pre></blockquote>
+     *
+     * <p> Templates are immutable and are safe for use by multiple
+     * concurrent threads.
+     *
+     * @since 1.7
+     */
+    public static final class Template {
+	private final String format;
+	private final FormatString[] fsa;
 
-    private static Pattern fsPattern = Pattern.compile(formatSpecifier);
+	private Template(String format) {
+	    this.format = format;
+	    this.fsa = parse(format);
+	}
+
+	/**
+	 * Parses the given format string into a template.
+	 *
+	 * @param  format
+	 *         A format string as described in <a
+	 *         href="Formatter.html#syntax">Format string syntax</a>
+	 *
+	 * @throws  IllegalFormatException
+	 *          If the format string contains an illegal syntax, or a
+	 *          format specifier with an illegal combination of flags,
+	 *          width, precision and conversion.  For specification of
+	 *          all possible formatting errors, see the <a
+	 *          href="Formatter.html#detail">Details</a> section of the
+	 *          formatter class specification.
+	 *
+	 * @return  A template for the format string
+	 */
+	public static Template compile(String format) {
+	    if (format == null)
+		throw new NullPointerException();
+	    return new Template(format);
+	}
+
+	/**
+	 * Returns a string formatted by this template with the given
+	 * arguments, using the default locale.
+	 *
+	 * @param  args
+	 *         Arguments referenced by the format specifiers in the
+	 *         format string.  If there are more arguments than format
+	 *         specifiers, the extra arguments are ignored.
+	 *
+	 * @throws  IllegalFormatException
+	 *          If a format specifier is incompatible with the given
+	 *          arguments, or there are insufficient arguments
+	 *
+	 * @return  A formatted string
+	 */
+	public String format(Object ... args) {
+	    return format(Locale.getDefault(), args);
+	}
+
+	/**
+	 * Returns a string formatted by this template with the given
+	 * locale and arguments.
+	 *
+	 * @param  l
+	 *         The {@linkplain java.util.Locale locale} to apply during
+	 *         formatting.  If <tt>l</tt> is <tt>null</tt> then no
+	 *         localization is applied.
+	 *
+	 * @param  args
+	 *         Arguments referenced by the format specifiers in the
+	 *         format string.  If there are more arguments than format
+	 *         specifiers, the extra arguments are ignored.
+	 *
+	 * @throws  IllegalFormatException
+	 *          If a format specifier is incompatible with the given
+	 *          arguments, or there are insufficient arguments
+	 *
+	 * @return  A formatted string
+	 */
+	public String format(Locale l, Object ... args) {
+	    StringBuilder sb = new StringBuilder();
+	    new Formatter(sb, l).print(l, fsa, args);
+	    return sb.toString();
+	}
+
+	/**
+	 * Appends the output of this template for the given arguments
+	 * to the given destination, using the default locale.
+	 *
+	 * @param  a
+	 *         The destination of the formatted output
+	 *
+	 * @param  args
+	 *         Arguments referenced by the format specifiers in the
+	 *         format string.  If there are more arguments than format
+	 *         specifiers, the extra arguments are ignored.
+	 *
+	 * @throws  IllegalFormatException
+	 *          If a format specifier is incompatible with the given
+	 *          arguments, or there are insufficient arguments
+	 *
+	 * @throws  IOException
+	 *          If appending to the destination throws one.  The output
+	 *          of the remaining format specifiers is still attempted,
+	 *          and the last such exception is thrown.
+	 *
+	 * @return  The destination
+	 */
+	public <A extends Appendable> A formatTo(A a, Object ... args)
+	    throws IOException
+	{
+	    return formatTo(a, Locale.getDefault(), args);
+	}
+
+	/**
+	 * Appends the output of this template for the given locale and
+	 * arguments to the given destination.
+	 *
+	 * @param  a
+	 *         The destination of the formatted output
+	 *
+	 * @param  l
+	 *         The {@linkplain java.util.Locale locale} to apply during
+	 *         formatting.  If <tt>l</tt> is <tt>null</tt> then no
+	 *         localization is applied.
+	 *
+	 * @param  args
+	 *         Arguments referenced by the format specifiers in the
+	 *         format string.  If there are more arguments than format
+	 *         specifiers, the extra arguments are ignored.
+	 *
+	 * @throws  IllegalFormatException
+	 *          If a format specifier is incompatible with the given
+	 *          arguments, or there are insufficient arguments
+	 *
+	 * @throws  IOException
+	 *          If appending to the destination throws one.  The output
+	 *          of the remaining format specifiers is still attempted,
+	 *          and the last such exception is thrown.
+	 *
+	 * @return  The destination
+	 */
+	public <A extends Appendable> A formatTo(A a, Locale l, Object ... args)
+	    throws IOException
+	{
+	    if (a == null)
+		throw new NullPointerException();
+	    Formatter fmt = new Formatter(a, l);
+	    fmt.print(l, fsa, args);
+	    if (fmt.lastException != null)
+		throw fmt.lastException;
+	    return a;
+	}
+
+	/**
+	 * Returns the format string from which this template was parsed.
+	 *
+	 * @return  The format string of this template
+	 */
+	public String toString() {
+	    return format;
+	}
+    }
+
+    /*
+     * Templates for the format strings recently passed to format, so
+     * that formatting with the same format string again, as callers of
+     * String.format and PrintStream.printf typically do, does not parse
+     * it again.  Format strings that do not parse are not cached, nor
+     * are long ones.
+     *
+     * A format string is only cached when it is parsed for the second
+     * time, so that format strings built for one use, such as those
+     * made by concatenating values, do not push the reused ones out of
+     * the cache.  The hash codes of format strings parsed once are kept
+     * in a small table; a slot may be overwritten by another string, or
+     * written by several threads at once, which only delays caching.
+     */
+    private static final int MAX_TEMPLATES = 128;
+    private static final int MAX_TEMPLATE_LENGTH = 1024;
+
+    private static final ConcurrentLRUCache<String,Template> templates
+	= new ConcurrentLRUCache<String,Template>(MAX_TEMPLATES);
+
+    // Hash codes of format strings parsed once, indexed by hash code
+    private static final int[] parsedOnce = new int[2 * MAX_TEMPLATES];
+
+    // Returns the parsed form of the format string, from the cache if
+    // possible.
+    private static FormatString[] parsed(String format) {
+	Template t = templates.get(format);
+	if (t == null) {
+	    t = new Template(format);
+	    if (format.length() <= MAX_TEMPLATE_LENGTH) {
+		int h = format.hashCode();
+		int i = h & (parsedOnce.length - 1);
+		if (parsedOnce[i] == h)
+		    templates.put(format, t);
+		else
+		    parsedOnce[i] = h;
+	    }
+	}
+	return t.fsa;
+    }
+
+    // %[argument_index$][flags][width][.precision][t]conversion
+    //
+    // Format specifiers are found by the scan below rather than with
+    // the regular expression
+    //
+    //   %(\d+\$)?([-#+ 0,(\<]*)?(\d+)?(\.\d+)?([tT])?([a-zA-Z%])
+    //
+    // which they must match.  The parts of a specifier are passed to
+    // FormatSpecifier as the groups of the expression would be: null
+    // if missing, except for the flags.
 
     // Look for format specifiers in the format string.
-    private FormatString[] parse(String s) {
-	ArrayList al = new ArrayList();
-	Matcher m = fsPattern.matcher(s);
+    private static FormatString[] parse(String s) {
+	ArrayList<FormatString> al = new ArrayList<FormatString>();
+	int max = s.length();
 	int i = 0;
-	while (i < s.length()) {
-	    if (m.find(i)) {
-		// Anything between the start of the string and the beginning
-		// of the format specifier is either fixed text or contains
-		// an invalid format string.
-		if (m.start() != i) {
-		    // Make sure we didn't miss any invalid format specifiers
-		    checkText(s.substring(i, m.start()));
-		    // Assume previous characters were fixed text
-		    al.add(new FixedString(s.substring(i, m.start())));
-		}
-
-		// Expect 6 groups in regular expression
-		String[] sa = new String[6];
-		for (int j = 0; j < m.groupCount(); j++)
-		    {
-		    sa[j] = m.group(j + 1);
-// 		    System.out.print(sa[j] + " ");
-		    }
-// 		System.out.println();
-		al.add(new FormatSpecifier(this, sa));
-		i = m.end();
-	    } else {
-		// No more valid format specifiers.  Check for possible invalid
-		// format specifiers.
-		checkText(s.substring(i));
+	while (i < max) {
+	    int n = s.indexOf('%', i);
+	    if (n < 0) {
 		// The rest of the string is fixed text
 		al.add(new FixedString(s.substring(i)));
 		break;
 	    }
+	    if (n != i)
+		al.add(new FixedString(s.substring(i, n)));
+	    String[] sa = new String[6];
+	    i = specifier(s, n, sa);
+	    if (i < 0) {
+		// Not a valid format specifier
+		char c = (n + 1 < max) ? s.charAt(n + 1) : '%';
+		throw new UnknownFormatConversionException(String.valueOf(c));
+	    }
+	    al.add(new FormatSpecifier(sa));
 	}
-//   	FormatString[] fs = new FormatString[al.size()];
-//   	for (int j = 0; j < al.size(); j++)
-//   	    System.out.println(((FormatString) al.get(j)).toString());
- 	return (FormatString[]) al.toArray(new FormatString[0]);
+	return al.toArray(new FormatString[al.size()]);
     }
 
-    private void checkText(String s) {
-	int idx;
-	// If there are any '%' in the given string, we got a bad format
-	// specifier.
-	if ((idx = s.indexOf('%')) != -1) {
-	    char c = (idx > s.length() - 2 ? '%' : s.charAt(idx + 1));
-	    throw new UnknownFormatConversionException(String.valueOf(c));
+    // Stores the parts of the format specifier that starts with the '%'
+    // at index n of s in sa, and returns the index that follows it, or
+    // -1 if no format specifier starts there.
+    private static int specifier(String s, int n, String[] sa) {
+	int max = s.length();
+	int i = n + 1;
+	int j = digits(s, i);
+	if (j > i && j < max && s.charAt(j) == '$') {
+	    sa[0] = s.substring(i, j + 1);
+	    i = j + 1;
+	}
+	j = i;
+	while (j < max && "-#+ 0,(<".indexOf(s.charAt(j)) >= 0)
+	    j++;
+	sa[1] = s.substring(i, j);
+	i = j;
+	j = digits(s, i);
+	if (j > i) {
+	    sa[2] = s.substring(i, j);
+	    i = j;
+	}
+	if (i < max && s.charAt(i) == '.') {
+	    j = digits(s, i + 1);
+	    if (j > i + 1) {
+		sa[3] = s.substring(i, j);
+		i = j;
+	    }
 	}
+	if (i + 1 < max && (s.charAt(i) == 't' || s.charAt(i) == 'T')
+	    && isConversion(s.charAt(i + 1))) {
+	    sa[4] = s.substring(i, i + 1);
+	    i++;
+	}
+	if (i < max && isConversion(s.charAt(i))) {
+	    sa[5] = s.substring(i, i + 1);
+	    return i + 1;
+	}
+	return -1;
+    }
+
+    // Returns the index of the first char at or after i that is not an
+    // ASCII digit.
+    private static int digits(String s, int i) {
+	int max = s.length();
+	while (i < max && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+	    i++;
+	return i;
+    }
+
+    private static boolean isConversion(char c) {
+	return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '%';
     }
 
     private interface FormatString {
 	int index();
-	void print(Object arg, Locale l) throws IOException;
+	void print(Formatter fmt, Object arg, Locale l) throws IOException;
 	String toString();
     }
 
-    private class FixedString implements FormatString {
+    private static class FixedString implements FormatString {
 	private String s;
 	FixedString(String s) { this.s = s; }
 	public int index() { return -2; }
- 	public void print(Object arg, Locale l)
-	    throws IOException { a.append(s); }
+ 	public void print(Formatter fmt, Object arg, Locale l)
+	    throws IOException { fmt.a.append(s); }
 	public String toString() { return s; }
     }
 
     public enum BigDecimalLayoutForm { SCIENTIFIC, DECIMAL_FLOAT };
 
-    private class FormatSpecifier implements FormatString {
+    private static class FormatSpecifier implements FormatString {
 	private int index = -1;
 	private Flags f = Flags.NONE;
 	private int width;
@@ -2529,8 +2793,6 @@ public final class Formatter implements Closeable, Flushable {
 	private boolean dt = false;
 	private char c;
 
-	private Formatter formatter;
-
 	// cache the line separator
 	private String ls;
 
@@ -2617,8 +2879,7 @@ public final class Formatter implements Closeable, Flushable {
 	    return c;
 	}
 
-	FormatSpecifier(Formatter formatter, String[] sa) {
-	    this.formatter = formatter;
+	FormatSpecifier(String[] sa) {
 	    int idx = 0;
 
 	    index(sa[idx++]);
@@ -2649,82 +2910,82 @@ public final class Formatter implements Closeable, Flushable {
 		throw new UnknownFormatConversionException(String.valueOf(c));
 	}
 
-	public void print(Object arg, Locale l) throws IOException {
+	public void print(Formatter fmt, Object arg, Locale l) throws IOException {
 	    if (dt) {
-		printDateTime(arg, l);
+		printDateTime(fmt, arg, l);
 		return;
 	    }
 	    switch(c) {
 	    case Conversion.DECIMAL_INTEGER:
 	    case Conversion.OCTAL_INTEGER:
 	    case Conversion.HEXADECIMAL_INTEGER:
-		printInteger(arg, l);
+		printInteger(fmt, arg, l);
 		break;
 	    case Conversion.SCIENTIFIC:
 	    case Conversion.GENERAL:
 	    case Conversion.DECIMAL_FLOAT:
 	    case Conversion.HEXADECIMAL_FLOAT:
-		printFloat(arg, l);
+		printFloat(fmt, arg, l);
 		break;
 	    case Conversion.CHARACTER:
 	    case Conversion.CHARACTER_UPPER:
-		printCharacter(arg);
+		printCharacter(fmt, arg);
 		break;
 	    case Conversion.BOOLEAN:
-		printBoolean(arg);
+		printBoolean(fmt, arg);
 		break;
 	    case Conversion.STRING:
-		printString(arg, l);
+		printString(fmt, arg, l);
 		break;
 	    case Conversion.HASHCODE:
-		printHashCode(arg);
+		printHashCode(fmt, arg);
 		break;
 	    case Conversion.LINE_SEPARATOR:
 		if (ls == null)
 		    ls = System.getProperty("line.separator");
- 		a.append(ls);
+ 		fmt.a.append(ls);
 		break;
 	    case Conversion.PERCENT_SIGN:
-		a.append('%');
+		fmt.a.append('%');
 		break;
 	    default:
 		assert false;
 	    }
 	}
 
-	private void printInteger(Object arg, Locale l) throws IOException {
+	private void printInteger(Formatter fmt, Object arg, Locale l) throws IOException {
 	    if (arg == null)
-		print("null");
+		print(fmt, "null");
 	    else if (arg instanceof Byte)
-		print(((Byte)arg).byteValue(), l);
+		print(fmt, ((Byte)arg).byteValue(), l);
 	    else if (arg instanceof Short)
-		print(((Short)arg).shortValue(), l);
+		print(fmt, ((Short)arg).shortValue(), l);
 	    else if (arg instanceof Integer)
-		print(((Integer)arg).intValue(), l);
+		print(fmt, ((Integer)arg).intValue(), l);
 	    else if (arg instanceof Long)
-		print(((Long)arg).longValue(), l);
+		print(fmt, ((Long)arg).longValue(), l);
 	    else if (arg instanceof BigInteger)
-		print(((BigInteger)arg), l);
+		print(fmt, ((BigInteger)arg), l);
 	    else
 		failConversion(c, arg);
 	}
 
-	private void printFloat(Object arg, Locale l) throws IOException {
+	private void printFloat(Formatter fmt, Object arg, Locale l) throws IOException {
 	    if (arg == null)
-		print("null");
+		print(fmt, "null");
 	    else if (arg instanceof Float)
-		print(((Float)arg).floatValue(), l);
+		print(fmt, ((Float)arg).floatValue(), l);
 	    else if (arg instanceof Double)
-		print(((Double)arg).doubleValue(), l);
+		print(fmt, ((Double)arg).doubleValue(), l);
 	    else if (arg instanceof BigDecimal)
-		print(((BigDecimal)arg), l);
+		print(fmt, ((BigDecimal)arg), l);
 	    else
 		failConversion(c, arg);
 	}
 
-	private void printDateTime(Object arg, Locale l) throws IOException {
+	private void printDateTime(Formatter fmt, Object arg, Locale l) throws IOException {
 	    if (arg == null) {
-		print("null");
+		print(fmt, "null");
 		return;
 	    }
 	    Calendar cal = null;
@@ -2747,12 +3008,12 @@ public final class Formatter implements Closeable, Flushable {
 	    } else {
 		failConversion(c, arg);
 	    }
-	    print(cal, c, l);
+	    print(fmt, cal, c, l);
 	}
 
-	private void printCharacter(Object arg) throws IOException {
+	private void printCharacter(Formatter fmt, Object arg) throws IOException {
 	    if (arg == null) {
-		print("null");
+		print(fmt, "null");
 		return;
 	    }
 	    String s = null;
@@ -2779,23 +3040,22 @@ public final class Formatter implements Closeable, Flushable {
 	    } else {
 		failConversion(c, arg);
 	    }
-	    print(s);
+	    print(fmt, s);
 	}
 
-	private void printString(Object arg, Locale l) throws IOException {
+	private void printString(Formatter fmt, Object arg, Locale l) throws IOException {
 	    if (arg == null) {
-		print("null");
+		print(fmt, "null");
 	    } else if (arg instanceof Formattable) {
-		Formatter fmt = formatter;
-		if (formatter.locale() != l)
-		    fmt = new Formatter(formatter.out(), l);
+		if (fmt.locale() != l)
+		    fmt = new Formatter(fmt.out(), l);
 		((Formattable)arg).formatTo(fmt, f.valueOf(), width, precision);
 	    } else {
-		print(arg.toString());
+		print(fmt, arg.toString());
 	    }
 	}
 
-	private void printBoolean(Object arg) throws IOException {
+	private void printBoolean(Formatter fmt, Object arg) throws IOException {
 	    String s;
 	    if (arg != null)
 		s = ((arg instanceof Boolean)
@@ -2803,22 +3063,22 @@ public final class Formatter implements Closeable, Flushable {
 		     : Boolean.toString(true));
 	    else
 		s = Boolean.toString(false);
-	    print(s);
+	    print(fmt, s);
 	}
 
-	private void printHashCode(Object arg) throws IOException {
+	private void printHashCode(Formatter fmt, Object arg) throws IOException {
 	    String s = (arg == null
 			? "null"
 			: Integer.toHexString(arg.hashCode()));
-	    print(s);
+	    print(fmt, s);
 	}
 
-	private void print(String s) throws IOException {
+	private void print(Formatter fmt, String s) throws IOException {
 	    if (precision != -1 && precision < s.length())
 		s = s.substring(0, precision);
 	    if (f.contains(Flags.UPPERCASE))
 		s = s.toUpperCase();
-	    a.append(justify(s));
+	    fmt.a.append(justify(s));
 	}
 
 	private String justify(String s) {
@@ -2958,7 +3218,7 @@ public final class Formatter implements Closeable, Flushable {
 	    }
 	}
 
-	private void print(byte value, Locale l) throws IOException {
+	private void print(Formatter fmt, byte value, Locale l) throws IOException {
 	    long v = value;
 	    if (value < 0
 		&& (c == Conversion.OCTAL_INTEGER
@@ -2966,10 +3226,10 @@ public final class Formatter implements Closeable, Flushable {
 		v += (1L << 8);
 		assert v >= 0 : v;
 	    }
-	    print(v, l);
+	    print(fmt, v, l);
 	}
 
-	private void print(short value, Locale l) throws IOException {
+	private void print(Formatter fmt, short value, Locale l) throws IOException {
 	    long v = value;
 	    if (value < 0
 		&& (c == Conversion.OCTAL_INTEGER
@@ -2977,10 +3237,10 @@ public final class Formatter implements Closeable, Flushable {
 		v += (1L << 16);
 		assert v >= 0 : v;
 	    }
-	    print(v, l);
+	    print(fmt, v, l);
 	}
 
-	private void print(int value, Locale l) throws IOException {
+	private void print(Formatter fmt, int value, Locale l) throws IOException {
 	    long v = value;
 	    if (value < 0
 		&& (c == Conversion.OCTAL_INTEGER
@@ -2988,10 +3248,10 @@ public final class Formatter implements Closeable, Flushable {
 		v += (1L << 32);
 		assert v >= 0 : v;
 	    }
-	    print(v, l);
+	    print(fmt, v, l);
 	}
 
-	private void print(long value, Locale l) throws IOException {
+	private void print(Formatter fmt, long value, Locale l) throws IOException {
 
 	    StringBuilder sb = new StringBuilder();
 
@@ -3007,7 +3267,7 @@ public final class Formatter implements Closeable, Flushable {
 		leadingSign(sb, neg);
 
 		// the value
-		localizedMagnitude(sb, va, f, adjustWidth(width, f, neg), l);
+		localizedMagnitude(fmt, sb, va, f, adjustWidth(width, f, neg), l);
 
 		// trailing sign indicator
 		trailingSign(sb, neg);
@@ -3044,7 +3304,7 @@ public final class Formatter implements Closeable, Flushable {
 	    }
 
 	    // justify based on width
-	    a.append(justify(sb.toString()));
+	    fmt.a.append(justify(sb.toString()));
 	}
 
 	// neg := val < 0
@@ -3071,7 +3331,7 @@ public final class Formatter implements Closeable, Flushable {
 	    return sb;
 	}
 
-	private void print(BigInteger value, Locale l) throws IOException {
+	private void print(Formatter fmt, BigInteger value, Locale l) throws IOException {
 	    StringBuilder sb = new StringBuilder();
 	    boolean neg = value.signum() == -1;
 	    BigInteger v = value.abs();
@@ -3082,7 +3342,7 @@ public final class Formatter implements Closeable, Flushable {
 	    // the value
 	    if (c == Conversion.DECIMAL_INTEGER) {
 		char[] va = v.toString().toCharArray();
- 		localizedMagnitude(sb, va, f, adjustWidth(width, f, neg), l);
+ 		localizedMagnitude(fmt, sb, va, f, adjustWidth(width, f, neg), l);
 	    } else if (c == Conversion.OCTAL_INTEGER) {
 		String s = v.toString(8);
 
@@ -3124,14 +3384,14 @@ public final class Formatter implements Closeable, Flushable {
 	    trailingSign(sb, (value.signum() == -1));
 
 	    // justify based on width
-	    a.append(justify(sb.toString()));
+	    fmt.a.append(justify(sb.toString()));
 	}
 
-	private void print(float value, Locale l) throws IOException {
-	    print((double) value, l);
+	private void print(Formatter fmt, float value, Locale l) throws IOException {
+	    print(fmt, (double) value, l);
 	}
 
-	private void print(double value, Locale l) throws IOException {
+	private void print(Formatter fmt, double value, Locale l) throws IOException {
 	    StringBuilder sb = new StringBuilder();
 	    boolean neg = Double.compare(value, 0.0) == -1;
 
@@ -3143,7 +3403,7 @@ public final class Formatter implements Closeable, Flushable {
 
 		// the value
 		if (!Double.isInfinite(v))
-		    print(sb, v, l, f, c, precision, neg);
+		    print(fmt, sb, v, l, f, c, precision, neg);
 		else
 		    sb.append(f.contains(Flags.UPPERCASE)
 			      ? "INFINITY" : "Infinity");
@@ -3155,11 +3415,11 @@ public final class Formatter implements Closeable, Flushable {
 	    }
 
 	    // justify based on width
-	    a.append(justify(sb.toString()));
+	    fmt.a.append(justify(sb.toString()));
 	}
 
 	// !Double.isInfinite(value) && !Double.isNaN(value)
-	private void print(StringBuilder sb, double value, Locale l,
+	private void print(Formatter fmt, StringBuilder sb, double value, Locale l,
 			   Flags f, char c, int precision, boolean neg)
 	    throws IOException
 	{
@@ -3188,7 +3448,7 @@ public final class Formatter implements Closeable, Flushable {
 		int newW = width;
 		if (width != -1)
 		    newW = adjustWidth(width - exp.length - 1, f, neg);
-		localizedMagnitude(sb, mant, f, newW, null);
+		localizedMagnitude(fmt, sb, mant, f, newW, null);
 
 		sb.append(f.contains(Flags.UPPERCASE) ? 'E' : 'e');
 
@@ -3199,7 +3459,7 @@ public final class Formatter implements Closeable, Flushable {
 
 		char[] tmp = new char[exp.length - 1];
 		System.arraycopy(exp, 1, tmp, 0, exp.length - 1);
-		sb.append(localizedMagnitude(null, tmp, flags, -1, null));
+		sb.append(localizedMagnitude(fmt, null, tmp, flags, -1, null));
 	    } else if (c == Conversion.DECIMAL_FLOAT) {
 		// Create a new FormattedFloatingDecimal with the desired
 		// precision.
@@ -3224,7 +3484,7 @@ public final class Formatter implements Closeable, Flushable {
 		int newW = width;
 		if (width != -1)
 		    newW = adjustWidth(width, f, neg);
-		localizedMagnitude(sb, mant, f, newW, l);
+		localizedMagnitude(fmt, sb, mant, f, newW, l);
 	    } else if (c == Conversion.GENERAL) {
 		int prec = precision;
 		if (precision == -1)
@@ -3261,7 +3521,7 @@ public final class Formatter implements Closeable, Flushable {
 		    else
 			newW = adjustWidth(width, f, neg);
 		}
-		localizedMagnitude(sb, mant, f, newW, null);
+		localizedMagnitude(fmt, sb, mant, f, newW, null);
 
 		if (exp != null) {
 		    sb.append(f.contains(Flags.UPPERCASE) ? 'E' : 'e');
@@ -3273,7 +3533,7 @@ public final class Formatter implements Closeable, Flushable {
 
 		    char[] tmp = new char[exp.length - 1];
 		    System.arraycopy(exp, 1, tmp, 0, exp.length - 1);
-		    sb.append(localizedMagnitude(null, tmp, flags, -1, null));
+		    sb.append(localizedMagnitude(fmt, null, tmp, flags, -1, null));
 		}
 	    } else if (c == Conversion.HEXADECIMAL_FLOAT) {
 		int prec = precision;
@@ -3453,7 +3713,7 @@ public final class Formatter implements Closeable, Flushable {
 	    }
 	}
 
-	private void print(BigDecimal value, Locale l) throws IOException {
+	private void print(Formatter fmt, BigDecimal value, Locale l) throws IOException {
 	    if (c == Conversion.HEXADECIMAL_FLOAT)
 		failConversion(c, value);
 	    StringBuilder sb = new StringBuilder();
@@ -3463,17 +3723,17 @@ public final class Formatter implements Closeable, Flushable {
 	    leadingSign(sb, neg);
 
 	    // the value
-	    print(sb, v, l, f, c, precision, neg);
+	    print(fmt, sb, v, l, f, c, precision, neg);
 
 	    // trailing sign indicator
 	    trailingSign(sb, neg);
 
 	    // justify based on width
-	    a.append(justify(sb.toString()));
+	    fmt.a.append(justify(sb.toString()));
 	}
 
 	// value > 0
-	private void print(StringBuilder sb, BigDecimal value, Locale l,
+	private void print(Formatter fmt, StringBuilder sb, BigDecimal value, Locale l,
 			   Flags f, char c, int precision, boolean neg)
 	    throws IOException
 	{
@@ -3519,7 +3779,7 @@ public final class Formatter implements Closeable, Flushable {
 		int newW = width;
 		if (width != -1)
 		    newW = adjustWidth(width - exp.length - 1, f, neg);
-		localizedMagnitude(sb, mant, f, newW, null);
+		localizedMagnitude(fmt, sb, mant, f, newW, null);
 
 		sb.append(f.contains(Flags.UPPERCASE) ? 'E' : 'e');
 
@@ -3530,7 +3790,7 @@ public final class Formatter implements Closeable, Flushable {
 
 		char[] tmp = new char[exp.length - 1];
 		System.arraycopy(exp, 1, tmp, 0, exp.length - 1);
-		sb.append(localizedMagnitude(null, tmp, flags, -1, null));
+		sb.append(localizedMagnitude(fmt, null, tmp, flags, -1, null));
 	    } else if (c == Conversion.DECIMAL_FLOAT) {
 		// Create a new BigDecimal with the desired precision.
 		int prec = (precision == -1 ? 6 : precision);
@@ -3567,7 +3827,7 @@ public final class Formatter implements Closeable, Flushable {
 		// number of available digits after the decimal separator.
 		mant = trailingZeros(mant, nzeros);
 
-		localizedMagnitude(sb, mant, f, adjustWidth(width, f, neg), l);
+		localizedMagnitude(fmt, sb, mant, f, adjustWidth(width, f, neg), l);
 	    } else if (c == Conversion.GENERAL) {
 		int prec = precision;
 		if (precision == -1)
@@ -3596,10 +3856,10 @@ public final class Formatter implements Closeable, Flushable {
 		    // => f precision = g precision - exponent - 1
 		    prec = prec - e - 1;
 
-		    print(sb, value, l, f, Conversion.DECIMAL_FLOAT, prec,
+		    print(fmt, sb, value, l, f, Conversion.DECIMAL_FLOAT, prec,
 			  neg);
 		} else {
-		    print(sb, value, l, f, Conversion.SCIENTIFIC, prec - 1, neg);
+		    print(fmt, sb, value, l, f, Conversion.SCIENTIFIC, prec - 1, neg);
 		}
 	    } else if (c == Conversion.HEXADECIMAL_FLOAT) {
 		// This conversion isn't supported.  The error should be
@@ -3765,20 +4025,20 @@ public final class Formatter implements Closeable, Flushable {
 	    return tmp;
 	}
 
-	private void print(Calendar t, char c, Locale l)  throws IOException
+	private void print(Formatter fmt, Calendar t, char c, Locale l)  throws IOException
 	{
 	    StringBuilder sb = new StringBuilder();
-	    print(sb, t, c, l);
+	    print(fmt, sb, t, c, l);
 
 	    // justify based on width
 	    String s = justify(sb.toString());
 	    if (f.contains(Flags.UPPERCASE))
 		s = s.toUpperCase();
 
-	    a.append(s);
+	    fmt.a.append(s);
 	}
 
-	private Appendable print(StringBuilder sb, Calendar t, char c,
+	private Appendable print(Formatter fmt, StringBuilder sb, Calendar t, char c,
 				 Locale l)
 	    throws IOException
 	{
@@ -3797,31 +4057,31 @@ public final class Formatter implements Closeable, Flushable {
 			       || c == DateTime.HOUR_0
 			       ? Flags.ZERO_PAD
 			       : Flags.NONE);
-		sb.append(localizedMagnitude(null, i, flags, 2, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, 2, l));
 		break;
 	    }
 	    case DateTime.MINUTE:      { // 'M' (00 - 59)
 		int i = t.get(Calendar.MINUTE);
 		Flags flags = Flags.ZERO_PAD;
-		sb.append(localizedMagnitude(null, i, flags, 2, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, 2, l));
 		break;
 	    }
 	    case DateTime.NANOSECOND:  { // 'N' (000000000 - 999999999)
 		int i = t.get(Calendar.MILLISECOND) * 1000000;
 		Flags flags = Flags.ZERO_PAD;
-		sb.append(localizedMagnitude(null, i, flags, 9, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, 9, l));
 		break;
 	    }
 	    case DateTime.MILLISECOND: { // 'L' (000 - 999)
 		int i = t.get(Calendar.MILLISECOND);
 		Flags flags = Flags.ZERO_PAD;
-		sb.append(localizedMagnitude(null, i, flags, 3, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, 3, l));
 		break;
 	    }
 	    case DateTime.MILLISECOND_SINCE_EPOCH: { // 'Q' (0 - 99...?)
 		long i = t.getTimeInMillis();
 		Flags flags = Flags.NONE;
-		sb.append(localizedMagnitude(null, i, flags, width, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, width, l));
 		break;
 	    }
 	    case DateTime.AM_PM:       { // 'p' (am or pm)
@@ -3838,13 +4098,13 @@ public final class Formatter implements Closeable, Flushable {
 	    case DateTime.SECONDS_SINCE_EPOCH: { // 's' (0 - 99...?)
 		long i = t.getTimeInMillis() / 1000;
 		Flags flags = Flags.NONE;
-		sb.append(localizedMagnitude(null, i, flags, width, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, width, l));
 		break;
 	    }
 	    case DateTime.SECOND:      { // 'S' (00 - 60 - leap second)
 		int i = t.get(Calendar.SECOND);
 		Flags flags = Flags.ZERO_PAD;
-		sb.append(localizedMagnitude(null, i, flags, 2, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, 2, l));
 		break;
 	    }
 	    case DateTime.ZONE_NUMERIC: { // 'z' ({-|+}####) - ls minus?
@@ -3858,7 +4118,7 @@ public final class Formatter implements Closeable, Flushable {
 		int offset = (min / 60) * 100 + (min % 60);
 		Flags flags = Flags.ZERO_PAD;
 
-		sb.append(localizedMagnitude(null, offset, flags, 4, l));
+		sb.append(localizedMagnitude(fmt, null, offset, flags, 4, l));
 		break;
 	    }
 	    case DateTime.ZONE:        { // 'Z' (symbol)
@@ -3910,7 +4170,7 @@ public final class Formatter implements Closeable, Flushable {
 		    break;
 		}
 		Flags flags = Flags.ZERO_PAD;
-		sb.append(localizedMagnitude(null, i, flags, size, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, size, l));
 		break;
 	    }
 	    case DateTime.DAY_OF_MONTH_0:         // 'd' (01 - 31)
@@ -3919,19 +4179,19 @@ public final class Formatter implements Closeable, Flushable {
 		Flags flags = (c == DateTime.DAY_OF_MONTH_0
 			       ? Flags.ZERO_PAD
 			       : Flags.NONE);
-		sb.append(localizedMagnitude(null, i, flags, 2, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, 2, l));
 		break;
 	    }
 	    case DateTime.DAY_OF_YEAR:          { // 'j' (001 - 366)
 		int i = t.get(Calendar.DAY_OF_YEAR);
 		Flags flags = Flags.ZERO_PAD;
-		sb.append(localizedMagnitude(null, i, flags, 3, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, 3, l));
 		break;
 	    }
 	    case DateTime.MONTH:                { // 'm' (01 - 12)
 		int i = t.get(Calendar.MONTH) + 1;
 		Flags flags = Flags.ZERO_PAD;
-		sb.append(localizedMagnitude(null, i, flags, 2, l));
+		sb.append(localizedMagnitude(fmt, null, i, flags, 2, l));
 		break;
 	    }
 
@@ -3939,47 +4199,47 @@ public final class Formatter implements Closeable, Flushable {
 	    case DateTime.TIME:         // 'T' (24 hour hh:mm:ss - %tH:%tM:%tS)
 	    case DateTime.TIME_24_HOUR:    { // 'R' (hh:mm same as %H:%M)
 		char sep = ':';
-		print(sb, t, DateTime.HOUR_OF_DAY_0, l).append(sep);
-		print(sb, t, DateTime.MINUTE, l);
+		print(fmt, sb, t, DateTime.HOUR_OF_DAY_0, l).append(sep);
+		print(fmt, sb, t, DateTime.MINUTE, l);
 		if (c == DateTime.TIME) {
 		    sb.append(sep);
-		    print(sb, t, DateTime.SECOND, l);
+		    print(fmt, sb, t, DateTime.SECOND, l);
 		}
 		break;
 	    }
 	    case DateTime.TIME_12_HOUR:    { // 'r' (hh:mm:ss [AP]M)
 		char sep = ':';
-		print(sb, t, DateTime.HOUR_0, l).append(sep);
-		print(sb, t, DateTime.MINUTE, l).append(sep);
-		print(sb, t, DateTime.SECOND, l).append(' ');
+		print(fmt, sb, t, DateTime.HOUR_0, l).append(sep);
+		print(fmt, sb, t, DateTime.MINUTE, l).append(sep);
+		print(fmt, sb, t, DateTime.SECOND, l).append(' ');
 		// this may be in wrong place for some locales
 		StringBuilder tsb = new StringBuilder();
-		print(tsb, t, DateTime.AM_PM, l);
+		print(fmt, tsb, t, DateTime.AM_PM, l);
 		sb.append(tsb.toString().toUpperCase(l != null ? l : Locale.US));
 		break;
 	    }
 	    case DateTime.DATE_TIME:    { // 'c' (Sat Nov 04 12:02:33 EST 1999)
 		char sep = ' ';
-		print(sb, t, DateTime.NAME_OF_DAY_ABBREV, l).append(sep);
-		print(sb, t, DateTime.NAME_OF_MONTH_ABBREV, l).append(sep);
-		print(sb, t, DateTime.DAY_OF_MONTH_0, l).append(sep);
-		print(sb, t, DateTime.TIME, l).append(sep);
-		print(sb, t, DateTime.ZONE, l).append(sep);
-		print(sb, t, DateTime.YEAR_4, l);
+		print(fmt, sb, t, DateTime.NAME_OF_DAY_ABBREV, l).append(sep);
+		print(fmt, sb, t, DateTime.NAME_OF_MONTH_ABBREV, l).append(sep);
+		print(fmt, sb, t, DateTime.DAY_OF_MONTH_0, l).append(sep);
+		print(fmt, sb, t, DateTime.TIME, l).append(sep);
+		print(fmt, sb, t, DateTime.ZONE, l).append(sep);
+		print(fmt, sb, t, DateTime.YEAR_4, l);
 		break;
 	    }
 	    case DateTime.DATE:            { // 'D' (mm/dd/yy)
 		char sep = '/';
-		print(sb, t, DateTime.MONTH, l).append(sep);
-		print(sb, t, DateTime.DAY_OF_MONTH_0, l).append(sep);
-		print(sb, t, DateTime.YEAR_2, l);
+		print(fmt, sb, t, DateTime.MONTH, l).append(sep);
+		print(fmt, sb, t, DateTime.DAY_OF_MONTH_0, l).append(sep);
+		print(fmt, sb, t, DateTime.YEAR_2, l);
 		break;
 	    }
 	    case DateTime.ISO_STANDARD_DATE: { // 'F' (%Y-%m-%d)
 		char sep = '-';
-		print(sb, t, DateTime.YEAR_4, l).append(sep);
-		print(sb, t, DateTime.MONTH, l).append(sep);
-		print(sb, t, DateTime.DAY_OF_MONTH_0, l);
+		print(fmt, sb, t, DateTime.YEAR_4, l).append(sep);
+		print(fmt, sb, t, DateTime.MONTH, l).append(sep);
+		print(fmt, sb, t, DateTime.DAY_OF_MONTH_0, l);
 		break;
 	    }
 	    default:
@@ -3999,31 +4259,31 @@ public final class Formatter implements Closeable, Flushable {
 	    throw new IllegalFormatConversionException(c, arg.getClass());
 	}
 
-	private char getZero(Locale l) {
-	    if ((l != null) &&  !l.equals(locale())) {
+	private char getZero(Formatter fmt, Locale l) {
+	    if ((l != null) &&  !l.equals(fmt.locale())) {
 		DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance(l);
 		return dfs.getZeroDigit();
 	    }
-	    return zero;
+	    return fmt.zero();
 	}
 
 	private StringBuilder
-	    localizedMagnitude(StringBuilder sb, long value, Flags f,
+	    localizedMagnitude(Formatter fmt, StringBuilder sb, long value, Flags f,
 			       int width, Locale l)
 	{
 	    char[] va = Long.toString(value, 10).toCharArray();
-	    return localizedMagnitude(sb, va, f, width, l);
+	    return localizedMagnitude(fmt, sb, va, f, width, l);
 	}
 
 	private StringBuilder
-	    localizedMagnitude(StringBuilder sb, char[] value, Flags f,
+	    localizedMagnitude(Formatter fmt, StringBuilder sb, char[] value, Flags f,
 			       int width, Locale l)
 	{
 	    if (sb == null)
 		sb = new StringBuilder();
 	    int begin = sb.length();
 
-	    char zero = getZero(l);
+	    char zero = getZero(fmt, l);
 
 	    // determine localized grouping separator and size
 	    char grpSep = '\0';
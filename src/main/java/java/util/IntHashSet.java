@@ -0,0 +1,654 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util;
+import java.io.*;
+
+/**
+ * Set of primitive <tt>int</tt> values, backed by an open-addressing hash
+ * table.  This class offers the basic operations of a {@link Set} without
+ * boxing: where a <tt>HashSet&lt;Integer&gt;</tt> allocates an entry
+ * object and a boxed element for every element, and a boxed element for
+ * every lookup, this class keeps its elements in a single array and never
+ * allocates except to grow it.
+ *
+ * <p>The table uses linear probing, and grows the same way as that of
+ * {@link IntIntMap}, whose documentation describes the roles of the
+ * capacity and the load factor.  This class makes no guarantees as to
+ * the iteration order of the set.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a set concurrently, and at least one of
+ * the threads modifies the set, it <i>must</i> be synchronized
+ * externally.
+ *
+ * <p>The iterators returned by this class's <tt>iterator</tt> method are
+ * <i>fail-fast</i>: if the set is modified at any time after the iterator
+ * is created, in any way except through the iterator's own <tt>remove</tt>
+ * method, the iterator throws a {@link ConcurrentModificationException}
+ * on a best-effort basis.
+ *
+ * @see     HashSet
+ * @see     IntIntMap
+ * @since   1.7
+ */
+
+public class IntHashSet implements Cloneable, Serializable
+{
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum capacity, used if a higher value is implicitly specified
+     * by either of the constructors with arguments.
+     * MUST be a power of two <= 1<<30.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The table of elements.  Length MUST Always be a power of two.  A
+     * slot holding <tt>0</tt> is free; the element <tt>0</tt> itself is
+     * recorded by {@link #hasZero}.
+     */
+    transient int[] elements;
+
+    /**
+     * Whether the set contains the element <tt>0</tt>.
+     */
+    transient boolean hasZero;
+
+    /**
+     * The number of elements in this set, including <tt>0</tt>.
+     */
+    transient int size;
+
+    /**
+     * The next size value at which to resize (capacity * load factor).
+     */
+    transient int threshold;
+
+    /**
+     * The load factor for the hash table.
+     *
+     * @serial
+     */
+    final float loadFactor;
+
+    /**
+     * The number of times this set has been modified.
+     * This field is used to make iterators fail-fast.
+     */
+    transient volatile int modCount;
+
+    /**
+     * Constructs an empty set with the specified initial capacity and
+     * load factor.
+     *
+     * @param  initialCapacity the initial capacity
+     * @param  loadFactor      the load factor
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is nonpositive or not less than 1
+     */
+    public IntHashSet(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                                               initialCapacity);
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+
+        // Find a power of 2 >= initialCapacity
+        int capacity = 1;
+        while (capacity < initialCapacity)
+            capacity <<= 1;
+
+        this.loadFactor = loadFactor;
+        allocate(capacity);
+    }
+
+    /**
+     * Constructs an empty set with the specified initial capacity and
+     * the default load factor (0.75).
+     *
+     * @param  initialCapacity the initial capacity.
+     * @throws IllegalArgumentException if the initial capacity is negative.
+     */
+    public IntHashSet(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty set with the default initial capacity (16) and
+     * the default load factor (0.75).
+     */
+    public IntHashSet() {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+        allocate(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs a new set containing the elements in the specified set,
+     * with the default load factor (0.75) and an initial capacity
+     * sufficient to hold them.
+     *
+     * @param s the set whose elements are to be placed into this set
+     * @throws NullPointerException if the specified set is null
+     */
+    public IntHashSet(IntHashSet s) {
+        this(Math.max((int) (s.size() / DEFAULT_LOAD_FACTOR) + 1,
+                      DEFAULT_INITIAL_CAPACITY), DEFAULT_LOAD_FACTOR);
+        addAll(s);
+    }
+
+    /**
+     * Constructs a new set containing the elements of the specified
+     * array, with the default load factor (0.75) and an initial capacity
+     * sufficient to hold them.
+     *
+     * @param a the array whose elements are to be placed into this set
+     * @throws NullPointerException if the specified array is null
+     */
+    public IntHashSet(int[] a) {
+        this(Math.max((int) (a.length / DEFAULT_LOAD_FACTOR) + 1,
+                      DEFAULT_INITIAL_CAPACITY), DEFAULT_LOAD_FACTOR);
+        for (int i = 0; i < a.length; i++)
+            add(a[i]);
+    }
+
+    // internal utilities
+
+    /**
+     * Allocates an empty table of the given capacity, and sets the
+     * threshold accordingly.  At least one slot is always kept free,
+     * which terminates every probe sequence.
+     */
+    private void allocate(int capacity) {
+        elements = new int[capacity];
+        threshold = Math.min((int)(capacity * loadFactor), capacity - 1);
+    }
+
+    /**
+     * Returns the home slot of an element in a table with the given
+     * mask.  See {@link IntIntMap#slot}.
+     */
+    static int slot(int e, int mask) {
+        int h = e * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Returns the slot holding the given nonzero element, or -1 if it is
+     * not in this set.
+     */
+    final int indexOf(int e) {
+        int[] es = elements;
+        int mask = es.length - 1;
+        for (int i = slot(e, mask); ; i = (i + 1) & mask) {
+            int x = es[i];
+            if (x == e)
+                return i;
+            if (x == 0)
+                return -1;
+        }
+    }
+
+    /**
+     * Returns the number of elements in this set (its cardinality).
+     *
+     * @return the number of elements in this set (its cardinality)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this set contains no elements.
+     *
+     * @return <tt>true</tt> if this set contains no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this set contains the specified element.
+     *
+     * @param e element whose presence in this set is to be tested
+     * @return <tt>true</tt> if this set contains the specified element
+     */
+    public boolean contains(int e) {
+        if (e == 0)
+            return hasZero;
+        return indexOf(e) >= 0;
+    }
+
+    /**
+     * Adds the specified element to this set if it is not already present.
+     *
+     * @param e element to be added to this set
+     * @return <tt>true</tt> if this set did not already contain the
+     *         specified element
+     */
+    public boolean add(int e) {
+        if (e == 0) {
+            if (hasZero)
+                return false;
+            hasZero = true;
+        } else {
+            int[] es = elements;
+            int mask = es.length - 1;
+            int i = slot(e, mask);
+            for (int x; (x = es[i]) != 0; i = (i + 1) & mask) {
+                if (x == e)
+                    return false;
+            }
+            // A full table would leave probes for absent elements without end
+            if (mask == MAXIMUM_CAPACITY - 1 &&
+                size - (hasZero ? 1 : 0) == mask)
+                throw new IllegalStateException("Set is full");
+            es[i] = e;
+        }
+        modCount++;
+        if (size++ >= threshold)
+            resize(2 * elements.length);
+        return true;
+    }
+
+    /**
+     * Rehashes the contents of this set into a new table with a larger
+     * capacity.  This method is called automatically when the number of
+     * elements in this set reaches its threshold.
+     *
+     * If current capacity is MAXIMUM_CAPACITY, this method does not
+     * resize the set, but sets threshold to Integer.MAX_VALUE.
+     * This has the effect of preventing future calls.
+     *
+     * @param newCapacity the new capacity, MUST be a power of two;
+     *        must be greater than current capacity unless current
+     *        capacity is MAXIMUM_CAPACITY (in which case value
+     *        is irrelevant).
+     */
+    void resize(int newCapacity) {
+        int[] old = elements;
+        int oldCapacity = old.length;
+        if (oldCapacity == MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+
+        allocate(newCapacity);
+        int[] es = elements;
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldCapacity; j++) {
+            int e = old[j];
+            if (e != 0) {
+                int i = slot(e, mask);
+                while (es[i] != 0)
+                    i = (i + 1) & mask;
+                es[i] = e;
+            }
+        }
+    }
+
+    /**
+     * Adds all of the elements in the specified set to this set.
+     *
+     * @param s set containing elements to be added to this set
+     * @return <tt>true</tt> if this set changed as a result of the call
+     * @throws NullPointerException if the specified set is null
+     */
+    public boolean addAll(IntHashSet s) {
+        boolean modified = false;
+        if (s.hasZero)
+            modified = add(0);
+        int[] es = s.elements;
+        for (int j = 0; j < es.length; j++) {
+            if (es[j] != 0 && add(es[j]))
+                modified = true;
+        }
+        return modified;
+    }
+
+    /**
+     * Removes the specified element from this set if it is present.
+     *
+     * @param e element to be removed from this set, if present
+     * @return <tt>true</tt> if the set contained the specified element
+     */
+    public boolean remove(int e) {
+        if (e == 0) {
+            if (!hasZero)
+                return false;
+            hasZero = false;
+        } else {
+            int i = indexOf(e);
+            if (i < 0)
+                return false;
+            removeSlot(i);
+        }
+        modCount++;
+        size--;
+        return true;
+    }
+
+    /**
+     * Frees the given occupied slot, shifting back the later members of
+     * its probe sequence as {@link IntIntMap#removeSlot} does.
+     */
+    final void removeSlot(int i) {
+        int[] es = elements;
+        int mask = es.length - 1;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            int e = es[j];
+            if (e == 0)
+                break;
+            int h = slot(e, mask);
+            // Move e into the hole unless its home lies cyclically in (i, j]
+            if ((i <= j) ? (h <= i || h > j) : (h <= i && h > j)) {
+                es[i] = e;
+                i = j;
+            }
+        }
+        es[i] = 0;
+    }
+
+    /**
+     * Removes all of the elements from this set.
+     * The set will be empty after this call returns.
+     */
+    public void clear() {
+        modCount++;
+        Arrays.fill(elements, 0);
+        hasZero = false;
+        size = 0;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this set, in no
+     * particular order.  The returned array is newly allocated, so
+     * changes to the set are not reflected in it, and vice-versa.
+     *
+     * @return an array containing all the elements in this set
+     */
+    public int[] toArray() {
+        int[] result = new int[size];
+        int n = 0;
+        if (hasZero)
+            n++;    // the element 0 is already in place
+        int[] es = elements;
+        for (int j = 0; j < es.length; j++)
+            if (es[j] != 0)
+                result[n++] = es[j];
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the elements in this set.  The elements
+     * are returned in no particular order.
+     *
+     * @return an iterator over the elements in this set
+     */
+    public IntIterator iterator() {
+        return new Itr();
+    }
+
+    /**
+     * An iterator over the elements of an <tt>IntHashSet</tt>, which
+     * returns them without boxing.
+     *
+     * @see IntHashSet#iterator
+     */
+    public interface IntIterator {
+        /**
+         * Returns <tt>true</tt> if the iteration has more elements.
+         *
+         * @return <tt>true</tt> if the iteration has more elements
+         */
+        boolean hasNext();
+
+        /**
+         * Returns the next element in the iteration.
+         *
+         * @return the next element in the iteration
+         * @throws NoSuchElementException if the iteration has no more
+         *         elements
+         */
+        int next();
+
+        /**
+         * Removes from the set the last element returned by the
+         * iterator.  This method can be called only once per call to
+         * <tt>next</tt>.
+         *
+         * @throws IllegalStateException if <tt>next</tt> has not yet
+         *         been called, or <tt>remove</tt> has already been called
+         *         after the last call to <tt>next</tt>
+         */
+        void remove();
+    }
+
+    /**
+     * Slot number standing for the element 0 in iterators.
+     */
+    private static final int ZERO_SLOT = -2;
+
+    /**
+     * The iterator over the elements.  Like the iterators of
+     * {@link IntIntMap}, it scans the table downwards from a free slot,
+     * so that removing the last element returned only moves elements
+     * that have already been returned.
+     */
+    private final class Itr implements IntIterator {
+        final int[] es = elements;
+        final int mask = es.length - 1;
+        int index;          // slot last examined by the scan
+        int remaining;      // number of slots still to be examined
+        int next = -1;      // slot of the next element, ZERO_SLOT, or -1
+        int lastRet = -1;   // slot of the last element returned, or -1
+        int expectedModCount = modCount;
+
+        Itr() {
+            if (size > 0) {
+                int start = 0;
+                while (es[start] != 0)
+                    start++;
+                index = start;
+                remaining = mask;
+                if (hasZero)
+                    next = ZERO_SLOT;
+                else
+                    scan();
+            }
+        }
+
+        /** Sets next to the next occupied slot of the scan, if any. */
+        private void scan() {
+            while (remaining > 0) {
+                remaining--;
+                index = (index - 1) & mask;
+                if (es[index] != 0) {
+                    next = index;
+                    return;
+                }
+            }
+            next = -1;
+        }
+
+        public boolean hasNext() {
+            return next != -1;
+        }
+
+        public int next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next == -1)
+                throw new NoSuchElementException();
+            lastRet = next;
+            scan();
+            return (lastRet == ZERO_SLOT) ? 0 : es[lastRet];
+        }
+
+        public void remove() {
+            if (lastRet == -1)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastRet == ZERO_SLOT)
+                hasZero = false;
+            else
+                removeSlot(lastRet);
+            modCount++;
+            size--;
+            lastRet = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Compares the specified object with this set for equality.  Returns
+     * <tt>true</tt> if the given object is also an <tt>IntHashSet</tt>
+     * and the two sets contain the same elements.
+     *
+     * @param o object to be compared for equality with this set
+     * @return <tt>true</tt> if the specified object is equal to this set
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntHashSet))
+            return false;
+        IntHashSet s = (IntHashSet) o;
+        if (s.size() != size() || s.hasZero != hasZero)
+            return false;
+        int[] es = elements;
+        for (int j = 0; j < es.length; j++) {
+            if (es[j] != 0 && s.indexOf(es[j]) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this set, the sum of its elements.
+     * This makes it equal to the hash code of a
+     * <tt>HashSet&lt;Integer&gt;</tt> holding the same elements.
+     *
+     * @return the hash code value for this set
+     */
+    public int hashCode() {
+        int h = 0;
+        int[] es = elements;
+        for (int j = 0; j < es.length; j++)
+            h += es[j];
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this set, in the format of
+     * {@link AbstractCollection#toString}.
+     *
+     * @return a string representation of this set
+     */
+    public String toString() {
+        if (size == 0)
+            return "[]";
+        StringBuilder sb = new StringBuilder(size * 6);
+        sb.append('[');
+        if (hasZero)
+            sb.append("0, ");
+        int[] es = elements;
+        for (int j = 0; j < es.length; j++) {
+            if (es[j] != 0)
+                sb.append(es[j]).append(", ");
+        }
+        sb.setLength(sb.length() - 2);
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Returns a shallow copy of this <tt>IntHashSet</tt> instance.
+     *
+     * @return a copy of this set
+     */
+    public Object clone() {
+        IntHashSet result = null;
+        try {
+            result = (IntHashSet)super.clone();
+        } catch (CloneNotSupportedException e) {
+            // assert false;
+        }
+        result.elements = elements.clone();
+        result.modCount = 0;
+        return result;
+    }
+
+    /**
+     * Save the state of this <tt>IntHashSet</tt> instance to a stream
+     * (that is, serialize it).
+     *
+     * @serialData The capacity of the table (int) is emitted, followed by
+     *             the size of the set (the number of elements it contains)
+     *             (int), followed by all of its elements (each an int) in
+     *             no particular order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws IOException
+    {
+        // Write out the loadfactor, and any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out capacity and size
+        s.writeInt(elements.length);
+        s.writeInt(size);
+
+        // Write out all elements in the proper order.
+        if (hasZero)
+            s.writeInt(0);
+        int[] es = elements;
+        for (int j = 0; j < es.length; j++) {
+            if (es[j] != 0)
+                s.writeInt(es[j]);
+        }
+    }
+
+    private static final long serialVersionUID = 4862386027127305126L;
+
+    /**
+     * Reconstitute the <tt>IntHashSet</tt> instance from a stream (that
+     * is, deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+         throws IOException, ClassNotFoundException
+    {
+        // Read in the loadfactor, and any hidden stuff
+        s.defaultReadObject();
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new InvalidObjectException("Illegal load factor: " +
+                                             loadFactor);
+
+        // Read in capacity and size, and allocate the table
+        int capacity = s.readInt();
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY ||
+            (capacity & (capacity - 1)) != 0)
+            throw new InvalidObjectException("Illegal capacity: " + capacity);
+        allocate(capacity);
+        int n = s.readInt();
+
+        // Read in all elements
+        for (int i = 0; i < n; i++)
+            add(s.readInt());
+    }
+}
@@ -0,0 +1,877 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util;
+import java.io.*;
+
+/**
+ * Hash table mapping primitive <tt>int</tt> keys to <tt>int</tt> values.
+ * This class offers the basic operations of a {@link Map} without boxing
+ * keys or values: where a <tt>HashMap&lt;Integer,Integer&gt;</tt> allocates an
+ * entry object and two boxed values for every mapping, and a
+ * boxed key for every lookup, this class keeps its keys and values in
+ * two parallel arrays and never allocates except to grow them.
+ *
+ * <p>The table uses open addressing with linear probing.  Its capacity
+ * is always a power of two, and it grows the same way as the table of
+ * {@link HashMap}: when the number of mappings exceeds the product of
+ * the load factor and the current capacity, the capacity is doubled.
+ * As with <tt>HashMap</tt>, the default load factor (.75) offers a good
+ * tradeoff between time and space costs; since the mappings are stored
+ * in the table itself, the load factor must be less than 1.  The
+ * expected number of mappings should be taken into account when setting
+ * the initial capacity, so as to minimize the number of rehash
+ * operations.
+ *
+ * <p>There is no value that stands for "no mapping", so {@link #get}
+ * returns <tt>0</tt> for an absent key; use {@link #containsKey} or
+ * {@link #getOrDefault} where that matters.  The mappings are traversed with an
+ * {@link EntryIterator}, which exposes the current key and value
+ * directly.  This class makes no guarantees as to the order of the
+ * mappings.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a map concurrently, and at least one of
+ * the threads modifies the map structurally, it <i>must</i> be
+ * synchronized externally.  (A structural modification is any operation
+ * that adds or deletes one or more mappings; merely changing the value
+ * associated with a key that an instance already contains is not a
+ * structural modification.)
+ *
+ * <p>The iterators returned by {@link #entryIterator} are <i>fail-fast</i>
+ * in the same way as those of <tt>HashMap</tt>: if the map is
+ * structurally modified after the iterator is created, in any way except
+ * through the iterator's own <tt>remove</tt> method, the iterator throws
+ * a {@link ConcurrentModificationException} on a best-effort basis.
+ *
+ * @see     HashMap
+ * @see     LongLongMap
+ * @see     LongObjectMap
+ * @since   1.7
+ */
+
+public class IntIntMap implements Cloneable, Serializable
+{
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum capacity, used if a higher value is implicitly specified
+     * by either of the constructors with arguments.
+     * MUST be a power of two <= 1<<30.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The keys, indexed like the values.  Length MUST Always be a power
+     * of two.  A slot holding <tt>0</tt> is free; the mapping for the key
+     * <tt>0</tt> itself, if any, is kept in {@link #zeroValue}.
+     */
+    transient int[] keys;
+
+    /**
+     * The values, indexed like the keys.
+     */
+    transient int[] values;
+
+    /**
+     * Whether the map contains a mapping for the key <tt>0</tt>.
+     */
+    transient boolean hasZeroKey;
+
+    /**
+     * The value mapped to the key <tt>0</tt>, if {@link #hasZeroKey}.
+     */
+    transient int zeroValue;
+
+    /**
+     * The number of key-value mappings contained in this map, including
+     * the mapping for the key <tt>0</tt>.
+     */
+    transient int size;
+
+    /**
+     * The next size value at which to resize (capacity * load factor).
+     */
+    transient int threshold;
+
+    /**
+     * The load factor for the hash table.
+     *
+     * @serial
+     */
+    final float loadFactor;
+
+    /**
+     * The number of times this map has been structurally modified.
+     * This field is used to make iterators fail-fast.
+     */
+    transient volatile int modCount;
+
+    /**
+     * Constructs an empty <tt>IntIntMap</tt> with the specified initial
+     * capacity and load factor.
+     *
+     * @param  initialCapacity the initial capacity
+     * @param  loadFactor      the load factor
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is nonpositive or not less than 1
+     */
+    public IntIntMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                                               initialCapacity);
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+
+        // Find a power of 2 >= initialCapacity
+        int capacity = 1;
+        while (capacity < initialCapacity)
+            capacity <<= 1;
+
+        this.loadFactor = loadFactor;
+        allocate(capacity);
+    }
+
+    /**
+     * Constructs an empty <tt>IntIntMap</tt> with the specified initial
+     * capacity and the default load factor (0.75).
+     *
+     * @param  initialCapacity the initial capacity.
+     * @throws IllegalArgumentException if the initial capacity is negative.
+     */
+    public IntIntMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty <tt>IntIntMap</tt> with the default initial
+     * capacity (16) and the default load factor (0.75).
+     */
+    public IntIntMap() {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+        allocate(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs a new <tt>IntIntMap</tt> with the same mappings as the
+     * specified map.  The map is created with default load factor (0.75)
+     * and an initial capacity sufficient to hold the mappings in the
+     * specified map.
+     *
+     * @param   m the map whose mappings are to be placed in this map
+     * @throws  NullPointerException if the specified map is null
+     */
+    public IntIntMap(IntIntMap m) {
+        this(Math.max((int) (m.size() / DEFAULT_LOAD_FACTOR) + 1,
+                      DEFAULT_INITIAL_CAPACITY), DEFAULT_LOAD_FACTOR);
+        putAll(m);
+    }
+
+    // internal utilities
+
+    /**
+     * Allocates empty key and value arrays of the given capacity, and
+     * sets the threshold accordingly.  At least one slot is always kept
+     * free, which terminates every probe sequence.
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        threshold = Math.min((int)(capacity * loadFactor), capacity - 1);
+    }
+
+    /**
+     * Applies a supplemental hash function to a key, and returns the
+     * home slot of the key in a table with the given mask.  Keys are
+     * often consecutive, which would produce long runs of occupied slots
+     * under linear probing; multiplying by the golden ratio scatters
+     * them, and folding the high half into the low half lets all the bits
+     * of the key take part in the index.
+     */
+    static int slot(int key, int mask) {
+        int h = key;
+        h *= 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Returns the slot holding the given nonzero key, or -1 if there is
+     * no mapping for it.
+     */
+    final int indexOf(int key) {
+        int[] ks = keys;
+        int mask = ks.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            int k = ks[i];
+            if (k == key)
+                return i;
+            if (k == 0)
+                return -1;
+        }
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this map contains no key-value mappings.
+     *
+     * @return <tt>true</tt> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or 0 if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         0 if this map contains no mapping for the key
+     * @see #containsKey
+     */
+    public int get(int key) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : 0;
+        int i = indexOf(key);
+        return (i < 0) ? 0 : values[i];
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <tt>defaultValue</tt> if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if there is no mapping
+     * @return the value to which the specified key is mapped, or
+     *         <tt>defaultValue</tt> if this map contains no mapping for
+     *         the key
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : defaultValue;
+        int i = indexOf(key);
+        return (i < 0) ? defaultValue : values[i];
+    }
+
+    /**
+     * Returns <tt>true</tt> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param   key   The key whose presence in this map is to be tested
+     * @return <tt>true</tt> if this map contains a mapping for the specified
+     * key.
+     */
+    public boolean containsKey(int key) {
+        if (key == 0)
+            return hasZeroKey;
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <tt>key</tt>, or
+     *         0 if there was no mapping for <tt>key</tt>.
+     *         (A <tt>0</tt> return can also indicate that the map
+     *         previously associated <tt>0</tt> with <tt>key</tt>.)
+     */
+    public int put(int key, int value) {
+        if (key == 0) {
+            int oldValue = zeroValue;
+            zeroValue = value;
+            if (hasZeroKey)
+                return oldValue;
+            hasZeroKey = true;
+            modCount++;
+            if (size++ >= threshold)
+                resize(2 * keys.length);
+            return 0;
+        }
+
+        int[] ks = keys;
+        int mask = ks.length - 1;
+        int i = slot(key, mask);
+        for (int k; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) {
+                int oldValue = values[i];
+                values[i] = value;
+                return oldValue;
+            }
+        }
+
+        // A full table would leave probes for absent keys without end
+        if (mask == MAXIMUM_CAPACITY - 1 &&
+            size - (hasZeroKey ? 1 : 0) == mask)
+            throw new IllegalStateException("Map is full");
+        ks[i] = key;
+        values[i] = value;
+        modCount++;
+        if (size++ >= threshold)
+            resize(2 * ks.length);
+        return 0;
+    }
+
+    /**
+     * Rehashes the contents of this map into a new table with a larger
+     * capacity.  This method is called automatically when the number of
+     * mappings in this map reaches its threshold.
+     *
+     * If current capacity is MAXIMUM_CAPACITY, this method does not
+     * resize the map, but sets threshold to Integer.MAX_VALUE.
+     * This has the effect of preventing future calls.
+     *
+     * @param newCapacity the new capacity, MUST be a power of two;
+     *        must be greater than current capacity unless current
+     *        capacity is MAXIMUM_CAPACITY (in which case value
+     *        is irrelevant).
+     */
+    void resize(int newCapacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        int oldCapacity = oldKeys.length;
+        if (oldCapacity == MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+
+        allocate(newCapacity);
+        int[] ks = keys;
+        int[] vs = values;
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldCapacity; j++) {
+            int k = oldKeys[j];
+            if (k != 0) {
+                int i = slot(k, mask);
+                while (ks[i] != 0)
+                    i = (i + 1) & mask;
+                ks[i] = k;
+                vs[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map.
+     * These mappings will replace any mappings that this map had for
+     * any of the keys currently in the specified map.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public void putAll(IntIntMap m) {
+        if (m.hasZeroKey)
+            put(0, m.zeroValue);
+        int[] ks = m.keys;
+        int[] vs = m.values;
+        for (int j = 0; j < ks.length; j++) {
+            if (ks[j] != 0)
+                put(ks[j], vs[j]);
+        }
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param  key key whose mapping is to be removed from the map
+     * @return the previous value associated with <tt>key</tt>, or
+     *         0 if there was no mapping for <tt>key</tt>.
+     */
+    public int remove(int key) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return 0;
+            int oldValue = zeroValue;
+            hasZeroKey = false;
+            zeroValue = 0;
+            modCount++;
+            size--;
+            return oldValue;
+        }
+        int i = indexOf(key);
+        if (i < 0)
+            return 0;
+        int oldValue = values[i];
+        modCount++;
+        size--;
+        removeSlot(i);
+        return oldValue;
+    }
+
+    /**
+     * Frees the given occupied slot.  Rather than leaving a marker
+     * behind, the later members of the probe sequence running through
+     * the slot are shifted back so that every key stays reachable from
+     * its home slot; such shifts only ever move a mapping from a slot to
+     * an earlier slot of the same run of occupied slots.
+     */
+    final void removeSlot(int i) {
+        int[] ks = keys;
+        int[] vs = values;
+        int mask = ks.length - 1;
+        for (int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            int k = ks[j];
+            if (k == 0)
+                break;
+            int h = slot(k, mask);
+            // Move k into the hole unless its home lies cyclically in (i, j]
+            if ((i <= j) ? (h <= i || h > j) : (h <= i && h > j)) {
+                ks[i] = k;
+                vs[i] = vs[j];
+                i = j;
+            }
+        }
+        ks[i] = 0;
+        vs[i] = 0;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        modCount++;
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this map maps one or more keys to the
+     * specified value.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return <tt>true</tt> if this map maps one or more keys to the
+     *         specified value
+     */
+    public boolean containsValue(int value) {
+        if (hasZeroKey && zeroValue == value)
+            return true;
+        int[] ks = keys;
+        int[] vs = values;
+        for (int j = 0; j < ks.length; j++)
+            if (ks[j] != 0 && vs[j] == value)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the keys contained in this map, in no particular order.
+     * The returned array is newly allocated, so changes to the map are
+     * not reflected in it, and vice-versa.
+     *
+     * @return an array of the keys contained in this map
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        if (hasZeroKey)
+            n++;    // the key 0 is already in place
+        int[] ks = keys;
+        for (int j = 0; j < ks.length; j++)
+            if (ks[j] != 0)
+                result[n++] = ks[j];
+        return result;
+    }
+
+    /**
+     * Returns the values contained in this map, in the same order as the
+     * keys returned by {@link #keys}.  The returned array is newly
+     * allocated, so changes to the map are not reflected in it, and
+     * vice-versa.
+     *
+     * @return an array of the values contained in this map
+     */
+    public int[] values() {
+        int[] result = new int[size];
+        int n = 0;
+        if (hasZeroKey)
+            result[n++] = zeroValue;
+        int[] ks = keys;
+        int[] vs = values;
+        for (int j = 0; j < ks.length; j++)
+            if (ks[j] != 0)
+                result[n++] = vs[j];
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the mappings in this map.  The mappings
+     * are returned in no particular order.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    public EntryIterator entryIterator() {
+        return new EntryItr();
+    }
+
+    /**
+     * An iterator over the mappings of an <tt>IntIntMap</tt>, which gives
+     * access to the key and value of the current mapping without boxing.
+     * A typical traversal is:
+     * <pre>
+     *   IntIntMap.EntryIterator it = map.entryIterator();
+     *   while (it.hasNext()) {
+     *       it.advance();
+     *       use(it.key(), it.value());
+     *   }</pre>
+     *
+     * @see IntIntMap#entryIterator
+     */
+    public interface EntryIterator {
+        /**
+         * Returns <tt>true</tt> if the iteration has more mappings.
+         *
+         * @return <tt>true</tt> if the iteration has more mappings
+         */
+        boolean hasNext();
+
+        /**
+         * Moves to the next mapping, which becomes the current mapping.
+         *
+         * @throws NoSuchElementException if the iteration has no more
+         *         mappings
+         */
+        void advance();
+
+        /**
+         * Returns the key of the current mapping.
+         *
+         * @return the key of the current mapping
+         * @throws IllegalStateException if <tt>advance</tt> has not yet
+         *         been called, or the current mapping has been removed
+         */
+        int key();
+
+        /**
+         * Returns the value of the current mapping.
+         *
+         * @return the value of the current mapping
+         * @throws IllegalStateException if <tt>advance</tt> has not yet
+         *         been called, or the current mapping has been removed
+         */
+        int value();
+
+        /**
+         * Replaces the value of the current mapping.
+         *
+         * @param value the new value of the current mapping
+         * @throws IllegalStateException if <tt>advance</tt> has not yet
+         *         been called, or the current mapping has been removed
+         */
+        void setValue(int value);
+
+        /**
+         * Removes the current mapping from the map.  This method can be
+         * called only once per call to <tt>advance</tt>.
+         *
+         * @throws IllegalStateException if <tt>advance</tt> has not yet
+         *         been called, or <tt>remove</tt> has already been called
+         *         after the last call to <tt>advance</tt>
+         */
+        void remove();
+    }
+
+    /**
+     * Slot number standing for the mapping of the key 0 in iterators.
+     */
+    private static final int ZERO_SLOT = -2;
+
+    /**
+     * The iterator over the mappings.  Slots are scanned downwards and
+     * cyclically, starting just below a free slot, so that no run of
+     * occupied slots straddles the point where the scan starts and ends.
+     * Every run is then scanned from its end to its beginning, and
+     * removing the current mapping (which only shifts mappings towards
+     * the beginning of its run, into slots already scanned) never moves
+     * a mapping the iterator has yet to return, nor makes it return one
+     * twice.
+     */
+    private final class EntryItr implements EntryIterator {
+        final int[] ks = keys;
+        final int mask = ks.length - 1;
+        int index;          // slot last examined by the scan
+        int remaining;      // number of slots still to be examined
+        int next = -1;      // slot of the next mapping, ZERO_SLOT, or -1
+        int current = -1;   // slot of the current mapping, ZERO_SLOT, or -1
+        int expectedModCount = modCount;
+
+        EntryItr() {
+            if (size > 0) {
+                int start = 0;
+                while (ks[start] != 0)
+                    start++;
+                index = start;
+                remaining = mask;
+                if (hasZeroKey)
+                    next = ZERO_SLOT;
+                else
+                    scan();
+            }
+        }
+
+        /** Sets next to the next occupied slot of the scan, if any. */
+        private void scan() {
+            while (remaining > 0) {
+                remaining--;
+                index = (index - 1) & mask;
+                if (ks[index] != 0) {
+                    next = index;
+                    return;
+                }
+            }
+            next = -1;
+        }
+
+        public boolean hasNext() {
+            return next != -1;
+        }
+
+        public void advance() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next == -1)
+                throw new NoSuchElementException();
+            current = next;
+            scan();
+        }
+
+        public int key() {
+            if (current == -1)
+                throw new IllegalStateException();
+            return (current == ZERO_SLOT) ? 0 : ks[current];
+        }
+
+        public int value() {
+            if (current == -1)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return (current == ZERO_SLOT) ? zeroValue : values[current];
+        }
+
+        public void setValue(int value) {
+            if (current == -1)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (current == ZERO_SLOT)
+                zeroValue = value;
+            else
+                values[current] = value;
+        }
+
+        public void remove() {
+            if (current == -1)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (current == ZERO_SLOT) {
+                IntIntMap.this.remove(0);
+            } else {
+                modCount++;
+                size--;
+                removeSlot(current);
+            }
+            current = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Compares the specified object with this map for equality.  Returns
+     * <tt>true</tt> if the given object is also an <tt>IntIntMap</tt>
+     * and the two maps contain the same mappings.
+     *
+     * @param o object to be compared for equality with this map
+     * @return <tt>true</tt> if the specified object is equal to this map
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntIntMap))
+            return false;
+        IntIntMap m = (IntIntMap) o;
+        if (m.size() != size())
+            return false;
+        if (hasZeroKey && !(m.hasZeroKey && zeroValue == m.zeroValue))
+            return false;
+        int[] ks = keys;
+        int[] vs = values;
+        for (int j = 0; j < ks.length; j++) {
+            int k = ks[j];
+            if (k != 0) {
+                int i = m.indexOf(k);
+                if (i < 0 || vs[j] != m.values[i])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this map.  The hash code of a map
+     * is defined to be the sum of the hash codes of its mappings, where
+     * the hash code of a mapping is that of the equivalent
+     * {@link Map.Entry}, namely the hash code of the boxed key
+     * exclusive-or'ed with the hash code of the boxed value.  This
+     * makes the hash code equal to that of a
+     * <tt>HashMap&lt;Integer,Integer&gt;</tt> holding the same mappings.
+     *
+     * @return the hash code value for this map
+     */
+    public int hashCode() {
+        int h = 0;
+        if (hasZeroKey)
+            h += zeroValue;
+        int[] ks = keys;
+        int[] vs = values;
+        for (int j = 0; j < ks.length; j++) {
+            int k = ks[j];
+            if (k != 0)
+                h += k ^ vs[j];
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this map.  The string
+     * representation consists of a list of key-value mappings enclosed
+     * in braces (<tt>"{}"</tt>).  Adjacent mappings are separated by the
+     * characters <tt>", "</tt> (comma and space).  Each key-value mapping
+     * is rendered as the key followed by an equals sign (<tt>"="</tt>)
+     * followed by the associated value.
+     *
+     * @return a string representation of this map
+     */
+    public String toString() {
+        if (size == 0)
+            return "{}";
+        StringBuilder sb = new StringBuilder(size * 8);
+        sb.append('{');
+        if (hasZeroKey)
+            sb.append("0=").append(zeroValue).append(", ");
+        int[] ks = keys;
+        int[] vs = values;
+        for (int j = 0; j < ks.length; j++) {
+            int k = ks[j];
+            if (k != 0)
+                sb.append(k).append('=').append(vs[j]).append(", ");
+        }
+        sb.setLength(sb.length() - 2);
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Returns a shallow copy of this <tt>IntIntMap</tt> instance: the keys
+     * and values themselves are not cloned.
+     *
+     * @return a shallow copy of this map
+     */
+    public Object clone() {
+        IntIntMap result = null;
+        try {
+            result = (IntIntMap)super.clone();
+        } catch (CloneNotSupportedException e) {
+            // assert false;
+        }
+        result.keys = keys.clone();
+        result.values = values.clone();
+        result.modCount = 0;
+        return result;
+    }
+
+    /**
+     * Save the state of the <tt>IntIntMap</tt> instance to a stream (i.e.,
+     * serialize it).
+     *
+     * @serialData The <i>capacity</i> of the IntIntMap (the length of the
+     *		   table) is emitted (int), followed by the
+     *		   <i>size</i> (an int, the number of key-value
+     *		   mappings), followed by the key (int) and value (int)
+     *		   for each key-value mapping.  The key-value mappings are
+     *		   emitted in no particular order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws IOException
+    {
+        // Write out the loadfactor, and any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out capacity and size (number of mappings)
+        s.writeInt(keys.length);
+        s.writeInt(size);
+
+        // Write out keys and values (alternating)
+        if (hasZeroKey) {
+            s.writeInt(0);
+            s.writeInt(zeroValue);
+        }
+        int[] ks = keys;
+        int[] vs = values;
+        for (int j = 0; j < ks.length; j++) {
+            if (ks[j] != 0) {
+                s.writeInt(ks[j]);
+                s.writeInt(vs[j]);
+            }
+        }
+    }
+
+    private static final long serialVersionUID = -3360541858813738485L;
+
+    /**
+     * Reconstitute the <tt>IntIntMap</tt> instance from a stream (i.e.,
+     * deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+         throws IOException, ClassNotFoundException
+    {
+        // Read in the loadfactor, and any hidden stuff
+        s.defaultReadObject();
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new InvalidObjectException("Illegal load factor: " +
+                                             loadFactor);
+
+        // Read in capacity and size, and allocate the table
+        int capacity = s.readInt();
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY ||
+            (capacity & (capacity - 1)) != 0)
+            throw new InvalidObjectException("Illegal capacity: " + capacity);
+        allocate(capacity);
+        int mappings = s.readInt();
+
+        // Read the keys and values, and put the mappings in the map
+        for (int i = 0; i < mappings; i++) {
+            int key = s.readInt();
+            int value = s.readInt();
+            put(key, value);
+        }
+    }
+}
@@ -0,0 +1,2090 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import sun.misc.Unsafe;
+
+/**
+ * An {@link ExecutorService} for running {@link ForkJoinTask}s.
+ * A {@code ForkJoinPool} provides the entry point for submissions
+ * from non-{@code ForkJoinTask} clients, as well as management and
+ * monitoring operations.
+ *
+ * <p>A {@code ForkJoinPool} differs from other kinds of {@link
+ * ExecutorService} mainly by virtue of employing
+ * <em>work-stealing</em>: all threads in the pool attempt to find and
+ * execute tasks submitted to the pool and/or created by other active
+ * tasks (eventually blocking waiting for work if none exist). This
+ * enables efficient processing when most tasks spawn other subtasks
+ * (as do most {@code ForkJoinTask}s), as well as when many small
+ * tasks are submitted to the pool from external clients.  Especially
+ * when setting <em>asyncMode</em> to true in constructors, {@code
+ * ForkJoinPool}s may also be appropriate for use with event-style
+ * tasks that are never joined.
+ *
+ * <p>A static {@link #commonPool()} is available and appropriate for
+ * most applications. The common pool is used by any ForkJoinTask that
+ * is not explicitly submitted to a specified pool. Using the common
+ * pool normally reduces resource usage (its threads are slowly
+ * reclaimed during periods of non-use, and reinstated upon subsequent
+ * use).
+ *
+ * <p>For applications that require separate or custom pools, a {@code
+ * ForkJoinPool} may be constructed with a given target parallelism
+ * level; by default, equal to the number of available processors.
+ * The pool attempts to maintain enough active (or available) threads
+ * by dynamically adding, suspending, or resuming internal worker
+ * threads, even if some tasks are stalled waiting to join others.
+ * However, no such adjustments are guaranteed in the face of blocked
+ * I/O or other unmanaged synchronization. The nested {@link
+ * ManagedBlocker} interface enables extension of the kinds of
+ * synchronization accommodated.
+ *
+ * <p>In addition to execution and lifecycle control methods, this
+ * class provides status check methods (for example
+ * {@link #getStealCount}) that are intended to aid in developing,
+ * tuning, and monitoring fork/join applications. Also, method
+ * {@link #toString} returns indications of pool state in a
+ * convenient form for informal monitoring.
+ *
+ * <p>As is the case with other ExecutorServices, there are three
+ * main task execution methods summarized in the following table.
+ * These are designed to be used primarily by clients not already
+ * engaged in fork/join computations in the current pool.  The main
+ * forms of these methods accept instances of {@code ForkJoinTask},
+ * but overloaded forms also allow mixed execution of plain {@code
+ * Runnable}- or {@code Callable}- based activities as well.  However,
+ * tasks that are already executing in a pool should normally instead
+ * use the within-computation forms listed in the table unless using
+ * async event-style tasks that are not usually joined, in which case
+ * there is little difference among choice of methods.
+ *
+ * <table BORDER CELLPADDING=3 CELLSPACING=1>
+ *  <tr>
+ *    <td></td>
+ *    <td ALIGN=CENTER> <b>Call from non-fork/join clients</b></td>
+ *    <td ALIGN=CENTER> <b>Call from within fork/join computations</b></td>
+ *  </tr>
+ *  <tr>
+ *    <td> <b>Arrange async execution</td>
+ *    <td> {@link #execute(ForkJoinTask)}</td>
+ *    <td> {@link ForkJoinTask#fork}</td>
+ *  </tr>
+ *  <tr>
+ *    <td> <b>Await and obtain result</td>
+ *    <td> {@link #invoke(ForkJoinTask)}</td>
+ *    <td> {@link ForkJoinTask#invoke}</td>
+ *  </tr>
+ *  <tr>
+ *    <td> <b>Arrange exec and obtain Future</td>
+ *    <td> {@link #submit(ForkJoinTask)}</td>
+ *    <td> {@link ForkJoinTask#fork} (ForkJoinTasks <em>are</em> Futures)</td>
+ *  </tr>
+ * </table>
+ *
+ * <p><b>Sample Usage.</b> Normally a single {@code ForkJoinPool} is
+ * used for all parallel task execution in a program or subsystem.
+ * Otherwise, use would not usually outweigh the construction and
+ * bookkeeping overhead of creating a large set of threads. For
+ * example, the common pool could be used for the {@code SortTasks}
+ * illustrated in {@link RecursiveAction}. Because {@code
+ * ForkJoinPool} uses threads in {@linkplain java.lang.Thread#isDaemon
+ * daemon} mode, there is typically no need to explicitly {@link
+ * #shutdown} such a pool upon program exit.
+ *
+ * <pre> {@code
+ * static final ForkJoinPool mainPool = new ForkJoinPool();
+ * ...
+ * public void sort(long[] array) {
+ *   mainPool.invoke(new SortTask(array, 0, array.length));
+ * }}</pre>
+ *
+ * <p><b>Implementation notes</b>: This implementation restricts the
+ * maximum number of running threads to 32767. Attempts to create
+ * pools with greater than the maximum number result in
+ * {@code IllegalArgumentException}.
+ *
+ * <p>This implementation rejects submitted tasks (that is, by throwing
+ * {@link RejectedExecutionException}) only when the pool is shut down
+ * or internal resources have been exhausted.
+ *
+ * @since 1.7
+ * @author Doug Lea
+ */
+public class ForkJoinPool extends AbstractExecutorService {
+
+    /*
+     * Implementation Overview
+     *
+     * Each worker thread owns a WorkQueue, a double-ended queue of
+     * tasks held in a circular array.  The owner pushes and pops
+     * tasks at the "top" end (LIFO), while other workers steal from
+     * the "base" end (FIFO).  This is a variant of the deques
+     * described in "Dynamic Circular Work-Stealing Deque" by Chase
+     * and Lev, SPAA 2005.  Insertion and owner removal need no
+     * locking: slots are claimed by CASing them to null, which
+     * arbitrates the only possible conflict, between a pop and a
+     * steal of the last remaining task.  Field "top" is only ever
+     * written by the owner, using ordered writes, and "base" is
+     * volatile and advanced only by the thread whose CAS succeeded.
+     *
+     * Tasks submitted by threads that are not workers of the pool
+     * are placed in shared "submission" queues of the same form,
+     * selected by a per-thread hash, and pushed to while holding a
+     * simple spinlock (field qlock) instead, since such queues have
+     * no owner.  Worker queues are kept at odd indices of array
+     * workQueues, and submission queues at even indices, so that
+     * scanning for work covers both uniformly.  Because submitters
+     * are spread over up to 64 queues, submissions do not all
+     * contend on one queue head, and because workers take tasks by
+     * CAS on individual slots, idle workers do not contend on a
+     * single lock either.
+     *
+     * Scanning: A worker with an empty queue scans all queues,
+     * starting at a pseudo-random index, and steals the task at the
+     * base of the first nonempty one.  After a successful steal, if
+     * the victim queue still has tasks, another worker is signalled,
+     * which propagates wakeups when many tasks are produced at once.
+     *
+     * Signalling and idling: Pushes onto a queue that was (nearly)
+     * empty call signalWork, which wakes an idle worker, or creates a
+     * new one if fewer than the target parallelism exist.  Workers
+     * that fail to find any task register as idle and await a
+     * Condition on the pool lock.  Before awaiting, an idle worker
+     * rechecks all queues; because both the pusher (after a volatile
+     * write of top or qlock) and the idler (after a volatile write of
+     * idleCount) then read what the other wrote, at least one of them
+     * notices the other and the task is not stranded.  Idle workers
+     * time out and exit after a period of disuse, more quickly when
+     * they are surplus to the target parallelism.
+     *
+     * Joining: A worker joining a task first runs the task itself if
+     * it is still at the top of its own queue, and otherwise runs its
+     * own remaining local tasks (which would otherwise have to be run
+     * by it later anyway).  If the task is still not done, it has
+     * been stolen, and the joiner helps the stealer, found as the
+     * worker whose currentSteal is the task, by stealing back and
+     * running tasks from the stealer's queue: these can only be
+     * subtasks of the joined task.  If the stealer is itself joining
+     * some other task, helping continues along that chain.  Only when
+     * no help is possible does the joiner block, after "compensating"
+     * by recording itself as blocked, which lets signalWork wake or
+     * create another worker while tasks remain queued, so that the
+     * target parallelism is maintained.  Spare workers created in
+     * this way are bounded by MAX_SPARES.  ManagedBlockers use the
+     * same compensation mechanism.
+     *
+     * Common pool: A static common pool is always available for
+     * applications, and is used by tasks forked by threads that are
+     * not workers of any pool.  Its parallelism is one less than the
+     * number of processors, since its external callers typically
+     * participate by running tasks they submitted but that have not
+     * been started yet (see tryExternalUnpush).  It cannot be shut
+     * down.
+     *
+     * Counts: totalCount is the number of workers that have been
+     * started and not yet exited, idleCount the number awaiting work,
+     * and blockedCount the number blocked in joins or managed
+     * blocks.  The pool lock guards idleCount, runState, and the
+     * workQueues array when workers register or deregister; the
+     * other counts are updated by CAS.
+     */
+
+    // Static utilities
+
+    /**
+     * If there is a security manager, makes sure caller has
+     * permission to modify threads.
+     */
+    private static void checkPermission() {
+        SecurityManager security = System.getSecurityManager();
+        if (security != null)
+            security.checkPermission(modifyThreadPermission);
+    }
+
+    // Nested classes
+
+    /**
+     * Factory for creating new {@link ForkJoinWorkerThread}s.
+     * A {@code ForkJoinWorkerThreadFactory} must be defined and used
+     * for {@code ForkJoinWorkerThread} subclasses that extend base
+     * functionality or initialize threads with different contexts.
+     */
+    public static interface ForkJoinWorkerThreadFactory {
+        /**
+         * Returns a new worker thread operating in the given pool.
+         *
+         * @param pool the pool this thread works in
+         * @throws NullPointerException if the pool is null
+         */
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool);
+    }
+
+    /**
+     * Default ForkJoinWorkerThreadFactory implementation; creates a
+     * new ForkJoinWorkerThread.
+     */
+    static final class DefaultForkJoinWorkerThreadFactory
+        implements ForkJoinWorkerThreadFactory {
+        public final ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            return new ForkJoinWorkerThread(pool);
+        }
+    }
+
+    /**
+     * Per-thread records for threads that submit to pools. Currently
+     * holds only pseudo-random seed / index that is used to choose
+     * submission queues in method externalPush. In the future, this may
+     * also incorporate a means to implement different task rejection
+     * and resubmission policies.
+     */
+    static final class Submitter {
+        int seed;
+        Submitter(int s) { seed = s; }
+    }
+
+    /**
+     * Queues supporting work-stealing as well as external task
+     * submission. See above for main rationale and algorithms.
+     */
+    static final class WorkQueue {
+        /**
+         * Capacity of work-stealing queue array upon initialization.
+         * Must be a power of two; at least 4, but should be larger to
+         * reduce or eliminate cacheline sharing among queues.
+         */
+        static final int INITIAL_QUEUE_CAPACITY = 1 << 13;
+
+        /**
+         * Maximum size for queue arrays. Must be a power of two less
+         * than or equal to 1 << (31 - width of array entry) to ensure
+         * lack of wraparound of index calculations, but defined to a
+         * value a bit less than this to help users trap runaway
+         * programs before saturating systems.
+         */
+        static final int MAXIMUM_QUEUE_CAPACITY = 1 << 26; // 64M
+
+        volatile int base;         // index of next slot for poll
+        int top;                   // index of next slot for push
+        volatile int qlock;        // 1: locked; used only by shared queues
+        volatile ForkJoinTask<?>[] array; // the elements
+        int poolIndex;             // index of this queue in pool
+        int seed;                  // for random scanning; owner only
+        int nsteals;               // number of steals; owner only
+        boolean counted;           // included in pool's totalCount
+        final boolean fifo;        // true if locally FIFO (asyncMode)
+        final ForkJoinPool pool;   // the containing pool
+        final ForkJoinWorkerThread owner; // owning thread or null if shared
+        volatile ForkJoinTask<?> currentJoin;  // task being joined in awaitJoin
+        volatile ForkJoinTask<?> currentSteal; // current non-local task being executed
+
+        WorkQueue(ForkJoinPool pool, ForkJoinWorkerThread owner,
+                  boolean fifo, int seed) {
+            this.pool = pool;
+            this.owner = owner;
+            this.fifo = fifo;
+            this.seed = seed;
+            this.counted = (owner != null);
+            // Place indices in the center of array (that is not yet allocated)
+            base = top = INITIAL_QUEUE_CAPACITY >>> 1;
+            array = new ForkJoinTask<?>[INITIAL_QUEUE_CAPACITY];
+        }
+
+        /**
+         * Returns the approximate number of tasks in the queue.
+         */
+        final int queueSize() {
+            int n = base - top;       // non-owner callers must read base first
+            return (n >= 0) ? 0 : -n; // ignore transient negative
+        }
+
+        /**
+         * Provides a more accurate estimate of whether this queue has
+         * any tasks than does queueSize.
+         */
+        final boolean isEmpty() {
+            return base - top >= 0;
+        }
+
+        /**
+         * Pushes a task. Call only by owner in unshared queues.  (The
+         * shared-queue version is embedded in method externalPush.)
+         *
+         * @param task the task. Caller must ensure non-null.
+         * @throws RejectedExecutionException if array cannot be resized
+         */
+        final void push(ForkJoinTask<?> task) {
+            ForkJoinTask<?>[] a = array;
+            int s = top, m = a.length - 1, n;
+            U.putOrderedObject(a, ((long)(m & s) << ASHIFT) + ABASE, task);
+            if ((n = s - base) <= 1) {
+                U.putIntVolatile(this, QTOP, s + 1);
+                pool.signalWork();
+            }
+            else {
+                U.putOrderedInt(this, QTOP, s + 1);
+                if (n + 1 >= m)
+                    growArray();
+            }
+        }
+
+        /**
+         * Doubles the capacity of the array.  Call only by owner or
+         * with lock held.
+         */
+        final ForkJoinTask<?>[] growArray() {
+            ForkJoinTask<?>[] oldA = array;
+            int size = oldA.length << 1;
+            if (size > MAXIMUM_QUEUE_CAPACITY)
+                throw new RejectedExecutionException("Queue capacity exceeded");
+            ForkJoinTask<?>[] a = new ForkJoinTask<?>[size];
+            int oldMask = oldA.length - 1, mask = size - 1, t = top, b = base;
+            if (t - b > 0) {
+                do {
+                    ForkJoinTask<?> x;
+                    long oldj = ((long)(b & oldMask) << ASHIFT) + ABASE;
+                    long j    = ((long)(b &    mask) << ASHIFT) + ABASE;
+                    x = (ForkJoinTask<?>)U.getObjectVolatile(oldA, oldj);
+                    if (x != null &&
+                        U.compareAndSwapObject(oldA, oldj, x, null))
+                        U.putObjectVolatile(a, j, x);
+                } while (++b != t);
+            }
+            array = a;
+            return a;
+        }
+
+        /**
+         * Takes next task, if one exists, in LIFO order.  Call only
+         * by owner in unshared queues.
+         */
+        final ForkJoinTask<?> pop() {
+            ForkJoinTask<?>[] a = array; ForkJoinTask<?> t;
+            int m = a.length - 1;
+            for (int s; (s = top - 1) - base >= 0;) {
+                long j = ((long)(m & s) << ASHIFT) + ABASE;
+                if ((t = (ForkJoinTask<?>)U.getObject(a, j)) == null)
+                    break;
+                if (U.compareAndSwapObject(a, j, t, null)) {
+                    U.putOrderedInt(this, QTOP, s);
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Takes a task in FIFO order if b is base of queue and a task
+         * can be claimed without contention. Specialized versions
+         * appear in ForkJoinPool methods scan and helpStealer.
+         */
+        final ForkJoinTask<?> pollAt(int b) {
+            ForkJoinTask<?> t; ForkJoinTask<?>[] a;
+            if ((a = array) != null) {
+                long j = ((long)((a.length - 1) & b) << ASHIFT) + ABASE;
+                if ((t = (ForkJoinTask<?>)U.getObjectVolatile(a, j)) != null &&
+                    base == b && U.compareAndSwapObject(a, j, t, null)) {
+                    base = b + 1;
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Takes next task, if one exists, in FIFO order.
+         */
+        final ForkJoinTask<?> poll() {
+            ForkJoinTask<?>[] a; int b; ForkJoinTask<?> t;
+            while ((b = base) - top < 0 && (a = array) != null) {
+                long j = ((long)((a.length - 1) & b) << ASHIFT) + ABASE;
+                t = (ForkJoinTask<?>)U.getObjectVolatile(a, j);
+                if (t != null) {
+                    if (base == b && U.compareAndSwapObject(a, j, t, null)) {
+                        base = b + 1;
+                        return t;
+                    }
+                }
+                else if (base == b) {
+                    if (b + 1 == top)
+                        break;
+                    Thread.yield(); // wait for lagging update (very rare)
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Takes next task, if one exists, in order specified by mode.
+         */
+        final ForkJoinTask<?> nextLocalTask() {
+            return fifo ? poll() : pop();
+        }
+
+        /**
+         * Returns next task, if one exists, in order specified by mode.
+         */
+        final ForkJoinTask<?> peek() {
+            ForkJoinTask<?>[] a = array; int m;
+            if (a == null || (m = a.length - 1) < 0)
+                return null;
+            int i = fifo ? base : top - 1;
+            long j = ((long)(i & m) << ASHIFT) + ABASE;
+            return (ForkJoinTask<?>)U.getObjectVolatile(a, j);
+        }
+
+        /**
+         * Pops the given task only if it is at the current top.
+         * (A shared version is available only via FJP.tryExternalUnpush)
+         */
+        final boolean tryUnpush(ForkJoinTask<?> t) {
+            ForkJoinTask<?>[] a; int s;
+            if ((a = array) != null && (s = top) != base &&
+                U.compareAndSwapObject
+                (a, (((long)(a.length - 1) & --s) << ASHIFT) + ABASE, t, null)) {
+                U.putOrderedInt(this, QTOP, s);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Removes and cancels all known tasks, ignoring any exceptions.
+         */
+        final void cancelAll() {
+            ForkJoinTask.cancelIgnoringExceptions(currentJoin);
+            ForkJoinTask.cancelIgnoringExceptions(currentSteal);
+            for (ForkJoinTask<?> t; (t = poll()) != null; )
+                ForkJoinTask.cancelIgnoringExceptions(t);
+        }
+
+        /**
+         * Executes a top-level task and any local tasks remaining
+         * after execution.
+         */
+        final void runTask(ForkJoinTask<?> task) {
+            currentSteal = task;
+            task.doExec();
+            for (ForkJoinTask<?> t; (t = nextLocalTask()) != null; )
+                t.doExec();
+            currentSteal = null;
+            ++nsteals;
+        }
+
+        /**
+         * Executes a non-top-level (stolen) task.
+         */
+        final void runSubtask(ForkJoinTask<?> task) {
+            ForkJoinTask<?> ps = currentSteal;
+            currentSteal = task;
+            task.doExec();
+            currentSteal = ps;
+            ++nsteals;
+        }
+
+        /**
+         * Returns the next pseudo-random value, used to select the
+         * starting index of scans.
+         */
+        final int nextSeed() {
+            int r = seed;
+            r ^= r << 13;
+            r ^= r >>> 17;
+            return seed = r ^= r << 5;
+        }
+    }
+
+    // static fields (initialized in static initializer below)
+
+    /**
+     * Creates a new ForkJoinWorkerThread. This factory is used unless
+     * overridden in ForkJoinPool constructors.
+     */
+    public static final ForkJoinWorkerThreadFactory
+        defaultForkJoinWorkerThreadFactory;
+
+    /**
+     * Per-thread submission bookkeeping. Shared across all pools
+     * to reduce ThreadLocal pollution and because random motion
+     * to avoid contention in one pool is likely to hold for others.
+     */
+    static final ThreadLocal<Submitter> submitters;
+
+    /**
+     * Permission required for callers of methods that may start or
+     * kill threads.
+     */
+    private static final RuntimePermission modifyThreadPermission;
+
+    /**
+     * Common (static) pool. Non-null for public use unless a static
+     * construction exception, but internal usages null-check on use
+     * to paranoically avoid potential initialization circularities
+     * as well as to simplify generated code.
+     */
+    static final ForkJoinPool common;
+
+    /**
+     * Sequence number for creating workerNamePrefix.
+     */
+    private static final AtomicInteger poolNumberSequence =
+        new AtomicInteger();
+
+    /**
+     * Generates seeds for per-thread Submitters and for worker queues.
+     */
+    private static final AtomicInteger seedGenerator = new AtomicInteger();
+
+    /**
+     * Increment for seedGenerator. See class ThreadLocal for
+     * explanation.
+     */
+    private static final int SEED_INCREMENT = 0x61c88647;
+
+    // Constants
+
+    /**
+     * Upper bound for parallelism.
+     */
+    private static final int MAX_CAP = 0x7fff;
+
+    /**
+     * Mask for the (even) indices of submission queues; at most 64
+     * are used.
+     */
+    private static final int SQMASK = 0x007e;
+
+    /**
+     * Maximum number of spare workers that may be created, beyond the
+     * target parallelism, to compensate for blocked joins.
+     */
+    private static final int MAX_SPARES = 256;
+
+    /**
+     * Time that an idle worker waits for work before exiting.
+     */
+    private static final long KEEPALIVE_NANOS = 60L * 1000L * 1000L * 1000L;
+
+    /**
+     * Time that an idle worker waits for work before exiting when the
+     * pool has more workers than its target parallelism.
+     */
+    private static final long SPARE_KEEPALIVE_NANOS = 2L * 1000L * 1000L * 1000L;
+
+    // runState values
+    private static final int RUNNING    = 0;
+    private static final int SHUTDOWN   = 1;
+    private static final int STOP       = 2;
+    private static final int TERMINATED = 3;
+
+    // Instance fields
+
+    volatile long stealCount;                  // collects worker counts
+    volatile int totalCount;                   // number of live workers
+    volatile int blockedCount;                 // workers blocked in joins
+    volatile int idleCount;                    // workers awaiting work; guarded by lock
+    volatile int runState;                     // lifecycle; guarded by lock
+    volatile WorkQueue[] workQueues;           // main registry; guarded by lock
+    int nextWorkerNumber;                      // guarded by lock
+    final ReentrantLock lock;                  // registration, idling, termination
+    final Condition work;                      // signalled when tasks arrive
+    final Condition termination;               // signalled upon termination
+    final int parallelism;                     // target number of workers
+    final boolean asyncMode;                   // local FIFO if true
+    final ForkJoinWorkerThreadFactory factory;
+    final Thread.UncaughtExceptionHandler ueh; // per-worker UEH
+    final String workerNamePrefix;             // to create worker name string
+
+    // Creating, registering and deregistering workers
+
+    /**
+     * Tries to construct and start one worker, which has already
+     * been included in totalCount by the caller.  If this fails, the
+     * count is rolled back.
+     */
+    private void createWorker() {
+        Throwable ex = null;
+        ForkJoinWorkerThread wt = null;
+        try {
+            if ((wt = factory.newThread(this)) != null) {
+                wt.start();
+                return;
+            }
+        } catch (Throwable rex) {
+            ex = rex;
+        }
+        deregisterWorker(wt, ex);
+    }
+
+    /**
+     * Tries to add one worker, if the pool is running and has fewer
+     * than the target number of workers that are not blocked.
+     */
+    private void tryAddWorker() {
+        int tc;
+        while (runState == RUNNING &&
+               (tc = totalCount) - blockedCount < parallelism &&
+               tc < parallelism + MAX_SPARES) {
+            if (U.compareAndSwapInt(this, TOTALCOUNT, tc, tc + 1)) {
+                createWorker();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Callback from ForkJoinWorkerThread constructor to establish and
+     * record its WorkQueue.
+     *
+     * @param wt the worker thread
+     * @return the worker's queue
+     */
+    final WorkQueue registerWorker(ForkJoinWorkerThread wt) {
+        Thread.UncaughtExceptionHandler handler;
+        wt.setDaemon(true);
+        if ((handler = ueh) != null)
+            wt.setUncaughtExceptionHandler(handler);
+        int s = seedGenerator.addAndGet(SEED_INCREMENT);
+        WorkQueue w = new WorkQueue(this, wt, asyncMode, (s == 0) ? 1 : s);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            WorkQueue[] ws = workQueues;
+            int n = ws.length, i = 1;
+            while (i < n && ws[i] != null)
+                i += 2;
+            if (i >= n)
+                workQueues = ws = Arrays.copyOf(ws, n << 1);
+            w.poolIndex = i;
+            ws[i] = w;
+            wt.setName(workerNamePrefix.concat
+                       (Integer.toString(nextWorkerNumber++)));
+        } finally {
+            lock.unlock();
+        }
+        return w;
+    }
+
+    /**
+     * Final callback from terminating worker, as well as upon failure
+     * to construct or start a worker.  Removes record of worker from
+     * array, and adjusts counts. If pool is shutting down, tries to
+     * complete termination.
+     *
+     * @param wt the worker thread, or null if construction failed
+     * @param ex the exception causing failure, or null if none
+     */
+    final void deregisterWorker(ForkJoinWorkerThread wt, Throwable ex) {
+        WorkQueue w = null;
+        if (wt != null && (w = wt.workQueue) != null) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                WorkQueue[] ws = workQueues;
+                int i = w.poolIndex;
+                if (i < ws.length && ws[i] == w)
+                    ws[i] = null;
+            } finally {
+                lock.unlock();
+            }
+            long sc;
+            do {} while (!U.compareAndSwapLong
+                         (this, STEALCOUNT, sc = stealCount, sc + w.nsteals));
+        }
+        if (w == null || w.counted) {
+            int tc;
+            do {} while (!U.compareAndSwapInt
+                         (this, TOTALCOUNT, tc = totalCount, tc - 1));
+            if (w != null)
+                w.counted = false;
+        }
+        if (!tryTerminate(false) && w != null) {
+            w.cancelAll();          // cancel remaining tasks
+            if (hasQueuedTasks())
+                tryAddWorker();     // replace if more work
+        }
+        if (ex != null)             // rethrow
+            ForkJoinTask.rethrow(ex);
+    }
+
+    // Signalling
+
+    /**
+     * Wakes up an idle worker, or creates one if there are none and
+     * too few workers are available.  Callers must have made the
+     * tasks prompting this call visible with a volatile write.
+     */
+    final void signalWork() {
+        if (idleCount > 0) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                if (idleCount > 0) {
+                    work.signal();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (totalCount - blockedCount < parallelism)
+            tryAddWorker();
+    }
+
+    /**
+     * Returns true if any queue, of workers or submissions, may have
+     * tasks.
+     */
+    final boolean hasQueuedTasks() {
+        WorkQueue[] ws = workQueues;
+        for (int i = 0; i < ws.length; ++i) {
+            WorkQueue q = ws[i];
+            if (q != null && !q.isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    // Scanning for tasks
+
+    /**
+     * Top-level runloop for workers, called by ForkJoinWorkerThread.run.
+     */
+    final void runWorker(WorkQueue w) {
+        for (ForkJoinTask<?> t;;) {
+            if ((t = scan(w)) != null)
+                w.runTask(t);
+            else if (!awaitWork(w))
+                break;
+        }
+    }
+
+    /**
+     * Scans all queues, starting at a random index, for a task to
+     * steal, and returns it, or null if none was found.  If the queue
+     * stolen from still has tasks, signals another worker to help.
+     */
+    private ForkJoinTask<?> scan(WorkQueue w) {
+        WorkQueue[] ws = workQueues;
+        int m = ws.length - 1;
+        for (int j = m, r = w.nextSeed(); j >= 0; --j, ++r) {
+            WorkQueue q; ForkJoinTask<?> t;
+            if ((q = ws[r & m]) != null && !q.isEmpty() &&
+                (t = q.poll()) != null) {
+                if (!q.isEmpty())
+                    signalWork();
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits for work to arrive, as an idle worker.  Returns true if
+     * there may be tasks to run, or false if the worker should exit
+     * because the pool is terminating or the worker has been idle for
+     * too long.  An exiting worker is removed from totalCount before
+     * the lock is released, so that signallers that find no idle
+     * worker also see that it is gone, and create another if needed.
+     */
+    private boolean awaitWork(WorkQueue w) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ++idleCount;
+            try {
+                long nanos = (totalCount > parallelism) ?
+                    SPARE_KEEPALIVE_NANOS : KEEPALIVE_NANOS;
+                for (;;) {
+                    int rs = runState;
+                    if (rs < STOP && hasQueuedTasks())
+                        return true;
+                    if (rs == SHUTDOWN && idleCount == totalCount)
+                        tryTerminate(false);
+                    if (runState >= STOP || nanos <= 0L) {
+                        int tc;
+                        do {} while (!U.compareAndSwapInt
+                                     (this, TOTALCOUNT, tc = totalCount, tc - 1));
+                        w.counted = false;
+                        return false;
+                    }
+                    try {
+                        nanos = work.awaitNanos(nanos);
+                    } catch (InterruptedException ie) {
+                        // interrupts are used only upon termination
+                    }
+                }
+            } finally {
+                --idleCount;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a (probably) non-empty steal queue, if one is found
+     * during a scan, else null.  This method must be retried by
+     * caller if, by the time it tries to use the queue, it is empty.
+     */
+    private WorkQueue findNonEmptyStealQueue() {
+        WorkQueue[] ws = workQueues;
+        int m = ws.length - 1;
+        for (int j = m; j >= 0; --j) {
+            WorkQueue q;
+            if ((q = ws[j]) != null && !q.isEmpty())
+                return q;
+        }
+        return null;
+    }
+
+    /**
+     * Gets and removes a local or stolen task for the given worker.
+     *
+     * @return a task, if available
+     */
+    final ForkJoinTask<?> nextTaskFor(WorkQueue w) {
+        for (ForkJoinTask<?> t;;) {
+            WorkQueue q;
+            if ((t = w.nextLocalTask()) != null)
+                return t;
+            if ((q = findNonEmptyStealQueue()) == null)
+                return null;
+            if ((t = q.poll()) != null)
+                return t;
+        }
+    }
+
+    // Joining and blocking
+
+    /**
+     * Helps and/or blocks until the given task is done.
+     *
+     * @param w caller's WorkQueue
+     * @param task the task to join
+     * @return task status on exit
+     */
+    final int awaitJoin(WorkQueue w, ForkJoinTask<?> task) {
+        int s;
+        if ((s = task.status) < 0)
+            return s;
+        ForkJoinTask<?> prevJoin = w.currentJoin;
+        w.currentJoin = task;
+        try {
+            while ((s = task.status) >= 0) {
+                ForkJoinTask<?> t;
+                if ((t = w.pop()) != null)
+                    t.doExec();     // run local tasks, which may include task
+                else if (!helpStealer(w, task) && (s = task.status) >= 0) {
+                    incrementBlockedCount();
+                    try {
+                        if (hasQueuedTasks())
+                            signalWork();
+                        task.internalWait(0L);
+                    } finally {
+                        decrementBlockedCount();
+                    }
+                }
+            }
+        } finally {
+            w.currentJoin = prevJoin;
+        }
+        return s;
+    }
+
+    /**
+     * Tries to locate and execute tasks for a stealer of the given
+     * task, or in turn one of its stealers.  Traces currentSteal ->
+     * currentJoin links looking for a thread working on a descendant
+     * of the given task and with a non-empty queue to steal back and
+     * execute tasks from.  Also runs the given task itself if it is
+     * found waiting at the base of some queue.
+     *
+     * @param w caller's queue
+     * @param task the task to join
+     * @return true if some task was run
+     */
+    private boolean helpStealer(WorkQueue w, ForkJoinTask<?> task) {
+        ForkJoinTask<?> subtask = task;
+        for (int depth = 0; depth < MAX_HELP_DEPTH && subtask.status >= 0;
+             ++depth) {
+            WorkQueue[] ws = workQueues;
+            WorkQueue v = null;
+            for (int i = 0; i < ws.length; ++i) {
+                WorkQueue q; int b;
+                if ((q = ws[i]) == null || q == w)
+                    continue;
+                if (q.currentSteal == subtask) {
+                    v = q;
+                    break;
+                }
+                if ((b = q.base) - q.top < 0) {
+                    ForkJoinTask<?>[] a = q.array;
+                    long j = ((long)((a.length - 1) & b) << ASHIFT) + ABASE;
+                    if (U.getObjectVolatile(a, j) == subtask &&
+                        q.pollAt(b) == subtask) {
+                        w.runSubtask(subtask);
+                        return true;
+                    }
+                }
+            }
+            if (v == null)
+                break;
+            ForkJoinTask<?> t;
+            if ((t = v.poll()) != null) {
+                w.runSubtask(t);
+                return true;
+            }
+            ForkJoinTask<?> next = v.currentJoin;
+            if (next == null || next == subtask)
+                break;
+            subtask = next;
+        }
+        return false;
+    }
+
+    /**
+     * Maximum length of currentSteal -> currentJoin chains followed
+     * by helpStealer.
+     */
+    private static final int MAX_HELP_DEPTH = 16;
+
+    private void incrementBlockedCount() {
+        int bc;
+        do {} while (!U.compareAndSwapInt
+                     (this, BLOCKEDCOUNT, bc = blockedCount, bc + 1));
+    }
+
+    private void decrementBlockedCount() {
+        int bc;
+        do {} while (!U.compareAndSwapInt
+                     (this, BLOCKEDCOUNT, bc = blockedCount, bc - 1));
+    }
+
+    /**
+     * Returns a cheap heuristic guide for task partitioning when
+     * programmers, frameworks, tools, or languages have little or no
+     * idea about task granularity.  In essence, by offering this
+     * method, we ask users only about tradeoffs in overhead vs
+     * expected throughput and its variance, rather than how finely to
+     * partition tasks.
+     */
+    final int getSurplusQueuedTaskCount(WorkQueue w) {
+        return w.queueSize() - idleCount;
+    }
+
+    /**
+     * Runs tasks until {@code isQuiescent()}.
+     */
+    final void helpQuiescePool(WorkQueue w) {
+        for (ForkJoinTask<?> t;;) {
+            WorkQueue q;
+            if ((t = w.nextLocalTask()) != null)
+                t.doExec();
+            else if ((q = findNonEmptyStealQueue()) != null) {
+                if ((t = q.poll()) != null)
+                    w.runSubtask(t);
+            }
+            else if (totalCount - idleCount - blockedCount <= 1 &&
+                     !hasQueuedTasks())
+                break;
+            else
+                Thread.yield();
+        }
+    }
+
+    /**
+     * Runs tasks of this pool from a thread that is not one of its
+     * workers, until it is quiescent.
+     */
+    final void externalHelpQuiescePool() {
+        for (ForkJoinTask<?> t;;) {
+            WorkQueue q;
+            if ((q = findNonEmptyStealQueue()) != null) {
+                if ((t = q.poll()) != null)
+                    t.doExec();
+            }
+            else if (totalCount - idleCount - blockedCount <= 0 &&
+                     !hasQueuedTasks())
+                break;
+            else
+                Thread.yield();
+        }
+    }
+
+    // External operations
+
+    /**
+     * Unless shutting down, adds the given task to a submission queue
+     * at submitter's current queue index (modulo submission
+     * range). Only the most common path is directly handled in this
+     * method. All others are relayed to fullExternalPush.
+     *
+     * @param task the task. Caller must ensure non-null.
+     */
+    final void externalPush(ForkJoinTask<?> task) {
+        WorkQueue[] ws; WorkQueue q; Submitter z; int m;
+        ForkJoinTask<?>[] a; int am, n, s;
+        if ((z = submitters.get()) != null && runState == RUNNING &&
+            (ws = workQueues) != null && (m = (ws.length - 1)) >= 0 &&
+            (q = ws[m & z.seed & SQMASK]) != null &&
+            U.compareAndSwapInt(q, QLOCK, 0, 1)) { // lock
+            if ((a = q.array) != null &&
+                (am = a.length - 1) > (n = (s = q.top) - q.base)) {
+                long j = ((long)(am & s) << ASHIFT) + ABASE;
+                U.putOrderedObject(a, j, task);
+                q.top = s + 1;                     // push on to deque
+                q.qlock = 0;
+                if (n <= 1)
+                    signalWork();
+                return;
+            }
+            q.qlock = 0;
+        }
+        fullExternalPush(task);
+    }
+
+    /**
+     * Full version of externalPush. This method is called, among
+     * other times, upon the first submission of the first task to the
+     * pool, so must perform secondary initialization.  It also
+     * detects first submission by an external thread by looking up
+     * its ThreadLocal, and creates a new shared queue if the one at
+     * index if empty or contended.
+     */
+    private void fullExternalPush(ForkJoinTask<?> task) {
+        int r = 0; // random index seed
+        for (Submitter z = submitters.get();;) {
+            WorkQueue[] ws; WorkQueue q; int m, k;
+            if (z == null) {
+                int s = seedGenerator.addAndGet(SEED_INCREMENT);
+                r = (s == 0) ? 1 : s;
+                submitters.set(z = new Submitter(r));
+            }
+            else if (r == 0) {                   // move to a different index
+                r = z.seed;
+                r ^= r << 13;                    // same xorshift as WorkQueues
+                r ^= r >>> 17;
+                z.seed = r ^= (r << 5);
+            }
+            if (runState != RUNNING)
+                throw new RejectedExecutionException();
+            ws = workQueues;
+            m = ws.length - 1;
+            if ((q = ws[k = r & m & SQMASK]) != null) {
+                if (q.qlock == 0 && U.compareAndSwapInt(q, QLOCK, 0, 1)) {
+                    boolean submitted = false;
+                    try {                      // locked version of push
+                        ForkJoinTask<?>[] a = q.array;
+                        int s = q.top;
+                        if (s + 1 - q.base >= a.length - 1)
+                            a = q.growArray();
+                        long j = ((long)((a.length - 1) & s) << ASHIFT) + ABASE;
+                        U.putOrderedObject(a, j, task);
+                        q.top = s + 1;
+                        submitted = true;
+                    } finally {
+                        q.qlock = 0;  // unlock
+                    }
+                    if (submitted) {
+                        signalWork();
+                        return;
+                    }
+                }
+                r = 0; // move on failure
+            }
+            else {
+                final ReentrantLock lock = this.lock;
+                lock.lock();
+                try {                      // create new queue
+                    if ((ws = workQueues) != null && k < ws.length &&
+                        ws[k] == null) {
+                        q = new WorkQueue(this, null, false, r);
+                        q.poolIndex = k;
+                        ws[k] = q;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs tryUnpush for an external submitter: Finds queue,
+     * locks if apparently non-empty, validates upon locking, and
+     * adjusts top. Each check can fail but rarely does.
+     */
+    final boolean tryExternalUnpush(ForkJoinTask<?> task) {
+        WorkQueue[] ws; WorkQueue w; Submitter z;
+        ForkJoinTask<?>[] a; int m, s;
+        if ((z = submitters.get()) != null &&
+            (ws = workQueues) != null && (m = ws.length - 1) >= 0 &&
+            (w = ws[m & z.seed & SQMASK]) != null &&
+            (s = w.top) != w.base && (a = w.array) != null) {
+            long j = ((long)((a.length - 1) & (s - 1)) << ASHIFT) + ABASE;
+            if (U.getObject(a, j) == task &&
+                U.compareAndSwapInt(w, QLOCK, 0, 1)) {
+                boolean unpushed = false;
+                if (w.top == s && w.array == a &&
+                    U.compareAndSwapObject(a, j, task, null)) {
+                    w.top = s - 1;
+                    unpushed = true;
+                }
+                w.qlock = 0;
+                return unpushed;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pushes the task onto the queue of the current thread if it is
+     * a worker of this pool, else submits it as an external task.
+     */
+    private void forkOrSubmit(ForkJoinTask<?> task) {
+        Thread t; ForkJoinWorkerThread wt;
+        if (runState != RUNNING)
+            throw new RejectedExecutionException();
+        if ((t = Thread.currentThread()) instanceof ForkJoinWorkerThread &&
+            (wt = (ForkJoinWorkerThread)t).pool == this)
+            wt.workQueue.push(task);
+        else
+            externalPush(task);
+    }
+
+    // Termination
+
+    /**
+     * Possibly initiates and/or completes termination.  Upon
+     * termination, cancels all queued tasks, wakes up idle workers,
+     * and interrupts all workers so that they exit.
+     *
+     * @param now if true, unconditionally terminate, else only
+     * if no work and no active workers
+     * @return true if now terminating or terminated
+     */
+    private boolean tryTerminate(boolean now) {
+        if (this == common)                    // cannot shut down
+            return false;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int rs = runState;
+            if (rs == RUNNING)
+                return false;
+            if (rs == SHUTDOWN) {
+                if (!now && (totalCount - idleCount > 0 || hasQueuedTasks()))
+                    return false;
+                runState = rs = STOP;
+                WorkQueue[] ws = workQueues;
+                for (int i = 0; i < ws.length; ++i) {
+                    WorkQueue q;
+                    if ((q = ws[i]) != null)
+                        q.cancelAll();
+                }
+                // Interrupt only after all queues are cancelled, so that
+                // an interrupted worker cannot go on to start a task
+                // that has not been cancelled yet
+                for (int i = 1; i < ws.length; i += 2) {
+                    WorkQueue q; ForkJoinWorkerThread wt;
+                    if ((q = ws[i]) != null && (wt = q.owner) != null &&
+                        wt != Thread.currentThread()) {
+                        try {
+                            wt.interrupt();
+                        } catch (SecurityException ignore) {
+                        }
+                    }
+                }
+                work.signalAll();
+            }
+            if (rs == STOP && totalCount == 0) {
+                runState = TERMINATED;
+                termination.signalAll();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Exported methods
+
+    // Constructors
+
+    /**
+     * Creates a {@code ForkJoinPool} with parallelism equal to {@link
+     * java.lang.Runtime#availableProcessors}, using the {@linkplain
+     * #defaultForkJoinWorkerThreadFactory default thread factory},
+     * no UncaughtExceptionHandler, and non-async LIFO processing mode.
+     *
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     */
+    public ForkJoinPool() {
+        this(Runtime.getRuntime().availableProcessors(),
+             defaultForkJoinWorkerThreadFactory, null, false);
+    }
+
+    /**
+     * Creates a {@code ForkJoinPool} with the indicated parallelism
+     * level, the {@linkplain
+     * #defaultForkJoinWorkerThreadFactory default thread factory},
+     * no UncaughtExceptionHandler, and non-async LIFO processing mode.
+     *
+     * @param parallelism the parallelism level
+     * @throws IllegalArgumentException if parallelism less than or
+     *         equal to zero, or greater than implementation limit
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     */
+    public ForkJoinPool(int parallelism) {
+        this(parallelism, defaultForkJoinWorkerThreadFactory, null, false);
+    }
+
+    /**
+     * Creates a {@code ForkJoinPool} with the given parameters.
+     *
+     * @param parallelism the parallelism level. For default value,
+     * use {@link java.lang.Runtime#availableProcessors}.
+     * @param factory the factory for creating new threads. For default value,
+     * use {@link #defaultForkJoinWorkerThreadFactory}.
+     * @param handler the handler for internal worker threads that
+     * terminate due to unrecoverable errors encountered while executing
+     * tasks. For default value, use {@code null}.
+     * @param asyncMode if true,
+     * establishes local first-in-first-out scheduling mode for forked
+     * tasks that are never joined. This mode may be more appropriate
+     * than default locally stack-based mode in applications in which
+     * worker threads only process event-style asynchronous tasks.
+     * For default value, use {@code false}.
+     * @throws IllegalArgumentException if parallelism less than or
+     *         equal to zero, or greater than implementation limit
+     * @throws NullPointerException if the factory is null
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     */
+    public ForkJoinPool(int parallelism,
+                        ForkJoinWorkerThreadFactory factory,
+                        Thread.UncaughtExceptionHandler handler,
+                        boolean asyncMode) {
+        this(checkParallelism(parallelism),
+             checkFactory(factory),
+             handler,
+             asyncMode,
+             "ForkJoinPool-" + nextPoolId() + "-worker-");
+        checkPermission();
+    }
+
+    private static int checkParallelism(int parallelism) {
+        if (parallelism <= 0 || parallelism > MAX_CAP)
+            throw new IllegalArgumentException();
+        return parallelism;
+    }
+
+    private static ForkJoinWorkerThreadFactory checkFactory
+        (ForkJoinWorkerThreadFactory factory) {
+        if (factory == null)
+            throw new NullPointerException();
+        return factory;
+    }
+
+    private static int nextPoolId() {
+        return poolNumberSequence.incrementAndGet();
+    }
+
+    /**
+     * Creates a {@code ForkJoinPool} with the given parameters, without
+     * any security checks or parameter validation.  Invoked directly by
+     * the common pool initializer.
+     */
+    private ForkJoinPool(int parallelism,
+                         ForkJoinWorkerThreadFactory factory,
+                         Thread.UncaughtExceptionHandler handler,
+                         boolean asyncMode,
+                         String workerNamePrefix) {
+        this.parallelism = parallelism;
+        this.factory = factory;
+        this.ueh = handler;
+        this.asyncMode = asyncMode;
+        this.workerNamePrefix = workerNamePrefix;
+        this.lock = new ReentrantLock();
+        this.work = lock.newCondition();
+        this.termination = lock.newCondition();
+        int n = 4;
+        while (n < (parallelism << 1) && n < (MAX_CAP + 1) << 1)
+            n <<= 1;
+        this.workQueues = new WorkQueue[n];
+    }
+
+    /**
+     * Returns the common pool instance. This pool is statically
+     * constructed; its run state is unaffected by attempts to {@link
+     * #shutdown} or {@link #shutdownNow}. However this pool and any
+     * ongoing processing are automatically terminated upon program
+     * {@link System#exit}.  Any program that relies on asynchronous
+     * task processing to complete before program termination should
+     * invoke {@code commonPool().}{@link #awaitQuiescence awaitQuiescence},
+     * before exit.
+     *
+     * @return the common pool instance
+     */
+    public static ForkJoinPool commonPool() {
+        return common;
+    }
+
+    // Execution methods
+
+    /**
+     * Performs the given task, returning its result upon completion.
+     * If the computation encounters an unchecked Exception or Error,
+     * it is rethrown as the outcome of this invocation.  Rethrown
+     * exceptions behave in the same way as regular exceptions, but,
+     * when possible, contain stack traces (as displayed for example
+     * using {@code ex.printStackTrace()}) of both the current thread
+     * as well as the thread actually encountering the exception;
+     * minimally only the latter.
+     *
+     * @param task the task
+     * @return the task's result
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        if (task == null)
+            throw new NullPointerException();
+        forkOrSubmit(task);
+        return task.join();
+    }
+
+    /**
+     * Arranges for (asynchronous) execution of the given task.
+     *
+     * @param task the task
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public void execute(ForkJoinTask<?> task) {
+        if (task == null)
+            throw new NullPointerException();
+        forkOrSubmit(task);
+    }
+
+    // AbstractExecutorService methods
+
+    /**
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public void execute(Runnable task) {
+        if (task == null)
+            throw new NullPointerException();
+        ForkJoinTask<?> job;
+        if (task instanceof ForkJoinTask<?>) // avoid re-wrap
+            job = (ForkJoinTask<?>) task;
+        else
+            job = new ForkJoinTask.AdaptedRunnable<Void>(task, null);
+        forkOrSubmit(job);
+    }
+
+    /**
+     * Submits a ForkJoinTask for execution.
+     *
+     * @param task the task to submit
+     * @return the task
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task) {
+        if (task == null)
+            throw new NullPointerException();
+        forkOrSubmit(task);
+        return task;
+    }
+
+    /**
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public <T> ForkJoinTask<T> submit(Callable<T> task) {
+        ForkJoinTask<T> job = new ForkJoinTask.AdaptedCallable<T>(task);
+        forkOrSubmit(job);
+        return job;
+    }
+
+    /**
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public <T> ForkJoinTask<T> submit(Runnable task, T result) {
+        ForkJoinTask<T> job = new ForkJoinTask.AdaptedRunnable<T>(task, result);
+        forkOrSubmit(job);
+        return job;
+    }
+
+    /**
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public ForkJoinTask<?> submit(Runnable task) {
+        if (task == null)
+            throw new NullPointerException();
+        ForkJoinTask<?> job;
+        if (task instanceof ForkJoinTask<?>) // avoid re-wrap
+            job = (ForkJoinTask<?>) task;
+        else
+            job = new ForkJoinTask.AdaptedRunnable<Void>(task, null);
+        forkOrSubmit(job);
+        return job;
+    }
+
+    /**
+     * @throws NullPointerException       {@inheritDoc}
+     * @throws RejectedExecutionException {@inheritDoc}
+     */
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) {
+        // In previous versions of this class, this method constructed
+        // a task to run ForkJoinTask.invokeAll, but now external
+        // invocation of multiple tasks is at least as efficient.
+        ArrayList<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+
+        boolean done = false;
+        try {
+            for (Callable<T> t : tasks) {
+                ForkJoinTask<T> f = new ForkJoinTask.AdaptedCallable<T>(t);
+                futures.add(f);
+                forkOrSubmit(f);
+            }
+            for (int i = 0, size = futures.size(); i < size; i++)
+                ((ForkJoinTask<?>)futures.get(i)).quietlyJoin();
+            done = true;
+            return futures;
+        } finally {
+            if (!done)
+                for (int i = 0, size = futures.size(); i < size; i++)
+                    futures.get(i).cancel(false);
+        }
+    }
+
+    /**
+     * Returns the factory used for constructing new workers.
+     *
+     * @return the factory used for constructing new workers
+     */
+    public ForkJoinWorkerThreadFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Returns the handler for internal worker threads that terminate
+     * due to unrecoverable errors encountered while executing tasks.
+     *
+     * @return the handler, or {@code null} if none
+     */
+    public Thread.UncaughtExceptionHandler getUncaughtExceptionHandler() {
+        return ueh;
+    }
+
+    /**
+     * Returns the targeted parallelism level of this pool.
+     *
+     * @return the targeted parallelism level of this pool
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the number of worker threads that have started but not
+     * yet terminated.  The result returned by this method may differ
+     * from {@link #getParallelism} when threads are created to
+     * maintain parallelism when others are cooperatively blocked, or
+     * when idle threads have exited.
+     *
+     * @return the number of worker threads
+     */
+    public int getPoolSize() {
+        return totalCount;
+    }
+
+    /**
+     * Returns {@code true} if this pool uses local first-in-first-out
+     * scheduling mode for forked tasks that are never joined.
+     *
+     * @return {@code true} if this pool uses async mode
+     */
+    public boolean getAsyncMode() {
+        return asyncMode;
+    }
+
+    /**
+     * Returns an estimate of the number of worker threads that are
+     * not blocked waiting to join tasks or for other managed
+     * synchronization. This method may overestimate the
+     * number of running threads.
+     *
+     * @return the number of worker threads
+     */
+    public int getRunningThreadCount() {
+        int r = totalCount - idleCount - blockedCount;
+        return (r <= 0) ? 0 : r; // suppress momentarily negative values
+    }
+
+    /**
+     * Returns an estimate of the number of threads that are currently
+     * stealing or executing tasks. This method may overestimate the
+     * number of active threads.
+     *
+     * @return the number of active threads
+     */
+    public int getActiveThreadCount() {
+        int r = totalCount - idleCount;
+        return (r <= 0) ? 0 : r; // suppress momentarily negative values
+    }
+
+    /**
+     * Returns {@code true} if all worker threads are currently idle.
+     * An idle worker is one that cannot obtain a task to execute
+     * because none are available to steal from other threads, and
+     * there are no pending submissions to the pool. This method is
+     * conservative; it might not return {@code true} immediately upon
+     * idleness of all threads, but will eventually become true if
+     * threads remain inactive.
+     *
+     * @return {@code true} if all threads are currently idle
+     */
+    public boolean isQuiescent() {
+        return totalCount - idleCount <= 0 && !hasQueuedTasks();
+    }
+
+    /**
+     * Returns an estimate of the total number of tasks stolen from
+     * one thread's work queue by another. The reported value
+     * underestimates the actual total number of steals when the pool
+     * is not quiescent. This value may be useful for monitoring and
+     * tuning fork/join programs: in general, steal counts should be
+     * high enough to keep threads busy, but low enough to avoid
+     * overhead and contention across threads.
+     *
+     * @return the number of steals
+     */
+    public long getStealCount() {
+        long count = stealCount;
+        WorkQueue[] ws = workQueues;
+        for (int i = 1; i < ws.length; i += 2) {
+            WorkQueue w;
+            if ((w = ws[i]) != null)
+                count += w.nsteals;
+        }
+        return count;
+    }
+
+    /**
+     * Returns an estimate of the total number of tasks currently held
+     * in queues by worker threads (but not including tasks submitted
+     * to the pool that have not begun executing). This value is only
+     * an approximation, obtained by iterating across all threads in
+     * the pool. This method may be useful for tuning task
+     * granularities.
+     *
+     * @return the number of queued tasks
+     */
+    public long getQueuedTaskCount() {
+        long count = 0;
+        WorkQueue[] ws = workQueues;
+        for (int i = 1; i < ws.length; i += 2) {
+            WorkQueue w;
+            if ((w = ws[i]) != null)
+                count += w.queueSize();
+        }
+        return count;
+    }
+
+    /**
+     * Returns an estimate of the number of tasks submitted to this
+     * pool that have not yet begun executing.  This method may take
+     * time proportional to the number of submissions.
+     *
+     * @return the number of queued submissions
+     */
+    public int getQueuedSubmissionCount() {
+        int count = 0;
+        WorkQueue[] ws = workQueues;
+        for (int i = 0; i < ws.length; i += 2) {
+            WorkQueue w;
+            if ((w = ws[i]) != null)
+                count += w.queueSize();
+        }
+        return count;
+    }
+
+    /**
+     * Returns {@code true} if there are any tasks submitted to this
+     * pool that have not yet begun executing.
+     *
+     * @return {@code true} if there are any queued submissions
+     */
+    public boolean hasQueuedSubmissions() {
+        WorkQueue[] ws = workQueues;
+        for (int i = 0; i < ws.length; i += 2) {
+            WorkQueue w;
+            if ((w = ws[i]) != null && !w.isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes and returns the next unexecuted submission if one is
+     * available.  This method may be useful in extensions to this
+     * class that re-assign work in systems with multiple pools.
+     *
+     * @return the next submission, or {@code null} if none
+     */
+    protected ForkJoinTask<?> pollSubmission() {
+        WorkQueue[] ws = workQueues;
+        for (int i = 0; i < ws.length; i += 2) {
+            WorkQueue w; ForkJoinTask<?> t;
+            if ((w = ws[i]) != null && (t = w.poll()) != null)
+                return t;
+        }
+        return null;
+    }
+
+    /**
+     * Removes all available unexecuted submitted and forked tasks
+     * from scheduling queues and adds them to the given collection,
+     * without altering their execution status. These may include
+     * artificially generated or wrapped tasks. This method is
+     * designed to be invoked only when the pool is known to be
+     * quiescent. Invocations at other times may not remove all
+     * tasks. A failure encountered while attempting to add elements
+     * to collection {@code c} may result in elements being in
+     * neither, either or both collections when the associated
+     * exception is thrown.  The behavior of this operation is
+     * undefined if the specified collection is modified while the
+     * operation is in progress.
+     *
+     * @param c the collection to transfer elements into
+     * @return the number of elements transferred
+     */
+    protected int drainTasksTo(Collection<? super ForkJoinTask<?>> c) {
+        int count = 0;
+        WorkQueue[] ws = workQueues;
+        for (int i = 0; i < ws.length; ++i) {
+            WorkQueue w; ForkJoinTask<?> t;
+            if ((w = ws[i]) != null) {
+                while ((t = w.poll()) != null) {
+                    c.add(t);
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a string identifying this pool, as well as its state,
+     * including indications of run state, parallelism level, and
+     * worker and task counts.
+     *
+     * @return a string identifying this pool, as well as its state
+     */
+    public String toString() {
+        int tc = totalCount;
+        int ac = getActiveThreadCount();
+        int rc = getRunningThreadCount();
+        long st = getStealCount();
+        long qt = getQueuedTaskCount();
+        long qs = getQueuedSubmissionCount();
+        int rs = runState;
+        String level = ((rs == TERMINATED) ? "Terminated" :
+                        (rs == STOP)       ? "Terminating" :
+                        (rs == SHUTDOWN)   ? "Shutting down" :
+                        "Running");
+        return super.toString() +
+            "[" + level +
+            ", parallelism = " + parallelism +
+            ", size = " + tc +
+            ", active = " + ac +
+            ", running = " + rc +
+            ", steals = " + st +
+            ", tasks = " + qt +
+            ", submissions = " + qs +
+            "]";
+    }
+
+    /**
+     * Possibly initiates an orderly shutdown in which previously
+     * submitted tasks are executed, but no new tasks will be
+     * accepted. Invocation has no effect on execution state if this
+     * is the {@link #commonPool()}, and no additional effect if
+     * already shut down.  Tasks that are in the process of being
+     * submitted concurrently during the course of this method may or
+     * may not be rejected.
+     *
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     */
+    public void shutdown() {
+        checkPermission();
+        if (this == common)
+            return;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (runState == RUNNING)
+                runState = SHUTDOWN;
+        } finally {
+            lock.unlock();
+        }
+        tryTerminate(false);
+    }
+
+    /**
+     * Possibly attempts to cancel and/or stop all tasks, and reject
+     * all subsequently submitted tasks.  Invocation has no effect on
+     * execution state if this is the {@link #commonPool()}, and no
+     * additional effect if already shut down. Otherwise, tasks that
+     * are in the process of being submitted or executed concurrently
+     * during the course of this method may or may not be
+     * rejected. This method cancels both existing and unexecuted
+     * tasks, in order to permit termination in the presence of task
+     * dependencies. So the method always returns an empty list
+     * (unlike the case for some other Executors).
+     *
+     * @return an empty list
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     */
+    public List<Runnable> shutdownNow() {
+        checkPermission();
+        if (this != common) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                if (runState == RUNNING)
+                    runState = SHUTDOWN;
+            } finally {
+                lock.unlock();
+            }
+            tryTerminate(true);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns {@code true} if all tasks have completed following shut down.
+     *
+     * @return {@code true} if all tasks have completed following shut down
+     */
+    public boolean isTerminated() {
+        return runState == TERMINATED;
+    }
+
+    /**
+     * Returns {@code true} if the process of termination has
+     * commenced but not yet completed.  This method may be useful for
+     * debugging. A return of {@code true} reported a sufficient
+     * period after shutdown may indicate that submitted tasks have
+     * ignored or suppressed interruption, or are waiting for I/O,
+     * causing this executor not to properly terminate. (See the
+     * advisory notes for class {@link ForkJoinTask} stating that
+     * tasks should not normally entail blocking operations.  But if
+     * they do, they must abort them on interrupt.)
+     *
+     * @return {@code true} if terminating but not yet terminated
+     */
+    public boolean isTerminating() {
+        return runState == STOP;
+    }
+
+    /**
+     * Returns {@code true} if this pool has been shut down.
+     *
+     * @return {@code true} if this pool has been shut down
+     */
+    public boolean isShutdown() {
+        return runState != RUNNING;
+    }
+
+    /**
+     * Blocks until all tasks have completed execution after a
+     * shutdown request, or the timeout occurs, or the current thread
+     * is interrupted, whichever happens first. Because the {@link
+     * #commonPool()} never terminates until program shutdown, when
+     * applied to the common pool, this method is equivalent to {@link
+     * #awaitQuiescence} but always returns {@code false}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return {@code true} if this executor terminated and
+     *         {@code false} if the timeout elapsed before termination
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        if (this == common) {
+            awaitQuiescence(timeout, unit);
+            return false;
+        }
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (;;) {
+                if (runState == TERMINATED)
+                    return true;
+                if (nanos <= 0L)
+                    return false;
+                nanos = termination.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * If called by a ForkJoinTask operating in this pool, equivalent
+     * in effect to {@link ForkJoinTask#helpQuiesce}. Otherwise,
+     * waits and/or attempts to assist performing tasks until this
+     * pool {@link #isQuiescent} or the indicated timeout elapses.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return {@code true} if quiescent; {@code false} if the
+     * timeout elapsed.
+     */
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        ForkJoinWorkerThread wt;
+        Thread thread = Thread.currentThread();
+        if ((thread instanceof ForkJoinWorkerThread) &&
+            (wt = (ForkJoinWorkerThread)thread).pool == this) {
+            helpQuiescePool(wt.workQueue);
+            return true;
+        }
+        long startTime = System.nanoTime();
+        for (ForkJoinTask<?> t;;) {
+            WorkQueue q;
+            if (isQuiescent())
+                return true;
+            if (System.nanoTime() - startTime > nanos)
+                return false;
+            if ((q = findNonEmptyStealQueue()) != null) {
+                if ((t = q.poll()) != null)
+                    t.doExec();
+            }
+            else
+                Thread.yield();
+        }
+    }
+
+    /**
+     * Interface for extending managed parallelism for tasks running
+     * in {@link ForkJoinPool}s.
+     *
+     * <p>A {@code ManagedBlocker} provides two methods.  Method
+     * {@code isReleasable} must return {@code true} if blocking is
+     * not necessary. Method {@code block} blocks the current thread
+     * if necessary (perhaps internally invoking {@code isReleasable}
+     * before actually blocking). These actions are performed by any
+     * thread invoking {@link ForkJoinPool#managedBlock}.  The
+     * unusual methods in this API accommodate synchronizers that may,
+     * but don't usually, block for long periods. Similarly, they
+     * allow more efficient internal handling of cases in which
+     * additional workers may be, but usually are not, needed to
+     * ensure sufficient parallelism.  Toward this end,
+     * implementations of method {@code isReleasable} must be amenable
+     * to repeated invocation.
+     *
+     * <p>For example, here is a ManagedBlocker based on a
+     * ReentrantLock:
+     *  <pre> {@code
+     * class ManagedLocker implements ManagedBlocker {
+     *   final ReentrantLock lock;
+     *   boolean hasLock = false;
+     *   ManagedLocker(ReentrantLock lock) { this.lock = lock; }
+     *   public boolean block() {
+     *     if (!hasLock)
+     *       lock.lock();
+     *     return true;
+     *   }
+     *   public boolean isReleasable() {
+     *     return hasLock || (hasLock = lock.tryLock());
+     *   }
+     * }}</pre>
+     *
+     * <p>Here is a class that possibly blocks waiting for an
+     * item on a given queue:
+     *  <pre> {@code
+     * class QueueTaker<E> implements ManagedBlocker {
+     *   final BlockingQueue<E> queue;
+     *   volatile E item = null;
+     *   QueueTaker(BlockingQueue<E> q) { this.queue = q; }
+     *   public boolean block() throws InterruptedException {
+     *     if (item == null)
+     *       item = queue.take();
+     *     return true;
+     *   }
+     *   public boolean isReleasable() {
+     *     return item != null || (item = queue.poll()) != null;
+     *   }
+     *   public E getItem() { // call after pool.managedBlock completes
+     *     return item;
+     *   }
+     * }}</pre>
+     */
+    public static interface ManagedBlocker {
+        /**
+         * Possibly blocks the current thread, for example waiting for
+         * a lock or condition.
+         *
+         * @return {@code true} if no additional blocking is necessary
+         * (i.e., if isReleasable would return true)
+         * @throws InterruptedException if interrupted while waiting
+         * (the method is not required to do so, but is allowed to)
+         */
+        boolean block() throws InterruptedException;
+
+        /**
+         * Returns {@code true} if blocking is unnecessary.
+         * @return {@code true} if blocking is unnecessary
+         */
+        boolean isReleasable();
+    }
+
+    /**
+     * Blocks in accord with the given blocker.  If the current thread
+     * is a {@link ForkJoinWorkerThread}, this method possibly
+     * arranges for a spare thread to be activated if necessary to
+     * ensure sufficient parallelism while the current thread is blocked.
+     *
+     * <p>If the caller is not a {@link ForkJoinTask}, this method is
+     * behaviorally equivalent to
+     *  <pre> {@code
+     * while (!blocker.isReleasable())
+     *   if (blocker.block())
+     *     return;
+     * }</pre>
+     *
+     * If the caller is a {@code ForkJoinTask}, then the pool may
+     * first be expanded to ensure parallelism, and later adjusted.
+     *
+     * @param blocker the blocker
+     * @throws InterruptedException if blocker.block did so
+     */
+    public static void managedBlock(ManagedBlocker blocker)
+        throws InterruptedException {
+        Thread t = Thread.currentThread();
+        if (t instanceof ForkJoinWorkerThread) {
+            ForkJoinPool p = ((ForkJoinWorkerThread)t).pool;
+            if (!blocker.isReleasable()) {
+                p.incrementBlockedCount();
+                try {
+                    if (p.hasQueuedTasks())
+                        p.signalWork();
+                    do {} while (!blocker.isReleasable() && !blocker.block());
+                } finally {
+                    p.decrementBlockedCount();
+                }
+            }
+        }
+        else {
+            do {} while (!blocker.isReleasable() && !blocker.block());
+        }
+    }
+
+    // AbstractExecutorService overrides.  These rely on undocumented
+    // fact that ForkJoinTask.adapt returns ForkJoinTasks that also
+    // implement RunnableFuture.
+
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new ForkJoinTask.AdaptedRunnable<T>(runnable, value);
+    }
+
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new ForkJoinTask.AdaptedCallable<T>(callable);
+    }
+
+    // Unsafe mechanics
+    private static final Unsafe U;
+    private static final long STEALCOUNT;
+    private static final long TOTALCOUNT;
+    private static final long BLOCKEDCOUNT;
+    private static final long QTOP;
+    private static final long QLOCK;
+    private static final long ABASE;
+    private static final int ASHIFT;
+
+    static {
+        int s;
+        try {
+            U = Unsafe.getUnsafe();
+            Class<?> k = ForkJoinPool.class;
+            STEALCOUNT = U.objectFieldOffset
+                (k.getDeclaredField("stealCount"));
+            TOTALCOUNT = U.objectFieldOffset
+                (k.getDeclaredField("totalCount"));
+            BLOCKEDCOUNT = U.objectFieldOffset
+                (k.getDeclaredField("blockedCount"));
+            Class<?> wk = WorkQueue.class;
+            QTOP = U.objectFieldOffset
+                (wk.getDeclaredField("top"));
+            QLOCK = U.objectFieldOffset
+                (wk.getDeclaredField("qlock"));
+            Class<?> ak = ForkJoinTask[].class;
+            ABASE = U.arrayBaseOffset(ak);
+            s = U.arrayIndexScale(ak);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+        if ((s & (s - 1)) != 0)
+            throw new Error("data type scale not a power of two");
+        ASHIFT = 31 - Integer.numberOfLeadingZeros(s);
+
+        submitters = new ThreadLocal<Submitter>();
+        defaultForkJoinWorkerThreadFactory =
+            new DefaultForkJoinWorkerThreadFactory();
+        modifyThreadPermission = new RuntimePermission("modifyThread");
+
+        int par = Runtime.getRuntime().availableProcessors() - 1;
+        common = new ForkJoinPool((par > 0) ? par : 1,
+                                  defaultForkJoinWorkerThreadFactory,
+                                  null, false,
+                                  "ForkJoinPool.commonPool-worker-");
+    }
+
+}
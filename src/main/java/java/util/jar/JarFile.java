@@ -16,6 +16,7 @@ import java.security.CodeSigner;
 import java.security.CodeSource;
 import java.security.cert.Certificate;
 import java.security.AccessController;
+import java.security.PrivilegedAction;
 import sun.security.action.GetPropertyAction;
 import sun.security.util.ManifestEntryVerifier;
 import sun.misc.SharedSecrets;
@@ -172,7 +173,9 @@ class JarFile extends ZipFile {
 	return man;
     }
 
-    private native String[] getMetaInfEntryNames();
+    private String[] getMetaInfEntryNames() {
+        return SharedSecrets.getJavaUtilZipAccess().getMetaInfEntryNames(this);
+    }
 
     /**
      * Returns the <code>JarEntry</code> for the given entry name or
@@ -478,12 +478,14 @@ public class LogRecord implements java.io.Serializable {
     // Private method to infer the caller's class and method names
     private void inferCaller() {
 	needToInferCaller = false;
-	// Get the stack trace.
-	StackTraceElement stack[] = (new Throwable()).getStackTrace();
+	// Get the stack, whose frames are only decoded as they are
+	// examined; the caller is usually near the top.
+	StackWalker stack = StackWalker.capture();
+	int depth = stack.depth();
 	// First, search back to a method in the Logger class.
 	int ix = 0;
-	while (ix < stack.length) {
-	    StackTraceElement frame = stack[ix];
+	while (ix < depth) {
+	    StackTraceElement frame = stack.frame(ix);
 	    String cname = frame.getClassName();
 	    if (cname.equals("java.util.logging.Logger")) {
 		break;
@@ -491,8 +493,8 @@ public class LogRecord implements java.io.Serializable {
 	    ix++;
 	}
 	// Now search for the first frame before the "Logger" class.
-	while (ix < stack.length) {
-	    StackTraceElement frame = stack[ix];
+	while (ix < depth) {
+	    StackTraceElement frame = stack.frame(ix);
 	    String cname = frame.getClassName();
 	    if (!cname.equals("java.util.logging.Logger")) {
 		// We've found the relevant frame.
@@ -0,0 +1,1820 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The matching engine used for patterns compiled with the
+ * {@link Pattern#DFA} flag, and for {@link PatternSet}s.  It runs the
+ * expression as a deterministic automaton that is built lazily, state
+ * by state, while matching, so that a match operation takes time
+ * linear in the length of the input.
+ */
+
+final class LazyDFA {
+
+    /*
+     * Overview:
+     *
+     * The node tree built by the Pattern parser is translated into a
+     * program for a nondeterministic automaton (Prog below), in which
+     * each instruction either consumes one character that satisfies a
+     * test, branches to several instructions in order of preference,
+     * tests a zero-width assertion, records a group boundary, or
+     * accepts.  Counted repetitions are unrolled, so the program
+     * carries no counters.  An iteration of a body that can match the
+     * empty string is translated twice (see Compiler.enter), so that
+     * one that does match it leaves the repetition, as Loop does,
+     * and the empty transitions of the program have no cycles.  The
+     * translation gives up for nodes that cannot be expressed this
+     * way: back references, lookaround, independent groups and
+     * possessive quantifiers, and for programs that would be too
+     * large.  Pattern then rejects the expression rather than leave
+     * it to the backtracking engine.
+     *
+     * A state of the deterministic automaton is an ordered list of
+     * program instructions (its kernel), the threads of the
+     * nondeterministic automaton that are alive at some position.  A
+     * transition follows the empty transitions of the kernel
+     * (its closure) and then steps every consuming instruction over
+     * the next character.  States and transitions are created the
+     * first time they are needed and kept in a Cache, so that after a
+     * warm-up a match costs a table lookup per character.
+     *
+     * Threads are kept in order of preference, as the backtracking
+     * engine would try them, and once the closure reaches the
+     * accepting instruction all threads of lower preference are cut.
+     * Running the automaton on a program with a lowest-preference
+     * loop over any character in front then finds where the match
+     * that the backtracking engine would have found ends (the
+     * "leftmost-first" match).  Its start is the leftmost position
+     * from which the expression matches up to that end, which a
+     * second automaton for the reversed program finds by scanning
+     * backwards from the end.  Patterns with capturing groups then
+     * need a third pass over just the matched text: a simulation of
+     * the nondeterministic automaton in which every thread carries
+     * its own group bounds (a "Pike VM"), which takes the thread of
+     * highest preference that accepts at the end.  Each pass is
+     * linear in the length of the text it examines.
+     *
+     * Zero-width assertions (^, $, \b and so on) depend on the text
+     * around a position rather than on a character, so the closure
+     * of a state that reaches one depends on which assertions hold
+     * at the current position.  These are evaluated by instances of
+     * the assertion nodes themselves, and the resulting bit set is
+     * used as part of the key of a transition.  States whose closure
+     * reaches no assertion do not evaluate them at all.
+     *
+     * Consuming instructions test code points, as the nodes of the
+     * backtracking engine do, but the automaton steps one char at a
+     * time.  At the high surrogate of a pair its transition is keyed
+     * by the code point of the pair, and a thread that consumes it
+     * moves to skip[pc], an instruction that consumes the low
+     * surrogate whatever it is.  This keeps the threads of the
+     * unanchored entry of a pattern without supplementary characters
+     * in step with the others: Start tries a match at every char, so
+     * its loop consumes the high surrogate alone, and a match may
+     * start between the chars of a pair.  The loop of StartS consumes
+     * whole pairs.  The other passes see no such starts except at
+     * their first position, and consume pairs whole.  Unlike the
+     * nodes, the automaton only reads a pair whose chars are both
+     * before the end of the region.
+     *
+     * The automaton of a PatternSet runs a program made of the
+     * programs of its patterns, each ending in an accepting
+     * instruction of its own, behind a common unanchored entry.  It
+     * keeps all threads and does not record groups; the accepting
+     * instructions in the closure of a state tell which patterns
+     * match at a position.
+     *
+     * A Pattern may be used by many threads at once, so the caches
+     * are shared.  States are created and transitions recorded while
+     * holding the lock of the cache, but they are read without
+     * locking: the transition tables of a state hold either null or
+     * a fully constructed state (whose fields are final or volatile),
+     * and a racy read of null just takes the locked path.  When a
+     * cache holds more than MAX_STATES states it is cleared and
+     * refilled as needed; states in use by a running match remain
+     * valid.
+     */
+
+    /** Kinds of match operations. */
+    static final int FIND = 0;      // Matcher.find
+    static final int PREFIX = 1;    // Matcher.lookingAt
+    static final int ENTIRE = 2;    // Matcher.matches
+
+    /*
+     * Program instructions.  Consuming instructions (CHAR to ANY)
+     * come first.
+     */
+    private static final int CHAR   = 0;  // char arg
+    private static final int CHAR_I = 1;  // arg, ASCII case-insensitive
+    private static final int CHAR_U = 2;  // arg, Unicode case-insensitive
+    private static final int PROP   = 3;  // char satisfying props[arg]
+    private static final int ANY    = 4;  // any char
+    private static final int SPLIT  = 5;  // alts, in order of preference
+    private static final int ASSERT = 6;  // check arg holds, then next
+    private static final int OPEN   = 7;  // group start into local arg
+    private static final int CLOSE  = 8;  // local arg to group arg2
+    private static final int MATCH  = 9;  // accept
+
+    /** The largest program that is run as an automaton. */
+    private static final int MAX_INSTS = 5000;
+
+    /** The number of states a cache holds before it is cleared. */
+    private static final int MAX_STATES = 2000;
+
+    /** The largest program run as the automaton of a pattern set. */
+    private static final int MAX_SET_INSTS = 200000;
+
+    /** The number of states the cache of a pattern set holds. */
+    private static final int MAX_SET_STATES = 10000;
+
+    /** The most distinct assertions a program may test. */
+    private static final int MAX_CHECKS = 5;
+
+    /**
+     * The largest number of (instruction, index) pairs for which the
+     * groups of a match are found by a Backtracker rather than a
+     * PikeVM.
+     */
+    private static final int MAX_VISITED = 256 * 1024;
+
+    /** The forward program, with an unanchored entry. */
+    private final Prog prog;
+
+    /**
+     * True if the unanchored entry consumes the high surrogate of a
+     * pair alone, so that a match may start at its low surrogate.
+     */
+    private final boolean charLoop;
+
+    /** Leftmost-first automaton, for find and lookingAt. */
+    private final Cache first;
+
+    /** Automaton keeping all threads, for matches. */
+    private final Cache all;
+
+    /** Automaton for the reversed program, finding match starts. */
+    private final Cache reverse;
+
+    /** Assertion nodes, one per bit of the flags of a position. */
+    private final Pattern.Node[] checks;
+
+    /**
+     * The ASCII chars that can start a match, or null if not known.
+     * The search for a match skips other ASCII chars.
+     */
+    private final boolean[] startChars;
+
+    /** True if the expression starts with \A or a non-multiline ^. */
+    private final boolean anchored;
+
+    /** True if the expression tests assertions that look at the end. */
+    private final boolean endSensitive;
+
+    private final int groupCount;
+    private final int localCount;
+
+    private LazyDFA(Prog prog, Prog rprog, Pattern.Node[] checks,
+                    boolean charLoop, boolean anchored, boolean endSensitive,
+                    int groupCount, int localCount) {
+        this.prog = prog;
+        this.charLoop = charLoop;
+        this.first = new Cache(prog, true, MAX_STATES);
+        this.all = new Cache(prog, false, MAX_STATES);
+        this.reverse = new Cache(rprog, false, MAX_STATES);
+        this.checks = checks;
+        this.startChars = prog.startChars();
+        this.anchored = anchored;
+        this.endSensitive = endSensitive;
+        this.groupCount = groupCount;
+        this.localCount = localCount;
+    }
+
+    /**
+     * Creates the automaton of a pattern set, which only needs the
+     * cache that keeps all threads.
+     */
+    private LazyDFA(Prog prog, Pattern.Node[] checks) {
+        this.prog = prog;
+        this.charLoop = true;
+        this.first = null;
+        this.all = new Cache(prog, false, MAX_SET_STATES);
+        this.reverse = null;
+        this.checks = checks;
+        this.startChars = prog.startChars();
+        this.anchored = false;
+        this.endSensitive = false;
+        this.groupCount = 0;
+        this.localCount = 0;
+    }
+
+    /**
+     * Returns an automaton for the given node tree, or null if the
+     * expression cannot be matched this way.  If supplementary is set,
+     * the search starts a match only at the first index and after
+     * whole code points, as StartS does; otherwise at every index, as
+     * Start does.
+     */
+    static LazyDFA compile(Pattern.Node matchRoot, boolean supplementary,
+                           int groupCount, int localCount) {
+        Compiler c = new Compiler(localCount);
+        Prog p = c.prog;
+        int start = c.chain(matchRoot, null, c.match);
+        if (start < 0 || p.size > MAX_INSTS)
+            return null;
+        p.start = start;
+        Prog rprog = p.reverse(c.match);
+        // Unanchored entry: prefer starting here over skipping a char
+        p.any = p.add(ANY, 0, 0, -1);
+        p.ustart = p.split(new int[] { start, p.any });
+        p.next[p.any] = p.ustart;
+        p.addSkips(!supplementary);
+        return new LazyDFA(p, rprog,
+                           c.checks.toArray(new Pattern.Node[c.checks.size()]),
+                           !supplementary, matchRoot instanceof Pattern.Begin,
+                           c.endSensitive, groupCount, localCount);
+    }
+
+    /**
+     * Returns an automaton that finds which of the given patterns
+     * match somewhere in a text, or null if it can be used for none
+     * of them.  Each accepting instruction of its program holds the
+     * index of its pattern.  Sets included[i] if the automaton stands
+     * for patterns[i]; the others must be matched one by one.  The
+     * entry tries a match at every index, as Start does, so patterns
+     * searched by StartS are left out.
+     */
+    static LazyDFA compileSet(Pattern[] patterns, boolean[] included) {
+        Compiler c = new Compiler();
+        Prog p = c.prog;
+        int[] starts = new int[patterns.length];
+        int n = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].root instanceof Pattern.StartS)
+                continue;
+            int size = p.size;
+            c.limit = Math.min(size + MAX_INSTS, MAX_SET_INSTS);
+            c.match = p.add(MATCH, i, 0, -1);
+            int start = c.chain(patterns[i].matchRoot(), null, c.match);
+            if (start >= 0 && p.size <= c.limit) {
+                starts[n++] = start;
+                included[i] = true;
+            } else {
+                p.size = size;  // drop what was added
+            }
+        }
+        if (n == 0)
+            return null;
+        p.start = p.factor(Arrays.copyOf(starts, n));
+        p.any = p.add(ANY, 0, 0, -1);
+        p.ustart = p.split(new int[] { p.start, p.any });
+        p.next[p.any] = p.ustart;
+        p.addSkips(true);
+        return new LazyDFA(p, c.checks.toArray(new Pattern.Node[c.checks.size()]));
+    }
+
+    /**
+     * Performs a match operation of the given kind on behalf of the
+     * matcher, starting at index from, and returns true if it
+     * matches.  On success sets the bounds of the match and its groups
+     * in the matcher; in any case sets hitEnd and requireEnd.
+     */
+    boolean match(Matcher m, int from, int kind) {
+        CharSequence seq = m.text;
+        int to = m.to;
+        Cache cache = (kind == ENTIRE) ? all : first;
+        State s;
+        if (kind != FIND) {
+            s = cache.start(false);
+        } else if (anchored) {
+            // Begin only matches at the start, as in Begin.match
+            if (from != (m.anchoringBounds ? m.from : 0)) {
+                m.hitEnd = false;
+                m.requireEnd = false;
+                return false;
+            }
+            s = cache.start(false);
+        } else {
+            s = cache.start(true);
+        }
+
+        boolean[] skip = (kind == FIND && !anchored) ? startChars : null;
+        State start0 = s;
+        int end = -1;
+        boolean hit = false;
+        for (int i = from; ; i++) {
+            if (s == start0 && skip != null) {
+                // The start state loops on chars that start no match
+                char c;
+                while (i < to && (c = seq.charAt(i)) < 128 && !skip[c])
+                    i++;
+            }
+            int f = s.flagged ? flags(m, i, seq, s.assertions) : 0;
+            if ((kind != ENTIRE || i == to) && matches(cache, s, f))
+                end = i;
+            if (i >= to) {
+                hit = true;
+                break;
+            }
+            s = next(cache, s, f, codePointAt(seq, i, to));
+            if (s.insts.length == 0)
+                break;
+        }
+        if (end < 0) {
+            m.hitEnd = hit;
+            m.requireEnd = false;
+            return false;
+        }
+
+        int start = (kind == FIND) ? findStart(m, seq, from, end) : from;
+        if (start < 0)
+            throw new InternalError("no start for the end of a match");
+        if (groupCount > 1) {
+            int[] caps = ((long)prog.size * (end - start + 1) <= MAX_VISITED)
+                ? new Backtracker(this, m, seq, end).run(start)
+                : new PikeVM(this, m, seq, end).run(start);
+            if (caps == null)
+                throw new InternalError("no groups for a match");
+            System.arraycopy(caps, 2, m.groups, 2, groupCount * 2 - 2);
+        }
+        m.first = start;
+        m.last = end;
+        m.groups[0] = start;
+        m.groups[1] = end;
+        m.hitEnd = hit;
+        m.requireEnd = endSensitive && end == to;
+        return true;
+    }
+
+    /**
+     * For the automaton of a pattern set, sets found[i] for each
+     * pattern i that it stands for and that matches somewhere in the
+     * region of the matcher, until count patterns are found.
+     *
+     * @return the number of patterns found
+     */
+    int findAll(Matcher m, boolean[] found, int count) {
+        CharSequence seq = m.text;
+        int to = m.to;
+        Cache cache = all;
+        State s = cache.start(true);
+        State start0 = s;
+        boolean[] skip = startChars;
+        int n = 0;
+        for (int i = m.from; ; i++) {
+            if (s == start0 && skip != null) {
+                char c;
+                while (i < to && (c = seq.charAt(i)) < 128 && !skip[c])
+                    i++;
+            }
+            int f = s.flagged ? flags(m, i, seq, s.assertions) : 0;
+            int[][] a = s.accepts;
+            int[] ids = (a != null && a[f] != null) ? a[f] :
+                cache.accepts(s, f);
+            for (int j = 0; j < ids.length; j++) {
+                if (!found[ids[j]]) {
+                    found[ids[j]] = true;
+                    if (++n == count)
+                        return n;
+                }
+            }
+            if (i >= to)
+                return n;
+            s = next(cache, s, f, codePointAt(seq, i, to));
+        }
+    }
+
+    /**
+     * Returns the start of the leftmost-first match that ends at end,
+     * scanning backwards no further than from.  Surrogate pairs are
+     * consumed whole, as the forward program consumes them from
+     * every start but one between the chars of a pair, which is
+     * tried on the low surrogate alone.
+     */
+    private int findStart(Matcher m, CharSequence seq, int from, int end) {
+        Cache cache = reverse;
+        State s = cache.start(false);
+        int start = -1;
+        for (int i = end; ; ) {
+            int f = s.flagged ? flags(m, i, seq, s.assertions) : 0;
+            if (matches(cache, s, f))
+                start = i;
+            if (i <= from)
+                break;
+            char c = seq.charAt(i - 1);
+            if (Character.isLowSurrogate(c) && i - 2 >= from &&
+                Character.isHighSurrogate(seq.charAt(i - 2))) {
+                if (charLoop) {
+                    State t = next(cache, s, f, c);
+                    int g = t.flagged ? flags(m, i - 1, seq, t.assertions) : 0;
+                    if (matches(cache, t, g))
+                        start = i - 1;
+                }
+                s = next(cache, s, f,
+                         Character.toCodePoint(seq.charAt(i - 2), c));
+                i -= 2;
+            } else {
+                s = next(cache, s, f, c);
+                i--;
+            }
+            if (s.insts.length == 0)
+                break;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the code point at index i of seq: that of a surrogate
+     * pair if both of its chars are before limit, and otherwise the
+     * char at i.
+     */
+    private static int codePointAt(CharSequence seq, int i, int limit) {
+        char c = seq.charAt(i);
+        if (Character.isHighSurrogate(c) && i + 1 < limit) {
+            char d = seq.charAt(i + 1);
+            if (Character.isLowSurrogate(d))
+                return Character.toCodePoint(c, d);
+        }
+        return c;
+    }
+
+    /**
+     * Returns the state reached from s on code point c at a position
+     * with the given flags.
+     */
+    private static State next(Cache cache, State s, int f, int c) {
+        State n;
+        if (f == 0 && c < 128) {
+            if ((n = s.ascii[c]) != null)
+                return n;
+        } else {
+            Transitions t = s.more;
+            if (t != null && (n = t.get(f << 21 | c)) != null)
+                return n;
+        }
+        return cache.step(s, f, c);
+    }
+
+    /**
+     * Returns true if state s accepts at a position with the given flags.
+     */
+    private static boolean matches(Cache cache, State s, int f) {
+        if (!s.flagged)
+            return s.match0;
+        long b = s.matchBits;
+        if ((b & (1L << f)) != 0)
+            return (b & (1L << (f + 32))) != 0;
+        return cache.matches(s, f);
+    }
+
+    /**
+     * Returns the bit set of the assertions among those in the given
+     * mask that hold at index i.  Assertion nodes may update the
+     * matcher as they are tried, so the fields they touch are restored.
+     */
+    int flags(Matcher m, int i, CharSequence seq, int mask) {
+        boolean hitEnd = m.hitEnd;
+        boolean requireEnd = m.requireEnd;
+        int first = m.first;
+        int g0 = m.groups[0];
+        int g1 = m.groups[1];
+        int f = 0;
+        for (int k = 0; k < checks.length; k++) {
+            if ((mask & (1 << k)) != 0 && checks[k].match(m, i, seq))
+                f |= 1 << k;
+        }
+        m.hitEnd = hitEnd;
+        m.requireEnd = requireEnd;
+        m.first = first;
+        m.groups[0] = g0;
+        m.groups[1] = g1;
+        return f;
+    }
+
+    /**
+     * Tail of the assertion nodes in checks: always succeeds.
+     */
+    private static final Pattern.Node TRUE = new Pattern.Node() {
+        boolean match(Matcher matcher, int i, CharSequence seq) {
+            return true;
+        }
+    };
+
+    /**
+     * A program for a nondeterministic automaton, held in parallel
+     * arrays indexed by instruction.
+     */
+    private static final class Prog {
+        int[] op = new int[16];
+        int[] arg = new int[16];
+        int[] arg2 = new int[16];
+        int[] next = new int[16];
+        int[][] alts = new int[16][];
+        Pattern.CharProperty[] props = new Pattern.CharProperty[4];
+        long[] asciiProps = new long[8];  // ASCII chars of each, as two words
+        int nprops;
+        int size;
+        int start = -1;   // anchored entry
+        int ustart = -1;  // unanchored entry
+        int any = -1;     // loop of the unanchored entry
+
+        /**
+         * For a consuming instruction, where its threads are between
+         * the chars of a surrogate pair that it consumes, or null if
+         * pairs are consumed whole.
+         */
+        int[] skip;
+
+        int add(int o, int a, int a2, int n) {
+            if (size == op.length) {
+                int len = size * 2;
+                op = Arrays.copyOf(op, len);
+                arg = Arrays.copyOf(arg, len);
+                arg2 = Arrays.copyOf(arg2, len);
+                next = Arrays.copyOf(next, len);
+                alts = Arrays.copyOf(alts, len);
+            }
+            op[size] = o;
+            arg[size] = a;
+            arg2[size] = a2;
+            next[size] = n;
+            return size++;
+        }
+
+        int split(int[] targets) {
+            int pc = add(SPLIT, 0, 0, -1);
+            alts[pc] = targets;
+            return pc;
+        }
+
+        /**
+         * Sets skip, adding for each consuming instruction one that
+         * consumes the low surrogate of a pair and goes on to the
+         * successor.  If charLoop is set, the loop of the unanchored
+         * entry consumes a high surrogate alone instead.
+         */
+        void addSkips(boolean charLoop) {
+            int n = size;
+            int[] s = new int[n];
+            for (int pc = 0; pc < n; pc++) {
+                if (op[pc] > ANY)
+                    s[pc] = -1;
+                else if (pc == any && charLoop)
+                    s[pc] = next[pc];
+                else
+                    s[pc] = add(ANY, 0, 0, next[pc]);
+            }
+            skip = s;
+        }
+
+        /**
+         * Returns the successors of the consuming instructions on code
+         * point c.
+         */
+        int[] targets(int c) {
+            return (skip != null &&
+                    c >= Character.MIN_SUPPLEMENTARY_CODE_POINT) ? skip : next;
+        }
+
+        int prop(Pattern.CharProperty p, int n) {
+            if (nprops > 0 && props[nprops - 1] == p)  // unrolled repeat
+                return add(PROP, nprops - 1, 0, n);
+            if (nprops == props.length) {
+                props = Arrays.copyOf(props, nprops * 2);
+                asciiProps = Arrays.copyOf(asciiProps, nprops * 4);
+            }
+            props[nprops] = p;
+            for (int c = 0; c < 128; c++) {
+                if (p.isSatisfiedBy(c))
+                    asciiProps[nprops * 2 + (c >>> 6)] |= 1L << c;
+            }
+            return add(PROP, nprops++, 0, n);
+        }
+
+        /**
+         * Returns true if consuming instruction pc accepts code point c.
+         */
+        boolean test(int pc, int c) {
+            int a = arg[pc];
+            switch (op[pc]) {
+            case CHAR:
+                return c == a;
+            case CHAR_I:
+                return c == a || a == ASCII.toLower(c);
+            case CHAR_U:
+                return c == a ||
+                    a == Character.toLowerCase(Character.toUpperCase(c));
+            case PROP:
+                if (c < 128)
+                    return (asciiProps[a * 2 + (c >>> 6)] & (1L << c)) != 0;
+                return props[a].isSatisfiedBy(c);
+            default:
+                return true;
+            }
+        }
+
+        /**
+         * Returns an instruction that leads to the same threads as a
+         * split to the given targets, but in which the targets that
+         * consume the same char are merged into one instruction
+         * followed by the merge of their successors, so that literal
+         * prefixes shared by the targets are matched by shared
+         * instructions, as in a trie.  The order of preference is lost.
+         */
+        int factor(int[] targets) {
+            int n = targets.length;
+            int[] alts = new int[n];
+            int nalts = 0;
+            long[] keys = new long[n];  // (op, char, index) of char targets
+            int nkeys = 0;
+            for (int j = 0; j < n; j++) {
+                int pc = targets[j];
+                if (op[pc] <= CHAR_U)
+                    keys[nkeys++] = (long)(op[pc] << 21 | arg[pc]) << 32 | j;
+                else
+                    alts[nalts++] = pc;
+            }
+            Arrays.sort(keys, 0, nkeys);
+            for (int a = 0, b; a < nkeys; a = b) {
+                int key = (int)(keys[a] >>> 32);
+                b = a + 1;
+                while (b < nkeys && (int)(keys[b] >>> 32) == key)
+                    b++;
+                int pc = targets[(int)keys[a]];
+                if (b - a > 1) {
+                    int[] nexts = new int[b - a];
+                    for (int j = a; j < b; j++)
+                        nexts[j - a] = next[targets[(int)keys[j]]];
+                    pc = add(op[pc], arg[pc], 0, factor(nexts));
+                }
+                alts[nalts++] = pc;
+            }
+            return (nalts == 1) ? alts[0] : split(Arrays.copyOf(alts, nalts));
+        }
+
+        /**
+         * Returns the ASCII chars that can be consumed first by a
+         * match from the entry, or null if the entry can reach an
+         * assertion or accept without consuming a char.
+         */
+        boolean[] startChars() {
+            boolean[] chars = new boolean[128];
+            boolean[] seen = new boolean[size];
+            int[] stack = new int[size];
+            int sp = 0;
+            seen[start] = true;
+            stack[sp++] = start;
+            while (sp > 0) {
+                int pc = stack[--sp];
+                switch (op[pc]) {
+                case SPLIT:
+                    int[] a = alts[pc];
+                    for (int j = 0; j < a.length; j++) {
+                        if (!seen[a[j]]) {
+                            seen[a[j]] = true;
+                            stack[sp++] = a[j];
+                        }
+                    }
+                    break;
+                case OPEN:
+                case CLOSE:
+                    if (!seen[next[pc]]) {
+                        seen[next[pc]] = true;
+                        stack[sp++] = next[pc];
+                    }
+                    break;
+                case ASSERT:
+                case MATCH:
+                    return null;
+                default:
+                    for (int c = 0; c < 128; c++) {
+                        if (!chars[c] && test(pc, c))
+                            chars[c] = true;
+                    }
+                }
+            }
+            return chars;
+        }
+
+        /**
+         * Returns the reversed program, whose instruction pc for each
+         * instruction pc of this program leads to the instructions
+         * that precede it.  Its entry is the accepting instruction
+         * match of this program, and it accepts at the entry of this
+         * program.  The order of preference is lost.
+         */
+        Prog reverse(int match) {
+            int n = size;
+            Prog r = new Prog();
+            r.props = props;
+            r.asciiProps = asciiProps;
+            r.nprops = nprops;
+            int[][] preds = new int[n][];
+            int[] npreds = new int[n];
+            for (int pc = 0; pc < n; pc++)
+                r.split(null);
+            for (int pc = 0; pc < n; pc++) {
+                switch (op[pc]) {
+                case SPLIT:
+                    int[] a = alts[pc];
+                    for (int j = 0; j < a.length; j++)
+                        addPred(preds, npreds, a[j], pc);
+                    break;
+                case OPEN:
+                case CLOSE:
+                    addPred(preds, npreds, next[pc], pc);
+                    break;
+                case MATCH:
+                    break;
+                default:    // ASSERT and consuming instructions
+                    addPred(preds, npreds, next[pc],
+                            r.add(op[pc], arg[pc], 0, pc));
+                }
+            }
+            addPred(preds, npreds, start, r.add(MATCH, 0, 0, -1));
+            for (int pc = 0; pc < n; pc++)
+                r.alts[pc] = (preds[pc] == null) ? new int[0] :
+                    Arrays.copyOf(preds[pc], npreds[pc]);
+            r.start = match;
+            return r;
+        }
+
+        private static void addPred(int[][] preds, int[] npreds,
+                                    int pc, int pred) {
+            int[] p = preds[pc];
+            if (p == null)
+                p = preds[pc] = new int[2];
+            else if (npreds[pc] == p.length)
+                p = preds[pc] = Arrays.copyOf(p, p.length * 2);
+            p[npreds[pc]++] = pred;
+        }
+    }
+
+    /**
+     * Translates a node tree into a Prog.  The methods return the
+     * entry instruction of the translated nodes, or -1 if they cannot
+     * be translated.
+     */
+    private static final class Compiler {
+        final Prog prog = new Prog();
+        final ArrayList<Pattern.Node> checks = new ArrayList<Pattern.Node>();
+        final int[] checkKeys = new int[MAX_CHECKS];
+        boolean endSensitive;
+
+        /** The accepting instruction, which LastNode translates to. */
+        int match;
+
+        /** The size the program may not exceed. */
+        int limit = MAX_INSTS;
+
+        /**
+         * Locals whose group is captured, noted by GroupTail, or null
+         * if groups are not recorded.
+         */
+        final boolean[] captured;
+
+        Compiler(int localCount) {
+            captured = new boolean[localCount];
+            match = prog.add(MATCH, 0, 0, -1);
+        }
+
+        /**
+         * Creates a compiler for a pattern set, which does not record
+         * groups.  The caller sets match for each pattern.
+         */
+        Compiler() {
+            captured = null;
+        }
+
+        /**
+         * Translates the chain of nodes from node up to, not including,
+         * stop, followed by the instruction k.
+         */
+        int chain(Pattern.Node node, Pattern.Node stop, int k) {
+            if (node == stop)
+                return k;
+            if (node == null || prog.size > limit)
+                return -1;
+            if (node instanceof Pattern.LastNode)
+                return match;
+            int rest = chain(successor(node), stop, k);
+            return (rest < 0) ? -1 : node(node, rest);
+        }
+
+        /**
+         * Returns the node that follows node in its chain.
+         */
+        private static Pattern.Node successor(Pattern.Node node) {
+            if (node instanceof Pattern.Branch)
+                return ((Pattern.Branch)node).conn.next;
+            if (node instanceof Pattern.Prolog)
+                return ((Pattern.Prolog)node).loop.next;
+            return node.next;
+        }
+
+        /**
+         * Translates a single node followed by the instruction k.
+         */
+        int node(Pattern.Node node, int k) {
+            if (node instanceof Pattern.Single)
+                return prog.add(CHAR, ((Pattern.Single)node).c, 0, k);
+            if (node instanceof Pattern.CharProperty)
+                return prog.prop((Pattern.CharProperty)node, k);
+            if (node instanceof Pattern.Slice)
+                return slice(CHAR, ((Pattern.SliceNode)node).buffer, k);
+            if (node instanceof Pattern.SliceI)
+                return slice(CHAR_I, ((Pattern.SliceNode)node).buffer, k);
+            if (node instanceof Pattern.SliceU)
+                return slice(CHAR_U, ((Pattern.SliceNode)node).buffer, k);
+            if (node instanceof Pattern.SliceS)
+                return slice(CHAR, ((Pattern.SliceNode)node).buffer, k);
+            if (node instanceof Pattern.SliceUS)
+                return slice(CHAR_U, ((Pattern.SliceNode)node).buffer, k);
+            if (node instanceof Pattern.SliceIS)
+                return slice(CHAR_I, ((Pattern.SliceNode)node).buffer, k);
+            if (node instanceof Pattern.GroupHead) {
+                int local = ((Pattern.GroupHead)node).localIndex;
+                return (captured != null && captured[local]) ?
+                    prog.add(OPEN, local, 0, k) : k;
+            }
+            if (node instanceof Pattern.GroupTail) {
+                Pattern.GroupTail t = (Pattern.GroupTail)node;
+                if (t.groupIndex == 0 || captured == null)
+                    return k;
+                captured[t.localIndex] = true;
+                return prog.add(CLOSE, t.localIndex, t.groupIndex, k);
+            }
+            if (node instanceof Pattern.Branch) {
+                Pattern.Branch b = (Pattern.Branch)node;
+                int[] targets = new int[b.size];
+                for (int n = 0; n < b.size; n++) {
+                    targets[n] = (b.atoms[n] == null) ? k :
+                        chain(b.atoms[n], b.conn, k);
+                    if (targets[n] < 0)
+                        return -1;
+                }
+                return prog.split(targets);
+            }
+            if (node instanceof Pattern.Ques) {
+                Pattern.Ques q = (Pattern.Ques)node;
+                if (q.type != Pattern.GREEDY && q.type != Pattern.LAZY)
+                    return -1;
+                int a = node(q.atom, k);
+                if (a < 0)
+                    return -1;
+                return prog.split((q.type == Pattern.GREEDY) ?
+                                  new int[] { a, k } : new int[] { k, a });
+            }
+            if (node instanceof Pattern.Curly) {
+                Pattern.Curly c = (Pattern.Curly)node;
+                // Only atoms that consume, so never of zero length
+                if (c.type == Pattern.POSSESSIVE ||
+                    !(c.atom instanceof Pattern.CharProperty ||
+                      c.atom instanceof Pattern.Slice ||
+                      c.atom instanceof Pattern.SliceI ||
+                      c.atom instanceof Pattern.SliceU ||
+                      c.atom instanceof Pattern.SliceS ||
+                      c.atom instanceof Pattern.SliceIS))
+                    return -1;
+                return repeat(node, false, c.cmin, c.cmax,
+                              c.type == Pattern.LAZY, k);
+            }
+            if (node instanceof Pattern.GroupCurly) {
+                Pattern.GroupCurly g = (Pattern.GroupCurly)node;
+                if (g.type == Pattern.POSSESSIVE)
+                    return -1;
+                if (nullable(g.atom)) {
+                    // The atom has a fixed length, zero.  Past cmin,
+                    // a greedy GroupCurly tries it once more and then
+                    // goes on, leaving its group as it was; a lazy
+                    // one goes on.
+                    if (g.type == Pattern.GREEDY && g.cmax > g.cmin) {
+                        int a = atom(g, k);
+                        if (a < 0)
+                            return -1;
+                        k = prog.split(new int[] { a, k });
+                    }
+                    return repeat(node, false, g.cmin, g.cmin, false, k);
+                }
+                return repeat(node, false, g.cmin, g.cmax,
+                              g.type == Pattern.LAZY, k);
+            }
+            if (node instanceof Pattern.Prolog) {
+                Pattern.Loop loop = ((Pattern.Prolog)node).loop;
+                return repeat(loop, nullable(loop.body),
+                              loop.cmin, loop.cmax,
+                              loop instanceof Pattern.LazyLoop, k);
+            }
+            int bit = check(node);
+            return (bit < 0) ? -1 : prog.add(ASSERT, bit, 0, k);
+        }
+
+        private int slice(int op, int[] buf, int k) {
+            for (int j = buf.length - 1; j >= 0; j--)
+                k = prog.add(op, buf[j], 0, k);
+            return k;
+        }
+
+        /**
+         * Returns true if the chain starting at node may match the
+         * empty string.
+         */
+        private static boolean nullable(Pattern.Node node) {
+            Pattern.TreeInfo info = new Pattern.TreeInfo();
+            node.study(info);
+            return info.minLength == 0;
+        }
+
+        /**
+         * Translates one iteration of a repetition node followed by k.
+         */
+        private int body(Pattern.Node rep, int k) {
+            if (rep instanceof Pattern.Curly)
+                return node(((Pattern.Curly)rep).atom, k);
+            if (rep instanceof Pattern.Loop) {
+                Pattern.Loop loop = (Pattern.Loop)rep;
+                return chain(loop.body, loop, k);
+            }
+            Pattern.GroupCurly g = (Pattern.GroupCurly)rep;
+            if (g.capture && captured != null)
+                k = prog.add(CLOSE, g.localIndex, g.groupIndex, k);
+            k = atom(g, k);
+            if (k >= 0 && g.capture && captured != null)
+                k = prog.add(OPEN, g.localIndex, 0, k);
+            return k;
+        }
+
+        /**
+         * Translates the atom of g, without the bounds of its group,
+         * followed by k.
+         */
+        private int atom(Pattern.GroupCurly g, int k) {
+            // The atom ends with the group's GroupTail
+            Pattern.Node tail = g.atom;
+            while (!(tail instanceof Pattern.GroupTail &&
+                     ((Pattern.GroupTail)tail).localIndex == g.localIndex))
+                tail = successor(tail);
+            return chain(g.atom, tail, k);
+        }
+
+        /**
+         * Translates one iteration of the body of rep followed by
+         * next.  If empty is set, the body may match the empty string,
+         * and an iteration that does leaves the repetition for k.
+         */
+        private int iteration(Pattern.Node rep, boolean empty,
+                              int next, int k) {
+            int lo = prog.size;
+            int b = body(rep, next);
+            if (b < 0 || !empty)
+                return b;
+            return enter(lo, b, next, k);
+        }
+
+        /**
+         * Copies the instructions from lo up, the translation of one
+         * iteration whose entry is b and which ends at next, and
+         * returns the entry of the copy.  The copy stands for the
+         * part of the iteration in which no char has been consumed
+         * yet: it ends at k instead of next, and its consuming
+         * instructions lead into the original.  An iteration that
+         * matches the empty string thus leaves the repetition, as in
+         * Loop, instead of starting another one at the same index, and
+         * the closure of a state never goes round a loop.
+         */
+        private int enter(int lo, int b, int next, int k) {
+            Prog p = prog;
+            int hi = p.size;
+            if (hi + (hi - lo) > limit)
+                return -1;
+            for (int pc = lo; pc < hi; pc++) {
+                int op = p.op[pc];
+                int n = (op <= ANY) ? p.next[pc] :
+                    copied(p.next[pc], lo, hi, next, k);
+                int c = p.add(op, p.arg[pc], p.arg2[pc], n);
+                if (op == SPLIT) {
+                    int[] a = p.alts[pc].clone();
+                    for (int j = 0; j < a.length; j++)
+                        a[j] = copied(a[j], lo, hi, next, k);
+                    p.alts[c] = a;
+                }
+            }
+            return copied(b, lo, hi, next, k);
+        }
+
+        /**
+         * Returns the instruction that pc stands for in a copy made
+         * by enter.
+         */
+        private static int copied(int pc, int lo, int hi, int next, int k) {
+            if (pc == next)
+                return k;
+            return (pc >= lo && pc < hi) ? pc + (hi - lo) : pc;
+        }
+
+        /**
+         * Translates cmin to cmax iterations of the body of rep,
+         * unrolled, followed by k.
+         */
+        private int repeat(Pattern.Node rep, boolean empty, int cmin,
+                           int cmax, boolean lazy, int k) {
+            if (cmin > MAX_INSTS ||
+                (cmax != Pattern.MAX_REPS && cmax - cmin > MAX_INSTS))
+                return -1;
+            int tail;
+            if (cmax == Pattern.MAX_REPS) {
+                tail = prog.split(null);
+                int b = iteration(rep, empty, tail, k);
+                if (b < 0)
+                    return -1;
+                prog.alts[tail] = lazy ? new int[] { k, b } :
+                                         new int[] { b, k };
+            } else {
+                tail = k;
+                for (int n = cmin; n < cmax; n++) {
+                    int b = iteration(rep, empty, tail, k);
+                    if (b < 0 || prog.size > limit)
+                        return -1;
+                    tail = prog.split(lazy ? new int[] { k, b } :
+                                             new int[] { b, k });
+                }
+            }
+            for (int n = 0; n < cmin; n++) {
+                tail = iteration(rep, empty, tail, k);
+                if (tail < 0 || prog.size > limit)
+                    return -1;
+            }
+            return tail;
+        }
+
+        /**
+         * Returns the flag bit of the given assertion node, or -1 if it
+         * is not an assertion the automaton can test.
+         */
+        private int check(Pattern.Node node) {
+            int key;
+            Pattern.Node check;
+            if (node instanceof Pattern.Begin) {
+                key = 1;
+                check = new Pattern.Begin();
+            } else if (node instanceof Pattern.End) {
+                key = 2;
+                check = new Pattern.End();
+            } else if (node instanceof Pattern.Caret) {
+                key = 3;
+                check = new Pattern.Caret();
+            } else if (node instanceof Pattern.UnixCaret) {
+                key = 4;
+                check = new Pattern.UnixCaret();
+            } else if (node instanceof Pattern.LastMatch) {
+                key = 5;
+                check = new Pattern.LastMatch();
+            } else if (node instanceof Pattern.Dollar) {
+                boolean multiline = ((Pattern.Dollar)node).multiline;
+                key = multiline ? 6 : 7;
+                check = new Pattern.Dollar(multiline);
+                endSensitive = true;
+            } else if (node instanceof Pattern.UnixDollar) {
+                boolean multiline = ((Pattern.UnixDollar)node).multiline;
+                key = multiline ? 8 : 9;
+                check = new Pattern.UnixDollar(multiline);
+                endSensitive = true;
+            } else if (node instanceof Pattern.Bound) {
+                int type = ((Pattern.Bound)node).type;
+                key = 16 + type;
+                check = new Pattern.Bound(type);
+                endSensitive = true;
+            } else {
+                return -1;
+            }
+            int n = checks.size();
+            for (int bit = 0; bit < n; bit++) {
+                if (checkKeys[bit] == key)
+                    return bit;
+            }
+            if (n == MAX_CHECKS)
+                return -1;
+            check.next = TRUE;
+            checks.add(check);
+            checkKeys[n] = key;
+            return n;
+        }
+    }
+
+    /**
+     * A state of an automaton.
+     */
+    private static final class State {
+        /** The instructions of the threads alive in this state. */
+        final int[] insts;
+
+        /** True if the closure of this state tests assertions. */
+        final boolean flagged;
+
+        /**
+         * The bit set of the assertions tested by the closure of this
+         * state.  Only these are evaluated to find the flags of a
+         * position in this state, since no other can change its
+         * transitions.
+         */
+        final int assertions;
+
+        /** True if this state accepts, when not flagged. */
+        final boolean match0;
+
+        /** Transitions on ASCII chars at positions with no flags. */
+        final State[] ascii = new State[128];
+
+        /** Other transitions, keyed by flags << 21 | code point. */
+        volatile Transitions more;
+
+        /**
+         * For flagged states, whether the state accepts at positions
+         * with flags f: bit f is set if known, bit f + 32 if so.
+         */
+        volatile long matchBits;
+
+        /**
+         * For the automaton of a pattern set, the patterns accepted at
+         * positions with flags f, as accepts[f] (or accepts[0] if not
+         * flagged); replaced as a whole as entries are computed.
+         */
+        volatile int[][] accepts;
+
+        State(int[] insts, int assertions, boolean match0) {
+            this.insts = insts;
+            this.assertions = assertions;
+            this.flagged = assertions != 0;
+            this.match0 = match0;
+        }
+    }
+
+    /**
+     * An immutable open-addressing map from int keys to states,
+     * replaced as a whole when a transition is added.
+     */
+    private static final class Transitions {
+        final int[] keys;
+        final State[] states;
+        final int count;
+
+        Transitions(int capacity, int count) {
+            keys = new int[capacity];
+            states = new State[capacity];
+            this.count = count;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        State get(int key) {
+            int mask = keys.length - 1;
+            for (int h = hash(key) & mask; ; h = (h + 1) & mask) {
+                State s = states[h];
+                if (s == null || keys[h] == key)
+                    return s;
+            }
+        }
+
+        private void put(int key, State s) {
+            int mask = keys.length - 1;
+            int h = hash(key) & mask;
+            while (states[h] != null)
+                h = (h + 1) & mask;
+            keys[h] = key;
+            states[h] = s;
+        }
+
+        static Transitions with(Transitions t, int key, State s) {
+            if (t == null) {
+                t = new Transitions(8, 1);
+                t.put(key, s);
+                return t;
+            }
+            int capacity = t.keys.length;
+            if ((t.count + 1) * 2 > capacity)
+                capacity *= 2;
+            Transitions u = new Transitions(capacity, t.count + 1);
+            for (int j = 0; j < t.keys.length; j++) {
+                if (t.states[j] != null)
+                    u.put(t.keys[j], t.states[j]);
+            }
+            u.put(key, s);
+            return u;
+        }
+    }
+
+    /**
+     * Key of a state in a cache.
+     */
+    private static final class Key {
+        final int[] insts;
+        final int hash;
+
+        Key(int[] insts) {
+            this.insts = insts;
+            this.hash = Arrays.hashCode(insts);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            return (o instanceof Key) && Arrays.equals(insts, ((Key)o).insts);
+        }
+    }
+
+    /**
+     * The states of an automaton for a program.  A leftmost-first
+     * automaton (cut) keeps the threads of a state in order of
+     * preference and drops those of lower preference than an
+     * accepting thread; otherwise threads are kept in sorted order.
+     */
+    private static final class Cache {
+        private final Prog prog;
+        private final boolean cut;
+        private final int maxStates;
+        private final HashMap<Key,State> states = new HashMap<Key,State>();
+        private volatile State anchoredStart;
+        private volatile State unanchoredStart;
+
+        // Scratch space, guarded by this
+        private final int[] mark;
+        private int gen;
+        private int[] stack = new int[16];
+        private int sp;
+        private final int[] leaves;
+        private int nleaves;
+        private final int[] kernel;
+        private final int[] accepting;
+        private int naccepting;
+
+        /*
+         * Every state of an unanchored search holds the unanchored
+         * entry as its last thread.  If the closure of the entry can
+         * neither accept nor test an assertion, it adds the same
+         * threads to the transitions of every such state.  These are
+         * then computed once: startLeaves holds the consuming
+         * instructions reachable from the entry (apart from the loop
+         * over any char), and startTargets[c] their successors on
+         * ASCII char c.  This matters for programs with a large entry,
+         * such as those of pattern sets.
+         */
+        private final int[] startLeaves;
+        private final int[][] startTargets;     // guarded by this
+
+        Cache(Prog prog, boolean cut, int maxStates) {
+            this.prog = prog;
+            this.cut = cut;
+            this.maxStates = maxStates;
+            this.mark = new int[prog.size];
+            this.leaves = new int[prog.size];
+            this.kernel = new int[prog.size];
+            this.accepting = new int[prog.size];
+            if (prog.ustart >= 0 && prog.startChars() != null) {
+                closure(new int[] { prog.start }, 1, 0);
+                startLeaves = Arrays.copyOf(leaves, nleaves);
+                startTargets = new int[128][];
+            } else {
+                startLeaves = null;
+                startTargets = null;
+            }
+        }
+
+        /**
+         * Returns the number of threads of a state whose closure must
+         * be computed: all of them, or all but the unanchored entry if
+         * its threads are shared.
+         */
+        private int ownThreads(int[] insts) {
+            int n = insts.length;
+            return (startLeaves != null && n > 0 &&
+                    insts[n - 1] == prog.ustart) ? n - 1 : n;
+        }
+
+        /**
+         * Returns the instructions that the shared threads of the
+         * unanchored entry lead to on code point c.
+         */
+        private int[] startTargets(int c) {
+            int[] t = (c < 128) ? startTargets[c] : null;
+            if (t == null) {
+                Prog p = prog;
+                int[] to = p.targets(c);
+                int n = 0;
+                t = new int[startLeaves.length];
+                for (int j = 0; j < startLeaves.length; j++) {
+                    int pc = startLeaves[j];
+                    if (p.test(pc, c))
+                        t[n++] = to[pc];
+                }
+                t = Arrays.copyOf(t, n);
+                if (c < 128)
+                    startTargets[c] = t;
+            }
+            return t;
+        }
+
+        State start(boolean unanchored) {
+            State s = unanchored ? unanchoredStart : anchoredStart;
+            return (s != null) ? s : newStart(unanchored);
+        }
+
+        private synchronized State newStart(boolean unanchored) {
+            State s = unanchored ? unanchoredStart : anchoredStart;
+            if (s == null) {
+                kernel[0] = unanchored ? prog.ustart : prog.start;
+                s = intern(kernel, 1);
+                if (unanchored)
+                    unanchoredStart = s;
+                else
+                    anchoredStart = s;
+            }
+            return s;
+        }
+
+        /**
+         * Computes and records the transition from s on code point c at
+         * a position with flags f.
+         */
+        synchronized State step(State s, int f, int c) {
+            int own = ownThreads(s.insts);
+            boolean matched = closure(s.insts, own, f);
+            if (s.flagged)
+                record(s, f, matched);
+            Prog p = prog;
+            int[] to = p.targets(c);
+            int g = nextGen();
+            int n = 0;
+            for (int j = 0; j < nleaves; j++) {
+                int pc = leaves[j];
+                if (p.test(pc, c)) {
+                    int t = to[pc];
+                    if (mark[t] != g) {
+                        mark[t] = g;
+                        kernel[n++] = t;
+                    }
+                }
+            }
+            // The shared threads come last, unless cut by a match
+            if (own < s.insts.length && !(cut && matched)) {
+                int[] targets = startTargets(c);
+                for (int j = 0; j < targets.length; j++) {
+                    int t = targets[j];
+                    if (mark[t] != g) {
+                        mark[t] = g;
+                        kernel[n++] = t;
+                    }
+                }
+                int t = to[p.any];
+                if (mark[t] != g) {     // by the loop over any char
+                    mark[t] = g;
+                    kernel[n++] = t;
+                }
+            }
+            State next = intern(kernel, n);
+            if (f == 0 && c < 128)
+                s.ascii[c] = next;
+            else
+                s.more = Transitions.with(s.more, f << 21 | c, next);
+            return next;
+        }
+
+        /**
+         * Computes and records whether s accepts at a position with
+         * flags f.
+         */
+        synchronized boolean matches(State s, int f) {
+            boolean matched = closure(s.insts, ownThreads(s.insts), f);
+            record(s, f, matched);
+            return matched;
+        }
+
+        /**
+         * Computes and records the args of the accepting instructions
+         * reachable from s at a position with flags f: for the
+         * automaton of a pattern set, the patterns that match there.
+         */
+        synchronized int[] accepts(State s, int f) {
+            int[][] a = s.accepts;
+            if (a != null && a[f] != null)
+                return a[f];
+            closure(s.insts, ownThreads(s.insts), f);
+            int[] ids = new int[naccepting];
+            for (int j = 0; j < naccepting; j++)
+                ids[j] = prog.arg[accepting[j]];
+            // Copied, so that racing readers see complete arrays
+            a = (a == null) ? new int[s.flagged ? 1 << MAX_CHECKS : 1][]
+                            : a.clone();
+            a[f] = ids;
+            s.accepts = a;
+            return ids;
+        }
+
+        private static void record(State s, int f, boolean matched) {
+            long bits = 1L << f;
+            if (matched)
+                bits |= 1L << (f + 32);
+            s.matchBits |= bits;
+        }
+
+        private State intern(int[] k, int n) {
+            int[] insts = Arrays.copyOf(k, n);
+            if (!cut)
+                Arrays.sort(insts);
+            Key key = new Key(insts);
+            State s = states.get(key);
+            if (s == null) {
+                if (states.size() >= maxStates) {
+                    states.clear();
+                    anchoredStart = null;
+                    unanchoredStart = null;
+                }
+                int own = ownThreads(insts);
+                int assertions = assertions(insts, own);
+                s = new State(insts, assertions,
+                              assertions == 0 && closure(insts, own, 0));
+                states.put(key, s);
+            }
+            return s;
+        }
+
+        private int nextGen() {
+            if (++gen == 0) {
+                Arrays.fill(mark, 0);
+                gen = 1;
+            }
+            return gen;
+        }
+
+        private void push(int pc) {
+            if (sp == stack.length)
+                stack = Arrays.copyOf(stack, sp * 2);
+            stack[sp++] = pc;
+        }
+
+        /**
+         * Sets leaves to the consuming instructions reachable from the
+         * first n of the given threads through empty transitions
+         * allowed by flags f, in order of preference, and accepting to
+         * the accepting instructions reachable.  Returns true if there
+         * are any.
+         */
+        private boolean closure(int[] threads, int n, int f) {
+            Prog p = prog;
+            int g = nextGen();
+            boolean matched = false;
+            nleaves = 0;
+            naccepting = 0;
+            sp = 0;
+            for (int j = n - 1; j >= 0; j--)
+                push(threads[j]);
+            while (sp > 0) {
+                int pc = stack[--sp];
+                if (mark[pc] == g)
+                    continue;
+                mark[pc] = g;
+                switch (p.op[pc]) {
+                case SPLIT:
+                    int[] a = p.alts[pc];
+                    for (int j = a.length - 1; j >= 0; j--)
+                        push(a[j]);
+                    break;
+                case ASSERT:
+                    if ((f & (1 << p.arg[pc])) != 0)
+                        push(p.next[pc]);
+                    break;
+                case OPEN:
+                case CLOSE:
+                    push(p.next[pc]);
+                    break;
+                case MATCH:
+                    matched = true;
+                    accepting[naccepting++] = pc;
+                    if (cut)
+                        sp = 0;
+                    break;
+                default:
+                    leaves[nleaves++] = pc;
+                }
+            }
+            return matched;
+        }
+
+        /**
+         * Returns the bit set of the assertions reachable from the
+         * first n of the given threads through empty transitions.
+         */
+        private int assertions(int[] threads, int n) {
+            Prog p = prog;
+            int g = nextGen();
+            int bits = 0;
+            sp = 0;
+            for (int j = 0; j < n; j++)
+                push(threads[j]);
+            while (sp > 0) {
+                int pc = stack[--sp];
+                if (mark[pc] == g)
+                    continue;
+                mark[pc] = g;
+                switch (p.op[pc]) {
+                case SPLIT:
+                    int[] a = p.alts[pc];
+                    for (int j = 0; j < a.length; j++)
+                        push(a[j]);
+                    break;
+                case ASSERT:
+                    bits |= 1 << p.arg[pc];
+                    // fall through
+                case OPEN:
+                case CLOSE:
+                    push(p.next[pc]);
+                    break;
+                }
+            }
+            return bits;
+        }
+    }
+
+    /**
+     * Recovers the groups of a short match by a depth-first search of
+     * the forward program over the matched text in order of
+     * preference, as the backtracking engine would search, except that
+     * an instruction is never tried twice at the same index: the first
+     * try failed, and so would the second.  The search is therefore
+     * linear in the size of the program times the length of the match,
+     * and needs a bit for each such pair.
+     */
+    private static final class Backtracker {
+        private final LazyDFA dfa;
+        private final Prog prog;
+        private final Matcher matcher;
+        private final CharSequence seq;
+        private final int end;
+        private final int base;         // offset of locals in caps
+
+        /*
+         * Pairs of ints: an instruction and an index still to be
+         * tried, or -1 - k and a value to restore to caps[k] when the
+         * search backs up past the instruction that set it.
+         */
+        private int[] stack = new int[32];
+        private int sp;
+
+        Backtracker(LazyDFA dfa, Matcher matcher, CharSequence seq, int end) {
+            this.dfa = dfa;
+            this.prog = dfa.prog;
+            this.matcher = matcher;
+            this.seq = seq;
+            this.end = end;
+            this.base = dfa.groupCount * 2;
+        }
+
+        private void push(int a, int b) {
+            if (sp + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[sp++] = a;
+            stack[sp++] = b;
+        }
+
+        /**
+         * Returns the group bounds followed by the locals of the
+         * preferred path matching from start to end, or null if
+         * there is none.
+         */
+        int[] run(int start) {
+            Prog p = prog;
+            int len = end - start + 1;
+            long[] visited = new long[(p.size * len + 63) >>> 6];
+            int[] flags = null;
+            int[] caps = new int[base + dfa.localCount];
+            Arrays.fill(caps, -1);
+            sp = 0;
+            push(p.start, start);
+            while (sp > 0) {
+                int i = stack[--sp];
+                int pc = stack[--sp];
+                if (pc < 0) {
+                    caps[-1 - pc] = i;
+                    continue;
+                }
+            path:
+                for (;;) {
+                    int bit = pc * len + (i - start);
+                    if ((visited[bit >>> 6] & (1L << bit)) != 0)
+                        break;
+                    visited[bit >>> 6] |= 1L << bit;
+                    switch (p.op[pc]) {
+                    case SPLIT:
+                        int[] a = p.alts[pc];
+                        if (a.length == 0)
+                            break path;
+                        for (int j = a.length - 1; j > 0; j--)
+                            push(a[j], i);
+                        pc = a[0];
+                        break;
+                    case ASSERT:
+                        if (flags == null) {
+                            flags = new int[len];
+                            Arrays.fill(flags, -1);
+                        }
+                        int f = flags[i - start];
+                        if (f < 0)
+                            f = flags[i - start] = dfa.flags(matcher, i, seq, -1);
+                        if ((f & (1 << p.arg[pc])) == 0)
+                            break path;
+                        pc = p.next[pc];
+                        break;
+                    case OPEN:
+                        int k = base + p.arg[pc];
+                        push(-1 - k, caps[k]);
+                        caps[k] = i;
+                        pc = p.next[pc];
+                        break;
+                    case CLOSE:
+                        int g = p.arg2[pc];
+                        push(-1 - g, caps[g]);
+                        push(-2 - g, caps[g + 1]);
+                        caps[g] = caps[base + p.arg[pc]];
+                        caps[g + 1] = i;
+                        pc = p.next[pc];
+                        break;
+                    case MATCH:
+                        if (i == end)
+                            return caps;
+                        break path;
+                    default:
+                        if (i == end)
+                            break path;
+                        int c = codePointAt(seq, i, end);
+                        if (!p.test(pc, c))
+                            break path;
+                        pc = p.next[pc];
+                        i += Character.charCount(c);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Recovers the groups of a match by running the forward program
+     * over the matched text, with group bounds in each thread.
+     */
+    private static final class PikeVM {
+        private final LazyDFA dfa;
+        private final Prog prog;
+        private final Matcher matcher;
+        private final CharSequence seq;
+        private final int end;
+        private final int base;         // offset of locals in caps
+
+        private int[] stack = new int[16];
+        private int[][] stackCaps = new int[16][];
+        private int sp;
+
+        PikeVM(LazyDFA dfa, Matcher matcher, CharSequence seq, int end) {
+            this.dfa = dfa;
+            this.prog = dfa.prog;
+            this.matcher = matcher;
+            this.seq = seq;
+            this.end = end;
+            this.base = dfa.groupCount * 2;
+        }
+
+        /**
+         * Returns the group bounds followed by the locals of the
+         * preferred thread matching from start to end, or null if
+         * there is none.
+         */
+        int[] run(int start) {
+            Threads clist = new Threads(prog.size);
+            Threads nlist = new Threads(prog.size);
+            int[] caps = new int[base + dfa.localCount];
+            Arrays.fill(caps, -1);
+            clist.clear();
+            int[] found = add(clist, prog.start, caps, start);
+            for (int i = start; found == null && i < end; ) {
+                int c = codePointAt(seq, i, end);
+                int j = i + Character.charCount(c);
+                nlist.clear();
+                for (int t = 0; t < clist.size; t++) {
+                    int pc = clist.pcs[t];
+                    if (prog.test(pc, c) &&
+                        (found = add(nlist, prog.next[pc],
+                                     clist.caps[t], j)) != null)
+                        break;
+                }
+                Threads tmp = clist;
+                clist = nlist;
+                nlist = tmp;
+                i = j;
+            }
+            return found;
+        }
+
+        private void push(int pc, int[] caps) {
+            if (sp == stack.length) {
+                stack = Arrays.copyOf(stack, sp * 2);
+                stackCaps = Arrays.copyOf(stackCaps, sp * 2);
+            }
+            stack[sp] = pc;
+            stackCaps[sp++] = caps;
+        }
+
+        /**
+         * Adds to list the threads reachable from pc at index i, in
+         * order of preference.  Returns the bounds of the first thread
+         * that accepts, if i is the end.
+         */
+        private int[] add(Threads list, int pc0, int[] caps0, int i) {
+            Prog p = prog;
+            int f = -1;
+            sp = 0;
+            push(pc0, caps0);
+            while (sp > 0) {
+                int pc = stack[--sp];
+                int[] caps = stackCaps[sp];
+                stackCaps[sp] = null;
+                if (list.mark[pc] == list.gen)
+                    continue;
+                list.mark[pc] = list.gen;
+                switch (p.op[pc]) {
+                case SPLIT:
+                    int[] a = p.alts[pc];
+                    for (int j = a.length - 1; j >= 0; j--)
+                        push(a[j], caps);
+                    break;
+                case ASSERT:
+                    if (f < 0)
+                        f = dfa.flags(matcher, i, seq, -1);
+                    if ((f & (1 << p.arg[pc])) != 0)
+                        push(p.next[pc], caps);
+                    break;
+                case OPEN:
+                    caps = caps.clone();
+                    caps[base + p.arg[pc]] = i;
+                    push(p.next[pc], caps);
+                    break;
+                case CLOSE:
+                    caps = caps.clone();
+                    caps[p.arg2[pc]] = caps[base + p.arg[pc]];
+                    caps[p.arg2[pc] + 1] = i;
+                    push(p.next[pc], caps);
+                    break;
+                case MATCH:
+                    if (i == end) {
+                        while (sp > 0)
+                            stackCaps[--sp] = null;
+                        return caps;
+                    }
+                    break;
+                default:
+                    list.add(pc, caps);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A list of threads of the PikeVM, with their bounds.
+     */
+    private static final class Threads {
+        final int[] pcs;
+        final int[][] caps;
+        final int[] mark;
+        int gen;
+        int size;
+
+        Threads(int n) {
+            pcs = new int[n];
+            caps = new int[n][];
+            mark = new int[n];
+        }
+
+        void clear() {
+            gen++;
+            size = 0;
+        }
+
+        void add(int pc, int[] c) {
+            pcs[size] = pc;
+            caps[size++] = c;
+        }
+    }
+}
@@ -1102,7 +1102,9 @@ public final class Matcher implements MatchResult {
         for (int i = 0; i < groups.length; i++)
             groups[i] = -1;
         acceptMode = NOANCHOR;
-        boolean result = parentPattern.root.match(this, from, text);
+        boolean result = (parentPattern.dfa != null) ?
+            parentPattern.dfa.match(this, from, LazyDFA.FIND) :
+            parentPattern.root.match(this, from, text);
         if (!result)
             this.first = -1;
         this.oldLast = this.last;
@@ -1124,7 +1126,10 @@ public final class Matcher implements MatchResult {
         for (int i = 0; i < groups.length; i++)
             groups[i] = -1;
         acceptMode = anchor;
-        boolean result = parentPattern.matchRoot.match(this, from, text);
+        boolean result = (parentPattern.dfa != null) ?
+            parentPattern.dfa.match(this, from, (anchor == ENDANCHOR) ?
+                                    LazyDFA.ENTIRE : LazyDFA.PREFIX) :
+            parentPattern.matchRoot.match(this, from, text);
         if (!result)
             this.first = -1;
         this.oldLast = this.last;
@@ -726,6 +726,58 @@ public final class Pattern
      */
     public static final int CANON_EQ = 0x80;
 
+    /**
+     * Enables matching with a deterministic finite automaton.
+     *
+     * <p> When this flag is specified then matchers of the pattern run
+     * it as a deterministic automaton, which is built a state at a time
+     * as the input requires and kept from one match operation to the
+     * next.  The time taken by such a match operation is linear in the
+     * length of the input examined.  By default, expressions are
+     * matched by backtracking, which takes time exponential in the
+     * length of the input for some expressions, for example
+     * <tt>(a|aa)+b</tt>.
+     *
+     * <p> The automaton finds the subsequence that the backtracking
+     * engine would match.  The bounds of groups are then recovered by
+     * a second pass over the matched subsequence only, which takes
+     * alternatives in the order in which the backtracking engine tries
+     * them, and ends a repetition at an iteration that matches the
+     * empty string, as the backtracking engine does.  The bounds of a
+     * group that is repeated within another repetition may still
+     * differ from those found without this flag.
+     *
+     * <p> The following cannot be run as an automaton, and compiling
+     * them with this flag throws a {@link PatternSyntaxException}:
+     * <ul>
+     * <li> expressions that contain a back reference, a lookahead or
+     *      lookbehind construct, an independent group
+     *      <tt>(?&gt;</tt><i>X</i><tt>)</tt>, a possessive quantifier,
+     *      or a quantifier other than <tt>?</tt> applied to a boundary
+     *      matcher, such as <tt>\b*</tt>;
+     * <li> expressions that use more than five distinct boundary
+     *      matchers;
+     * <li> expressions whose automaton program would be too large, in
+     *      particular ones with bounded repetitions
+     *      <i>X</i><tt>{</tt><i>n</i><tt>,</tt><i>m</i><tt>}</tt> of
+     *      large counts, since these are expanded.
+     * </ul>
+     * The {@link Matcher#hitEnd hitEnd} and
+     * {@link Matcher#requireEnd requireEnd} methods may return
+     * <tt>true</tt> in some cases where they would otherwise return
+     * <tt>false</tt>.
+     *
+     * <p> There is no embedded flag character for enabling matching
+     * with a deterministic automaton.
+     *
+     * <p> Specifying this flag makes compilation slower, and the pattern
+     * keeps the states of its automaton in memory.  Expressions that
+     * need little backtracking, in particular ones with several
+     * capturing groups, may be matched more slowly than without it.  </p>
+     * @since 1.7
+     */
+    public static final int DFA = 0x100;
+
     /* Pattern has only two serialized components: The pattern string
      * and the flags, which are all that is needed to recompile the pattern
      * when it is deserialized.
@@ -772,6 +824,12 @@ public final class Pattern
      */
     transient Node matchRoot;
 
+    /**
+     * The automaton used by matchers when the DFA flag is set, or null
+     * if the expression needs to be matched by backtracking.
+     */
+    transient LazyDFA dfa;
+
     /**
      * Temporary storage used by parsing pattern slice.
      */
@@ -834,14 +892,15 @@ public final class Pattern
      *         Match flags, a bit mask that may include
      *         {@link #CASE_INSENSITIVE}, {@link #MULTILINE}, {@link #DOTALL},
      *         {@link #UNICODE_CASE}, {@link #CANON_EQ}, {@link #UNIX_LINES},
-     *         {@link #LITERAL} and {@link #COMMENTS}
+     *         {@link #LITERAL}, {@link #COMMENTS} and {@link #DFA}
      *
      * @throws  IllegalArgumentException
      *          If bit values other than those corresponding to the defined
      *          match flags are set in <tt>flags</tt>
      *
      * @throws  PatternSyntaxException
-     *          If the expression's syntax is invalid
+     *          If the expression's syntax is invalid, or if {@link #DFA}
+     *          is set and the expression cannot be run as an automaton
      */
     public static Pattern compile(String regex, int flags) {
         return new Pattern(regex, flags);
@@ -889,6 +948,21 @@ public final class Pattern
         return m;
     }
 
+    /**
+     * Returns the root of the object tree this pattern is compiled into,
+     * without the search node in front, for a PatternSet to match it
+     * together with other patterns.
+     */
+    Node matchRoot() {
+	if (!compiled) {
+	    synchronized(this) {
+		if (!compiled)
+		    compile();
+	    }
+	}
+        return matchRoot;
+    }
+
     /**
      * Returns this pattern's match flags.  </p>
      *
@@ -1480,6 +1554,13 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
             root = hasSupplementary ? new StartS(matchRoot) : new Start(matchRoot);
         }
 
+        if (has(DFA)) {
+            dfa = LazyDFA.compile(matchRoot, root instanceof StartS,
+                                  capturingGroupCount, localCount);
+            if (dfa == null)
+                throw error("Expression cannot be matched by an automaton");
+        }
+
         // Release temporary storage
         temp = null;
         buffer = null;
@@ -3329,7 +3410,7 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
      * Abstract node class to match one character satisfying some
      * boolean property.
      */
-    private static abstract class CharProperty extends Node {
+    static abstract class CharProperty extends Node {
 	abstract boolean isSatisfiedBy(int ch);
 	CharProperty complement() {
 	    return new CharProperty() {
@@ -0,0 +1,211 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.regex;
+
+/**
+ * A compiled set of regular expressions, which finds the members of the
+ * set that match an input sequence in a single pass over the input.
+ *
+ * <p> A set is compiled from regular expressions, or from patterns that
+ * have already been compiled, by one of the <tt>compile</tt> methods.  The
+ * members of a set are identified by their index in the array it was
+ * compiled from.  The {@link #find find} method returns the indices of
+ * the members that match somewhere in a given input, in the sense of
+ * {@link Matcher#find()}.  Testing an input against many patterns this way
+ * takes time that grows with the length of the input, but hardly with the
+ * number of patterns:
+ *
+ * <blockquote><pre>
+ * PatternSet set = PatternSet.compile(new String[] {
+ *     "error", "warn(ing)?", "\\bdisk\\b" });
+ * int[] hits = set.find("warning: disk nearly full");   // { 1, 2 }</pre></blockquote>
+ *
+ * <p> Sets of literal strings can be compiled with the {@link
+ * Pattern#LITERAL} flag.
+ *
+ * <p> The members of a set are matched together by a deterministic
+ * automaton, which is built lazily as for patterns compiled with the {@link
+ * Pattern#DFA} flag.  Members that such an automaton cannot match (see
+ * {@link Pattern#DFA}), and members that contain supplementary or
+ * surrogate characters, are matched one at a time instead.
+ *
+ * <p> Instances of this class are immutable and are safe for use by
+ * multiple concurrent threads.
+ *
+ * @see Pattern
+ * @since 1.7
+ */
+
+public final class PatternSet {
+
+    /** The members of the set. */
+    private final Pattern[] patterns;
+
+    /**
+     * The automaton for the members that can be matched together, or
+     * null if there are none.
+     */
+    private final LazyDFA dfa;
+
+    /** inDfa[i] is true if patterns[i] is matched by dfa. */
+    private final boolean[] inDfa;
+
+    /** The number of members matched by dfa. */
+    private final int dfaCount;
+
+    private PatternSet(Pattern[] patterns) {
+        this.patterns = patterns;
+        this.inDfa = new boolean[patterns.length];
+        this.dfa = LazyDFA.compileSet(patterns, inDfa);
+        int n = 0;
+        for (int i = 0; i < inDfa.length; i++) {
+            if (inDfa[i])
+                n++;
+        }
+        this.dfaCount = n;
+    }
+
+    /**
+     * Compiles the given regular expressions into a set.
+     *
+     * @param  regexes
+     *         The expressions to be compiled
+     *
+     * @return  The set of the expressions compiled into patterns
+     *
+     * @throws  PatternSyntaxException
+     *          If the syntax of an expression is invalid
+     */
+    public static PatternSet compile(String[] regexes) {
+        return compile(regexes, 0);
+    }
+
+    /**
+     * Compiles the given regular expressions into a set, with the given
+     * flags.
+     *
+     * @param  regexes
+     *         The expressions to be compiled
+     *
+     * @param  flags
+     *         Match flags for every expression, a bit mask as for {@link
+     *         Pattern#compile(String, int)}
+     *
+     * @return  The set of the expressions compiled into patterns
+     *
+     * @throws  IllegalArgumentException
+     *          If bit values other than those corresponding to the defined
+     *          match flags are set in <tt>flags</tt>
+     *
+     * @throws  PatternSyntaxException
+     *          If the syntax of an expression is invalid
+     */
+    public static PatternSet compile(String[] regexes, int flags) {
+        Pattern[] patterns = new Pattern[regexes.length];
+        for (int i = 0; i < regexes.length; i++)
+            patterns[i] = Pattern.compile(regexes[i], flags);
+        return new PatternSet(patterns);
+    }
+
+    /**
+     * Creates a set of the given patterns.  Each pattern contributes
+     * the form it was compiled into; its expression is not compiled
+     * again.
+     *
+     * @param  patterns
+     *         The patterns of the set
+     *
+     * @return  The set of the given patterns
+     *
+     * @throws  NullPointerException
+     *          If <tt>patterns</tt> or one of its elements is null
+     */
+    public static PatternSet compile(Pattern[] patterns) {
+        Pattern[] copy = patterns.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] == null)
+                throw new NullPointerException();
+        }
+        return new PatternSet(copy);
+    }
+
+    /**
+     * Returns the number of patterns in this set.
+     *
+     * @return  The number of patterns in this set
+     */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Returns the pattern of this set with the given index.
+     *
+     * @param  index
+     *         The index of a pattern in this set
+     *
+     * @return  The pattern with the given index
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If <tt>index</tt> is negative or not less than
+     *          {@link #size size()}
+     */
+    public Pattern pattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * Returns the indices of the patterns of this set that match
+     * somewhere in the given input.  A pattern matches somewhere in the
+     * input if the {@link Matcher#find() find} method of a new matcher of
+     * the pattern for the input would return <tt>true</tt>.
+     *
+     * @param  input
+     *         The character sequence to be matched
+     *
+     * @return  The indices of the matching patterns, in increasing order
+     */
+    public int[] find(CharSequence input) {
+        int n = patterns.length;
+        boolean[] found = new boolean[n];
+        if (dfa != null) {
+            Matcher m = patterns[0].matcher(input);
+            m.oldLast = m.from;     // as in the first find
+            dfa.findAll(m, found, dfaCount);
+        }
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (!found[i] && !inDfa[i])
+                found[i] = patterns[i].matcher(input).find();
+            if (found[i])
+                count++;
+        }
+        int[] indices = new int[count];
+        for (int i = 0, j = 0; j < count; i++) {
+            if (found[i])
+                indices[j++] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Returns the number of patterns in this set followed by their
+     * source expressions.
+     *
+     * @return  The string representation of this set
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(patterns.length).append(" patterns");
+        for (int i = 0; i < patterns.length; i++) {
+            sb.append(i == 0 ? ": " : ", ");
+            sb.append(patterns[i].pattern());
+        }
+        return sb.toString();
+    }
+}
@@ -7,6 +7,8 @@
 
 package java.util.zip;
 
+import java.nio.ByteBuffer;
+
 /**
  * A class that can be used to compute the CRC-32 of a data stream.
  *
@@ -54,6 +56,37 @@ class CRC32 implements Checksum {
 	crc = updateBytes(crc, b, 0, b.length);
     }
 
+    /**
+     * Updates CRC-32 with the bytes from the specified buffer.
+     *
+     * <p>The bytes between the buffer's position and its limit are used,
+     * and the position is advanced to the limit.  The bytes of a buffer
+     * that has no accessible array, such as a direct buffer, are copied
+     * to the heap at most 4K at a time.
+     *
+     * @param buffer the buffer to update the checksum with
+     * @since 1.7
+     */
+    public void update(ByteBuffer buffer) {
+        int pos = buffer.position();
+        int rem = buffer.remaining();
+        if (rem <= 0) {
+            return;
+        }
+        if (buffer.hasArray()) {
+            crc = updateBytes(crc, buffer.array(),
+                              buffer.arrayOffset() + pos, rem);
+        } else {
+            byte[] b = new byte[Math.min(rem, 4096)];
+            while (buffer.hasRemaining()) {
+                int n = Math.min(buffer.remaining(), b.length);
+                buffer.get(b, 0, n);
+                crc = updateBytes(crc, b, 0, n);
+            }
+        }
+        buffer.position(pos + rem);
+    }
+
     /**
      * Resets CRC-32 to initial value.
      */
@@ -0,0 +1,191 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.zip;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A class that can be used to compute the CRC-32C of a data stream.
+ *
+ * <p>CRC-32C is defined in <a href="http://www.ietf.org/rfc/rfc3720.txt">RFC
+ * 3720</a>: it is a CRC-32 computed with the Castagnoli polynomial
+ * 0x1EDC6F41, whose error detection is better than that of the polynomial
+ * used by {@link CRC32}, and is the checksum of iSCSI, SCTP and several
+ * storage formats.
+ *
+ * <p>The checksum is computed in Java, eight bytes at a time, with the
+ * "slicing-by-8" algorithm: eight tables of 256 entries each give the
+ * contribution of each byte of a group of eight to the remainder of the
+ * group, so that the eight lookups for a group are independent of each
+ * other and can be overlapped by the processor.
+ *
+ * @see		Checksum
+ * @since	1.7
+ */
+public final
+class CRC32C implements Checksum {
+
+    /*
+     * The Castagnoli polynomial, bit-reversed.
+     */
+    private static final int REVERSED_POLY = 0x82F63B78;
+
+    /*
+     * The slicing tables, one after the other: entry i of table k is the
+     * remainder of byte i followed by k zero bytes.
+     */
+    private static final int[] table = new int[8 * 256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int r = i;
+            for (int j = 0; j < 8; j++) {
+                r = (r & 1) != 0 ? (r >>> 1) ^ REVERSED_POLY : r >>> 1;
+            }
+            table[i] = r;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int i = 0; i < 256; i++) {
+                int r = table[(k - 1) * 256 + i];
+                table[k * 256 + i] = (r >>> 8) ^ table[r & 0xff];
+            }
+        }
+    }
+
+    /*
+     * The remainder so far, complemented, as is the CRC-32C of no bytes.
+     */
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * Creates a new CRC32C object.
+     */
+    public CRC32C() {
+    }
+
+    /**
+     * Updates CRC-32C with specified byte.
+     *
+     * @param b the byte to update the checksum with
+     */
+    public void update(int b) {
+        crc = (crc >>> 8) ^ table[(crc ^ b) & 0xff];
+    }
+
+    /**
+     * Updates CRC-32C with specified array of bytes.
+     *
+     * @param b the byte array to update the checksum with
+     * @param off the start offset of the data
+     * @param len the number of bytes to use for the update
+     */
+    public void update(byte[] b, int off, int len) {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        crc = updateBytes(crc, b, off, off + len);
+    }
+
+    /**
+     * Updates checksum with specified array of bytes.
+     *
+     * @param b the array of bytes to update the checksum with
+     */
+    public void update(byte[] b) {
+        crc = updateBytes(crc, b, 0, b.length);
+    }
+
+    /**
+     * Updates CRC-32C with the bytes from the specified buffer.
+     *
+     * <p>The bytes between the buffer's position and its limit are used,
+     * and the position is advanced to the limit.  A direct buffer is read
+     * in place, without being copied.
+     *
+     * @param buffer the buffer to update the checksum with
+     */
+    public void update(ByteBuffer buffer) {
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        if (pos >= limit) {
+            return;
+        }
+        if (buffer.hasArray()) {
+            int off = buffer.arrayOffset();
+            crc = updateBytes(crc, buffer.array(), off + pos, off + limit);
+        } else {
+            crc = updateBuffer(crc, buffer, pos, limit);
+        }
+        buffer.position(limit);
+    }
+
+    /**
+     * Resets CRC-32C to initial value.
+     */
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    /**
+     * Returns CRC-32C value.
+     */
+    public long getValue() {
+        return (long) ~crc & 0xffffffffL;
+    }
+
+    private static int updateBytes(int crc, byte[] b, int off, int end) {
+        int[] t = table;
+        for (; off <= end - 8; off += 8) {
+            int c = crc ^ ((b[off] & 0xff)
+                           | (b[off + 1] & 0xff) << 8
+                           | (b[off + 2] & 0xff) << 16
+                           | (b[off + 3] & 0xff) << 24);
+            crc = t[7 * 256 + (c & 0xff)]
+                ^ t[6 * 256 + ((c >>> 8) & 0xff)]
+                ^ t[5 * 256 + ((c >>> 16) & 0xff)]
+                ^ t[4 * 256 + (c >>> 24)]
+                ^ t[3 * 256 + (b[off + 4] & 0xff)]
+                ^ t[2 * 256 + (b[off + 5] & 0xff)]
+                ^ t[1 * 256 + (b[off + 6] & 0xff)]
+                ^ t[b[off + 7] & 0xff];
+        }
+        for (; off < end; off++) {
+            crc = (crc >>> 8) ^ t[(crc ^ b[off]) & 0xff];
+        }
+        return crc;
+    }
+
+    /*
+     * Reads a direct or read-only buffer in place, eight bytes at a time.
+     */
+    private static int updateBuffer(int crc, ByteBuffer buffer,
+                                    int pos, int limit) {
+        int[] t = table;
+        ByteBuffer bb = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (; pos <= limit - 8; pos += 8) {
+            int c = crc ^ bb.getInt(pos);
+            int d = bb.getInt(pos + 4);
+            crc = t[7 * 256 + (c & 0xff)]
+                ^ t[6 * 256 + ((c >>> 8) & 0xff)]
+                ^ t[5 * 256 + ((c >>> 16) & 0xff)]
+                ^ t[4 * 256 + (c >>> 24)]
+                ^ t[3 * 256 + (d & 0xff)]
+                ^ t[2 * 256 + ((d >>> 8) & 0xff)]
+                ^ t[1 * 256 + ((d >>> 16) & 0xff)]
+                ^ t[d >>> 24];
+        }
+        for (; pos < limit; pos++) {
+            crc = (crc >>> 8) ^ t[(crc ^ bb.get(pos)) & 0xff];
+        }
+        return crc;
+    }
+}
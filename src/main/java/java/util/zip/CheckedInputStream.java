@@ -10,6 +10,8 @@ package java.util.zip;
 import java.io.FilterInputStream;
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 
 /**
  * An input stream that also maintains a checksum of the data being read.
@@ -69,6 +71,75 @@ class CheckedInputStream extends FilterInputStream {
 	return len;
     }
 
+    /**
+     * Reads into a buffer. If the buffer has bytes remaining, the method
+     * blocks until some input is available; otherwise, no bytes are read
+     * and <code>0</code> is returned.
+     *
+     * <p>The bytes are written from the buffer's position and the position
+     * is advanced past them.  If the underlying stream is an
+     * {@link InflaterInputStream} it decompresses into the buffer through
+     * {@link Inflater#inflate(ByteBuffer)}, and a {@link CRC32},
+     * {@link CRC32C} or {@link Adler32} checksum is updated from the
+     * buffer through its own <tt>update(ByteBuffer)</tt> method.
+     *
+     * @param dst the buffer into which the data is read
+     * @return    the actual number of bytes read, or -1 if the end
+     *		  of the stream is reached.
+     * @exception ReadOnlyBufferException if the buffer is read-only
+     * @exception IOException if an I/O error has occurred
+     * @since 1.7
+     */
+    public int read(ByteBuffer dst) throws IOException {
+	if (dst.isReadOnly()) {
+	    throw new ReadOnlyBufferException();
+	}
+	int pos = dst.position();
+	int len;
+	if (in instanceof InflaterInputStream) {
+	    len = ((InflaterInputStream) in).read(dst);
+	} else if (dst.hasArray()) {
+	    len = in.read(dst.array(), dst.arrayOffset() + pos, dst.remaining());
+	    if (len > 0) {
+		dst.position(pos + len);
+	    }
+	} else {
+	    byte[] buf = new byte[Math.min(dst.remaining(), 8192)];
+	    len = in.read(buf, 0, buf.length);
+	    if (len > 0) {
+		dst.put(buf, 0, len);
+	    }
+	}
+	if (len > 0) {
+	    ByteBuffer data = dst.duplicate();
+	    data.limit(pos + len);
+	    data.position(pos);
+	    update(data);
+	}
+	return len;
+    }
+
+    /*
+     * Updates the checksum with the remaining bytes of a buffer, through
+     * the checksum's own method if it is one that can read a buffer.
+     */
+    private void update(ByteBuffer data) {
+	if (cksum instanceof CRC32) {
+	    ((CRC32) cksum).update(data);
+	} else if (cksum instanceof CRC32C) {
+	    ((CRC32C) cksum).update(data);
+	} else if (cksum instanceof Adler32) {
+	    ((Adler32) cksum).update(data);
+	} else if (data.hasArray()) {
+	    cksum.update(data.array(), data.arrayOffset() + data.position(),
+			 data.remaining());
+	} else {
+	    byte[] buf = new byte[data.remaining()];
+	    data.get(buf);
+	    cksum.update(buf, 0, buf.length);
+	}
+    }
+
     /**
      * Skips specified number of bytes of input.
      * @param n the number of bytes to skip
@@ -0,0 +1,325 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.zip;
+
+/**
+ * Rewrites a complete raw deflate stream, such as a finished Deflater
+ * writes, so that it ends as a sync flush would have ended it.  The
+ * final-block bit of its last block is cleared, and an empty stored block
+ * is appended to bring the stream to a byte boundary.  Another deflate
+ * stream can then follow it, and the two decompress as one.
+ *
+ * <p>The last block header can only be found by decoding the Huffman
+ * codes of every block before it.  No data is inflated: the lengths,
+ * distances and literals are decoded only to be skipped.
+ *
+ * @see ParallelGZIPOutputStream
+ */
+final class DeflateSplicer {
+
+    private DeflateSplicer() {
+    }
+
+    /*
+     * Order in which the code length code lengths are stored.
+     */
+    private static final int[] CLEN_ORDER = {
+        16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15
+    };
+
+    /*
+     * Extra bits of the length symbols 257 to 285.
+     */
+    private static final int[] LEN_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+        3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+
+    /*
+     * Extra bits of the distance symbols 0 to 29.
+     */
+    private static final int[] DIST_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+        7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+
+    private static final Huffman FIXED_LEN;
+    private static final Huffman FIXED_DIST;
+
+    static {
+        int[] lengths = new int[288];
+        for (int i = 0; i < 288; i++) {
+            lengths[i] = i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8;
+        }
+        FIXED_LEN = new Huffman(lengths, 0, 288);
+        for (int i = 0; i < 30; i++) {
+            lengths[i] = 5;
+        }
+        FIXED_DIST = new Huffman(lengths, 0, 30);
+    }
+
+    /**
+     * Rewrites the raw deflate stream in <tt>b[0, len)</tt> in place and
+     * returns its new length, which is at most <tt>len + 5</tt>.  The
+     * array must have room for that many bytes.
+     *
+     * @throws InternalError if the stream is not a complete deflate stream
+     */
+    static int unfinish(byte[] b, int len) {
+        Scanner s = new Scanner(b, len);
+        long last = s.scanBlocks();
+        long end = s.pos;
+
+        // Clear the final-block bit of the last block
+        b[(int) (last >>> 3)] &= ~(1 << (int) (last & 7));
+
+        // Append BFINAL = 0 and BTYPE = 00, then pad to a byte boundary;
+        // the bits after the stream's end in its last byte are cleared
+        // rather than trusted to be zero
+        int i = (int) (end >>> 3);
+        if ((end & 7) != 0) {
+            b[i] &= (1 << (int) (end & 7)) - 1;
+            i++;
+        }
+        int n = (int) ((end + 3 + 7) >>> 3);
+        for (; i < n; i++) {
+            b[i] = 0;
+        }
+
+        // LEN = 0 and NLEN = ~0
+        b[n++] = 0;
+        b[n++] = 0;
+        b[n++] = (byte) 0xff;
+        b[n++] = (byte) 0xff;
+        return n;
+    }
+
+    /*
+     * A canonical Huffman code, decoded through a table indexed by the
+     * next FAST_BITS bits of input, and bit by bit for longer codes.
+     */
+    private static final class Huffman {
+        static final int MAX_BITS = 15;
+        static final int FAST_BITS = 9;
+
+        final short[] count = new short[MAX_BITS + 1];
+        final short[] symbol;
+        final int[] fast = new int[1 << FAST_BITS];  // len << 16 | symbol
+
+        Huffman(int[] lengths, int off, int n) {
+            symbol = new short[n];
+            for (int i = 0; i < n; i++) {
+                count[lengths[off + i]]++;
+            }
+            count[0] = 0;
+            int left = 1;
+            for (int len = 1; len <= MAX_BITS; len++) {
+                left <<= 1;
+                left -= count[len];
+                if (left < 0) {
+                    throw new InternalError("over-subscribed Huffman code");
+                }
+            }
+            short[] offs = new short[MAX_BITS + 1];
+            int[] next = new int[MAX_BITS + 1];
+            int code = 0;
+            for (int len = 1; len < MAX_BITS; len++) {
+                offs[len + 1] = (short) (offs[len] + count[len]);
+            }
+            for (int len = 1; len <= MAX_BITS; len++) {
+                code = (code + count[len - 1]) << 1;
+                next[len] = code;
+            }
+            for (int sym = 0; sym < n; sym++) {
+                int len = lengths[off + sym];
+                if (len == 0) {
+                    continue;
+                }
+                symbol[offs[len]++] = (short) sym;
+                int c = next[len]++;
+                if (len <= FAST_BITS) {
+                    // Codes are stored most significant bit first
+                    int r = Integer.reverse(c) >>> (32 - len);
+                    for (int j = r; j < fast.length; j += 1 << len) {
+                        fast[j] = len << 16 | sym;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Walks the blocks of a stream, keeping the position in bits.
+     */
+    private static final class Scanner {
+        final byte[] b;
+        final int len;
+        long pos;
+
+        Scanner(byte[] b, int len) {
+            this.b = b;
+            this.len = len;
+        }
+
+        /*
+         * Skips all the blocks and returns the position of the header of
+         * the last one.
+         */
+        long scanBlocks() {
+            long last;
+            int bfinal;
+            do {
+                last = pos;
+                bfinal = bits(1);
+                switch (bits(2)) {
+                case 0:
+                    stored();
+                    break;
+                case 1:
+                    codes(FIXED_LEN, FIXED_DIST);
+                    break;
+                case 2:
+                    dynamic();
+                    break;
+                default:
+                    throw new InternalError("invalid block type");
+                }
+            } while (bfinal == 0);
+            return last;
+        }
+
+        private void stored() {
+            pos = (pos + 7) & ~7L;
+            int n = bits(16);
+            if (bits(16) != (~n & 0xffff)) {
+                throw new InternalError("invalid stored block length");
+            }
+            pos += n * 8L;
+            if (pos > len * 8L) {
+                throw new InternalError("truncated deflate stream");
+            }
+        }
+
+        private void dynamic() {
+            int nlen = bits(5) + 257;
+            int ndist = bits(5) + 1;
+            int ncode = bits(4) + 4;
+            if (nlen > 286 || ndist > 30) {
+                throw new InternalError("bad counts");
+            }
+            int[] lengths = new int[286 + 30];
+            for (int i = 0; i < ncode; i++) {
+                lengths[CLEN_ORDER[i]] = bits(3);
+            }
+            Huffman lencode = new Huffman(lengths, 0, 19);
+            int i = 0;
+            while (i < nlen + ndist) {
+                int sym = decode(lencode);
+                int repeat;
+                int value = 0;
+                if (sym < 16) {
+                    lengths[i++] = sym;
+                    continue;
+                } else if (sym == 16) {
+                    if (i == 0) {
+                        throw new InternalError("repeat with no first length");
+                    }
+                    value = lengths[i - 1];
+                    repeat = 3 + bits(2);
+                } else if (sym == 17) {
+                    repeat = 3 + bits(3);
+                } else {
+                    repeat = 11 + bits(7);
+                }
+                if (i + repeat > nlen + ndist) {
+                    throw new InternalError("too many lengths");
+                }
+                while (repeat-- > 0) {
+                    lengths[i++] = value;
+                }
+            }
+            if (lengths[256] == 0) {
+                throw new InternalError("no end-of-block code");
+            }
+            int[] dist = new int[ndist];
+            System.arraycopy(lengths, nlen, dist, 0, ndist);
+            codes(new Huffman(lengths, 0, nlen), new Huffman(dist, 0, ndist));
+        }
+
+        private void codes(Huffman lencode, Huffman distcode) {
+            for (;;) {
+                int sym = decode(lencode);
+                if (sym < 256) {
+                    continue;
+                } else if (sym == 256) {
+                    return;
+                }
+                sym -= 257;
+                if (sym >= 29) {
+                    throw new InternalError("invalid length symbol");
+                }
+                skip(LEN_EXTRA[sym]);
+                sym = decode(distcode);
+                if (sym >= 30) {
+                    throw new InternalError("invalid distance symbol");
+                }
+                bits(DIST_EXTRA[sym]);
+            }
+        }
+
+        private int decode(Huffman h) {
+            int e = h.fast[peek() & ((1 << Huffman.FAST_BITS) - 1)];
+            if (e != 0) {
+                skip(e >>> 16);
+                return e & 0xffff;
+            }
+            int code = 0;
+            int first = 0;
+            int index = 0;
+            for (int len = 1; len <= Huffman.MAX_BITS; len++) {
+                code |= bits(1);
+                int count = h.count[len];
+                if (code - count < first) {
+                    return h.symbol[index + (code - first)];
+                }
+                index += count;
+                first += count;
+                first <<= 1;
+                code <<= 1;
+            }
+            throw new InternalError("invalid Huffman code");
+        }
+
+        /*
+         * Returns at least the next 25 bits, least significant first, as
+         * zeros past the end of the stream.
+         */
+        private int peek() {
+            int i = (int) (pos >>> 3);
+            int v = at(i) | at(i + 1) << 8 | at(i + 2) << 16 | at(i + 3) << 24;
+            return v >>> (int) (pos & 7);
+        }
+
+        private int at(int i) {
+            return i < len ? b[i] & 0xff : 0;
+        }
+
+        private void skip(int n) {
+            pos += n;
+            if (pos > len * 8L) {
+                throw new InternalError("truncated deflate stream");
+            }
+        }
+
+        private int bits(int n) {
+            int v = peek() & ((1 << n) - 1);
+            skip(n);
+            return v;
+        }
+    }
+}
@@ -7,6 +7,9 @@
 
 package java.util.zip;
 
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
 /**
  * This class provides support for general purpose compression using the
  * popular ZLIB compression library. The ZLIB compression library was
@@ -56,12 +59,15 @@ public
 class Deflater {
 
     private final ZStreamRef zsRef;
-    private byte[] buf = new byte[0];
+    private byte[] buf = emptyBuf;
     private int off, len;
+    private ByteBuffer input;	// input set as a buffer, or null
     private int level, strategy;
     private boolean setParams;
     private boolean finish, finished;
 
+    private static byte[] emptyBuf = new byte[0];
+
     /**
      * Compression method for the deflate algorithm (the only one currently
      * supported).
@@ -105,6 +111,12 @@ class Deflater {
      */
     public static final int DEFAULT_STRATEGY = 0;
 
+    /*
+     * Largest number of bytes copied at a time between a buffer without
+     * an accessible array and the arrays that the native code works on.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
     static {
 	/* Zip library is loaded from System.initializeSystemClass */
 	initIDs();
@@ -160,6 +172,7 @@ class Deflater {
             this.buf = b;
             this.off = off;
             this.len = len;
+            this.input = null;
         }
     }
 
@@ -173,6 +186,31 @@ class Deflater {
 	setInput(b, 0, b.length);
     }
 
+    /**
+     * Sets input data for compression. This should be called whenever
+     * needsInput() returns true indicating that more input data is required.
+     *
+     * <p>The bytes between the buffer's position and its limit are used,
+     * and the position is advanced as they are consumed; the buffer must
+     * not be modified until they all have been.  The bytes of a buffer
+     * that has no accessible array, such as a direct buffer, are copied
+     * to the heap at most 8K at a time as they are compressed.
+     *
+     * @param input the input data bytes
+     * @see Deflater#needsInput
+     * @since 1.7
+     */
+    public void setInput(ByteBuffer input) {
+        if (input == null) {
+            throw new NullPointerException();
+        }
+        synchronized (zsRef) {
+            this.input = input;
+            this.off = 0;
+            this.len = 0;
+        }
+    }
+
     /**
      * Sets preset dictionary for compression. A preset dictionary is used
      * when the history buffer can be predetermined. When the data is later
@@ -259,7 +297,9 @@ class Deflater {
      * should be called in order to provide more input
      */
     public boolean needsInput() {
-	return len <= 0;
+        synchronized (zsRef) {
+            return input == null ? len <= 0 : !input.hasRemaining();
+        }
     }
 
     /**
@@ -303,7 +343,10 @@ class Deflater {
 	}
         synchronized (zsRef) {
             ensureOpen();
-	    return deflateBytes(zsRef.address(), b, off, len);
+            if (input == null) {
+                return deflateBytes(zsRef.address(), b, off, len);
+            }
+            return deflateInput(b, off, len);
         }
     }
 
@@ -319,6 +362,72 @@ class Deflater {
 	return deflate(b, 0, b.length);
     }
 
+    /**
+     * Fills specified buffer with compressed data. Returns actual number
+     * of bytes of compressed data. A return value of 0 indicates that
+     * needsInput() should be called in order to determine if more input
+     * data is required.
+     *
+     * <p>The compressed bytes are written from the buffer's position, up
+     * to its limit, and the position is advanced past them.  If the
+     * buffer has no accessible array, as a direct buffer does not, at
+     * most 8K bytes are compressed into a temporary array and copied to
+     * it.
+     *
+     * @param output the buffer for the compressed data
+     * @return the actual number of bytes of compressed data
+     * @exception ReadOnlyBufferException if the buffer is read-only
+     * @since 1.7
+     */
+    public int deflate(ByteBuffer output) {
+        if (output.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        int pos = output.position();
+        int n;
+        if (output.hasArray()) {
+            n = deflate(output.array(), output.arrayOffset() + pos,
+                        output.remaining());
+            output.position(pos + n);
+        } else {
+            byte[] b = new byte[Math.min(output.remaining(), CHUNK_SIZE)];
+            n = deflate(b, 0, b.length);
+            output.put(b, 0, n);
+        }
+        return n;
+    }
+
+    /*
+     * Compresses from the input buffer.  The native code reads the input
+     * from buf, off and len, so they are pointed at the buffer's array if
+     * it has one, and at a copy of the start of its remaining bytes
+     * otherwise, and the buffer is then advanced past the bytes consumed.
+     */
+    private int deflateInput(byte[] b, int off, int len) {
+        assert Thread.holdsLock(zsRef);
+        ByteBuffer in = input;
+        int pos = in.position();
+        if (in.hasArray()) {
+            this.buf = in.array();
+            this.off = in.arrayOffset() + pos;
+            this.len = in.remaining();
+        } else {
+            this.buf = new byte[Math.min(in.remaining(), CHUNK_SIZE)];
+            in.duplicate().get(this.buf);
+            this.off = 0;
+            this.len = this.buf.length;
+        }
+        int given = this.len;
+        try {
+            return deflateBytes(zsRef.address(), b, off, len);
+        } finally {
+            in.position(pos + given - this.len);
+            this.buf = emptyBuf;
+            this.off = 0;
+            this.len = 0;
+        }
+    }
+
     /**
      * Returns the ADLER-32 value of the uncompressed data.
      * @return the ADLER-32 value of the uncompressed data
@@ -390,6 +499,7 @@ class Deflater {
         synchronized (zsRef) {
             ensureOpen();
             reset(zsRef.address());
+            input = null;
             finish = false;
             finished = false;
             off = len = 0;
@@ -410,6 +520,7 @@ class Deflater {
             if (addr != 0) {
                 end(addr);
                 buf = null;
+                input = null;
             }
         }
     }
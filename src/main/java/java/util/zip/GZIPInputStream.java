@@ -12,6 +12,7 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.EOFException;
+import java.nio.ByteBuffer;
 
 /**
  * This class implements a stream filter for reading compressed data in
@@ -35,6 +36,12 @@ class GZIPInputStream extends InflaterInputStream {
     protected boolean eos;
 
     private boolean closed = false;
+
+    /*
+     * Whether every member up to the end of the input is to be read,
+     * rather than only those already available after the first.
+     */
+    private final boolean concatenated;
     
     /**
      * Check to make sure that this stream has not been closed
@@ -53,8 +60,36 @@ class GZIPInputStream extends InflaterInputStream {
      * @exception IllegalArgumentException if size is <= 0
      */
     public GZIPInputStream(InputStream in, int size) throws IOException {
+	this(in, size, false);
+    }
+
+    /**
+     * Creates a new input stream with the specified buffer size that, if
+     * <tt>concatenated</tt> is true, reads all the members of a multi-member
+     * GZIP file, such as one made by concatenating GZIP files.
+     *
+     * <p>By default, a member that follows another is read only if its
+     * bytes are already buffered or reported as available by the
+     * underlying stream when the end of the member before it is reached;
+     * a pipe or socket that delivers the members separately may therefore
+     * appear to end early.  In concatenated mode the stream instead reads
+     * members until the underlying stream reaches end of file, and
+     * anything that follows a member other than another member is reported
+     * as an error.
+     *
+     * @param in the input stream
+     * @param size the input buffer size
+     * @param concatenated true to read members until the end of the input
+     * @exception IOException if an I/O error has occurred
+     * @exception IllegalArgumentException if size is <= 0
+     * @since 1.7
+     */
+    public GZIPInputStream(InputStream in, int size, boolean concatenated)
+        throws IOException
+    {
 	super(in, new Inflater(true), size);
         usesDefaultInflater = true;
+        this.concatenated = concatenated;
             readHeader(in);
     }
 
@@ -103,6 +138,44 @@ class GZIPInputStream extends InflaterInputStream {
         return n;
     }
 
+    /**
+     * Reads uncompressed data into a buffer, as
+     * {@link InflaterInputStream#read(ByteBuffer)} does, checking the
+     * data against the GZIP trailer.
+     * @param dst the buffer into which the data is read
+     * @return	the actual number of bytes read, or -1 if the end of the
+     *		compressed input stream is reached
+     * @exception IOException if an I/O error has occurred or the compressed
+     *			      input data is corrupt
+     * @since 1.7
+     */
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (eos) {
+            return -1;
+        }
+        if (!dst.isDirect()) {
+            // read(byte[], int, int) updates the CRC
+            return super.read(dst);
+        }
+
+        int pos = dst.position();
+        int n = super.read(dst);
+        if (n == -1) {
+            if (readTrailer()) {
+                eos = true;
+            } else {
+                return this.read(dst);
+            }
+        } else if (n > 0) {
+            ByteBuffer data = dst.duplicate();
+            data.limit(pos + n);
+            data.position(pos);
+            crc.update(data);
+        }
+        return n;
+    }
+
     /**
      * Closes this input stream and releases any system resources associated
      * with the stream.
@@ -154,7 +227,6 @@ class GZIPInputStream extends InflaterInputStream {
 
         // Skip optional extra field
         if ((flg & FEXTRA) == FEXTRA) {
-            skipBytes(in, readUShort(in));
             int m = readUShort(in);
             skipBytes(in, m);
             n += m + 2;
@@ -202,6 +274,26 @@ class GZIPInputStream extends InflaterInputStream {
             (readUInt(in) != (inf.getBytesWritten() & 0xffffffffL)))
             throw new IOException("Corrupt GZIP trailer");
 
+        if (concatenated) {
+            // Whatever follows the trailer is another member, unless the
+            // input ends here
+            int r = n - 8;              // bytes left in buf
+            if (r <= 0) {
+                int b = this.in.read();
+                if (b == -1) {
+                    return true;
+                }
+                buf[0] = (byte) b;
+                len = 1;
+                r = 1;
+            }
+            int m = readHeader(new SequenceInputStream(
+                        new ByteArrayInputStream(buf, len - r, r), this.in));
+            inf.reset();
+            if (r > m)
+                inf.setInput(buf, len - r + m, r - m);
+            return false;
+        }
         
         // If there are more bytes available in "in" or
         // the leftover in the "inf" is > 26 bytes:
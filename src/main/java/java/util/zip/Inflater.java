@@ -7,6 +7,9 @@
 
 package java.util.zip;
 
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
 /**
  * This class provides support for general purpose decompression using the
  * popular ZLIB compression library. The ZLIB compression library was
@@ -58,11 +61,18 @@ class Inflater {
     private final ZStreamRef zsRef;
     private byte[] buf = emptyBuf;
     private int off, len;
+    private ByteBuffer input;	// input set as a buffer, or null
     private boolean finished;
     private boolean needDict;
 
     private static byte[] emptyBuf = new byte[0];
 
+    /*
+     * Largest number of bytes copied at a time between a buffer without
+     * an accessible array and the arrays that the native code works on.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
     static {
 	/* Zip library is loaded from System.initializeSystemClass */
 	initIDs();
@@ -110,6 +120,7 @@ class Inflater {
             this.buf = b;
             this.off = off;
             this.len = len;
+            this.input = null;
         }
     }
 
@@ -124,6 +135,33 @@ class Inflater {
 	setInput(b, 0, b.length);
     }
 
+    /**
+     * Sets input data for decompression. Should be called whenever
+     * needsInput() returns true indicating that more input data is
+     * required.
+     *
+     * <p>The bytes between the buffer's position and its limit are used,
+     * and the position is advanced as they are consumed; the buffer must
+     * not be modified until they all have been.  The bytes of a buffer
+     * that has no accessible array, such as a direct buffer, are copied
+     * to the heap at most 8K at a time as they are decompressed.
+     *
+     * @param input the input data bytes
+     * @see Inflater#needsInput
+     * @since 1.7
+     */
+    public void setInput(ByteBuffer input) {
+        if (input == null) {
+            throw new NullPointerException();
+        }
+        synchronized (zsRef) {
+            this.input = input;
+            this.buf = emptyBuf;
+            this.off = 0;
+            this.len = 0;
+        }
+    }
+
     /**
      * Sets the preset dictionary to the given array of bytes. Should be
      * called when inflate() returns 0 and needsDictionary() returns true
@@ -170,7 +208,7 @@ class Inflater {
      */
     public int getRemaining() {
         synchronized (zsRef) {
-            return len;
+            return input == null ? len : input.remaining();
         }
     }
 
@@ -182,7 +220,7 @@ class Inflater {
      */
     public boolean needsInput() {
         synchronized (zsRef) {
-            return len <= 0;
+            return input == null ? len <= 0 : !input.hasRemaining();
         }
     }
 
@@ -235,7 +273,10 @@ class Inflater {
         }
         synchronized (zsRef) {
             ensureOpen();
-            return inflateBytes(zsRef.address(), b, off, len);
+            if (input == null) {
+                return inflateBytes(zsRef.address(), b, off, len);
+            }
+            return inflateInput(b, off, len);
         }
     }
 
@@ -256,6 +297,80 @@ class Inflater {
 	return inflate(b, 0, b.length);
     }
 
+    /**
+     * Uncompresses bytes into specified buffer. Returns actual number
+     * of bytes uncompressed. A return value of 0 indicates that
+     * needsInput() or needsDictionary() should be called in order to
+     * determine if more input data or a preset dictionary is required.
+     * In the latter case, getAdler() can be used to get the Adler-32
+     * value of the dictionary required.
+     *
+     * <p>The uncompressed bytes are written from the buffer's position,
+     * up to its limit, and the position is advanced past them.  If the
+     * buffer has no accessible array, as a direct buffer does not, at
+     * most 8K bytes are uncompressed into a temporary array and copied
+     * to it.
+     *
+     * @param output the buffer for the uncompressed data
+     * @return the actual number of uncompressed bytes
+     * @exception DataFormatException if the compressed data format is invalid
+     * @exception ReadOnlyBufferException if the buffer is read-only
+     * @see Inflater#needsInput
+     * @see Inflater#needsDictionary
+     * @since 1.7
+     */
+    public int inflate(ByteBuffer output) throws DataFormatException {
+        if (output.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        int pos = output.position();
+        int n;
+        if (output.hasArray()) {
+            n = inflate(output.array(), output.arrayOffset() + pos,
+                        output.remaining());
+            output.position(pos + n);
+        } else {
+            byte[] b = new byte[Math.min(output.remaining(), CHUNK_SIZE)];
+            n = inflate(b, 0, b.length);
+            output.put(b, 0, n);
+        }
+        return n;
+    }
+
+    /*
+     * Uncompresses from the input buffer.  The native code reads the
+     * input from buf, off and len, so they are pointed at the buffer's
+     * array if it has one, and at a copy of the start of its remaining
+     * bytes otherwise, and the buffer is then advanced past the bytes
+     * consumed.
+     */
+    private int inflateInput(byte[] b, int off, int len)
+        throws DataFormatException
+    {
+        assert Thread.holdsLock(zsRef);
+        ByteBuffer in = input;
+        int pos = in.position();
+        if (in.hasArray()) {
+            this.buf = in.array();
+            this.off = in.arrayOffset() + pos;
+            this.len = in.remaining();
+        } else {
+            this.buf = new byte[Math.min(in.remaining(), CHUNK_SIZE)];
+            in.duplicate().get(this.buf);
+            this.off = 0;
+            this.len = this.buf.length;
+        }
+        int given = this.len;
+        try {
+            return inflateBytes(zsRef.address(), b, off, len);
+        } finally {
+            in.position(pos + given - this.len);
+            this.buf = emptyBuf;
+            this.off = 0;
+            this.len = 0;
+        }
+    }
+
     /**
      * Returns the ADLER-32 value of the uncompressed data.
      * @return the ADLER-32 value of the uncompressed data
@@ -327,6 +442,7 @@ class Inflater {
             ensureOpen();
             reset(zsRef.address());
             buf = emptyBuf;
+            input = null;
             finished = false;
             needDict = false;
             off = len = 0;
@@ -347,6 +463,7 @@ class Inflater {
             if (addr != 0) {
                 end(addr);
                 buf = null;
+                input = null;
             }
         }
     }
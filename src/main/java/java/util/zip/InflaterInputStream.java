@@ -11,6 +11,8 @@ import java.io.FilterInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 
 /**
  * This class implements a stream filter for uncompressing data in the
@@ -148,6 +150,75 @@ class InflaterInputStream extends FilterInputStream {
 	}
     }
 
+    /**
+     * Reads uncompressed data into a buffer. If the buffer has bytes
+     * remaining, the method will block until some input can be
+     * decompressed; otherwise, no bytes are read and <code>0</code> is
+     * returned.
+     *
+     * <p>The bytes are written from the buffer's position and the position
+     * is advanced past them.  A direct buffer is filled by
+     * {@link Inflater#inflate(ByteBuffer)} rather than through
+     * {@link #read(byte[], int, int)}, so subclasses that examine the data
+     * they return in that method should override this method as well.
+     *
+     * @param dst the buffer into which the data is read
+     * @return the actual number of bytes read, or -1 if the end of the
+     *         compressed input is reached or a preset dictionary is needed
+     * @exception ReadOnlyBufferException if the buffer is read-only
+     * @exception ZipException if a ZIP format error has occurred
+     * @exception IOException if an I/O error has occurred
+     * @since 1.7
+     */
+    public int read(ByteBuffer dst) throws IOException {
+	ensureOpen();
+	if (dst.isReadOnly()) {
+	    throw new ReadOnlyBufferException();
+	} else if (!dst.hasRemaining()) {
+	    return 0;
+	} else if (!dst.isDirect()) {
+	    return readArray(dst);
+	}
+	try {
+	    int n;
+	    while ((n = inf.inflate(dst)) == 0) {
+		if (inf.finished() || inf.needsDictionary()) {
+                    reachEOF = true;
+		    return -1;
+		}
+		if (inf.needsInput()) {
+		    fill();
+		}
+	    }
+	    return n;
+	} catch (DataFormatException e) {
+	    String s = e.getMessage();
+	    throw new ZipException(s != null ? s : "Invalid ZLIB data format");
+	}
+    }
+
+    /*
+     * Reads into a buffer through read(byte[], int, int), directly into
+     * its array if it has one.
+     */
+    int readArray(ByteBuffer dst) throws IOException {
+	int n;
+	if (dst.hasArray()) {
+	    int pos = dst.position();
+	    n = read(dst.array(), dst.arrayOffset() + pos, dst.remaining());
+	    if (n > 0) {
+		dst.position(pos + n);
+	    }
+	} else {
+	    byte[] tmp = new byte[Math.min(dst.remaining(), 8192)];
+	    n = read(tmp, 0, tmp.length);
+	    if (n > 0) {
+		dst.put(tmp, 0, n);
+	    }
+	}
+	return n;
+    }
+
     /**
      * Returns 0 after EOF has been reached, otherwise always return 1.
      * <p>
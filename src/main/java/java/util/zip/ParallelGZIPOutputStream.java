@@ -0,0 +1,425 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.zip;
+
+import java.io.FilterOutputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class implements a stream filter for writing compressed data in
+ * the GZIP file format, compressing on several threads at once.
+ *
+ * <p>The uncompressed data is cut into blocks of a fixed size, and each
+ * block is compressed by a task submitted to an executor.  A block is
+ * compressed with the last 32K of the block before it as a preset
+ * dictionary, so that matches across the boundary are not lost, and all
+ * but the last block end on a byte boundary, so that the compressed
+ * blocks can simply be written one after the other.  The result is a
+ * single, standard GZIP member that any GZIP reader, including
+ * {@link GZIPInputStream}, can decompress; it is typically a fraction of
+ * a percent larger than the output of {@link GZIPOutputStream}.
+ *
+ * <p>At most a few blocks per processor are held in memory at a time: a
+ * <tt>write</tt> blocks while the oldest of them is still being compressed.
+ * The checksum of the uncompressed data is computed by the writing thread.
+ *
+ * @see		GZIPOutputStream
+ * @since	1.7
+ */
+public
+class ParallelGZIPOutputStream extends FilterOutputStream {
+
+    /*
+     * Default block size, which keeps per-block overhead low while giving
+     * each processor work to do on modest inputs.
+     */
+    private final static int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /*
+     * Size of the deflate window, and so of the useful dictionary.
+     */
+    private final static int DICTIONARY_SIZE = 32 * 1024;
+
+    /*
+     * GZIP header magic number.
+     */
+    private final static int GZIP_MAGIC = 0x8b1f;
+
+    private final static byte[] header = {
+        (byte) GZIP_MAGIC,                // Magic number (short)
+        (byte)(GZIP_MAGIC >> 8),          // Magic number (short)
+        Deflater.DEFLATED,                // Compression method (CM)
+        0,                                // Flags (FLG)
+        0,                                // Modification time MTIME (int)
+        0,                                // Modification time MTIME (int)
+        0,                                // Modification time MTIME (int)
+        0,                                // Modification time MTIME (int)
+        0,                                // Extra flags (XFLG)
+        0                                 // Operating system (OS)
+    };
+
+    private static ExecutorService defaultExecutor;
+
+    private final ExecutorService executor;
+    private final int level;
+    private final int blockSize;
+    private final int maxPending;
+
+    // Compressed blocks not yet written, oldest first
+    private final ArrayDeque<Future<Compressed>> pending =
+        new ArrayDeque<Future<Compressed>>();
+
+    // Deflaters not in use by a task
+    private final ConcurrentLinkedQueue<Deflater> deflaters =
+        new ConcurrentLinkedQueue<Deflater>();
+
+    private final CRC32 crc = new CRC32();
+    private long total;             // number of uncompressed bytes
+
+    private byte[] block;           // block being filled
+    private int count;              // number of bytes in block
+    private byte[] previous;        // last block submitted, for dictionary
+    private int previousCount;
+
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * Creates a new output stream that compresses blocks of a default size
+     * at the default compression level on a shared pool of daemon threads,
+     * one per processor.
+     *
+     * @param out the output stream
+     * @exception IOException If an I/O error has occurred.
+     */
+    public ParallelGZIPOutputStream(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, null);
+    }
+
+    /**
+     * Creates a new output stream that compresses blocks of a default size
+     * at the default compression level on the given executor.
+     *
+     * @param out the output stream
+     * @param executor the executor on which to compress, or <tt>null</tt>
+     *        for a shared pool of daemon threads, one per processor
+     * @exception IOException If an I/O error has occurred.
+     */
+    public ParallelGZIPOutputStream(OutputStream out, ExecutorService executor)
+        throws IOException
+    {
+        this(out, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, executor);
+    }
+
+    /**
+     * Creates a new output stream with the given block size and
+     * compression level.
+     *
+     * @param out the output stream
+     * @param blockSize the number of uncompressed bytes in each block
+     * @param level the compression level (0-9), or
+     *        <tt>Deflater.DEFAULT_COMPRESSION</tt>
+     * @param executor the executor on which to compress, or <tt>null</tt>
+     *        for a shared pool of daemon threads, one per processor
+     * @exception IOException If an I/O error has occurred.
+     * @exception IllegalArgumentException if <tt>blockSize</tt> is
+     *            &lt;= 0 or <tt>level</tt> is invalid
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int blockSize,
+                                    int level, ExecutorService executor)
+        throws IOException
+    {
+        super(out);
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize <= 0");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION &&
+            (level < Deflater.NO_COMPRESSION ||
+             level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("invalid compression level");
+        }
+        this.executor = executor != null ? executor : defaultExecutor();
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPending = 2 * Runtime.getRuntime().availableProcessors();
+        this.block = new byte[blockSize];
+        out.write(header);
+    }
+
+    private static synchronized ExecutorService defaultExecutor() {
+        if (defaultExecutor == null) {
+            int n = Runtime.getRuntime().availableProcessors();
+            defaultExecutor = Executors.newFixedThreadPool(n, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "ParallelGZIPOutputStream");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Check to make sure that this stream has not been finished
+     */
+    private void ensureOpen() throws IOException {
+        if (finished) {
+            throw new IOException("write beyond end of stream");
+        }
+    }
+
+    /**
+     * Writes a byte to the compressed output stream.
+     * @param b the byte to be written
+     * @exception IOException if an I/O error has occurred
+     */
+    public synchronized void write(int b) throws IOException {
+        ensureOpen();
+        block[count++] = (byte) b;
+        crc.update(b);
+        total++;
+        if (count == blockSize) {
+            submit(false);
+        }
+    }
+
+    /**
+     * Writes array of bytes to the compressed output stream. This method
+     * will block while the blocks already handed to the executor are
+     * being compressed and there is no room for more.
+     * @param b the data to be written
+     * @param off the start offset of the data
+     * @param len the length of the data
+     * @exception IOException If an I/O error has occurred.
+     */
+    public synchronized void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        ensureOpen();
+        if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        crc.update(b, off, len);
+        total += len;
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Flushes the compressed output stream.  The data written so far is
+     * compressed and written to the underlying stream, ending on a byte
+     * boundary, before the underlying stream is flushed.
+     * @exception IOException if an I/O error has occurred
+     */
+    public synchronized void flush() throws IOException {
+        if (!finished) {
+            if (count > 0) {
+                submit(false);
+            }
+            while (!pending.isEmpty()) {
+                writeBlock(pending.remove());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Finishes writing compressed data to the output stream without closing
+     * the underlying stream. Use this method when applying multiple filters
+     * in succession to the same output stream.
+     * @exception IOException if an I/O error has occurred
+     */
+    public synchronized void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        submit(true);
+        while (!pending.isEmpty()) {
+            writeBlock(pending.remove());
+        }
+        finished = true;
+        byte[] trailer = new byte[8];
+        writeInt((int) crc.getValue(), trailer, 0); // CRC-32 of uncompr. data
+        writeInt((int) total, trailer, 4);          // Number of uncompr. bytes
+        out.write(trailer);
+    }
+
+    /**
+     * Writes remaining compressed data to the output stream and closes the
+     * underlying stream.  Blocks that are still being compressed when an
+     * error occurs are abandoned.
+     * @exception IOException if an I/O error has occurred
+     */
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                finish();
+                out.close();
+            } finally {
+                Deflater def;
+                while ((def = deflaters.poll()) != null) {
+                    def.end();
+                }
+            }
+        }
+    }
+
+    /*
+     * Hands the block being filled to the executor, then writes out
+     * the blocks that are done, waiting for the oldest if too many are
+     * pending.
+     */
+    private void submit(final boolean last) throws IOException {
+        final byte[] data = block;
+        final int len = count;
+        final byte[] dict = previous;
+        final int dictLen = previousCount;
+        Future<Compressed> f;
+        try {
+            f = executor.submit(new Callable<Compressed>() {
+                    public Compressed call() {
+                        return compress(dict, dictLen, data, len, last);
+                    }
+                });
+        } catch (RuntimeException e) {
+            abandon();
+            throw new IOException("cannot submit block", e);
+        }
+        pending.add(f);
+        previous = data;
+        previousCount = len;
+        block = last ? null : new byte[blockSize];
+        count = 0;
+        while (!pending.isEmpty() &&
+               (pending.size() > maxPending || pending.peek().isDone())) {
+            writeBlock(pending.remove());
+        }
+    }
+
+    /*
+     * Waits for a block to be compressed and writes it out.
+     */
+    private void writeBlock(Future<Compressed> f) throws IOException {
+        Compressed c;
+        try {
+            c = f.get();
+        } catch (InterruptedException e) {
+            abandon();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            abandon();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        }
+        out.write(c.buf, 0, c.len);
+    }
+
+    /*
+     * Cancels the blocks not yet written after an error; the stream
+     * cannot be continued.
+     */
+    private void abandon() {
+        finished = true;
+        Future<Compressed> f;
+        while ((f = pending.poll()) != null) {
+            f.cancel(false);
+        }
+    }
+
+    /*
+     * Compresses a block, priming the deflater with the tail of the
+     * previous block.  Every block is compressed to the end of a deflate
+     * stream, and all but the last are then made to end as a sync flush
+     * would end them, so that the next block starts on a byte boundary
+     * and continues the same stream.
+     */
+    private Compressed compress(byte[] dict, int dictLen,
+                                byte[] data, int len, boolean last) {
+        Deflater def = deflaters.poll();
+        if (def == null) {
+            def = new Deflater(level, true);
+        }
+        boolean reuse = false;
+        try {
+            if (dict != null) {
+                int n = Math.min(dictLen, DICTIONARY_SIZE);
+                def.setDictionary(dict, dictLen - n, n);
+            }
+            def.setInput(data, 0, len);
+            def.finish();
+            // Room for the empty stored block that DeflateSplicer appends
+            byte[] buf = new byte[(len >>> 1) + 64];
+            int n = 0;
+            while (!def.finished()) {
+                if (buf.length - n < 8) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                n += def.deflate(buf, n, buf.length - n - 5);
+            }
+            if (!last) {
+                n = DeflateSplicer.unfinish(buf, n);
+            }
+            def.reset();
+            reuse = true;
+            return new Compressed(buf, n);
+        } finally {
+            if (reuse) {
+                deflaters.offer(def);
+            } else {
+                def.end();
+            }
+        }
+    }
+
+    /*
+     * Writes integer in Intel byte order to a byte array, starting at a
+     * given offset.
+     */
+    private static void writeInt(int i, byte[] buf, int offset) {
+        buf[offset] = (byte) i;
+        buf[offset + 1] = (byte)(i >> 8);
+        buf[offset + 2] = (byte)(i >> 16);
+        buf[offset + 3] = (byte)(i >> 24);
+    }
+
+    /*
+     * The compressed form of a block.
+     */
+    private static final class Compressed {
+        final byte[] buf;
+        final int len;
+
+        Compressed(byte[] buf, int len) {
+            this.buf = buf;
+            this.len = len;
+        }
+    }
+}
@@ -36,13 +36,6 @@ class ZipEntry implements ZipConstants, Cloneable {
      */
     public static final int DEFLATED = 8;
 
-    static {
-	/* Zip library is loaded from System.initializeSystemClass */
-	initIDs();
-    }
-
-    private static native void initIDs();
-
     /**
      * Creates a new zip entry with the specified name.
      *
@@ -77,25 +70,6 @@ class ZipEntry implements ZipConstants, Cloneable {
 	comment = e.comment;
     }
 
-    /*
-     * Creates a new zip entry for the given name with fields initialized
-     * from the specified jzentry data.
-     */
-    ZipEntry(String name, long jzentry) {
-	this.name = name;
-	initFields(jzentry);
-    }
-
-    private native void initFields(long jzentry);
-
-    /*
-     * Creates a new zip entry with fields initialized from the specified
-     * jzentry data.
-     */
-    ZipEntry(long jzentry) {
-	initFields(jzentry);
-    }
-
     /**
      * Returns the name of the entry.
      * @return the name of the entry
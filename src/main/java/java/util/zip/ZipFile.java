@@ -15,6 +15,8 @@ import java.util.Vector;
 import java.util.Enumeration;
 import java.util.NoSuchElementException;
 import java.security.AccessController;
+import sun.misc.JavaUtilZipAccess;
+import sun.misc.SharedSecrets;
 import sun.security.action.GetPropertyAction;
 
 /**
@@ -29,7 +31,7 @@ import sun.security.action.GetPropertyAction;
  */
 public
 class ZipFile implements ZipConstants {
-    private long jzfile;  // address of jzfile data
+    private ZipSource zsrc; // central directory and file, possibly shared
     private String name;  // zip file name
     private int total;	  // total number of entries
     private boolean closeRequested;
@@ -51,13 +53,6 @@ class ZipFile implements ZipConstants {
      */
     public static final int OPEN_DELETE = 0x4;
 
-    static {
-	/* Zip library is loaded from System.initializeSystemClass */
-	initIDs();
-    }
-
-    private static native void initIDs();
-
     private static final boolean usemmap;
 
     static {
@@ -67,6 +62,13 @@ class ZipFile implements ZipConstants {
             new GetPropertyAction("sun.zip.disableMemoryMapping"));
         usemmap = (prop == null ||
                    !(prop.length() == 0 || prop.equalsIgnoreCase("true")));
+
+        // Set up JavaUtilZipAccess in SharedSecrets
+        SharedSecrets.setJavaUtilZipAccess(new JavaUtilZipAccess() {
+            public String[] getMetaInfEntryNames(ZipFile zip) {
+                return zip.getMetaInfEntryNames();
+            }
+        });
     }
 
     /**
@@ -124,15 +126,12 @@ class ZipFile implements ZipConstants {
 		sm.checkDelete(name);
 	    }
 	}
-        jzfile = open(name, mode, file.lastModified(), usemmap);
+        zsrc = ZipSource.get(file, mode, usemmap);
 
 	this.name = name;
-	this.total = getTotal(jzfile);
+	this.total = zsrc.size();
     }
 
-    private static native long open(String name, int mode, long lastModified);
-    private static native int getTotal(long jzfile);
-
 
     /**
      * Opens a ZIP file for reading given the specified File object.
@@ -156,25 +155,16 @@ class ZipFile implements ZipConstants {
         if (name == null) {
             throw new NullPointerException("name");
         }
-        long jzentry = 0;
         synchronized (this) {
             ensureOpen();
-            jzentry = getEntry(jzfile, name, true);
-            if (jzentry != 0) {
-                ZipEntry ze = new ZipEntry(name, jzentry);
-                freeEntry(jzfile, jzentry);
-                return ze;
+            int pos = zsrc.getEntryPos(name, true);
+            if (pos != -1) {
+                return zsrc.getZipEntry(name, pos);
             }
         }
         return null;
     }
 
-    private static native long getEntry(long jzfile, String name,
-                                        boolean addSlash);
-
-    // freeEntry releases the C jzentry struct.
-    private static native void freeEntry(long jzfile, long jzentry);
-
     /**
      * Returns an input stream for reading the contents of the specified
      * zip file entry.
@@ -193,6 +183,36 @@ class ZipFile implements ZipConstants {
 	return getInputStream(entry.name);
     }
 
+    /**
+     * Returns an input stream for reading the data of the specified zip
+     * file entry as it is stored in the file, that is, still compressed
+     * if the entry is <tt>DEFLATED</tt>.  The stream returns exactly the
+     * compressed size of the entry; the data is not checked against the
+     * entry's CRC-32.
+     *
+     * <p> Closing this ZIP file will, in turn, close all input
+     * streams that have been returned by invocations of this method.
+     *
+     * @param entry the zip file entry
+     * @return the input stream for reading the stored data of the
+     * specified zip file entry, or null if the entry was not found
+     * @throws IOException if an I/O error has occurred
+     * @throws IllegalStateException if the zip file has been closed
+     * @see ZipOutputStream#writeRawEntry
+     * @since 1.7
+     */
+    public InputStream getRawInputStream(ZipEntry entry) throws IOException {
+        String name = entry.name;
+        synchronized (this) {
+            ensureOpen();
+            int pos = zsrc.getEntryPos(name, false);
+            if (pos == -1) {
+                return null;
+            }
+            return new ZipFileInputStream(pos);
+        }
+    }
+
     /**
      * Returns an input stream for reading the contents of the specified
      * entry, or null if the entry was not found.
@@ -201,25 +221,24 @@ class ZipFile implements ZipConstants {
 	if (name == null) {
 	    throw new NullPointerException("name");
 	}
-        long jzentry = 0;
         ZipFileInputStream in = null;
         synchronized (this) {
             ensureOpen();
-            jzentry = getEntry(jzfile, name, false);
-            if (jzentry == 0) {
+            int pos = zsrc.getEntryPos(name, false);
+            if (pos == -1) {
                 return null;
             }
 
-	    in = new ZipFileInputStream(jzentry);
+	    in = new ZipFileInputStream(pos);
 
         }
         final ZipFileInputStream zfin = in;
-	switch (getMethod(jzentry)) {
+	switch (zfin.method) {
 	case STORED:
 	    return zfin;
 	case DEFLATED:
 	    // MORE: Compute good size for inflater stream:
-	    long size = getSize(jzentry) + 2; // Inflater likes a bit of slack
+	    long size = zfin.size() + 2; // Inflater likes a bit of slack
             if (size > 65536) size = 8192;
             if (size <= 0) size = 4096;
 	    return new InflaterInputStream(zfin, getInflater(), (int)size) {
@@ -263,8 +282,6 @@ class ZipFile implements ZipConstants {
 	}
     }
 
-    private static native int getMethod(long jzentry);
-
     /*
      * Gets an inflater from the list of available inflaters or allocates
      * a new one.
@@ -323,32 +340,12 @@ class ZipFile implements ZipConstants {
                         if (i >= total) {
                             throw new NoSuchElementException();
                         }
-                        long jzentry = getNextEntry(jzfile, i++);
-                        if (jzentry == 0) {
-                            String message;
-                            if (closeRequested) {
-                                message = "ZipFile concurrently closed";
-                            } else {
-                                message = getZipMessage(ZipFile.this.jzfile);
-                            }
-                            throw new ZipError("jzentry == 0" +
-                                               ",\n jzfile = " + ZipFile.this.jzfile +
-                                               ",\n total = " + ZipFile.this.total +
-                                               ",\n name = " + ZipFile.this.name +
-                                               ",\n i = " + i +
-                                               ",\n message = " + message
-                                );
-                        }
-                        ZipEntry ze = new ZipEntry(jzentry);
-                        freeEntry(jzfile, jzentry);
-                        return ze;
+                        return zsrc.getZipEntry(null, zsrc.entryPos(i++));
                     }
                 }
             };
     }
 
-    private static native long getNextEntry(long jzfile, int i);
-
     /**
      * Returns the number of entries in the ZIP file.
      * @return the number of entries in the ZIP file
@@ -371,12 +368,12 @@ class ZipFile implements ZipConstants {
         synchronized (this) {
 	    closeRequested = true;
 
-	    if (jzfile != 0) {
-		// Close the zip file
-		long zf = this.jzfile;
-		jzfile = 0;
+	    if (zsrc != null) {
+		// Release the zip file, closing it unless it is shared
+		ZipSource zs = this.zsrc;
+		zsrc = null;
 
-		close(zf);
+		ZipSource.release(zs);
 
 		// Release inflaters
 		synchronized (inflaters) {
@@ -409,14 +406,12 @@ class ZipFile implements ZipConstants {
         close();
     }
 
-    private static native void close(long jzfile);
-
     private void ensureOpen() {
 	if (closeRequested) {
 	    throw new IllegalStateException("zip file closed");
 	}
 
-	if (jzfile == 0) {
+	if (zsrc == null) {
 	    throw new IllegalStateException("The object is not initialized.");
 	}
     }
@@ -427,21 +422,38 @@ class ZipFile implements ZipConstants {
 	}
     }
 
+    /*
+     * Returns the names of the entries whose names begin with "META-INF/",
+     * ignoring case, or null if there are none.  Invoked by JarFile through
+     * sun.misc.JavaUtilZipAccess, to look for its manifest and signature
+     * files.
+     */
+    private String[] getMetaInfEntryNames() {
+        synchronized (this) {
+            ensureOpen();
+            return zsrc.getMetaInfEntryNames();
+        }
+    }
+
     /*
      * Inner class implementing the input stream used to read a
      * (possibly compressed) zip file entry.
      */
    private class ZipFileInputStream extends InputStream {
-	protected long jzentry;	// address of jzentry data
+	final int method;	// compression method
+	private   long locoff;	// offset of the entry's LOC header
+	private   long start = -1;	// position of entry data in the file
 	private   long pos;	// current position within entry data
 	protected long rem;	// number of remaining bytes within entry
         protected long size;    // uncompressed size of this entry
 
-	ZipFileInputStream(long jzentry) {
+	ZipFileInputStream(int cenpos) {
+	    long[] sizes = zsrc.getSizes(cenpos);
+	    method = zsrc.getMethod(cenpos);
 	    pos = 0;
-	    rem = getCSize(jzentry);
-            size = getSize(jzentry);
-	    this.jzentry = jzentry;
+	    rem = sizes[1];
+            size = sizes[0];
+	    locoff = sizes[2];
 	}
 
 	public int read(byte b[], int off, int len) throws IOException {
@@ -457,9 +469,14 @@ class ZipFile implements ZipConstants {
             synchronized (ZipFile.this) {
 		ensureOpenOrZipException();
 
-		len = ZipFile.read(ZipFile.this.jzfile, jzentry, pos, b,
-				   off, len);
+		if (start < 0) {
+		    start = zsrc.getDataPos(locoff);
+		}
+		len = zsrc.readAt(start + pos, b, off, len);
             }
+	    if (len == -1) {
+		throw new ZipException("unexpected end of zip file");
+	    }
 	    if (len > 0) {
 		pos += len;
 		rem -= len;
@@ -500,27 +517,7 @@ class ZipFile implements ZipConstants {
 
         public void close() {
             rem = 0;
-            synchronized (ZipFile.this) {
-                if (jzentry != 0 && ZipFile.this.jzfile != 0) {
-                    freeEntry(ZipFile.this.jzfile, jzentry);
-                    jzentry = 0;
-                }
-            }
         }
 
     }
-
-
-    private static native long open(String name, int mode, long lastModified,
-                                    boolean usemmap) throws IOException;
-
-    private static native int read(long jzfile, long jzentry,
-				   long pos, byte[] b, int off, int len);
-
-    private static native long getCSize(long jzentry);
-
-    private static native long getSize(long jzentry);
-
-    // Temporary add on for bug troubleshooting
-    private static native String getZipMessage(long jzfile);
 }
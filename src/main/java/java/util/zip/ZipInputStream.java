@@ -12,6 +12,8 @@ import java.io.IOException;
 import java.io.EOFException;
 import java.io.UnsupportedEncodingException;
 import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import sun.security.action.GetPropertyAction;
 import java.util.jar.JarInputStream;
 
@@ -186,6 +188,26 @@ class ZipInputStream extends InflaterInputStream implements ZipConstants {
 	}
     }
 
+    /**
+     * Reads from the current ZIP entry into a buffer, as
+     * {@link InflaterInputStream#read(ByteBuffer)} does.  The data is read
+     * through {@link #read(byte[], int, int)}, which checks it against the
+     * entry's CRC-32.
+     * @param dst the buffer into which the data is read
+     * @return the actual number of bytes read, or -1 if the end of the
+     *         entry is reached
+     * @exception ZipException if a ZIP file error has occurred
+     * @exception IOException if an I/O error has occurred
+     * @since 1.7
+     */
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        return readArray(dst);
+    }
+
     /**
      * Skips specified number of bytes in the current ZIP entry.
      * @param n the number of bytes to skip
@@ -285,7 +307,7 @@ class ZipInputStream extends InflaterInputStream implements ZipConstants {
     /*
      * Fetches a UTF8-encoded String from the specified byte array.
      */
-    private static String getUTF8String(byte[] b, int off, int len) {
+    static String getUTF8String(byte[] b, int off, int len) {
 	// First, count the number of characters in the sequence
 	int count = 0;
 	int max = off + len;
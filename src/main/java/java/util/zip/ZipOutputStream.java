@@ -7,16 +7,33 @@
 
 package java.util.zip;
 
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Vector;
 import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * This class implements an output stream filter for writing files in the
  * ZIP file format. Includes support for both compressed and uncompressed
  * entries.
  *
+ * <p>Entries can be copied from a {@link ZipFile} without being
+ * decompressed and compressed again: {@link #writeRawEntry writeRawEntry}
+ * writes an entry's data exactly as it is stored, together with its
+ * CRC-32 and sizes.  When an executor is set with
+ * {@link #setExecutor setExecutor}, <tt>DEFLATED</tt> entries are
+ * compressed concurrently with each other and with the writing of
+ * further entries, and are written out in the order they were put.
+ *
  * @author	David Connelly
  * @version	%I%, %G%
  */
@@ -54,6 +71,43 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
 
     private boolean closed = false;
 
+    /*
+     * State for compressing entries on an executor.  The data of the
+     * current entry is buffered until it is closed, and entries whose
+     * compression has been submitted are written out oldest first.
+     */
+    private ExecutorService executor;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private byte[] entryBuf;        // data of current entry, if buffered
+    private int entryLen;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<Pending>();
+    private final ConcurrentLinkedQueue<Deflater> deflaters =
+        new ConcurrentLinkedQueue<Deflater>();
+    private final int maxPending =
+        2 * Runtime.getRuntime().availableProcessors();
+
+    private static class Pending {
+	final ZipEntry entry;
+	final Future<Compressed> future;
+	Pending(ZipEntry entry, Future<Compressed> future) {
+	    this.entry = entry;
+	    this.future = future;
+	}
+    }
+
+    private static class Compressed {
+	final byte[] buf;
+	final int len;
+	final long size;
+	final long crc;
+	Compressed(byte[] buf, int len, long size, long crc) {
+	    this.buf = buf;
+	    this.len = len;
+	    this.size = size;
+	    this.crc = crc;
+	}
+    }
+
     private static int version(ZipEntry e) throws ZipException {
 	switch (e.method) {
 	case DEFLATED: return 20;
@@ -126,6 +180,29 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
      */
     public void setLevel(int level) {
 	def.setLevel(level);
+	this.level = level;
+    }
+
+    /**
+     * Sets the executor on which subsequent <tt>DEFLATED</tt> entries are
+     * compressed, or <tt>null</tt> to compress them on the writing thread,
+     * as is the default.
+     *
+     * <p>With an executor, the data of each <tt>DEFLATED</tt> entry is held
+     * in memory until the entry is closed, and is then compressed by a task
+     * on the executor while the next entries are written.  The compressed
+     * entries are written to the underlying stream in the order in which
+     * they were put, at most a few per processor being held in memory at
+     * a time, before any <tt>STORED</tt> or raw entry that follows them.
+     * Errors in an entry, such as a wrong size or CRC-32 set on it, may
+     * therefore be reported by a later invocation of a method of this
+     * stream.
+     *
+     * @param executor the executor, or <tt>null</tt>
+     * @since 1.7
+     */
+    public void setExecutor(ExecutorService executor) {
+	this.executor = executor;
     }
 
     /**
@@ -174,11 +251,85 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
 	if (! names.add(e.name)) {
 	    throw new ZipException("duplicate entry: " + e.name);
 	}
+	if (executor != null && e.method == DEFLATED) {
+	    // header is written when the compressed data is ready, in writeEntry
+	    current = new XEntry(e, -1);
+	    entryBuf = new byte[8192];
+	    entryLen = 0;
+	    return;
+	}
+	writePending(0);
 	current = new XEntry(e, written);
 	xentries.add(current);
         writeLOC(current);
     }
 
+    /**
+     * Writes a ZIP file entry whose data is read, already compressed if the
+     * entry is <tt>DEFLATED</tt>, from the given stream.  The data is
+     * copied as it is, and the entry's CRC-32, size and compressed size,
+     * which must all be set, are written as they are.  Closes the current
+     * entry if still active; the current time will be used if the entry
+     * has no set modification time.
+     *
+     * <p>This is typically used to copy entries from a {@link ZipFile}:
+     *
+     * <blockquote><pre>
+     *     Enumeration&lt;? extends ZipEntry&gt; en = zf.entries();
+     *     while (en.hasMoreElements()) {
+     *         ZipEntry e = en.nextElement();
+     *         zos.writeRawEntry(e, zf.getRawInputStream(e));
+     *     }
+     * </pre></blockquote>
+     *
+     * @param e the ZIP entry to be written
+     * @param in the stream from which the entry's data is read, of which
+     *        exactly the compressed size of the entry is read
+     * @exception ZipException if a ZIP format error has occurred
+     * @exception IOException if an I/O error has occurred
+     * @see ZipFile#getRawInputStream
+     * @since 1.7
+     */
+    public void writeRawEntry(ZipEntry e, InputStream in) throws IOException {
+	ensureOpen();
+	if (current != null) {
+	    closeEntry();	// close previous entry
+	}
+	if (e.time == -1) {
+	    e.setTime(System.currentTimeMillis());
+	}
+	if (e.method != DEFLATED && e.method != STORED) {
+	    throw new ZipException("unsupported compression method");
+	}
+	if (e.size == -1 || e.csize == -1 || e.crc == -1) {
+	    throw new ZipException(
+		"raw entry missing size, compressed size, or crc-32");
+	}
+	if (e.method == STORED && e.size != e.csize) {
+	    throw new ZipException(
+		"STORED entry where compressed != uncompressed size");
+	}
+	if (! names.add(e.name)) {
+	    throw new ZipException("duplicate entry: " + e.name);
+	}
+	writePending(0);
+	XEntry xentry = new XEntry(e, written);
+	xentries.add(xentry);
+	writeLOC(xentry);
+	byte[] b = new byte[8192];
+	long rem = e.csize;
+	while (rem > 0) {
+	    int n = in.read(b, 0, rem < b.length ? (int)rem : b.length);
+	    if (n == -1) {
+		throw new ZipException(
+		    "unexpected end of raw entry data (" + rem +
+		    " bytes missing)");
+	    }
+	    writeBytes(b, 0, n);
+	    rem -= n;
+	}
+    }
+
     /**
      * Closes the current ZIP entry and positions the stream for writing
      * the next entry.
@@ -187,7 +338,11 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
      */
     public void closeEntry() throws IOException {
 	ensureOpen();
-	if (current != null) {
+	if (current != null && entryBuf != null) {
+	    submit(current.entry, entryBuf, entryLen);
+	    entryBuf = null;
+	    current = null;
+	} else if (current != null) {
 	    ZipEntry e = current.entry;
 	    switch (e.method) {
 	    case DEFLATED:
@@ -266,6 +421,19 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
 	if (current == null) {
 	    throw new ZipException("no current ZIP entry");
 	}
+	if (entryBuf != null) {
+	    if (len > entryBuf.length - entryLen) {
+		if (len > Integer.MAX_VALUE - entryLen) {
+		    throw new ZipException("entry too large to buffer");
+		}
+		// a doubled length that overflows loses to the needed one
+		int n = Math.max(entryBuf.length * 2, entryLen + len);
+		entryBuf = Arrays.copyOf(entryBuf, n);
+	    }
+	    System.arraycopy(b, off, entryBuf, entryLen, len);
+	    entryLen += len;
+	    return;
+	}
 	ZipEntry entry = current.entry;
 	switch (entry.method) {
 	case DEFLATED:
@@ -300,6 +468,7 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
 	if (current != null) {
 	    closeEntry();
 	}
+	writePending(0);
 	if (xentries.size() < 1) {
 	    throw new ZipException("ZIP file must have at least one entry");
 	}
@@ -318,11 +487,150 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
      */
     public void close() throws IOException {
         if (!closed) {
-            super.close();
-            closed = true;
+            try {
+                super.close();
+                closed = true;
+            } finally {
+                Deflater d;
+                while ((d = deflaters.poll()) != null) {
+                    d.end();
+                }
+            }
         }
     }
 
+    /*
+     * Submits the compression of a buffered entry to the executor, then
+     * writes out the entries that are done, waiting for the oldest if too
+     * many are pending.
+     */
+    private void submit(ZipEntry e, final byte[] data, final int len)
+	throws IOException
+    {
+	final int level = this.level;
+	Future<Compressed> f;
+	try {
+	    f = executor.submit(new Callable<Compressed>() {
+		    public Compressed call() {
+			return compress(data, len, level);
+		    }
+		});
+	} catch (RuntimeException x) {
+	    abandon();
+	    throw new IOException("cannot submit entry: " + e.name, x);
+	}
+	pending.add(new Pending(e, f));
+	while (!pending.isEmpty() && pending.peek().future.isDone()) {
+	    writeEntry(pending.remove());
+	}
+	writePending(maxPending);
+    }
+
+    /*
+     * Writes out pending entries, oldest first, until no more than the
+     * given number remain.
+     */
+    private void writePending(int max) throws IOException {
+	while (pending.size() > max) {
+	    writeEntry(pending.remove());
+	}
+    }
+
+    /*
+     * Waits for an entry to be compressed and writes it out, with its
+     * sizes and CRC-32 in the LOC header.
+     */
+    private void writeEntry(Pending p) throws IOException {
+	Compressed c;
+	try {
+	    c = p.future.get();
+	} catch (InterruptedException x) {
+	    abandon();
+	    throw new InterruptedIOException();
+	} catch (ExecutionException x) {
+	    abandon();
+	    Throwable cause = x.getCause();
+	    if (cause instanceof IOException)
+		throw (IOException) cause;
+	    throw new IOException(cause);
+	}
+	ZipEntry e = p.entry;
+	if (e.size != -1 && e.csize != -1 && e.crc != -1) {
+	    // verify size, compressed size, and crc-32 settings
+	    if (e.size != c.size) {
+		throw new ZipException(
+		    "invalid entry size (expected " + e.size +
+		    " but got " + c.size + " bytes)");
+	    }
+	    if (e.csize != c.len) {
+		throw new ZipException(
+		    "invalid entry compressed size (expected " +
+		    e.csize + " but got " + c.len + " bytes)");
+	    }
+	    if (e.crc != c.crc) {
+		throw new ZipException(
+		    "invalid entry CRC-32 (expected 0x" +
+		    Long.toHexString(e.crc) + " but got 0x" +
+		    Long.toHexString(c.crc) + ")");
+	    }
+	}
+	e.size = c.size;
+	e.csize = c.len;
+	e.crc = c.crc;
+	XEntry xentry = new XEntry(e, written);
+	xentries.add(xentry);
+	writeLOC(xentry);
+	writeBytes(c.buf, 0, c.len);
+    }
+
+    /*
+     * Cancels the entries not yet written after an error; the stream
+     * cannot be completed, but can still be closed.
+     */
+    private void abandon() {
+	finished = true;
+	Pending p;
+	while ((p = pending.poll()) != null) {
+	    p.future.cancel(false);
+	}
+    }
+
+    /*
+     * Compresses the data of an entry and computes its CRC-32.
+     */
+    private Compressed compress(byte[] data, int len, int level) {
+	Deflater d = deflaters.poll();
+	if (d == null) {
+	    d = new Deflater(level, true);
+	} else {
+	    d.setLevel(level);
+	}
+	boolean reuse = false;
+	try {
+	    CRC32 crc = new CRC32();
+	    crc.update(data, 0, len);
+	    d.setInput(data, 0, len);
+	    d.finish();
+	    byte[] buf = new byte[(len >>> 1) + 64];
+	    int n = 0;
+	    while (!d.finished()) {
+		if (n == buf.length) {
+		    buf = Arrays.copyOf(buf, buf.length * 2);
+		}
+		n += d.deflate(buf, n, buf.length - n);
+	    }
+	    d.reset();
+	    reuse = true;
+	    return new Compressed(buf, n, len, crc.getValue());
+	} finally {
+	    if (reuse) {
+		deflaters.offer(d);
+	    } else {
+		d.end();
+	    }
+	}
+    }
+
     /*
      * Writes local file (LOC) header for specified entry.
      */
@@ -479,7 +787,7 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
      * Returns an array of bytes representing the UTF8 encoding
      * of the specified String.
      */
-    private static byte[] getUTF8Bytes(String s) {
+    static byte[] getUTF8Bytes(String s) {
 	char[] c = s.toCharArray();
 	int len = c.length;
 	// Count the number of encoded bytes...
@@ -0,0 +1,535 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The central directory of an open zip file, read once when the file is
+ * opened and indexed by a hash table of entry names, together with the
+ * file from which the entry data are read.
+ *
+ * <p>The central directory is memory-mapped unless mapping has been
+ * disabled, in which case it is read into the heap.  The index holds three
+ * ints for each entry: the hash of its name, the index of the next entry in
+ * the same bucket, and the position of its header in the central directory.
+ * The hash of a name is computed over its UTF-8 bytes as
+ * {@link String#hashCode()} is computed over chars, so that an ASCII name
+ * is looked up without being encoded.
+ *
+ * <p>The <code>ZipFile</code> objects that open the same, unchanged file
+ * share one source, which is closed when the last of them is closed.
+ */
+final class ZipSource implements ZipConstants {
+
+    // ZIP64 end of central directory record and its locator
+    private static final long ZIP64_ENDSIG = 0x06064b50L;  // "PK\006\006"
+    private static final long ZIP64_LOCSIG = 0x07064b50L;  // "PK\006\007"
+    private static final int ZIP64_ENDHDR = 56;
+    private static final int ZIP64_LOCHDR = 20;
+    private static final int ZIP64_LOCOFF = 8;     // offset of ZIP64 END
+    private static final int ZIP64_ENDTOT = 32;    // total number of entries
+    private static final int ZIP64_ENDSIZ = 40;    // central directory size
+    private static final int ZIP64_ENDOFF = 48;    // offset of first CEN header
+
+    // Extra field with the 64-bit sizes and offset of an entry, and the
+    // values that stand for them in the 32-bit fields
+    private static final int ZIP64_EXTID = 0x0001;
+    private static final long ZIP64_MAGICVAL = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGICCOUNT = 0xFFFF;
+
+    private static final int ENTRY_SIZE = 3;       // ints per index entry
+
+    // Shared sources, keyed by the files they read
+    private static final HashMap<Key, ZipSource> files =
+        new HashMap<Key, ZipSource>();
+
+    private final Key key;          // null if the source is not shared
+    private int refs = 1;           // guarded by files
+
+    private final RandomAccessFile zfile;
+    private final File deleteOnClose;
+    private ByteBuffer cen;         // little-endian; null once closed
+    private final boolean mapped;
+    private final long locpos;      // position of the LOC header at offset 0
+    private final int total;
+    private final int[] table;      // first entry of each bucket, or -1
+    private final int[] entries;    // hash, next, CEN position of each entry
+    private final int[] metanames;  // CEN positions of META-INF/ entries
+
+    /**
+     * Opens a source for reading the given file, or returns the shared
+     * source that has already opened it.  A file opened for deletion is
+     * not shared, and is deleted once it has been opened.
+     */
+    static ZipSource get(File file, int mode, boolean usemmap)
+        throws IOException
+    {
+        if ((mode & ZipFile.OPEN_DELETE) != 0)
+            return new ZipSource(file, null, true, usemmap);
+        Key key = new Key(file);
+        synchronized (files) {
+            ZipSource src = files.get(key);
+            if (src != null) {
+                src.refs++;
+                return src;
+            }
+        }
+        ZipSource src = new ZipSource(file, key, false, usemmap);
+        ZipSource other;
+        synchronized (files) {
+            other = files.get(key);
+            if (other == null) {
+                files.put(key, src);
+                return src;
+            }
+            other.refs++;
+        }
+        // Another thread has opened the file meanwhile
+        src.close();
+        return other;
+    }
+
+    /**
+     * Gives up a reference to the given source, closing it if it was the
+     * last.
+     */
+    static void release(ZipSource src) throws IOException {
+        synchronized (files) {
+            if (--src.refs > 0)
+                return;
+            if (src.key != null)
+                files.remove(src.key);
+        }
+        src.close();
+    }
+
+    private ZipSource(File file, Key key, boolean delete, boolean usemmap)
+        throws IOException
+    {
+        this.key = key;
+        this.zfile = new RandomAccessFile(file, "r");
+        this.deleteOnClose = (delete && !file.delete()) ? file : null;
+        boolean ok = false;
+        try {
+            // Locate the central directory
+            long ziplen = zfile.length();
+            byte[] buf = new byte[(int)Math.min(ziplen, ENDHDR + 0xFFFF)];
+            readFullyAt(ziplen - buf.length, buf, 0, buf.length);
+            int end = buf.length - ENDHDR;
+            while (end >= 0 && (get32(buf, end) != ENDSIG ||
+                                end + ENDHDR + get16(buf, end + ENDCOM) > buf.length))
+                end--;
+            if (end < 0)
+                throw new ZipException(ziplen == 0 ? "zip file is empty"
+                                                   : "END header not found");
+            long endpos = ziplen - buf.length + end;
+            long cenlen = get32(buf, end + ENDSIZ);
+            long cenoff = get32(buf, end + ENDOFF);
+            long count = get16(buf, end + ENDTOT);
+            if (endpos >= ZIP64_LOCHDR) {
+                byte[] loc = new byte[ZIP64_LOCHDR];
+                readFullyAt(endpos - ZIP64_LOCHDR, loc, 0, ZIP64_LOCHDR);
+                if (get32(loc, 0) == ZIP64_LOCSIG) {
+                    long end64pos = get64(loc, ZIP64_LOCOFF);
+                    byte[] end64 = new byte[ZIP64_ENDHDR];
+                    readFullyAt(end64pos, end64, 0, ZIP64_ENDHDR);
+                    if (get32(end64, 0) != ZIP64_ENDSIG)
+                        throw new ZipException("invalid ZIP64 END header");
+                    if (cenlen == ZIP64_MAGICVAL)
+                        cenlen = get64(end64, ZIP64_ENDSIZ);
+                    if (cenoff == ZIP64_MAGICVAL)
+                        cenoff = get64(end64, ZIP64_ENDOFF);
+                    if (count == ZIP64_MAGICCOUNT)
+                        count = get64(end64, ZIP64_ENDTOT);
+                    endpos = end64pos;
+                }
+            }
+            long cenpos = endpos - cenlen;
+            locpos = cenpos - cenoff;
+            if (cenpos < 0 || locpos < 0)
+                throw new ZipException(
+                    "invalid END header (bad central directory offset)");
+            if (cenlen > Integer.MAX_VALUE)
+                throw new ZipException("central directory too large");
+
+            // Read the central directory
+            if (usemmap && cenlen > 0) {
+                cen = zfile.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                             cenpos, cenlen);
+                mapped = true;
+            } else {
+                byte[] b = new byte[(int)cenlen];
+                readFullyAt(cenpos, b, 0, b.length);
+                cen = ByteBuffer.wrap(b);
+                mapped = false;
+            }
+            cen.order(ByteOrder.LITTLE_ENDIAN);
+
+            // Index its entries, in order
+            int[] ents = new int[(int)Math.min(count, cenlen / CENHDR)
+                                 * ENTRY_SIZE];
+            int[] metas = new int[0];
+            int n = 0, nmetas = 0;
+            int pos = 0;
+            while (pos + CENHDR <= cenlen) {
+                if ((cen.getInt(pos) & 0xffffffffL) != CENSIG)
+                    throw new ZipException("invalid CEN header (bad signature)");
+                int method = CENHOW(pos);
+                int nlen = CENNAM(pos);
+                if ((CENFLG(pos) & 1) != 0)
+                    throw new ZipException("invalid CEN header (encrypted entry)");
+                if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED)
+                    throw new ZipException(
+                        "invalid CEN header (bad compression method: " + method + ")");
+                int next = pos + CENHDR + nlen + CENEXT(pos) + CENCOM(pos);
+                if (next > cenlen)
+                    throw new ZipException("invalid CEN header (bad header size)");
+                int h = 0;
+                for (int i = pos + CENHDR; i < pos + CENHDR + nlen; i++)
+                    h = 31 * h + (cen.get(i) & 0xff);
+                if (n * ENTRY_SIZE == ents.length)
+                    ents = Arrays.copyOf(ents, Math.max(16, ents.length * 2));
+                ents[n * ENTRY_SIZE] = h;
+                ents[n * ENTRY_SIZE + 2] = pos;
+                n++;
+                if (isMetaName(pos + CENHDR, nlen)) {
+                    if (nmetas == metas.length)
+                        metas = Arrays.copyOf(metas, Math.max(4, nmetas * 2));
+                    metas[nmetas++] = pos;
+                }
+                pos = next;
+            }
+            total = n;
+            entries = ents;
+            metanames = Arrays.copyOf(metas, nmetas);
+            table = new int[Integer.highestOneBit(Math.max(n, 1)) << 1];
+            Arrays.fill(table, -1);
+            for (int i = 0; i < n; i++) {
+                int b = bucket(ents[i * ENTRY_SIZE]);
+                ents[i * ENTRY_SIZE + 1] = table[b];
+                table[b] = i;
+            }
+            ok = true;
+        } finally {
+            if (!ok)
+                close();
+        }
+    }
+
+    private int bucket(int h) {
+        return (h ^ (h >>> 16)) & (table.length - 1);
+    }
+
+    // Tells whether the name of the given length at the given position
+    // begins with "META-INF/", ignoring case
+    private boolean isMetaName(int off, int len) {
+        final String meta = "META-INF/";
+        if (len < meta.length())
+            return false;
+        for (int i = 0; i < meta.length(); i++) {
+            int c = cen.get(off + i);
+            if (c >= 'a' && c <= 'z')
+                c -= 'a' - 'A';
+            if (c != meta.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    int size() {
+        return total;
+    }
+
+    /**
+     * Returns the position of the central directory header of the entry
+     * with the given index, counting in directory order.
+     */
+    int entryPos(int index) {
+        return entries[index * ENTRY_SIZE + 2];
+    }
+
+    /**
+     * Returns the position of the central directory header of the entry
+     * with the given name, or -1 if there is none.  If
+     * <code>addSlash</code> is true, and there is no such entry, a
+     * directory entry with the given name followed by a slash is looked up.
+     */
+    int getEntryPos(String name, boolean addSlash) {
+        int n = name.length();
+        byte[] bytes = null;
+        for (int i = 0; i < n; i++) {
+            if (name.charAt(i) >= 0x80) {
+                bytes = ZipOutputStream.getUTF8Bytes(name);
+                break;
+            }
+        }
+        int h;
+        if (bytes == null) {
+            h = name.hashCode();
+        } else {
+            h = 0;
+            for (int i = 0; i < bytes.length; i++)
+                h = 31 * h + (bytes[i] & 0xff);
+        }
+        int pos = find(name, bytes, h, false);
+        if (pos == -1 && addSlash && (n == 0 || name.charAt(n - 1) != '/'))
+            pos = find(name, bytes, 31 * h + '/', true);
+        return pos;
+    }
+
+    private int find(String name, byte[] bytes, int h, boolean slash) {
+        for (int i = table[bucket(h)]; i != -1; i = entries[i * ENTRY_SIZE + 1]) {
+            if (entries[i * ENTRY_SIZE] == h) {
+                int pos = entries[i * ENTRY_SIZE + 2];
+                if (nameEquals(pos, name, bytes, slash))
+                    return pos;
+            }
+        }
+        return -1;
+    }
+
+    // Compares the name of the entry at pos with the given name, which is
+    // ASCII if bytes is null and is otherwise encoded as bytes
+    private boolean nameEquals(int pos, String name, byte[] bytes,
+                               boolean slash)
+    {
+        int off = pos + CENHDR;
+        int len = (bytes == null) ? name.length() : bytes.length;
+        if (CENNAM(pos) != len + (slash ? 1 : 0))
+            return false;
+        if (bytes == null) {
+            for (int i = 0; i < len; i++) {
+                if (cen.get(off + i) != (byte)name.charAt(i))
+                    return false;
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                if (cen.get(off + i) != bytes[i])
+                    return false;
+            }
+        }
+        return !slash || cen.get(off + len) == '/';
+    }
+
+    /**
+     * Returns the name of the entry at the given position.
+     */
+    String getEntryName(int pos) {
+        return getString(pos + CENHDR, CENNAM(pos));
+    }
+
+    /**
+     * Creates a <code>ZipEntry</code> for the entry at the given position.
+     * The name is decoded from the central directory unless the caller
+     * has looked the entry up by its name, in which case the entry
+     * keeps that name, without the '/' that a directory entry found
+     * for it may have.
+     */
+    ZipEntry getZipEntry(String name, int pos) {
+        int nlen = CENNAM(pos);
+        if (name == null)
+            name = getString(pos + CENHDR, nlen);
+        ZipEntry e = new ZipEntry(name);
+        long[] sizes = getSizes(pos);
+        e.time = cen.getInt(pos + CENTIM) & 0xffffffffL;
+        e.crc = cen.getInt(pos + CENCRC) & 0xffffffffL;
+        e.size = sizes[0];
+        e.csize = sizes[1];
+        e.method = CENHOW(pos);
+        int elen = CENEXT(pos);
+        if (elen > 0) {
+            byte[] extra = new byte[elen];
+            for (int i = 0; i < elen; i++)
+                extra[i] = cen.get(pos + CENHDR + nlen + i);
+            e.extra = extra;
+        }
+        int clen = CENCOM(pos);
+        if (clen > 0)
+            e.comment = getString(pos + CENHDR + nlen + elen, clen);
+        return e;
+    }
+
+    /**
+     * Returns the compression method of the entry at the given position.
+     */
+    int getMethod(int pos) {
+        return CENHOW(pos);
+    }
+
+    /**
+     * Returns the uncompressed size, the compressed size and the offset
+     * of the local header of the entry at the given position, taking
+     * those that do not fit in 32 bits from its ZIP64 extra field.
+     */
+    long[] getSizes(int pos) {
+        long size = cen.getInt(pos + CENLEN) & 0xffffffffL;
+        long csize = cen.getInt(pos + CENSIZ) & 0xffffffffL;
+        long locoff = cen.getInt(pos + CENOFF) & 0xffffffffL;
+        if (size == ZIP64_MAGICVAL || csize == ZIP64_MAGICVAL ||
+            locoff == ZIP64_MAGICVAL) {
+            int off = pos + CENHDR + CENNAM(pos);
+            int end = off + CENEXT(pos);
+            while (off + 4 <= end) {
+                int tag = cen.getShort(off) & 0xffff;
+                int sz = cen.getShort(off + 2) & 0xffff;
+                off += 4;
+                if (off + sz > end)
+                    break;
+                if (tag == ZIP64_EXTID) {
+                    int p = off;
+                    if (size == ZIP64_MAGICVAL && p + 8 <= off + sz) {
+                        size = cen.getLong(p);
+                        p += 8;
+                    }
+                    if (csize == ZIP64_MAGICVAL && p + 8 <= off + sz) {
+                        csize = cen.getLong(p);
+                        p += 8;
+                    }
+                    if (locoff == ZIP64_MAGICVAL && p + 8 <= off + sz)
+                        locoff = cen.getLong(p);
+                    break;
+                }
+                off += sz;
+            }
+        }
+        return new long[] { size, csize, locoff };
+    }
+
+    /**
+     * Returns the names of the entries whose names begin with
+     * "META-INF/", ignoring case, or null if there are none.
+     */
+    String[] getMetaInfEntryNames() {
+        if (metanames.length == 0)
+            return null;
+        String[] names = new String[metanames.length];
+        for (int i = 0; i < names.length; i++)
+            names[i] = getEntryName(metanames[i]);
+        return names;
+    }
+
+    // Decodes the UTF-8 string of the given length at the given position
+    private String getString(int off, int len) {
+        char[] ca = new char[len];
+        for (int i = 0; i < len; i++) {
+            byte b = cen.get(off + i);
+            if (b < 0) {
+                byte[] ba = new byte[len];
+                for (int j = 0; j < len; j++)
+                    ba[j] = cen.get(off + j);
+                return ZipInputStream.getUTF8String(ba, 0, len);
+            }
+            ca[i] = (char)b;
+        }
+        return new String(ca);
+    }
+
+    /**
+     * Returns the position in the file of the data of the entry whose
+     * local header is at the given offset.
+     */
+    long getDataPos(long locoff) throws IOException {
+        byte[] loc = new byte[LOCHDR];
+        long pos = locpos + locoff;
+        readFullyAt(pos, loc, 0, LOCHDR);
+        if (get32(loc, 0) != LOCSIG)
+            throw new ZipException("invalid LOC header (bad signature)");
+        return pos + LOCHDR + get16(loc, LOCNAM) + get16(loc, LOCEXT);
+    }
+
+    /**
+     * Reads up to <code>len</code> bytes at the given position of the file.
+     */
+    int readAt(long pos, byte[] b, int off, int len) throws IOException {
+        synchronized (zfile) {
+            zfile.seek(pos);
+            return zfile.read(b, off, len);
+        }
+    }
+
+    private void readFullyAt(long pos, byte[] b, int off, int len)
+        throws IOException
+    {
+        synchronized (zfile) {
+            zfile.seek(pos);
+            zfile.readFully(b, off, len);
+        }
+    }
+
+    private void close() throws IOException {
+        if (mapped && cen != null) {
+            sun.misc.Cleaner cleaner = ((sun.nio.ch.DirectBuffer)cen).cleaner();
+            if (cleaner != null)
+                cleaner.clean();
+        }
+        cen = null;
+        zfile.close();
+        if (deleteOnClose != null)
+            deleteOnClose.delete();
+    }
+
+    // -- Central directory header fields --
+
+    private int CENFLG(int pos) { return cen.getShort(pos + CENFLG) & 0xffff; }
+    private int CENHOW(int pos) { return cen.getShort(pos + CENHOW) & 0xffff; }
+    private int CENNAM(int pos) { return cen.getShort(pos + CENNAM) & 0xffff; }
+    private int CENEXT(int pos) { return cen.getShort(pos + CENEXT) & 0xffff; }
+    private int CENCOM(int pos) { return cen.getShort(pos + CENCOM) & 0xffff; }
+
+    private static int get16(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+    }
+
+    private static long get32(byte[] b, int off) {
+        return (get16(b, off) | ((long)get16(b, off + 2) << 16)) & 0xffffffffL;
+    }
+
+    private static long get64(byte[] b, int off) {
+        return get32(b, off) | (get32(b, off + 4) << 32);
+    }
+
+    /**
+     * Identifies a file by its path, its modification time and its length,
+     * so that a file that has been replaced is opened anew.
+     */
+    private static final class Key {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+
+        Key(File file) {
+            path = file.getAbsolutePath();
+            lastModified = file.lastModified();
+            length = file.length();
+        }
+
+        public int hashCode() {
+            return path.hashCode() + (int)(lastModified ^ (lastModified >>> 32));
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key)obj;
+            return path.equals(other.path) &&
+                   lastModified == other.lastModified &&
+                   length == other.length;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package sun.misc;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A small cache, shared by all threads, that keeps the recently used
+ * values of a bounded number.  It is meant for values that are
+ * expensive to create and safe to hand to any caller, such as the
+ * patterns compiled by the regular expression methods of String.
+ *
+ * <p>Recency is approximated by the CLOCK, or second-chance, algorithm.
+ * The cache is a ConcurrentHashMap from key to an entry holding the
+ * value and a "referenced" bit, so lookups take no locks.  A hit only
+ * sets the bit of its entry, and only when it is not set already, so
+ * that hits on a popular entry by many threads do not keep writing to
+ * shared memory.  The entries are also kept in a ring of maxSize
+ * slots.  When a put finds the ring full, a hand sweeps it from where
+ * it last stopped: an entry whose bit is set has the bit cleared and
+ * is passed over, and the first entry whose bit is clear is replaced.
+ * Puts are serialized by a lock, but are only done after a miss, which
+ * has typically paid for a creation that costs far more.
+ */
+
+public final class ConcurrentLRUCache<K,V> {
+
+    private static final class Entry<K,V> {
+        final K key;
+        final V value;
+        volatile boolean referenced;
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentHashMap<K,Entry<K,V>> map;
+
+    /** The ring of entries, in the order of their slots; guarded by this. */
+    private final Entry<K,V>[] ring;
+
+    /** The number of slots in use; guarded by this. */
+    private int count;
+
+    /** The slot at which the next sweep starts; guarded by this. */
+    private int hand;
+
+    /**
+     * Creates a cache that keeps at most maxSize values.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache(int maxSize) {
+        this.map = new ConcurrentHashMap<K,Entry<K,V>>(maxSize * 2);
+        this.ring = (Entry<K,V>[]) new Entry[maxSize];
+    }
+
+    /**
+     * Returns the value cached for the given key, or null if there is
+     * none.
+     */
+    public V get(K key) {
+        Entry<K,V> e = map.get(key);
+        if (e == null)
+            return null;
+        if (!e.referenced)
+            e.referenced = true;
+        return e.value;
+    }
+
+    /**
+     * Caches the given value for the given key, replacing a value that
+     * has not been used recently if the cache is full.  If a value is
+     * already cached for the key, as when two threads miss on the same
+     * key at once, it is kept.
+     */
+    public synchronized void put(K key, V value) {
+        if (map.containsKey(key))
+            return;
+        int i;
+        if (count < ring.length) {
+            i = count++;
+        } else {
+            Entry<K,V> victim;
+            while ((victim = ring[hand]).referenced) {
+                victim.referenced = false;
+                hand = (hand + 1) % ring.length;
+            }
+            map.remove(victim.key, victim);
+            i = hand;
+            hand = (hand + 1) % ring.length;
+        }
+        Entry<K,V> e = new Entry<K,V>(key, value);
+        ring[i] = e;
+        map.put(key, e);
+    }
+}
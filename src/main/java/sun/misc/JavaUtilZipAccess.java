@@ -0,0 +1,18 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package sun.misc;
+
+import java.util.zip.ZipFile;
+
+public interface JavaUtilZipAccess {
+    /**
+     * Returns the names of the entries of the zip file whose names begin
+     * with "META-INF/", ignoring case, or null if there are none.
+     */
+    String[] getMetaInfEntryNames(ZipFile zip);
+}
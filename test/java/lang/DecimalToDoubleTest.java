@@ -0,0 +1,214 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary Double.parseDouble rounds decimals correctly in the hard
+ *          cases: halfway between two doubles, near the subnormal and
+ *          overflow boundaries, and with long digit strings
+ * @run main DecimalToDoubleTest
+ */
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+public class DecimalToDoubleTest {
+
+    private static int failCount = 0;
+
+    private static final Random rnd = new Random(20100715L);
+
+    // Decimals and the bits of the doubles nearest to them
+    private static final Object[][] cases = {
+        // Halfway between two doubles, which round to the even one
+        { "9007199254740993", 0x4340000000000000L },
+        { "9007199254740995", 0x4340000000000002L },
+        { "900719925474099.3e1", 0x4340000000000000L },
+        { "9.007199254740993e15", 0x4340000000000000L },
+        { "18014398509481986", 0x4350000000000000L },
+        { "18014398509481990", 0x4350000000000002L },
+        { "1.00000000000000011102230246251565404236316680908203125",
+          0x3ff0000000000000L },
+        { "1.00000000000000033306690738754696212708950042724609375",
+          0x3ff0000000000002L },
+
+        // Just off halfway, decided by a digit past the nineteenth
+        { "9007199254740993.0000000000000000001", 0x4340000000000001L },
+        { "9007199254740992.9999999999999999999", 0x4340000000000000L },
+        { "1.00000000000000011102230246251565404236316680908203124",
+          0x3ff0000000000000L },
+        { "1.00000000000000011102230246251565404236316680908203126",
+          0x3ff0000000000001L },
+
+        // Significands at and beyond the range of a long
+        { "123456789012345678", 0x437b69b4ba630f35L },
+        { "1234567890123456789", 0x43b12210f47de981L },
+        { "12345678901234567891", 0x43e56a95319d63e1L },
+        { "9223372036854775807", 0x43e0000000000000L },
+        { "9223372036854775808", 0x43e0000000000000L },
+        { "18446744073709551615", 0x43f0000000000000L },
+        { "1.8446744073709551615e19", 0x43f0000000000000L },
+        { "0.00000000000000000000000000000001234567890123456789012",
+          0x3950068e359dd3b0L },
+
+        // Inexact in double arithmetic
+        { "0.1", 0x3fb999999999999aL },
+        { "0.3", 0x3fd3333333333333L },
+        { "1e23", 0x44b52d02c7e14af6L },
+        { "8.41e21", 0x447c7e83209e90b2L },
+
+        // Subnormals, and the boundary with the normal doubles
+        { "4.9e-324", 0x0000000000000001L },
+        { "5e-324", 0x0000000000000001L },
+        { "2.4703282292062327e-324", 0x0000000000000000L },
+        { "2.4703282292062328e-324", 0x0000000000000001L },
+        { "7.4109846876186981e-324", 0x0000000000000001L },
+        { "7.4109846876186982e-324", 0x0000000000000002L },
+        { "3.0540412816053e-320", 0x0000000000001825L },
+        { "2.2250738585072011e-308", 0x000fffffffffffffL },
+        { "2.2250738585072012e-308", 0x0010000000000000L },
+        { "2.2250738585072014e-308", 0x0010000000000000L },
+        { "2.22507385850720113605740979670913197593481954635164564e-308",
+          0x000fffffffffffffL },
+        { "4.4501477170144022e-308", 0x001fffffffffffffL },
+        { "4.4501477170144023e-308", 0x001fffffffffffffL },
+        { "1e-400", 0x0000000000000000L },
+
+        // The overflow boundary
+        { "1.7976931348623157e308", 0x7fefffffffffffffL },
+        { "1.7976931348623158e308", 0x7fefffffffffffffL },
+        { "1.7976931348623159e308", 0x7ff0000000000000L },
+        { "1e400", 0x7ff0000000000000L },
+    };
+
+    public static void main(String[] args) throws Exception {
+        for (Object[] c : cases) {
+            String s = (String) c[0];
+            long bits = ((Long) c[1]).longValue();
+            check(s, bits);
+            check("-" + s, bits | Long.MIN_VALUE);
+            check("+" + s, bits);
+            check("  " + s + "d ", bits);
+        }
+        integerHalfways();
+        halfways();
+        ranges();
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    private static void check(String s, long expected) {
+        long bits = Double.doubleToRawLongBits(Double.parseDouble(s));
+        if (bits != expected) {
+            failCount++;
+            System.err.println(s + ": expected " + Long.toHexString(expected) +
+                               " but got " + Long.toHexString(bits));
+        }
+    }
+
+    /*
+     * The decimals halfway between d and the next double, and just above
+     * and below; d must be finite and positive, and the next double too.
+     */
+    private static void checkHalfway(double d, String form) {
+        double next = Math.nextUp(d);
+        BigDecimal lo = new BigDecimal(d);
+        BigDecimal mid = lo.add(new BigDecimal(next)).divide(BigDecimal.valueOf(2));
+        BigDecimal tiny = BigDecimal.ONE.movePointLeft(mid.scale() + 3);
+        long loBits = Double.doubleToRawLongBits(d);
+        long hiBits = Double.doubleToRawLongBits(next);
+        check(format(mid, form), ((loBits & 1) == 0) ? loBits : hiBits);
+        check(format(mid.add(tiny), form), hiBits);
+        check(format(mid.subtract(tiny), form), loBits);
+    }
+
+    private static String format(BigDecimal x, String form) {
+        if (form.equals("plain"))
+            return x.toPlainString();
+        if (form.equals("engineering"))
+            return x.toEngineeringString();
+        return x.toString();
+    }
+
+    /*
+     * Halfway cases of nineteen digits or fewer, between doubles from
+     * 2^53 to 2^63, which are integers: the decimals are short enough to
+     * be converted without falling back to the slow path, when it can
+     * decide them.
+     */
+    private static void integerHalfways() {
+        for (int i = 0; i < 20000; i++) {
+            long x = rnd.nextLong() >>> (1 + rnd.nextInt(10));
+            if (x < (1L << 53))
+                continue;
+            double d = (double) x;
+            checkHalfway(d, "plain");
+            checkHalfway(d, "scientific");
+        }
+    }
+
+    /*
+     * Halfway cases throughout the range of doubles, subnormal ones
+     * included, whose exact decimals run to hundreds of digits.
+     */
+    private static void halfways() {
+        double[] special = {
+            Double.MIN_VALUE, 2 * Double.MIN_VALUE, 3 * Double.MIN_VALUE,
+            Double.MIN_NORMAL - Double.MIN_VALUE,
+            Double.MIN_NORMAL, Math.nextUp(Double.MIN_NORMAL),
+            0.5, 1.0, 1.5, 1e15, 1e22, 1e23,
+            Math.nextAfter(Double.MAX_VALUE, 0)
+        };
+        for (double d : special) {
+            checkHalfway(d, "plain");
+            checkHalfway(d, "scientific");
+        }
+        for (int i = 0; i < 5000; i++) {
+            double d = Double.longBitsToDouble(rnd.nextLong() >>> 1);
+            if (Double.isNaN(d) || d >= Double.MAX_VALUE)
+                continue;
+            checkHalfway(d, (i % 2 == 0) ? "scientific" : "engineering");
+        }
+        // Halfway between the largest double and 2^1024 rounds up, to
+        // infinity
+        BigDecimal max = new BigDecimal(Double.MAX_VALUE);
+        BigDecimal ulp = new BigDecimal(Math.ulp(Double.MAX_VALUE));
+        BigDecimal mid = max.add(ulp.divide(BigDecimal.valueOf(2)));
+        BigDecimal tiny = BigDecimal.ONE.movePointLeft(3);
+        check(mid.toString(), 0x7ff0000000000000L);
+        check(mid.subtract(tiny).toString(), 0x7fefffffffffffffL);
+        // Halfway between zero and the smallest subnormal rounds to zero
+        mid = new BigDecimal(Double.MIN_VALUE).divide(BigDecimal.valueOf(2));
+        tiny = BigDecimal.ONE.movePointLeft(mid.scale() + 3);
+        check(mid.toString(), 0L);
+        check(mid.add(tiny).toString(), 1L);
+    }
+
+    // Parsing part of a sequence gives the same bits as the whole
+    private static void ranges() {
+        for (Object[] c : cases) {
+            String s = (String) c[0];
+            long bits = ((Long) c[1]).longValue();
+            StringBuilder sb = new StringBuilder("x,");
+            sb.append(s).append(",9e9");
+            double d = Double.parseDouble(sb, 2, 2 + s.length());
+            if (Double.doubleToRawLongBits(d) != bits) {
+                failCount++;
+                System.err.println("range " + sb + ": expected " +
+                                   Long.toHexString(bits) + " but got " +
+                                   Double.toHexString(d));
+            }
+        }
+        try {
+            Double.parseDouble("1.5e", 0, 4);
+            failCount++;
+            System.err.println("range 1.5e: no NumberFormatException");
+        } catch (NumberFormatException e) {
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary Addition, subtraction and multiplication of BigDecimals whose
+ *          unscaled values fit in a long give the exactly rounded results
+ *          in every rounding mode, including products that overflow a long
+ * @run main BigDecimalCompactTest
+ */
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+public class BigDecimalCompactTest {
+
+    private static int failCount = 0;
+
+    private static final long[] values = {
+        0L, 1L, 2L, 5L, 9L, 10L, 15L, 25L, 45L, 125L, 99999L,
+        999999999L, 1000000000L, 3037000499L, 3037000500L,
+        4294967295L, 4294967296L, 123456789012345678L,
+        500000000000000000L, 999999999999999999L, 1000000000000000000L,
+        4611686018427387904L, 5000000000000000005L,
+        Long.MAX_VALUE - 1, Long.MAX_VALUE, Long.MIN_VALUE + 1
+    };
+
+    private static final int[] scales = { 0, 1, 2, 18, 40, -3, -20 };
+
+    private static final int[] precisions = {
+        0, 1, 2, 3, 9, 16, 17, 18, 19, 20, 25, 40
+    };
+
+    public static void main(String[] args) throws Exception {
+        Random rnd = new Random(20100701L);
+        long[] operands = new long[values.length * 2 + 20];
+        int n = 0;
+        for (long v : values) {
+            operands[n++] = v;
+            operands[n++] = -v;
+        }
+        while (n < operands.length)
+            operands[n++] = rnd.nextLong() >> rnd.nextInt(64);
+
+        for (long x : operands) {
+            for (long y : operands) {
+                BigDecimal a = BigDecimal.valueOf(x, scales[rnd.nextInt(scales.length)]);
+                BigDecimal b = BigDecimal.valueOf(y, scales[rnd.nextInt(scales.length)]);
+                exact(a, b);
+                for (int p : precisions) {
+                    for (RoundingMode mode : RoundingMode.values()) {
+                        rounded(a, b, new MathContext(p, mode));
+                    }
+                }
+            }
+        }
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    /*
+     * Rounds u * 10^-scale to the precision of mc by dividing u by a
+     * power of ten, as the specification describes: digits are dropped
+     * until the precision is met, and once more if rounding carried into
+     * a new digit.
+     */
+    private static BigDecimal round(BigInteger u, int scale, MathContext mc) {
+        int p = mc.getPrecision();
+        while (p > 0 && digits(u) > p) {
+            int drop = digits(u) - p;
+            u = divideAndRound(u, BigInteger.TEN.pow(drop),
+                               mc.getRoundingMode());
+            scale -= drop;
+        }
+        return new BigDecimal(u, scale);
+    }
+
+    private static int digits(BigInteger u) {
+        return u.abs().toString().length();
+    }
+
+    private static BigInteger divideAndRound(BigInteger u, BigInteger d,
+                                             RoundingMode mode) {
+        BigInteger[] qr = u.divideAndRemainder(d);
+        BigInteger q = qr[0];
+        if (qr[1].signum() == 0)
+            return q;
+        int sign = u.signum();
+        int half = qr[1].abs().shiftLeft(1).compareTo(d);
+        boolean increment;
+        switch (mode) {
+        case UP:
+            increment = true;
+            break;
+        case DOWN:
+            increment = false;
+            break;
+        case CEILING:
+            increment = sign > 0;
+            break;
+        case FLOOR:
+            increment = sign < 0;
+            break;
+        case HALF_UP:
+            increment = half >= 0;
+            break;
+        case HALF_DOWN:
+            increment = half > 0;
+            break;
+        case HALF_EVEN:
+            increment = half > 0 || (half == 0 && q.testBit(0));
+            break;
+        default:
+            throw new ArithmeticException("Rounding necessary");
+        }
+        return increment ? q.add(BigInteger.valueOf(sign)) : q;
+    }
+
+    private static BigInteger aligned(BigDecimal x, int scale) {
+        return x.unscaledValue().multiply(BigInteger.TEN.pow(scale - x.scale()));
+    }
+
+    private static void check(String op, BigDecimal a, BigDecimal b,
+                              MathContext mc, BigDecimal expected,
+                              BigDecimal actual) {
+        if (!expected.equals(actual)) {
+            failCount++;
+            System.err.println(a + " " + op + " " + b + " " + mc +
+                               ": expected " + expected + " but got " + actual);
+        }
+    }
+
+    // Checks an operation that may throw, as it does with UNNECESSARY
+    private static void check(String op, BigDecimal a, BigDecimal b,
+                              MathContext mc, BigInteger u, int scale,
+                              BigDecimal actual, ArithmeticException thrown) {
+        BigDecimal expected;
+        try {
+            expected = round(u, scale, mc);
+        } catch (ArithmeticException e) {
+            if (thrown == null) {
+                failCount++;
+                System.err.println(a + " " + op + " " + b + " " + mc +
+                                   ": expected ArithmeticException but got " +
+                                   actual);
+            }
+            return;
+        }
+        if (thrown != null) {
+            failCount++;
+            System.err.println(a + " " + op + " " + b + " " + mc +
+                               ": expected " + expected + " but got " + thrown);
+            return;
+        }
+        check(op, a, b, mc, expected, actual);
+    }
+
+    private static void exact(BigDecimal a, BigDecimal b) {
+        int scale = Math.max(a.scale(), b.scale());
+        BigInteger x = aligned(a, scale), y = aligned(b, scale);
+        check("+", a, b, MathContext.UNLIMITED,
+              new BigDecimal(x.add(y), scale), a.add(b));
+        check("-", a, b, MathContext.UNLIMITED,
+              new BigDecimal(x.subtract(y), scale), a.subtract(b));
+        check("*", a, b, MathContext.UNLIMITED,
+              new BigDecimal(a.unscaledValue().multiply(b.unscaledValue()),
+                             a.scale() + b.scale()),
+              a.multiply(b));
+    }
+
+    private static void rounded(BigDecimal a, BigDecimal b, MathContext mc) {
+        // The results when an operand is zero follow the rules for the
+        // preferred scale rather than plain rounding; only their values
+        // are checked
+        boolean zero = a.signum() == 0 || b.signum() == 0;
+        int scale = Math.max(a.scale(), b.scale());
+        BigInteger x = aligned(a, scale), y = aligned(b, scale);
+
+        BigDecimal r = null;
+        ArithmeticException e = null;
+        try {
+            r = a.add(b, mc);
+        } catch (ArithmeticException ex) {
+            e = ex;
+        }
+        if (zero)
+            checkValue("+", a, b, mc, a.add(b), r, e);
+        else
+            check("+", a, b, mc, x.add(y), scale, r, e);
+
+        r = null;
+        e = null;
+        try {
+            r = a.subtract(b, mc);
+        } catch (ArithmeticException ex) {
+            e = ex;
+        }
+        if (zero)
+            checkValue("-", a, b, mc, a.subtract(b), r, e);
+        else
+            check("-", a, b, mc, x.subtract(y), scale, r, e);
+
+        r = null;
+        e = null;
+        try {
+            r = a.multiply(b, mc);
+        } catch (ArithmeticException ex) {
+            e = ex;
+        }
+        check("*", a, b, mc, a.unscaledValue().multiply(b.unscaledValue()),
+              a.scale() + b.scale(), r, e);
+    }
+
+    private static void checkValue(String op, BigDecimal a, BigDecimal b,
+                                   MathContext mc, BigDecimal exact,
+                                   BigDecimal actual,
+                                   ArithmeticException thrown) {
+        BigDecimal expected;
+        try {
+            expected = round(exact.unscaledValue(), exact.scale(), mc);
+        } catch (ArithmeticException e) {
+            if (thrown == null) {
+                failCount++;
+                System.err.println(a + " " + op + " " + b + " " + mc +
+                                   ": expected ArithmeticException but got " +
+                                   actual);
+            }
+            return;
+        }
+        if (thrown != null || expected.compareTo(actual) != 0) {
+            failCount++;
+            System.err.println(a + " " + op + " " + b + " " + mc +
+                               ": expected " + expected + " but got " +
+                               (thrown != null ? thrown : actual));
+        }
+    }
+}
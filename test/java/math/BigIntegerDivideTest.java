@@ -0,0 +1,271 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary Burnikel-Ziegler division and the recursive Schoenhage radix
+ *          conversions give the results of the schoolbook algorithms on
+ *          both sides of their thresholds
+ * @run main/timeout=120 BigIntegerDivideTest
+ */
+
+import java.math.BigInteger;
+import java.util.Random;
+
+public class BigIntegerDivideTest {
+
+    private static int failCount = 0;
+
+    private static final Random rnd = new Random(20100615L);
+
+    // The thresholds of BigInteger, in ints of magnitude
+    private static final int BURNIKEL_ZIEGLER_THRESHOLD = 80;
+    private static final int BURNIKEL_ZIEGLER_OFFSET = 40;
+    private static final int SCHOENHAGE_BASE_CONVERSION_THRESHOLD = 20;
+
+    // Dividends that much longer than the divisor are divided by the
+    // schoolbook algorithm
+    private static final int PIECE = BURNIKEL_ZIEGLER_OFFSET - 8;
+
+    public static void main(String[] args) throws Exception {
+        divide();
+        divideSpecial();
+        radixConversion();
+        radixSpecial();
+        benchmark();
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    /*
+     * Returns a positive number of the given number of ints of magnitude.
+     * Every other number has long runs of one bits.
+     */
+    private static BigInteger random(int ints) {
+        if (rnd.nextBoolean())
+            return new BigInteger(ints * 32, rnd).setBit(ints * 32 - 1);
+        BigInteger x = BigInteger.ONE.shiftLeft(ints * 32)
+            .subtract(BigInteger.ONE);
+        return x.xor(BigInteger.ONE.shiftLeft(rnd.nextInt(ints * 32 - 1)));
+    }
+
+    private static BigInteger randomSign(BigInteger x) {
+        return rnd.nextBoolean() ? x.negate() : x;
+    }
+
+    /*
+     * Divides the magnitudes by long division in pieces of PIECE ints, so
+     * that each step divides a number at most PIECE ints longer than the
+     * divisor, which is done by the schoolbook algorithm.
+     */
+    private static BigInteger[] schoolbook(BigInteger a, BigInteger b) {
+        BigInteger x = a.abs(), y = b.abs();
+        int bits = PIECE * 32;
+        int pieces = (x.bitLength() + bits - 1) / bits;
+        BigInteger mask = BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE);
+        BigInteger q = BigInteger.ZERO, r = BigInteger.ZERO;
+        for (int i = pieces - 1; i >= 0; i--) {
+            r = r.shiftLeft(bits).or(x.shiftRight(i * bits).and(mask));
+            BigInteger[] qr = r.divideAndRemainder(y);
+            q = q.shiftLeft(bits).or(qr[0]);
+            r = qr[1];
+        }
+        if (a.signum() * b.signum() < 0)
+            q = q.negate();
+        if (a.signum() < 0)
+            r = r.negate();
+        return new BigInteger[] { q, r };
+    }
+
+    private static void checkDivide(BigInteger a, BigInteger b) {
+        BigInteger[] expected = schoolbook(a, b);
+        BigInteger[] qr = a.divideAndRemainder(b);
+        String what = a.bitLength() + " by " + b.bitLength() + " bits";
+        if (!expected[0].equals(qr[0]) || !expected[1].equals(qr[1])) {
+            failCount++;
+            System.err.println("divideAndRemainder of " + what +
+                               ": wrong result");
+        }
+        if (!expected[0].equals(a.divide(b))) {
+            failCount++;
+            System.err.println("divide of " + what + ": wrong quotient");
+        }
+        if (!expected[1].equals(a.remainder(b))) {
+            failCount++;
+            System.err.println("remainder of " + what + ": wrong remainder");
+        }
+        if (!qr[0].multiply(b).add(qr[1]).equals(a)) {
+            failCount++;
+            System.err.println("divideAndRemainder of " + what +
+                               ": q * b + r != a");
+        }
+    }
+
+    private static void divide() {
+        int[] divisors = {
+            BURNIKEL_ZIEGLER_THRESHOLD - 1, BURNIKEL_ZIEGLER_THRESHOLD,
+            BURNIKEL_ZIEGLER_THRESHOLD + 1, 2 * BURNIKEL_ZIEGLER_THRESHOLD - 1,
+            2 * BURNIKEL_ZIEGLER_THRESHOLD + 1, 5 * BURNIKEL_ZIEGLER_THRESHOLD
+        };
+        int[] extra = {
+            BURNIKEL_ZIEGLER_OFFSET - 1, BURNIKEL_ZIEGLER_OFFSET,
+            BURNIKEL_ZIEGLER_OFFSET + 1, 100, 333, 1000
+        };
+        for (int n : divisors) {
+            for (int m : extra) {
+                BigInteger b = randomSign(random(n));
+                BigInteger a = randomSign(random(n + m));
+                checkDivide(a, b);
+            }
+        }
+    }
+
+    // Dividends that are multiples of the divisor, or a multiple less one,
+    // and divisors that are powers of two or have all bits set, so that
+    // the estimated quotient digits need correcting
+    private static void divideSpecial() {
+        int n = BURNIKEL_ZIEGLER_THRESHOLD + 7;
+        BigInteger pow = BigInteger.ONE.shiftLeft(n * 32 - 1);
+        BigInteger ones = BigInteger.ONE.shiftLeft(n * 32)
+            .subtract(BigInteger.ONE);
+        BigInteger[] divisors = { random(n), pow, ones, pow.add(BigInteger.ONE) };
+        for (BigInteger b : divisors) {
+            BigInteger q = random(3 * n);
+            BigInteger a = q.multiply(b);
+            checkDivide(a, b);
+            checkDivide(a.subtract(BigInteger.ONE), b);
+            checkDivide(a.add(b).subtract(BigInteger.ONE), b);
+            checkDivide(a.negate(), b);
+            checkDivide(b.multiply(b), b);
+            checkDivide(b.pow(5).subtract(BigInteger.ONE), b);
+        }
+    }
+
+    /*
+     * Converts a magnitude to a string by repeatedly dividing out the
+     * largest power of the radix that fits in an int, which is done by
+     * the schoolbook algorithm.
+     */
+    private static String schoolbookToString(BigInteger x, int radix) {
+        if (x.signum() == 0)
+            return "0";
+        int k = 1;
+        long p = radix;
+        while (p * radix <= Integer.MAX_VALUE) {
+            p *= radix;
+            k++;
+        }
+        BigInteger d = BigInteger.valueOf(p);
+        StringBuilder sb = new StringBuilder();
+        BigInteger u = x.abs();
+        while (u.signum() != 0) {
+            BigInteger[] qr = u.divideAndRemainder(d);
+            String s = Integer.toString(qr[1].intValue(), radix);
+            u = qr[0];
+            sb.insert(0, s);
+            if (u.signum() != 0) {
+                for (int i = s.length(); i < k; i++)
+                    sb.insert(0, '0');
+            }
+        }
+        if (x.signum() < 0)
+            sb.insert(0, '-');
+        return sb.toString();
+    }
+
+    private static void checkRadix(BigInteger x, int radix) {
+        String expected = schoolbookToString(x, radix);
+        String actual = x.toString(radix);
+        if (!expected.equals(actual)) {
+            failCount++;
+            System.err.println("toString(" + radix + ") of " + x.bitLength() +
+                               " bits: wrong digits");
+        }
+        BigInteger y = new BigInteger(expected, radix);
+        if (!x.equals(y)) {
+            failCount++;
+            System.err.println("BigInteger(String, " + radix + ") of " +
+                               x.bitLength() + " bits: wrong value");
+        }
+    }
+
+    private static void radixConversion() {
+        int t = SCHOENHAGE_BASE_CONVERSION_THRESHOLD;
+        int[] sizes = { t - 1, t, t + 1, 2 * t - 1, 2 * t + 1, 4 * t + 3,
+                        100, 1000 };
+        int[] radixes = { 2, 3, 7, 8, 10, 16, 31, 36 };
+        for (int n : sizes) {
+            for (int radix : radixes) {
+                checkRadix(randomSign(random(n)), radix);
+            }
+        }
+    }
+
+    // Powers of the radix and numbers next to them, and numbers whose
+    // lower halves begin with zero digits, which the recursive conversions
+    // must pad
+    private static void radixSpecial() {
+        int[] radixes = { 2, 10, 16, 36 };
+        for (int radix : radixes) {
+            BigInteger r = BigInteger.valueOf(radix);
+            for (int e = 100; e <= 5000; e *= 7) {
+                BigInteger pow = r.pow(e);
+                checkRadix(pow, radix);
+                checkRadix(pow.subtract(BigInteger.ONE), radix);
+                checkRadix(pow.add(BigInteger.ONE), radix);
+                checkRadix(pow.negate(), radix);
+                checkRadix(pow.multiply(r.pow(e / 2)).add(r.pow(e / 3)), radix);
+                checkRadix(pow.add(BigInteger.valueOf(radix - 1)), radix);
+            }
+        }
+        if (!BigInteger.ZERO.toString().equals("0")) {
+            failCount++;
+            System.err.println("toString of zero: wrong digits");
+        }
+    }
+
+    /*
+     * Times division and decimal conversion against the schoolbook
+     * algorithms, after a first round that warms up the compiler.  The
+     * times are printed only, as they depend on the machine.
+     */
+    private static void benchmark() {
+        int[] sizes = { BURNIKEL_ZIEGLER_THRESHOLD,
+                        4 * BURNIKEL_ZIEGLER_THRESHOLD,
+                        16 * BURNIKEL_ZIEGLER_THRESHOLD };
+        for (int round = 0; round < 2; round++) {
+            for (int n : sizes) {
+                BigInteger a = random(2 * n);
+                BigInteger b = random(n);
+                int reps = Math.max(2, 2000000 / (n * n));
+                long t0 = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    a.divideAndRemainder(b);
+                long t1 = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    schoolbook(a, b);
+                long t2 = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    a.toString();
+                long t3 = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    schoolbookToString(a, 10);
+                long t4 = System.nanoTime();
+                if (round > 0)
+                    System.out.println(n + " ints: divide " +
+                                       (t1 - t0) / reps / 1000 +
+                                       " us, schoolbook " +
+                                       (t2 - t1) / reps / 1000 +
+                                       " us; toString " +
+                                       (t3 - t2) / reps / 1000 +
+                                       " us, schoolbook " +
+                                       (t4 - t3) / reps / 1000 + " us");
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary Karatsuba and Toom-Cook multiplication and squaring give the
+ *          products of schoolbook multiplication on both sides of their
+ *          thresholds
+ * @run main/timeout=120 BigIntegerMultiplyTest
+ */
+
+import java.math.BigInteger;
+import java.util.Random;
+
+public class BigIntegerMultiplyTest {
+
+    private static int failCount = 0;
+
+    private static final Random rnd = new Random(20100601L);
+
+    // The thresholds of BigInteger, in ints of magnitude
+    private static final int KARATSUBA_THRESHOLD = 80;
+    private static final int TOOM_COOK_THRESHOLD = 240;
+    private static final int KARATSUBA_SQUARE_THRESHOLD = 128;
+    private static final int TOOM_COOK_SQUARE_THRESHOLD = 216;
+
+    // Pieces that small are multiplied by the schoolbook algorithm
+    private static final int PIECE = 32;
+
+    public static void main(String[] args) throws Exception {
+        multiply();
+        unbalanced();
+        square();
+        special();
+        benchmark();
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    /*
+     * Returns a number of the given number of ints of magnitude.  Every
+     * other number has long runs of one bits, which carries propagate
+     * through, and its sign is random.
+     */
+    private static BigInteger random(int ints) {
+        BigInteger x;
+        if (rnd.nextBoolean()) {
+            x = new BigInteger(ints * 32, rnd).setBit(ints * 32 - 1);
+        } else {
+            x = BigInteger.ONE.shiftLeft(ints * 32).subtract(BigInteger.ONE);
+            x = x.xor(BigInteger.ONE.shiftLeft(rnd.nextInt(ints * 32 - 1)));
+        }
+        return rnd.nextBoolean() ? x.negate() : x;
+    }
+
+    /*
+     * Multiplies by splitting both numbers into pieces of PIECE ints, so
+     * that every product of two pieces is a schoolbook multiplication.
+     */
+    private static BigInteger schoolbook(BigInteger x, BigInteger y) {
+        BigInteger a = x.abs(), b = y.abs();
+        BigInteger mask = BigInteger.ONE.shiftLeft(PIECE * 32)
+            .subtract(BigInteger.ONE);
+        BigInteger sum = BigInteger.ZERO;
+        for (int i = 0; a.shiftRight(i * PIECE * 32).signum() != 0; i++) {
+            BigInteger ai = a.shiftRight(i * PIECE * 32).and(mask);
+            for (int j = 0; b.shiftRight(j * PIECE * 32).signum() != 0; j++) {
+                BigInteger bj = b.shiftRight(j * PIECE * 32).and(mask);
+                sum = sum.add(ai.multiply(bj).shiftLeft((i + j) * PIECE * 32));
+            }
+        }
+        return (x.signum() * y.signum() < 0) ? sum.negate() : sum;
+    }
+
+    // A copy that is not the same object, so that x.multiply(copy(x))
+    // does not square
+    private static BigInteger copy(BigInteger x) {
+        return new BigInteger(x.toByteArray());
+    }
+
+    private static void check(String what, BigInteger x, BigInteger y,
+                              BigInteger expected, BigInteger actual) {
+        if (!expected.equals(actual)) {
+            failCount++;
+            System.err.println(what + " of " + x.bitLength() + " and " +
+                               y.bitLength() + " bits: wrong product");
+        }
+    }
+
+    private static int[] around(int threshold) {
+        return new int[] {
+            threshold - 2, threshold - 1, threshold, threshold + 1,
+            threshold + 2
+        };
+    }
+
+    private static void multiply() {
+        int[][] sizes = {
+            around(KARATSUBA_THRESHOLD), around(TOOM_COOK_THRESHOLD),
+            { 3 * TOOM_COOK_THRESHOLD - 1, 3 * TOOM_COOK_THRESHOLD + 1, 1000 }
+        };
+        for (int[] row : sizes) {
+            for (int n : row) {
+                for (int k = 0; k < 4; k++) {
+                    BigInteger x = random(n);
+                    BigInteger y = random(n + k - 2);
+                    check("multiply", x, y, schoolbook(x, y), x.multiply(y));
+                }
+            }
+        }
+    }
+
+    // One operand below a threshold and the other above it
+    private static void unbalanced() {
+        int[][] pairs = {
+            { KARATSUBA_THRESHOLD - 1, 2 * TOOM_COOK_THRESHOLD },
+            { KARATSUBA_THRESHOLD, TOOM_COOK_THRESHOLD - 1 },
+            { KARATSUBA_THRESHOLD, TOOM_COOK_THRESHOLD },
+            { KARATSUBA_THRESHOLD + 1, 3 * TOOM_COOK_THRESHOLD },
+            { TOOM_COOK_THRESHOLD - 1, TOOM_COOK_THRESHOLD + 1 },
+            { 1, 4 * TOOM_COOK_THRESHOLD },
+            { 2, 4 * TOOM_COOK_THRESHOLD + 1 }
+        };
+        for (int[] p : pairs) {
+            BigInteger x = random(p[0]);
+            BigInteger y = random(p[1]);
+            BigInteger expected = schoolbook(x, y);
+            check("multiply", x, y, expected, x.multiply(y));
+            check("multiply", y, x, expected, y.multiply(x));
+        }
+    }
+
+    private static void square() {
+        int[][] sizes = {
+            around(KARATSUBA_SQUARE_THRESHOLD),
+            around(TOOM_COOK_SQUARE_THRESHOLD),
+            { 3 * TOOM_COOK_SQUARE_THRESHOLD + 1, 1000 }
+        };
+        for (int[] row : sizes) {
+            for (int n : row) {
+                BigInteger x = random(n);
+                BigInteger expected = schoolbook(x, x);
+                check("square", x, x, expected, x.multiply(x));
+                check("pow", x, x, expected, x.pow(2));
+                check("multiply", x, x, expected, x.multiply(copy(x)));
+            }
+        }
+    }
+
+    // Zero, one, powers of two and numbers whose pieces are all zero but
+    // one, for which the intermediate results of the splits are zero
+    private static void special() {
+        int n = 3 * TOOM_COOK_THRESHOLD;
+        BigInteger big = random(n);
+        BigInteger pow = BigInteger.ONE.shiftLeft(n * 32 - 1);
+        BigInteger top = BigInteger.valueOf(12345).shiftLeft(n * 32 - 32);
+        BigInteger low = random(KARATSUBA_THRESHOLD).abs().add(
+            BigInteger.ONE.shiftLeft(n * 32));
+        BigInteger[] xs = { BigInteger.ZERO, BigInteger.ONE,
+                            BigInteger.ONE.negate(), pow, top, low, big };
+        for (BigInteger x : xs) {
+            for (BigInteger y : xs) {
+                check("multiply", x, y, schoolbook(x, y), x.multiply(y));
+            }
+            check("square", x, x, schoolbook(x, x), x.multiply(x));
+        }
+    }
+
+    /*
+     * Times multiplication and squaring against the schoolbook algorithm,
+     * after a first round that warms up the compiler.  The times are
+     * printed only, as they depend on the machine.
+     */
+    private static void benchmark() {
+        int[] sizes = { KARATSUBA_THRESHOLD, TOOM_COOK_THRESHOLD,
+                        4 * TOOM_COOK_THRESHOLD, 16 * TOOM_COOK_THRESHOLD };
+        for (int round = 0; round < 2; round++) {
+            for (int n : sizes) {
+                BigInteger x = random(n);
+                BigInteger y = random(n);
+                int reps = Math.max(2, 2000000 / (n * n));
+                long t0 = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    x.multiply(y);
+                long t1 = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    x.multiply(x);
+                long t2 = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    schoolbook(x, y);
+                long t3 = System.nanoTime();
+                if (round > 0)
+                    System.out.println(n + " ints: multiply " +
+                                       (t1 - t0) / reps / 1000 +
+                                       " us, square " +
+                                       (t2 - t1) / reps / 1000 +
+                                       " us, schoolbook " +
+                                       (t3 - t2) / reps / 1000 + " us");
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary LongObjectMap behaves as a HashMap with Long keys through
+ *          colliding keys, backward-shift removal, resizing, iteration
+ *          and serialization
+ * @run main LongObjectMapTest
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LongObjectMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class LongObjectMapTest {
+
+    private static int failCount = 0;
+
+    private static final Random rnd = new Random(20100720L);
+
+    public static void main(String[] args) throws Exception {
+        collisions();
+        randomOperations(1000L);
+        randomOperations(Long.MAX_VALUE);
+        iteratorRemove();
+        resize();
+        serialization();
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    private static void fail(String msg) {
+        failCount++;
+        System.err.println(msg);
+    }
+
+    /*
+     * Returns keys that differ from base only by the same bits in both
+     * halves, so that folding the halves together gives the same hash for
+     * all of them, whatever the capacity of the table.
+     */
+    private static long[] colliding(long base, int n) {
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = base ^ (0x100000001L * i);
+        return keys;
+    }
+
+    // Compares the map with the model through every part of its API
+    private static void verify(String what, LongObjectMap<String> m,
+                               Map<Long,String> model) {
+        if (m.size() != model.size())
+            fail(what + ": size " + m.size() + " instead of " + model.size());
+        if (m.isEmpty() != model.isEmpty())
+            fail(what + ": wrong isEmpty");
+        for (Map.Entry<Long,String> e : model.entrySet()) {
+            long k = e.getKey().longValue();
+            if (!m.containsKey(k))
+                fail(what + ": key " + k + " missing");
+            else if (!eq(m.get(k), e.getValue()))
+                fail(what + ": key " + k + " mapped to " + m.get(k));
+        }
+        Map<Long,String> seen = new HashMap<Long,String>();
+        LongObjectMap.EntryIterator<String> it = m.entryIterator();
+        while (it.hasNext()) {
+            it.advance();
+            if (seen.containsKey(it.key()))
+                fail(what + ": key " + it.key() + " iterated twice");
+            seen.put(it.key(), it.value());
+        }
+        if (!seen.equals(model))
+            fail(what + ": iteration gave " + seen);
+        long[] keys = m.keys();
+        Set<Long> keySet = new HashSet<Long>();
+        for (long k : keys)
+            keySet.add(k);
+        if (keys.length != model.size() || !keySet.equals(model.keySet()))
+            fail(what + ": wrong keys()");
+        if (m.values().size() != model.size())
+            fail(what + ": wrong values()");
+        if (m.hashCode() != model.hashCode())
+            fail(what + ": hashCode " + m.hashCode() + " instead of " +
+                 model.hashCode());
+    }
+
+    private static boolean eq(Object a, Object b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+    private static void put(LongObjectMap<String> m, Map<Long,String> model,
+                            long k, String v) {
+        String old = m.put(k, v);
+        String expected = model.put(k, v);
+        if (!eq(old, expected))
+            fail("put(" + k + ") returned " + old + " instead of " + expected);
+    }
+
+    private static void remove(LongObjectMap<String> m,
+                               Map<Long,String> model, long k) {
+        String old = m.remove(k);
+        String expected = model.remove(k);
+        if (!eq(old, expected))
+            fail("remove(" + k + ") returned " + old + " instead of " +
+                 expected);
+    }
+
+    // A run of colliding keys, with holes punched in its middle, which the
+    // mappings after them must be shifted back over
+    private static void collisions() {
+        long[] bases = { 0L, 1L, -1L, 0x123456789abcdefL, Long.MIN_VALUE };
+        for (long base : bases) {
+            long[] keys = colliding(base, 40);
+            LongObjectMap<String> m = new LongObjectMap<String>(64);
+            Map<Long,String> model = new HashMap<Long,String>();
+            for (long k : keys)
+                put(m, model, k, "v" + k);
+            verify("colliding keys from " + base, m, model);
+
+            for (int i = 1; i < keys.length; i += 3) {
+                remove(m, model, keys[i]);
+                verify("after removing " + keys[i], m, model);
+            }
+            for (int i = keys.length - 1; i >= 0; i -= 2) {
+                remove(m, model, keys[i]);
+                put(m, model, keys[i] ^ Long.MIN_VALUE, null);
+            }
+            verify("after removing from the end", m, model);
+
+            for (long k : keys)
+                remove(m, model, k);
+            verify("after removing all colliding keys", m, model);
+        }
+    }
+
+    private static void randomOperations(long range) {
+        LongObjectMap<String> m = new LongObjectMap<String>();
+        Map<Long,String> model = new HashMap<Long,String>();
+        for (int i = 0; i < 20000; i++) {
+            long k = (range == Long.MAX_VALUE) ? rnd.nextLong()
+                                               : rnd.nextLong() % range;
+            if (rnd.nextInt(10) == 0)
+                k = 0;
+            switch (rnd.nextInt(4)) {
+            case 0:
+            case 1:
+                put(m, model, k, (rnd.nextInt(8) == 0) ? null : "v" + i);
+                break;
+            case 2:
+                remove(m, model, k);
+                break;
+            default:
+                if (m.containsKey(k) != model.containsKey(k) ||
+                    !eq(m.get(k), model.get(k)) ||
+                    !eq(m.getOrDefault(k, "none"),
+                        model.containsKey(k) ? model.get(k) : "none"))
+                    fail("lookup of " + k + " disagrees");
+            }
+            if (i % 1000 == 0)
+                verify("random operations, step " + i, m, model);
+        }
+        verify("random operations", m, model);
+        m.clear();
+        model.clear();
+        verify("clear", m, model);
+    }
+
+    // Removing through the iterator, including mappings whose removal
+    // shifts later mappings of their run back, must return every mapping
+    // exactly once
+    private static void iteratorRemove() {
+        long[][] keySets = { colliding(7L, 50), colliding(-3L, 12) };
+        for (long[] keys : keySets) {
+            LongObjectMap<String> m = new LongObjectMap<String>();
+            Map<Long,String> model = new HashMap<Long,String>();
+            for (long k : keys)
+                put(m, model, k, "v" + k);
+            for (int i = 0; i < 300; i++)
+                put(m, model, rnd.nextLong(), "r" + i);
+            put(m, model, 0L, "zero");
+
+            Set<Long> seen = new HashSet<Long>();
+            LongObjectMap.EntryIterator<String> it = m.entryIterator();
+            int n = 0;
+            while (it.hasNext()) {
+                it.advance();
+                long k = it.key();
+                if (!seen.add(k))
+                    fail("iterator returned " + k + " twice");
+                if (n++ % 2 == 0) {
+                    it.remove();
+                    model.remove(k);
+                } else {
+                    it.setValue("set" + k);
+                    model.put(k, "set" + k);
+                }
+            }
+            if (seen.size() != n || n != keys.length + 301)
+                fail("iterator returned " + n + " mappings");
+            verify("after removing through the iterator", m, model);
+        }
+
+        LongObjectMap<String> m = new LongObjectMap<String>();
+        m.put(1L, "a");
+        m.put(2L, "b");
+        LongObjectMap.EntryIterator<String> it = m.entryIterator();
+        it.advance();
+        m.put(3L, "c");
+        try {
+            it.advance();
+            fail("no ConcurrentModificationException");
+        } catch (ConcurrentModificationException e) {
+        }
+    }
+
+    private static void resize() {
+        int[] capacities = { 0, 1, 2, 3, 16, 100 };
+        float[] loadFactors = { 0.25f, 0.75f, 0.99f };
+        for (int c : capacities) {
+            for (float lf : loadFactors) {
+                LongObjectMap<String> m = new LongObjectMap<String>(c, lf);
+                Map<Long,String> model = new HashMap<Long,String>();
+                for (int i = 0; i < 5000; i++) {
+                    long k = (i % 2 == 0) ? i : rnd.nextLong();
+                    put(m, model, k, "v" + i);
+                }
+                verify("resize from " + c + " at " + lf, m, model);
+                LongObjectMap<String> copy = new LongObjectMap<String>(m);
+                verify("copy", copy, model);
+            }
+        }
+        try {
+            new LongObjectMap<String>(16, 1.0f);
+            fail("load factor 1 accepted");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LongObjectMap<String> serialClone(LongObjectMap<String> m)
+        throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(m);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(
+            new ByteArrayInputStream(bos.toByteArray()));
+        return (LongObjectMap<String>) ois.readObject();
+    }
+
+    private static void serialization() throws Exception {
+        LongObjectMap<String> m = new LongObjectMap<String>(4, 0.5f);
+        Map<Long,String> model = new HashMap<Long,String>();
+        verify("empty, deserialized", serialClone(m), model);
+        put(m, model, 0L, null);
+        put(m, model, -1L, "minus one");
+        put(m, model, Long.MIN_VALUE, "min");
+        put(m, model, Long.MAX_VALUE, null);
+        for (long k : colliding(42L, 30))
+            put(m, model, k, "v" + k);
+        LongObjectMap<String> d = serialClone(m);
+        verify("deserialized", d, model);
+        if (!d.equals(m) || !m.equals(d))
+            fail("deserialized map not equal");
+
+        // The deserialized map must still grow and remove correctly
+        for (int i = 0; i < 1000; i++)
+            put(d, model, rnd.nextLong(), "r" + i);
+        for (long k : colliding(42L, 30))
+            remove(d, model, k);
+        verify("deserialized, then modified", d, model);
+
+        @SuppressWarnings("unchecked")
+        LongObjectMap<String> c = (LongObjectMap<String>) d.clone();
+        c.put(12345L, "only in clone");
+        if (d.containsKey(12345L) && !model.containsKey(12345L))
+            fail("clone shares its table");
+        verify("clone", d, model);
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary LinkedTransferQueue times out transfers and polls, removes
+ *          interior elements and iterates weakly consistently; with a
+ *          benchmark against LinkedBlockingQueue
+ * @run main/timeout=120 LinkedTransferQueueTest
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LinkedTransferQueueTest {
+
+    private static int failCount = 0;
+
+    private static final long SHORT_MILLIS = 50;
+
+    public static void main(String[] args) throws Exception {
+        timeouts();
+        transfer();
+        interiorRemove();
+        concurrentRemove();
+        iteration();
+        benchmark();
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    private static void check(String what, boolean ok) {
+        if (!ok) {
+            failCount++;
+            System.err.println(what + ": failed");
+        }
+    }
+
+    // Waits until a thread is blocked in the queue, or fails after a while
+    private static void awaitWaiting(Thread t) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (t.getState() != Thread.State.WAITING &&
+               t.getState() != Thread.State.TIMED_WAITING) {
+            if (System.currentTimeMillis() > deadline) {
+                check("thread blocks", false);
+                return;
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void timeouts() throws Exception {
+        LinkedTransferQueue<Integer> q = new LinkedTransferQueue<Integer>();
+
+        check("tryTransfer with no consumer", !q.tryTransfer(1));
+        check("tryTransfer leaves nothing", q.isEmpty() && q.size() == 0);
+
+        long t0 = System.nanoTime();
+        boolean transferred = q.tryTransfer(2, SHORT_MILLIS,
+                                            TimeUnit.MILLISECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        check("timed tryTransfer with no consumer", !transferred);
+        check("timed tryTransfer waits", elapsed >= SHORT_MILLIS);
+        check("timed tryTransfer withdraws its element",
+              q.isEmpty() && !q.contains(2) && q.peek() == null);
+
+        t0 = System.nanoTime();
+        Integer polled = q.poll(SHORT_MILLIS, TimeUnit.MILLISECONDS);
+        elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        check("timed poll of an empty queue", polled == null);
+        check("timed poll waits", elapsed >= SHORT_MILLIS);
+        check("timed poll withdraws its request",
+              !q.hasWaitingConsumer() && q.getWaitingConsumerCount() == 0);
+
+        check("zero timeouts", !q.tryTransfer(3, 0, TimeUnit.SECONDS) &&
+              q.poll(0, TimeUnit.SECONDS) == null && q.isEmpty());
+
+        // A consumer arriving within the timeout takes the element
+        final LinkedTransferQueue<Integer> q2 =
+            new LinkedTransferQueue<Integer>();
+        final AtomicReference<Integer> taken = new AtomicReference<Integer>();
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(SHORT_MILLIS);
+                    taken.set(q2.take());
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        consumer.start();
+        check("timed tryTransfer to a late consumer",
+              q2.tryTransfer(4, 10, TimeUnit.SECONDS));
+        consumer.join();
+        check("late consumer gets the element",
+              taken.get() != null && taken.get().intValue() == 4);
+
+        // A waiting consumer is seen, and takes what tryTransfer offers
+        consumer = new Thread() {
+            public void run() {
+                try {
+                    taken.set(q2.poll(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        consumer.start();
+        awaitWaiting(consumer);
+        check("hasWaitingConsumer", q2.hasWaitingConsumer() &&
+              q2.getWaitingConsumerCount() == 1);
+        check("tryTransfer to a waiting consumer", q2.tryTransfer(5));
+        consumer.join();
+        check("waiting consumer gets the element",
+              taken.get().intValue() == 5 && q2.isEmpty());
+    }
+
+    private static void transfer() throws Exception {
+        final LinkedTransferQueue<Integer> q =
+            new LinkedTransferQueue<Integer>();
+        final AtomicReference<Throwable> error =
+            new AtomicReference<Throwable>();
+
+        // transfer blocks, with its element in the queue, until it is taken
+        Thread producer = new Thread() {
+            public void run() {
+                try {
+                    q.transfer(6);
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        };
+        producer.start();
+        awaitWaiting(producer);
+        check("transfer leaves its element in the queue",
+              q.size() == 1 && q.peek().intValue() == 6);
+        check("transfer waits for a consumer", producer.isAlive());
+        check("element taken", q.take().intValue() == 6);
+        producer.join(10000);
+        check("transfer returns once taken",
+              !producer.isAlive() && error.get() == null);
+
+        // An interrupted transfer withdraws its element
+        producer = new Thread() {
+            public void run() {
+                try {
+                    q.transfer(7);
+                    error.set(new Error("transfer returned"));
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        producer.start();
+        awaitWaiting(producer);
+        producer.interrupt();
+        producer.join(10000);
+        check("interrupted transfer",
+              !producer.isAlive() && error.get() == null);
+        check("interrupted transfer withdraws its element",
+              q.isEmpty() && !q.contains(7));
+    }
+
+    private static List<Integer> drain(LinkedTransferQueue<Integer> q) {
+        List<Integer> list = new ArrayList<Integer>();
+        Integer x;
+        while ((x = q.poll()) != null)
+            list.add(x);
+        return list;
+    }
+
+    private static void interiorRemove() {
+        LinkedTransferQueue<Integer> q = new LinkedTransferQueue<Integer>();
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            q.offer(i);
+            expected.add(i);
+        }
+        for (int i = 1; i < 99; i += 3) {
+            check("remove(" + i + ")", q.remove(Integer.valueOf(i)));
+            expected.remove(Integer.valueOf(i));
+        }
+        check("remove of an absent element", !q.remove(Integer.valueOf(1)) &&
+              !q.remove(Integer.valueOf(1000)) && !q.remove(null));
+        check("remove of the last element", q.remove(Integer.valueOf(99)));
+        expected.remove(Integer.valueOf(99));
+        check("remove of the first element", q.remove(Integer.valueOf(0)));
+        expected.remove(Integer.valueOf(0));
+        check("size after removes", q.size() == expected.size());
+        check("contains after removes",
+              !q.contains(4) && q.contains(5) && !q.contains(99));
+
+        // Elements offered after the removes follow the remaining ones
+        q.offer(100);
+        expected.add(100);
+        check("order after removes", drain(q).equals(expected));
+
+        // Removing every element, from the back, leaves an empty queue
+        for (int i = 0; i < 10; i++)
+            q.offer(i);
+        for (int i = 9; i >= 0; i--)
+            q.remove(Integer.valueOf(i));
+        check("empty after removing all",
+              q.isEmpty() && q.peek() == null && q.poll() == null);
+    }
+
+    // Elements removed by one thread while others poll are each either
+    // removed or polled, exactly once
+    private static void concurrentRemove() throws Exception {
+        final int n = 100000;
+        final LinkedTransferQueue<Integer> q =
+            new LinkedTransferQueue<Integer>();
+        for (int i = 0; i < n; i++)
+            q.offer(i);
+        final int[] seen = new int[n];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final boolean remover = (t == 0);
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (remover) {
+                        for (int i = n - 1; i >= 0; i -= 2) {
+                            if (q.remove(Integer.valueOf(i)))
+                                record(seen, i);
+                        }
+                    } else {
+                        Integer x;
+                        while ((x = q.poll()) != null)
+                            record(seen, x.intValue());
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread t : threads)
+            t.join();
+        int bad = 0;
+        for (int i = 0; i < n; i++)
+            if (seen[i] != 1)
+                bad++;
+        check("concurrent remove and poll (" + bad + " elements wrong)",
+              bad == 0 && q.isEmpty());
+    }
+
+    private static void record(int[] seen, int i) {
+        synchronized (seen) {
+            seen[i]++;
+        }
+    }
+
+    private static void iteration() throws Exception {
+        LinkedTransferQueue<Integer> q = new LinkedTransferQueue<Integer>();
+        for (int i = 0; i < 5; i++)
+            q.offer(i);
+
+        // The element found by hasNext is returned even if it has since
+        // been taken, and elements added before the end are seen
+        Iterator<Integer> it = q.iterator();
+        check("hasNext", it.hasNext());
+        q.poll();
+        q.poll();
+        check("next after poll", it.next().intValue() == 0);
+        check("next skips polled elements", it.next().intValue() == 2);
+        q.offer(5);
+        List<Integer> rest = new ArrayList<Integer>();
+        while (it.hasNext())
+            rest.add(it.next());
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 3; i <= 5; i++)
+            expected.add(i);
+        check("weakly consistent iteration", rest.equals(expected));
+
+        // Iterator.remove unlinks the last element returned
+        it = q.iterator();
+        while (it.hasNext()) {
+            if (it.next().intValue() % 2 == 0)
+                it.remove();
+        }
+        expected.clear();
+        expected.add(3);
+        expected.add(5);
+        check("Iterator.remove", new ArrayList<Integer>(q).equals(expected));
+
+        // Iteration during concurrent offers and polls never fails and
+        // returns elements in queue order, each at most once
+        final LinkedTransferQueue<Integer> q2 =
+            new LinkedTransferQueue<Integer>();
+        final AtomicInteger done = new AtomicInteger();
+        Thread producer = new Thread() {
+            public void run() {
+                for (int i = 0; i < 200000; i++)
+                    q2.offer(i);
+                done.incrementAndGet();
+            }
+        };
+        Thread consumer = new Thread() {
+            public void run() {
+                while (done.get() == 0 || !q2.isEmpty())
+                    q2.poll();
+            }
+        };
+        producer.start();
+        consumer.start();
+        int iterations = 0;
+        boolean ordered = true;
+        while (done.get() == 0 || iterations == 0) {
+            int last = -1;
+            for (Integer x : q2) {
+                if (x.intValue() <= last)
+                    ordered = false;
+                last = x.intValue();
+            }
+            iterations++;
+        }
+        producer.join();
+        consumer.join();
+        check("iteration during offers and polls", ordered);
+    }
+
+    /*
+     * Times producers handing elements to consumers through the queue
+     * against LinkedBlockingQueue, after a first round that warms up the
+     * compiler.  The times are printed only, as they depend on the machine.
+     */
+    private static void benchmark() throws Exception {
+        final int pairs = 2;
+        final int n = 200000;
+        for (int round = 0; round < 2; round++) {
+            long ltq = handoff(new LinkedTransferQueue<Integer>(), pairs, n);
+            long lbq = handoff(new LinkedBlockingQueue<Integer>(), pairs, n);
+            if (round > 0)
+                System.out.println(pairs + " producers and consumers, " + n +
+                                   " elements each: LinkedTransferQueue " +
+                                   ltq + " ms, LinkedBlockingQueue " +
+                                   lbq + " ms");
+        }
+    }
+
+    private static long handoff(final BlockingQueue<Integer> q, int pairs,
+                                final int n) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger received = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < pairs; p++) {
+            threads.add(new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < n; i++)
+                            q.put(i);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            });
+            threads.add(new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < n; i++)
+                            q.take();
+                        received.addAndGet(n);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            });
+        }
+        for (Thread t : threads)
+            t.start();
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread t : threads)
+            t.join();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        check("handoff through " + q.getClass().getName(),
+              received.get() == pairs * n && q.isEmpty());
+        return millis;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary LongAdder, DoubleAdder, LongAccumulator and DoubleAccumulator
+ *          lose no updates under contention, reset and serialize
+ *          correctly; with a benchmark against AtomicLong
+ * @run main/timeout=120 StripedAdderTest
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class StripedAdderTest {
+
+    private static int failCount = 0;
+
+    private static final int THREADS =
+        Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    static final class Max implements LongAccumulator.LongBinaryOperator,
+                                      Serializable {
+        public long applyAsLong(long x, long y) {
+            return Math.max(x, y);
+        }
+    }
+
+    static final class DoubleMin
+        implements DoubleAccumulator.DoubleBinaryOperator, Serializable {
+        public double applyAsDouble(double x, double y) {
+            return Math.min(x, y);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        singleThread();
+        contended();
+        serialization();
+        benchmark();
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    private static void check(String what, boolean ok) {
+        if (!ok) {
+            failCount++;
+            System.err.println(what + ": failed");
+        }
+    }
+
+    private static void singleThread() {
+        LongAdder a = new LongAdder();
+        check("new LongAdder", a.sum() == 0 && a.toString().equals("0"));
+        a.add(5);
+        a.increment();
+        a.decrement();
+        a.add(-10);
+        check("LongAdder.sum", a.sum() == -5 && a.longValue() == -5 &&
+              a.intValue() == -5 && a.doubleValue() == -5.0);
+        check("LongAdder.sumThenReset", a.sumThenReset() == -5 && a.sum() == 0);
+        a.add(Long.MAX_VALUE);
+        a.add(1);
+        check("LongAdder overflow", a.sum() == Long.MIN_VALUE);
+        a.reset();
+        check("LongAdder.reset", a.sum() == 0);
+
+        DoubleAdder d = new DoubleAdder();
+        d.add(1.5);
+        d.add(-0.25);
+        check("DoubleAdder.sum", d.sum() == 1.25 && d.longValue() == 1 &&
+              d.toString().equals("1.25"));
+        check("DoubleAdder.sumThenReset",
+              d.sumThenReset() == 1.25 && d.sum() == 0.0);
+
+        LongAccumulator max = new LongAccumulator(new Max(), Long.MIN_VALUE);
+        check("new LongAccumulator", max.get() == Long.MIN_VALUE);
+        max.accumulate(3);
+        max.accumulate(-7);
+        max.accumulate(42);
+        check("LongAccumulator.get", max.get() == 42 && max.intValue() == 42);
+        check("LongAccumulator.getThenReset",
+              max.getThenReset() == 42 && max.get() == Long.MIN_VALUE);
+
+        DoubleAccumulator min =
+            new DoubleAccumulator(new DoubleMin(), Double.POSITIVE_INFINITY);
+        min.accumulate(2.5);
+        min.accumulate(-1.0);
+        check("DoubleAccumulator.get", min.get() == -1.0);
+        min.reset();
+        check("DoubleAccumulator.reset",
+              min.get() == Double.POSITIVE_INFINITY);
+
+        try {
+            new LongAccumulator(null, 0);
+            check("LongAccumulator(null)", false);
+        } catch (NullPointerException e) {
+        }
+        try {
+            new DoubleAccumulator(null, 0.0);
+            check("DoubleAccumulator(null)", false);
+        } catch (NullPointerException e) {
+        }
+    }
+
+    /*
+     * Starts THREADS threads at once, each running the task with its
+     * index, and waits for them to finish.
+     */
+    private static void runConcurrently(final Task task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int index = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        task.run(index);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread t : threads)
+            t.join();
+    }
+
+    interface Task {
+        void run(int index);
+    }
+
+    private static void contended() throws Exception {
+        final int n = 200000;
+        final LongAdder a = new LongAdder();
+        final DoubleAdder d = new DoubleAdder();
+        final LongAccumulator max = new LongAccumulator(new Max(), 0);
+        final DoubleAccumulator min =
+            new DoubleAccumulator(new DoubleMin(), Double.POSITIVE_INFINITY);
+        // Read while updating: with increments only, the sums a thread
+        // reads never decrease, and include its own increments
+        final AtomicLong badSums = new AtomicLong();
+        runConcurrently(new Task() {
+            public void run(int index) {
+                long last = 0;
+                for (int i = 0; i < n; i++) {
+                    a.increment();
+                    d.add(0.5);
+                    max.accumulate((long) index * n + i);
+                    min.accumulate(-(double) index * n - i);
+                    if ((i & 1023) == 0) {
+                        long sum = a.sum();
+                        if (sum < last || sum < i + 1)
+                            badSums.incrementAndGet();
+                        last = sum;
+                    }
+                }
+            }
+        });
+        long total = (long) THREADS * n;
+        check("LongAdder under contention", a.sum() == total);
+        // Sums of halves are exact in double arithmetic at this size
+        check("DoubleAdder under contention", d.sum() == total * 0.5);
+        check("LongAccumulator under contention", max.get() == total - 1);
+        check("DoubleAccumulator under contention",
+              min.get() == -(double) (total - 1));
+        check("LongAdder.sum during updates", badSums.get() == 0);
+
+        // Resets at quiescent points between rounds of concurrent
+        // updates, once the cells have been created
+        final LongAdder b = new LongAdder();
+        long drained = 0;
+        for (int round = 0; round < 3; round++) {
+            runConcurrently(new Task() {
+                public void run(int index) {
+                    for (int i = 0; i < n; i++)
+                        b.add(2);
+                }
+            });
+            drained += b.sumThenReset();
+            check("LongAdder.sumThenReset, round " + round,
+                  b.sum() == 0 && drained == 2L * THREADS * n * (round + 1));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T serialClone(T o) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(o);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(
+            new ByteArrayInputStream(bos.toByteArray()));
+        return (T) ois.readObject();
+    }
+
+    private static void serialization() throws Exception {
+        LongAdder a = new LongAdder();
+        a.add(12345);
+        LongAdder a2 = serialClone(a);
+        a2.increment();
+        check("LongAdder serialized", a2.sum() == 12346 && a.sum() == 12345);
+
+        DoubleAdder d = new DoubleAdder();
+        d.add(-2.75);
+        DoubleAdder d2 = serialClone(d);
+        check("DoubleAdder serialized", d2.sum() == -2.75);
+
+        LongAccumulator max = new LongAccumulator(new Max(), -100);
+        max.accumulate(17);
+        LongAccumulator max2 = serialClone(max);
+        max2.accumulate(5);
+        check("LongAccumulator serialized", max2.get() == 17);
+        max2.reset();
+        check("LongAccumulator serialized identity", max2.get() == -100);
+
+        DoubleAccumulator min =
+            new DoubleAccumulator(new DoubleMin(), 1000.0);
+        min.accumulate(3.0);
+        DoubleAccumulator min2 = serialClone(min);
+        min2.accumulate(4.0);
+        check("DoubleAccumulator serialized", min2.get() == 3.0);
+        min2.reset();
+        check("DoubleAccumulator serialized identity", min2.get() == 1000.0);
+    }
+
+    /*
+     * Times increments by all threads of a LongAdder against an
+     * AtomicLong, after a first round that warms up the compiler.  The
+     * times are printed only, as they depend on the machine.
+     */
+    private static void benchmark() throws Exception {
+        final int n = 1000000;
+        for (int round = 0; round < 2; round++) {
+            final LongAdder adder = new LongAdder();
+            final AtomicLong atomic = new AtomicLong();
+            long t0 = System.nanoTime();
+            runConcurrently(new Task() {
+                public void run(int index) {
+                    for (int i = 0; i < n; i++)
+                        adder.increment();
+                }
+            });
+            long t1 = System.nanoTime();
+            runConcurrently(new Task() {
+                public void run(int index) {
+                    for (int i = 0; i < n; i++)
+                        atomic.incrementAndGet();
+                }
+            });
+            long t2 = System.nanoTime();
+            check("benchmark totals",
+                  adder.sum() == atomic.get() &&
+                  atomic.get() == (long) THREADS * n);
+            if (round > 0)
+                System.out.println(THREADS + " threads, " + n +
+                                   " increments each: LongAdder " +
+                                   (t1 - t0) / 1000000 + " ms, AtomicLong " +
+                                   (t2 - t1) / 1000000 + " ms");
+        }
+    }
+}
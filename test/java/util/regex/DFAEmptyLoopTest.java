@@ -0,0 +1,114 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary Repetitions whose body can match the empty string are run
+ *          by the automaton of Pattern.DFA, in linear time, with the
+ *          results of the backtracking engine
+ * @run main/timeout=60 DFAEmptyLoopTest
+ */
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class DFAEmptyLoopTest {
+
+    private static int failCount = 0;
+
+    // Exponential, or too deep for the stack, when backtracking
+    private static final String[] slow = {
+        "(a*)*b", "(?:a*)*b", "(a*)+b", "(a?)*b", "(?:a|b?)+c",
+        "((a*)*)*b", "(a*?)*b", "(a|)*?b", "(?:a*b*)*c"
+    };
+
+    private static final String[] patterns = {
+        "(a*)*b", "(?:a*)*b", "(a*)+b", "(a?)*b", "(?:a|b?)+c",
+        "(a|)*", "(|a)*", "(?:|a)*", "(?:|a)+", "(a|b|)+", "(a*)*",
+        "(a?){3}", "(a?){2,4}b", "((a*)*)*b", "(a*?)*b", "(a|)*?b",
+        "(a*|b)*c", "(?:(a)|b?)*c", "(a?)+?", "^(a*)*$", "(a*){0,3}x",
+        "()*a", "(\\b)*a", "(?:())*", "((\\b){2})*", "(a|\\b)*b"
+    };
+
+    private static final String[] inputs = {
+        "", "a", "b", "aa", "ab", "aab", "ba", "abab", "aaac", "abcab",
+        "xaxb", "a b", "aabbc"
+    };
+
+    public static void main(String[] args) throws Exception {
+        linearTime();
+        sameResults();
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++)
+            sb.append(c);
+        return sb.toString();
+    }
+
+    private static void linearTime() {
+        String text = repeat('a', 100000);
+        for (int i = 0; i < slow.length; i++) {
+            Matcher m = Pattern.compile(slow[i], Pattern.DFA).matcher(text);
+            if (m.find() || m.matches() || m.lookingAt()) {
+                failCount++;
+                System.err.println(slow[i] + ": unexpected match");
+            }
+        }
+        Matcher m = Pattern.compile("(a?)*b", Pattern.DFA).matcher(text + "b");
+        if (!m.matches() || m.start(1) != text.length() ||
+            m.end(1) != text.length()) {
+            failCount++;
+            System.err.println("(a?)*b: wrong match");
+        }
+    }
+
+    private static String result(Matcher m, boolean found) {
+        if (!found)
+            return "none";
+        StringBuilder sb = new StringBuilder();
+        for (int g = 0; g <= m.groupCount(); g++)
+            sb.append(m.start(g)).append(',').append(m.end(g)).append(' ');
+        return sb.toString();
+    }
+
+    private static void check(String re, String in, String kind,
+                              String expected, String actual) {
+        if (!expected.equals(actual)) {
+            failCount++;
+            System.err.println(re + " " + kind + " \"" + in + "\": expected " +
+                               expected + "but got " + actual);
+        }
+    }
+
+    private static void sameResults() {
+        for (int i = 0; i < patterns.length; i++) {
+            Pattern p = Pattern.compile(patterns[i]);
+            Pattern d = Pattern.compile(patterns[i], Pattern.DFA);
+            for (int j = 0; j < inputs.length; j++) {
+                String in = inputs[j];
+                Matcher pm = p.matcher(in);
+                Matcher dm = d.matcher(in);
+                boolean found;
+                do {
+                    found = pm.find();
+                    check(patterns[i], in, "find", result(pm, found),
+                          result(dm, dm.find()));
+                } while (found);
+                check(patterns[i], in, "matches", result(pm, pm.matches()),
+                      result(dm, dm.matches()));
+                check(patterns[i], in, "lookingAt",
+                      result(pm, pm.lookingAt()),
+                      result(dm, dm.lookingAt()));
+            }
+        }
+    }
+}
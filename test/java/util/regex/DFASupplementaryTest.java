@@ -0,0 +1,190 @@
+/*
+ * %W% %E%
+ *
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+/**
+ * @test
+ * @summary The automaton of Pattern.DFA matches input with surrogates in
+ *          linear time, with the results of the backtracking engine, and
+ *          expressions it cannot run are rejected when compiled
+ * @run main/timeout=60 DFASupplementaryTest
+ */
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSet;
+import java.util.regex.PatternSyntaxException;
+
+public class DFASupplementaryTest {
+
+    private static int failCount = 0;
+
+    private static final String GRIN = "\uD83D\uDE00";
+    private static final String BEAM = "\uD83D\uDE01";
+    private static final String HIGH = "\uD83D";
+    private static final String LOW = "\uDE00";
+
+    // Exponential when backtracking
+    private static final String[] slow = {
+        "(a|aa)+b", "(a|aa)+" + GRIN + "b", "(?:a|\\p{L}a)*c", "(.|a)+b"
+    };
+
+    private static final String[] patterns = {
+        ".", "..", "a.", ".b", GRIN, GRIN + "b", "a" + GRIN, "b" + GRIN + "b",
+        "(?i)" + GRIN + "A", "(?iu)a" + BEAM, "[^a]", "[^a]+", "[^a]b",
+        "[a" + BEAM + "]", "[" + GRIN + "-\uD83D\uDE0F]", "\\W", "\\W+",
+        "\\p{InLowSurrogates}", "\\p{InHighSurrogates}",
+        "\\p{InHighSurrogates}\\p{InLowSurrogates}", "(.)(.)", "(a|" + GRIN + ")b",
+        "(" + GRIN + "|" + BEAM + ")", "\\b.", ".\\b", "^.", ".$", "(?:.b)+",
+        "(a|aa)+b", "[^b]*b"
+    };
+
+    private static final String[] inputs = {
+        "", GRIN, GRIN + "b", "a" + GRIN + "b", "b" + GRIN + "b" + BEAM,
+        HIGH, LOW, HIGH + "b", "b" + LOW, LOW + HIGH, HIGH + HIGH + LOW,
+        HIGH + LOW + LOW, GRIN + GRIN, "a" + BEAM + "a", GRIN + "A",
+        "aab" + GRIN + "aa" + HIGH + "b"
+    };
+
+    public static void main(String[] args) throws Exception {
+        linearTime();
+        sameResults();
+        patternSets();
+        rejected();
+        if (failCount != 0)
+            throw new RuntimeException(failCount + " failures");
+        System.out.println("Passed");
+    }
+
+    private static String repeat(String s, int n) {
+        StringBuilder sb = new StringBuilder(n * s.length());
+        for (int i = 0; i < n; i++)
+            sb.append(s);
+        return sb.toString();
+    }
+
+    private static void linearTime() {
+        String[] texts = {
+            repeat("a", 100000) + GRIN,
+            repeat("a" + GRIN, 50000),
+            repeat(GRIN, 50000) + "a",
+            repeat("a", 50000) + HIGH + repeat("a", 50000)
+        };
+        for (int i = 0; i < slow.length; i++) {
+            Pattern p = Pattern.compile(slow[i], Pattern.DFA);
+            for (int j = 0; j < texts.length; j++) {
+                Matcher m = p.matcher(texts[j]);
+                if (m.find() || m.matches() || m.lookingAt()) {
+                    failCount++;
+                    System.err.println(slow[i] + " on text " + j +
+                                       ": unexpected match");
+                }
+            }
+        }
+        String text = repeat("a" + GRIN, 50000) + "b";
+        Matcher m = Pattern.compile("(a|" + GRIN + ")+b", Pattern.DFA)
+            .matcher(text);
+        if (!m.matches() || m.start(1) != text.length() - 3) {
+            failCount++;
+            System.err.println("(a|" + GRIN + ")+b: wrong match");
+        }
+    }
+
+    private static String result(Matcher m, boolean found) {
+        if (!found)
+            return "none";
+        StringBuilder sb = new StringBuilder();
+        for (int g = 0; g <= m.groupCount(); g++)
+            sb.append(m.start(g)).append(',').append(m.end(g)).append(' ');
+        return sb.toString();
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 128)
+                sb.append(c);
+            else
+                sb.append(String.format("\\u%04X", (int)c));
+        }
+        return sb.toString();
+    }
+
+    private static void check(String re, String in, String kind,
+                              String expected, String actual) {
+        if (!expected.equals(actual)) {
+            failCount++;
+            System.err.println(escape(re) + " " + kind + " \"" + escape(in) +
+                               "\": expected " + expected + "but got " +
+                               actual);
+        }
+    }
+
+    private static void sameResults() {
+        for (int i = 0; i < patterns.length; i++) {
+            Pattern p = Pattern.compile(patterns[i]);
+            Pattern d = Pattern.compile(patterns[i], Pattern.DFA);
+            for (int j = 0; j < inputs.length; j++) {
+                String in = inputs[j];
+                Matcher pm = p.matcher(in);
+                Matcher dm = d.matcher(in);
+                boolean found;
+                do {
+                    found = pm.find();
+                    check(patterns[i], in, "find", result(pm, found),
+                          result(dm, dm.find()));
+                } while (found);
+                check(patterns[i], in, "matches", result(pm, pm.matches()),
+                      result(dm, dm.matches()));
+                check(patterns[i], in, "lookingAt",
+                      result(pm, pm.lookingAt()),
+                      result(dm, dm.lookingAt()));
+                for (int k = 0; k < in.length(); k++) {
+                    pm.region(k, in.length());
+                    dm.region(k, in.length());
+                    check(patterns[i], in, "find from " + k,
+                          result(pm, pm.find()), result(dm, dm.find()));
+                }
+            }
+        }
+    }
+
+    private static void patternSets() {
+        PatternSet set = PatternSet.compile(patterns);
+        for (int j = 0; j < inputs.length; j++) {
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < patterns.length; i++) {
+                if (Pattern.compile(patterns[i]).matcher(inputs[j]).find())
+                    expected.append(i).append(' ');
+            }
+            StringBuilder actual = new StringBuilder();
+            int[] found = set.find(inputs[j]);
+            for (int i = 0; i < found.length; i++)
+                actual.append(found[i]).append(' ');
+            check("set", inputs[j], "find", expected.toString(),
+                  actual.toString());
+        }
+    }
+
+    private static void rejected() {
+        String[] unsupported = {
+            "(a)\\1", "a(?=b)", "(?<=a)b", "(?>a|ab)c", "a++", "\\b*a",
+            "(a|b){1000,9000}", "\\b\\B^$\\A\\z\\Z\\G"
+        };
+        for (int i = 0; i < unsupported.length; i++) {
+            try {
+                Pattern.compile(unsupported[i], Pattern.DFA);
+                failCount++;
+                System.err.println(unsupported[i] + ": not rejected");
+            } catch (PatternSyntaxException x) {
+                // expected
+            }
+            // Still accepted without the flag
+            Pattern.compile(unsupported[i]);
+        }
+    }
+}